@@ -4,9 +4,17 @@
 
 package play.cache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.Optional;
+import java.util.function.Function;
 
 import akka.Done;
 
@@ -101,4 +109,134 @@ public interface AsyncCacheApi {
    *     unsuccessful.
    */
   CompletionStage<Done> removeAll();
+
+  /**
+   * Retrieves the objects of several keys.
+   *
+   * <p>The default implementation looks up each key separately. Implementations backed by a cache
+   * supporting bulk lookups should override it to retrieve all the keys at once.
+   *
+   * @param <T> the type of the stored objects
+   * @param keys the keys to look up
+   * @return a CompletionStage containing the values found, by key. Keys not found are absent from
+   *     the map.
+   */
+  default <T> CompletionStage<Map<String, T>> getAll(Collection<String> keys) {
+    Map<String, T> found = new HashMap<>();
+    CompletableFuture<?>[] lookups =
+        new LinkedHashSet<>(keys)
+            .stream()
+            .map(
+                key ->
+                    this.<T>get(key)
+                        .thenAccept(
+                            value ->
+                                value.ifPresent(
+                                    v -> {
+                                      synchronized (found) {
+                                        found.put(key, v);
+                                      }
+                                    }))
+                        .toCompletableFuture())
+            .toArray(CompletableFuture<?>[]::new);
+    return CompletableFuture.allOf(lookups).thenApply(done -> found);
+  }
+
+  /**
+   * Retrieve the values of several keys from the cache, loading all the missing values at once
+   * with a default function.
+   *
+   * @param <T> the type of the values
+   * @param keys Item keys.
+   * @param block function loading the values of the keys that were not found in the cache. Keys it
+   *     doesn't return a value for are absent from the result.
+   * @param expiration expiration period in seconds of the loaded values.
+   * @return a CompletionStage containing the value of each key, found in the cache or loaded
+   */
+  default <T> CompletionStage<Map<String, T>> getOrElseUpdateAll(
+      Collection<String> keys,
+      Function<Set<String>, CompletionStage<Map<String, T>>> block,
+      int expiration) {
+    return this.<T>getAll(keys)
+        .thenCompose(
+            found -> {
+              Set<String> missing = new HashSet<>(keys);
+              missing.removeAll(found.keySet());
+              if (missing.isEmpty()) {
+                return CompletableFuture.completedFuture(found);
+              }
+              return block
+                  .apply(missing)
+                  .thenCompose(
+                      loaded ->
+                          setAll(loaded, expiration)
+                              .thenApply(
+                                  done -> {
+                                    Map<String, T> values = new HashMap<>(found);
+                                    values.putAll(loaded);
+                                    return values;
+                                  }));
+            });
+  }
+
+  /**
+   * Retrieve the values of several keys from the cache, loading all the missing values at once
+   * with a default function.
+   *
+   * <p>The loaded values have no expiration.
+   *
+   * @param <T> the type of the values
+   * @param keys Item keys.
+   * @param block function loading the values of the keys that were not found in the cache. Keys it
+   *     doesn't return a value for are absent from the result.
+   * @return a CompletionStage containing the value of each key, found in the cache or loaded
+   */
+  default <T> CompletionStage<Map<String, T>> getOrElseUpdateAll(
+      Collection<String> keys, Function<Set<String>, CompletionStage<Map<String, T>>> block) {
+    return getOrElseUpdateAll(keys, block, 0);
+  }
+
+  /**
+   * Sets several values with expiration.
+   *
+   * <p>The default implementation sets each value separately.
+   *
+   * @param values The values to set, by key.
+   * @param expiration expiration in seconds of every value
+   * @return a CompletionStage containing Done when all the values are set
+   */
+  default CompletionStage<Done> setAll(Map<String, ?> values, int expiration) {
+    CompletableFuture<?>[] sets =
+        values.entrySet().stream()
+            .map(entry -> set(entry.getKey(), entry.getValue(), expiration).toCompletableFuture())
+            .toArray(CompletableFuture<?>[]::new);
+    return CompletableFuture.allOf(sets).thenApply(done -> Done.getInstance());
+  }
+
+  /**
+   * Sets several values without expiration.
+   *
+   * @param values The values to set, by key.
+   * @return a CompletionStage containing Done when all the values are set
+   */
+  default CompletionStage<Done> setAll(Map<String, ?> values) {
+    return setAll(values, 0);
+  }
+
+  /**
+   * Removes several values from the cache.
+   *
+   * <p>The default implementation removes each value separately.
+   *
+   * @param keys The keys to remove the values for.
+   * @return a CompletionStage containing Done when all the values are removed
+   */
+  default CompletionStage<Done> removeAll(Collection<String> keys) {
+    CompletableFuture<?>[] removals =
+        new LinkedHashSet<>(keys)
+            .stream()
+            .map(key -> remove(key).toCompletableFuture())
+            .toArray(CompletableFuture<?>[]::new);
+    return CompletableFuture.allOf(removals).thenApply(done -> Done.getInstance());
+  }
 }
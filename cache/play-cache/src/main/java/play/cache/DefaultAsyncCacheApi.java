@@ -4,10 +4,15 @@
 
 package play.cache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.Optional;
+import java.util.function.Function;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -15,6 +20,7 @@ import javax.inject.Singleton;
 import akka.Done;
 import play.libs.Scala;
 import scala.concurrent.duration.Duration;
+import scala.runtime.AbstractFunction1;
 
 import scala.compat.java8.OptionConverters;
 import static scala.compat.java8.FutureConverters.toJava;
@@ -78,6 +84,66 @@ public class DefaultAsyncCacheApi implements AsyncCacheApi {
     return toJava(asyncCacheApi.removeAll());
   }
 
+  @Override
+  public <T> CompletionStage<Map<String, T>> getAll(Collection<String> keys) {
+    return toJava(asyncCacheApi.getAll(Scala.asScala(keys), Scala.<T>classTag()))
+        .thenApply(Scala::asJava);
+  }
+
+  @Override
+  public <T> CompletionStage<Map<String, T>> getOrElseUpdateAll(
+      Collection<String> keys,
+      Function<Set<String>, CompletionStage<Map<String, T>>> block,
+      int expiration) {
+    return toJava(
+            asyncCacheApi.getOrElseUpdateAll(
+                Scala.asScala(keys), intToDuration(expiration), loader(block), Scala.<T>classTag()))
+        .thenApply(Scala::asJava);
+  }
+
+  @Override
+  public <T> CompletionStage<Map<String, T>> getOrElseUpdateAll(
+      Collection<String> keys, Function<Set<String>, CompletionStage<Map<String, T>>> block) {
+    return getOrElseUpdateAll(keys, block, 0);
+  }
+
+  @Override
+  public CompletionStage<Done> setAll(Map<String, ?> values, int expiration) {
+    return toJava(
+        asyncCacheApi.setAll(
+            Scala.asScala(new HashMap<String, Object>(values)), intToDuration(expiration)));
+  }
+
+  @Override
+  public CompletionStage<Done> setAll(Map<String, ?> values) {
+    return toJava(
+        asyncCacheApi.setAll(Scala.asScala(new HashMap<String, Object>(values)), Duration.Inf()));
+  }
+
+  @Override
+  public CompletionStage<Done> removeAll(Collection<String> keys) {
+    return toJava(asyncCacheApi.removeAll(Scala.asScala(keys)));
+  }
+
+  private static <T>
+      scala.Function1<
+              scala.collection.immutable.Set<String>,
+              scala.concurrent.Future<scala.collection.immutable.Map<String, T>>>
+          loader(Function<Set<String>, CompletionStage<Map<String, T>>> block) {
+    return new AbstractFunction1<
+        scala.collection.immutable.Set<String>,
+        scala.concurrent.Future<scala.collection.immutable.Map<String, T>>>() {
+      @Override
+      public scala.concurrent.Future<scala.collection.immutable.Map<String, T>> apply(
+          scala.collection.immutable.Set<String> missing) {
+        return scala.compat.java8.FutureConverters.toScala(
+            block
+                .apply(scala.collection.JavaConverters.setAsJavaSetConverter(missing).asJava())
+                .thenApply(Scala::asScala));
+      }
+    };
+  }
+
   private Duration intToDuration(int seconds) {
     return seconds == 0 ? Duration.Inf() : Duration.apply(seconds, TimeUnit.SECONDS);
   }
@@ -5,6 +5,7 @@
 package play.api.cache
 
 import akka.Done
+import play.core.Execution.Implicits.trampoline
 
 import scala.concurrent.Future
 import scala.concurrent.duration._
@@ -58,4 +59,68 @@ trait AsyncCacheApi {
    * @return a Future[Done], which is completed with either a Done or an exception if the clear did not work.
    */
   def removeAll(): Future[Done]
+
+  /**
+   * Retrieve the values of several keys from the cache for the given type.
+   *
+   * The default implementation looks up each key separately. Implementations backed by a cache supporting bulk
+   * lookups should override it to retrieve all the keys at once.
+   *
+   * @param keys The keys of the items.
+   * @return the values found in the cache, by key. Keys not found are absent from the map.
+   */
+  def getAll[T: ClassTag](keys: Seq[String]): Future[Map[String, T]] = {
+    Future
+      .sequence(keys.distinct.map(key => get[T](key).map(_.map(key -> _))))
+      .map(_.flatten.toMap)
+  }
+
+  /**
+   * Set several values into the cache.
+   *
+   * The default implementation sets each value separately.
+   *
+   * @param values The values to set, by key.
+   * @param expiration Expiration time of every value.
+   */
+  def setAll(values: Map[String, Any], expiration: Duration = Duration.Inf): Future[Done] = {
+    Future.sequence(values.toSeq.map { case (key, value) => set(key, value, expiration) }).map(_ => Done)
+  }
+
+  /**
+   * Remove several values from the cache.
+   *
+   * The default implementation removes each value separately.
+   *
+   * @param keys The keys of the items to remove.
+   */
+  def removeAll(keys: Seq[String]): Future[Done] = {
+    Future.sequence(keys.distinct.map(remove)).map(_ => Done)
+  }
+
+  /**
+   * Retrieve the values of several keys from the cache, loading all the missing values at once with a default function.
+   *
+   * The default implementation retrieves the keys with [[getAll]] and stores the loaded values with [[setAll]].
+   *
+   * @param keys The keys of the items.
+   * @param expiration Expiration time of the loaded values.
+   * @param orElse The function loading the values of the keys that were not found in the cache. Keys it doesn't
+   *               return a value for are absent from the result.
+   * @return the value of each key, found in the cache or loaded.
+   */
+  def getOrElseUpdateAll[A: ClassTag](keys: Seq[String], expiration: Duration = Duration.Inf)(
+      orElse: Set[String] => Future[Map[String, A]]
+  ): Future[Map[String, A]] = {
+    getAll[A](keys).flatMap { found =>
+      val missing = keys.toSet -- found.keySet
+      if (missing.isEmpty) {
+        Future.successful(found)
+      } else {
+        orElse(missing).flatMap { loaded =>
+          setAll(loaded, expiration).map(_ => found ++ loaded)
+        }
+      }
+    }
+  }
 }
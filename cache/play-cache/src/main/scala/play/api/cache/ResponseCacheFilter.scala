@@ -0,0 +1,490 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.api.cache
+
+import java.nio.ByteOrder
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Provider
+import javax.inject.Singleton
+
+import akka.stream.Materializer
+import akka.stream.scaladsl.Sink
+import akka.util.ByteIterator
+import akka.util.ByteString
+import akka.util.ByteStringBuilder
+import com.typesafe.config.ConfigMemorySize
+import play.api.Configuration
+import play.api.Logger
+import play.api.http.HttpEntity
+import play.api.http.HeaderNames._
+import play.api.http.HttpVerbs
+import play.api.inject._
+import play.api.libs.streams.Accumulator
+import play.api.mvc._
+
+import scala.concurrent.duration._
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.util.control.NonFatal
+import scala.util.Try
+
+/**
+ * A filter caching responses in an [[AsyncCacheApi]], in front of the router.
+ *
+ * Unlike [[Cached]], which caches the results of a single action, this filter caches any response that HTTP allows a
+ * shared cache to store, following the `Cache-Control` and `Vary` headers of the response:
+ *
+ *  - Only `GET` requests without a body, credentials, cookies or a `Cache-Control: no-cache` or `no-store` directive
+ *    are served from the cache.
+ *  - Only responses that opt in to shared caching, with a `public`, `s-maxage` or `max-age` directive, are stored,
+ *    provided they have a cacheable status, no `Set-Cookie` header, no `private`, `no-cache` or `no-store` directive,
+ *    and a body no larger than the configured maximum. They are fresh for their `s-maxage` or `max-age`, or for the
+ *    default TTL if they specify neither, which is zero by default, so they aren't stored.
+ *  - Responses may specify how long they can be served stale with the `stale-while-revalidate` and `stale-if-error`
+ *    directives, which default to the configured durations.
+ *
+ * Concurrent requests missing the cache for the same URL are coalesced, so only one of them runs the action while
+ * the others wait for its response, rather than all of them computing the same response at once.
+ *
+ * Responses are stored pre-encoded, with their headers and body in a single `ByteString`, so serving a hit only
+ * decodes the headers and slices the body without copying it, whatever the cache backend.
+ */
+@Singleton
+class ResponseCacheFilter @Inject() (cache: AsyncCacheApi, config: ResponseCacheFilterConfig)(
+    implicit mat: Materializer
+) extends EssentialFilter {
+  import ResponseCacheFilter._
+  import play.core.Execution.Implicits.trampoline
+
+  // The pending computation of each key that missed the cache, completed with the response it stored, if any
+  private[this] val inFlight = new ConcurrentHashMap[String, Future[Option[CachedResponse]]]()
+
+  def apply(next: EssentialAction): EssentialAction = EssentialAction { request =>
+    if (mayServeFromCache(request)) {
+      Accumulator.done(serve(request, next))
+    } else {
+      next(request)
+    }
+  }
+
+  private def mayServeFromCache(request: RequestHeader): Boolean = {
+    request.method == HttpVerbs.GET &&
+    !request.hasBody &&
+    !request.headers.hasHeader(AUTHORIZATION) &&
+    !request.headers.hasHeader(COOKIE) &&
+    !CacheControl.parse(request.headers.getAll(CACHE_CONTROL)).exists(d => d.name == NoCache || d.name == NoStore) &&
+    config.shouldCache(request)
+  }
+
+  private def primaryKey(request: RequestHeader): String = config.keyPrefix + request.host + request.uri
+
+  private def serve(request: RequestHeader, next: EssentialAction): Future[Result] = {
+    val key = primaryKey(request)
+    lookup(request, key).flatMap {
+      case Some(entry) =>
+        val age = System.currentTimeMillis() - entry.storedAt
+        if (age < entry.freshFor) {
+          Future.successful(entry.toResult(age))
+        } else if (age < entry.freshFor + entry.staleWhileRevalidate) {
+          revalidate(request, next, key)
+          Future.successful(entry.toResult(age))
+        } else if (age < entry.freshFor + entry.staleIfError) {
+          fetch(request, next, key)
+            .map { result =>
+              if (isError(result)) {
+                // Drain the body of the error, which isn't sent, so that it doesn't hold on to its resources
+                result.body.dataStream.runWith(Sink.ignore)
+                entry.toResult(age)
+              } else result
+            }
+            .recover {
+              case NonFatal(e) =>
+                logger.warn(s"Serving stale response for ${request.uri} after failing to refresh it", e)
+                entry.toResult(age)
+            }
+        } else {
+          fetch(request, next, key)
+        }
+      case None =>
+        fetch(request, next, key)
+    }
+  }
+
+  /**
+   * Find the stored response matching the request, first under the primary key of the request, which holds the last
+   * variant stored, then under the key of the variant selected by the request.
+   */
+  private def lookup(request: RequestHeader, key: String): Future[Option[CachedResponse]] = {
+    def decode(bytes: ByteString) = Try(CachedResponse.decode(bytes)).toOption
+
+    cache.get[ByteString](key).map(_.flatMap(decode)).flatMap {
+      case Some(entry) if entry.matches(request) => Future.successful(Some(entry))
+      case Some(entry) =>
+        cache.get[ByteString](variantKey(key, entry.varyNames, request)).map {
+          _.flatMap(decode).filter(_.matches(request))
+        }
+      case None => Future.successful(None)
+    }
+  }
+
+  /**
+   * Refresh a stale response in the background, discarding the response.
+   */
+  private def revalidate(request: RequestHeader, next: EssentialAction, key: String): Unit = {
+    fetch(request, next, key).onComplete {
+      case scala.util.Success(result) => result.body.dataStream.runWith(Sink.ignore)
+      case scala.util.Failure(e)      => logger.warn(s"Failed to revalidate the cached response for ${request.uri}", e)
+    }
+  }
+
+  /**
+   * Run the action and store its response, unless a request for the same key is already running it, in which case
+   * its response is reused if it was stored and matches this request.
+   */
+  private def fetch(request: RequestHeader, next: EssentialAction, key: String): Future[Result] = {
+    val promise = Promise[Option[CachedResponse]]()
+    inFlight.putIfAbsent(key, promise.future) match {
+      case null =>
+        val fetched = Future.fromTry(Try(runAndStore(request, next, key))).flatten
+        // Always release the key, or the requests for it would wait forever, and let the requests waiting for a
+        // failed response compute their own
+        fetched.onComplete { stored =>
+          inFlight.remove(key, promise.future)
+          promise.success(stored.toOption.flatMap(_._2))
+        }
+        fetched.map(_._1)
+      case pending =>
+        pending.flatMap {
+          case Some(entry) if entry.matches(request) => Future.successful(entry.toResult(0))
+          // The response couldn't be shared, so compute our own
+          case _ => run(request, next)
+        }
+    }
+  }
+
+  /**
+   * Run the action, turning the exceptions it throws into a failed future.
+   */
+  private def run(request: RequestHeader, next: EssentialAction): Future[Result] =
+    Future.fromTry(Try(next(request).run())).flatten
+
+  private def runAndStore(
+      request: RequestHeader,
+      next: EssentialAction,
+      key: String
+  ): Future[(Result, Option[CachedResponse])] = {
+    run(request, next).flatMap { result =>
+      policy(result) match {
+        case Some(policy) =>
+          strictBody(result.body).flatMap {
+            case Some(body) =>
+              val varyValues = policy.varyNames.map(headerValue(request, _))
+              val entry = CachedResponse(
+                System.currentTimeMillis(),
+                policy.freshFor,
+                policy.staleWhileRevalidate,
+                policy.staleIfError,
+                policy.varyNames,
+                varyValues,
+                result.header.status,
+                result.header.headers,
+                result.body.contentType,
+                body
+              )
+              store(request, key, entry).map { _ =>
+                (result.copy(body = HttpEntity.Strict(body, result.body.contentType)), Some(entry))
+              }
+            case None => Future.successful((result, None))
+          }
+        case None => Future.successful((result, None))
+      }
+    }
+  }
+
+  private def store(request: RequestHeader, key: String, entry: CachedResponse): Future[Any] = {
+    val bytes      = CachedResponse.encode(entry)
+    val expiration = (entry.freshFor + math.max(entry.staleWhileRevalidate, entry.staleIfError)).millis
+    val stored = if (entry.varyNames.isEmpty) {
+      cache.set(key, bytes, expiration)
+    } else {
+      cache
+        .set(variantKey(key, entry.varyNames, request), bytes, expiration)
+        .flatMap(_ => cache.set(key, bytes, expiration))
+    }
+    // Failing to store a response mustn't fail the request
+    stored.recover {
+      case NonFatal(e) => logger.warn(s"Failed to cache the response for ${request.uri}", e)
+    }
+  }
+
+  /**
+   * Decide whether and for how long a response may be stored.
+   */
+  private def policy(result: Result): Option[StoragePolicy] = {
+    val headers    = result.header.headers
+    val directives = CacheControl.parse(headers.get(CACHE_CONTROL).toSeq)
+    def directive(name: String): Option[CacheControl.Directive] = directives.find(_.name == name)
+    def seconds(name: String): Option[Long] =
+      directive(name).flatMap(_.value).flatMap(v => Try(v.toLong.seconds.toMillis).toOption)
+
+    val varyNames = headers.get(VARY).toSeq.flatMap(_.split(',')).map(_.trim).filter(_.nonEmpty)
+    // Responses may depend on the user in ways the application doesn't tell, so only store those that opt in
+    val explicitlyCacheable = directives.exists(d => d.name == Public || d.name == SMaxAge || d.name == MaxAge)
+    val storable = explicitlyCacheable &&
+      config.statuses.contains(result.header.status) &&
+      !headers.contains(SET_COOKIE) &&
+      !directives.exists(d => d.name == NoStore || d.name == NoCache || d.name == Private) &&
+      !varyNames.contains("*")
+
+    if (storable) {
+      val freshFor = seconds(SMaxAge).orElse(seconds(MaxAge)).getOrElse(config.defaultTtl.toMillis)
+      if (freshFor > 0) {
+        Some(
+          StoragePolicy(
+            freshFor,
+            seconds(StaleWhileRevalidate).getOrElse(config.staleWhileRevalidate.toMillis),
+            seconds(StaleIfError).getOrElse(config.staleIfError.toMillis),
+            varyNames.map(_.toLowerCase(java.util.Locale.ENGLISH)).distinct.sorted
+          )
+        )
+      } else None
+    } else None
+  }
+
+  /**
+   * The body of a response, if it's small enough to be stored.
+   */
+  private def strictBody(body: HttpEntity): Future[Option[ByteString]] = body match {
+    case HttpEntity.Strict(data, _) if data.length <= config.maxBodySize => Future.successful(Some(data))
+    case HttpEntity.Streamed(_, Some(length), _) if length <= config.maxBodySize =>
+      body.consumeData.map(Some(_))
+    case _ => Future.successful(None)
+  }
+
+  private def isError(result: Result): Boolean = result.header.status >= 500
+}
+
+object ResponseCacheFilter {
+  private val logger = Logger(this.getClass)
+
+  private val NoCache              = "no-cache"
+  private val NoStore              = "no-store"
+  private val Private              = "private"
+  private val Public               = "public"
+  private val MaxAge               = "max-age"
+  private val SMaxAge              = "s-maxage"
+  private val StaleWhileRevalidate = "stale-while-revalidate"
+  private val StaleIfError         = "stale-if-error"
+
+  private final case class StoragePolicy(
+      freshFor: Long,
+      staleWhileRevalidate: Long,
+      staleIfError: Long,
+      varyNames: Seq[String]
+  )
+
+  private def headerValue(request: RequestHeader, name: String): String = request.headers.getAll(name).mkString(",")
+
+  private def variantKey(key: String, varyNames: Seq[String], request: RequestHeader): String =
+    varyNames.map(name => s"\n$name:${headerValue(request, name)}").mkString(key, "", "")
+
+  private object CacheControl {
+    final case class Directive(name: String, value: Option[String])
+
+    def parse(headers: Seq[String]): Seq[Directive] = {
+      headers.flatMap(_.split(',')).map(_.trim).filter(_.nonEmpty).map { directive =>
+        directive.indexOf('=') match {
+          case -1 => Directive(directive.toLowerCase(java.util.Locale.ENGLISH), None)
+          case i =>
+            val value = directive.substring(i + 1).trim.stripPrefix("\"").stripSuffix("\"")
+            Directive(directive.substring(0, i).trim.toLowerCase(java.util.Locale.ENGLISH), Some(value))
+        }
+      }
+    }
+  }
+
+  /**
+   * A stored response.
+   *
+   * @param storedAt When the response was stored, in milliseconds since the epoch.
+   * @param freshFor How long the response is fresh for, in milliseconds.
+   * @param staleWhileRevalidate How long the response may be served stale while it's refreshed, in milliseconds.
+   * @param staleIfError How long the response may be served stale if refreshing it fails, in milliseconds.
+   * @param varyNames The lower case names of the request headers selecting the response, sorted.
+   * @param varyValues The values of those headers in the request the response was generated for.
+   */
+  private[cache] final case class CachedResponse(
+      storedAt: Long,
+      freshFor: Long,
+      staleWhileRevalidate: Long,
+      staleIfError: Long,
+      varyNames: Seq[String],
+      varyValues: Seq[String],
+      status: Int,
+      headers: Map[String, String],
+      contentType: Option[String],
+      body: ByteString
+  ) {
+    def matches(request: RequestHeader): Boolean =
+      varyNames.corresponds(varyValues)((name, value) => headerValue(request, name) == value)
+
+    def toResult(age: Long): Result = Result(
+      ResponseHeader(status, headers + (AGE -> (age / 1000).toString)),
+      HttpEntity.Strict(body, contentType)
+    )
+  }
+
+  private[cache] object CachedResponse {
+    private implicit val byteOrder: ByteOrder = ByteOrder.BIG_ENDIAN
+
+    private val EncodingVersion: Byte = 1
+
+    def encode(response: CachedResponse): ByteString = {
+      val builder = new ByteStringBuilder
+      def putString(s: String): Unit = {
+        val bytes = s.getBytes(StandardCharsets.UTF_8)
+        builder.putInt(bytes.length).putBytes(bytes)
+      }
+      builder
+        .putByte(EncodingVersion)
+        .putLong(response.storedAt)
+        .putLong(response.freshFor)
+        .putLong(response.staleWhileRevalidate)
+        .putLong(response.staleIfError)
+        .putInt(response.status)
+      builder.putInt(response.varyNames.size)
+      response.varyNames.foreach(putString)
+      response.varyValues.foreach(putString)
+      builder.putInt(response.headers.size)
+      response.headers.foreach {
+        case (name, value) =>
+          putString(name)
+          putString(value)
+      }
+      builder.putByte(if (response.contentType.isDefined) 1 else 0)
+      response.contentType.foreach(putString)
+      builder.append(response.body)
+      builder.result()
+    }
+
+    def decode(bytes: ByteString): CachedResponse = {
+      val it = bytes.iterator
+      def getString(it: ByteIterator): String = new String(it.getBytes(it.getInt), StandardCharsets.UTF_8)
+
+      require(it.getByte == EncodingVersion, "Response was cached by a different version of Play")
+      val storedAt             = it.getLong
+      val freshFor             = it.getLong
+      val staleWhileRevalidate = it.getLong
+      val staleIfError         = it.getLong
+      val status               = it.getInt
+      val varyCount            = it.getInt
+      val varyNames            = Vector.fill(varyCount)(getString(it))
+      val varyValues           = Vector.fill(varyCount)(getString(it))
+      val headerCount          = it.getInt
+      val headers = (0 until headerCount).iterator.map { _ =>
+        val name = getString(it)
+        name -> getString(it)
+      }.toMap
+      val contentType = if (it.getByte == 1) Some(getString(it)) else None
+      // The body is the rest of the bytes, sliced without copying
+      val body = bytes.drop(bytes.length - it.len)
+      CachedResponse(
+        storedAt,
+        freshFor,
+        staleWhileRevalidate,
+        staleIfError,
+        varyNames,
+        varyValues,
+        status,
+        headers,
+        contentType,
+        body
+      )
+    }
+  }
+}
+
+/**
+ * Configuration for the response cache filter.
+ *
+ * @param keyPrefix The prefix of the cache keys of the responses.
+ * @param defaultTtl How long `public` responses that specify neither `s-maxage` nor `max-age` are fresh for.
+ * @param staleWhileRevalidate How long responses may be served stale while they are refreshed in the background,
+ *                             unless they specify `stale-while-revalidate`.
+ * @param staleIfError How long responses may be served stale when refreshing them fails, unless they specify
+ *                     `stale-if-error`.
+ * @param maxBodySize The maximum size of the body of a stored response.
+ * @param statuses The statuses of the responses that may be stored.
+ * @param shouldCache Whether the given request may be served from the cache.
+ */
+case class ResponseCacheFilterConfig(
+    keyPrefix: String = "play.responseCache.",
+    defaultTtl: FiniteDuration = Duration.Zero,
+    staleWhileRevalidate: FiniteDuration = Duration.Zero,
+    staleIfError: FiniteDuration = Duration.Zero,
+    maxBodySize: Long = 1024 * 1024,
+    statuses: Set[Int] = Set(200, 203, 204, 300, 301, 404, 405, 410, 414, 501),
+    shouldCache: RequestHeader => Boolean = _ => true
+) {
+  def withShouldCache(shouldCache: RequestHeader => Boolean): ResponseCacheFilterConfig =
+    copy(shouldCache = shouldCache)
+
+  def withDefaultTtl(ttl: FiniteDuration): ResponseCacheFilterConfig = copy(defaultTtl = ttl)
+
+  def withStaleWhileRevalidate(duration: FiniteDuration): ResponseCacheFilterConfig =
+    copy(staleWhileRevalidate = duration)
+
+  def withStaleIfError(duration: FiniteDuration): ResponseCacheFilterConfig = copy(staleIfError = duration)
+
+  def withMaxBodySize(size: Long): ResponseCacheFilterConfig = copy(maxBodySize = size)
+}
+
+object ResponseCacheFilterConfig {
+  def fromConfiguration(conf: Configuration): ResponseCacheFilterConfig = {
+    val config = conf.get[Configuration]("play.cache.responseCache")
+    ResponseCacheFilterConfig(
+      keyPrefix = config.get[String]("keyPrefix"),
+      defaultTtl = config.get[FiniteDuration]("defaultTtl"),
+      staleWhileRevalidate = config.get[FiniteDuration]("staleWhileRevalidate"),
+      staleIfError = config.get[FiniteDuration]("staleIfError"),
+      maxBodySize = config.get[ConfigMemorySize]("maxBodySize").toBytes,
+      statuses = config.get[Seq[Int]]("statuses").toSet
+    )
+  }
+}
+
+/**
+ * The response cache filter configuration provider.
+ */
+@Singleton
+class ResponseCacheFilterConfigProvider @Inject() (config: Configuration)
+    extends Provider[ResponseCacheFilterConfig] {
+  lazy val get = ResponseCacheFilterConfig.fromConfiguration(config)
+}
+
+/**
+ * The response cache filter module.
+ */
+class ResponseCacheFilterModule
+    extends SimpleModule(
+      bind[ResponseCacheFilterConfig].toProvider[ResponseCacheFilterConfigProvider],
+      bind[ResponseCacheFilter].toSelf
+    )
+
+/**
+ * The response cache filter components.
+ */
+trait ResponseCacheFilterComponents {
+  def configuration: Configuration
+  def materializer: Materializer
+  def defaultCacheApi: AsyncCacheApi
+
+  lazy val responseCacheFilterConfig: ResponseCacheFilterConfig =
+    ResponseCacheFilterConfig.fromConfiguration(configuration)
+  lazy val responseCacheFilter: ResponseCacheFilter =
+    new ResponseCacheFilter(defaultCacheApi, responseCacheFilterConfig)(materializer)
+}
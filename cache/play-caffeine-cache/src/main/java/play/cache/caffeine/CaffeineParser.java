@@ -19,6 +19,7 @@ import java.util.Objects;
  * <ul>
  *   <li>{@code initial-capacity=[integer]}: sets {@link Caffeine#initialCapacity}.
  *   <li>{@code maximum-size=[long]}: sets {@link Caffeine#maximumSize}.
+ *   <li>{@code refresh-after-write=[duration]}: sets {@link Caffeine#refreshAfterWrite}.
  *   <li>{@code weak-keys}=[condition]: sets {@link Caffeine#weakKeys}.
  *   <li>{@code weak-values}=[condition]: sets {@link Caffeine#weakValues}.
  *   <li>{@code soft-values}=[condition]: sets {@link Caffeine#softValues}.
@@ -66,6 +67,11 @@ public final class CaffeineParser {
           cacheBuilder.maximumSize(config.getLong(key));
         }
         break;
+      case "refresh-after-write":
+        if (!config.getIsNull(key)) {
+          cacheBuilder.refreshAfterWrite(config.getDuration(key));
+        }
+        break;
       case "weak-keys":
         conditionally(key, cacheBuilder::weakKeys);
         break;
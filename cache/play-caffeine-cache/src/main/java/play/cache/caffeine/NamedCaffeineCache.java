@@ -6,6 +6,7 @@ package play.cache.caffeine;
 
 import com.github.benmanes.caffeine.cache.AsyncCache;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import java.util.*;
@@ -17,16 +18,46 @@ public class NamedCaffeineCache<K, V> implements AsyncCache<K, V> {
 
   private AsyncCache<K, V> cache;
   private String name;
+  private OffHeapStore offHeapStore;
 
   public NamedCaffeineCache(String name, AsyncCache<K, V> cache) {
+    this(name, cache, null);
+  }
+
+  /**
+   * @param name the name of the cache.
+   * @param cache the underlying cache.
+   * @param offHeapStore the store the values evicted from the cache are moved to, or null if they
+   *     are discarded.
+   */
+  public NamedCaffeineCache(String name, AsyncCache<K, V> cache, OffHeapStore offHeapStore) {
     this.cache = cache;
     this.name = name;
+    this.offHeapStore = offHeapStore;
   }
 
   public String getName() {
     return name;
   }
 
+  /**
+   * Returns the hit, miss, load and eviction statistics of this cache. They are only recorded if
+   * {@code record-stats} is enabled in the configuration of the cache, and are otherwise empty.
+   *
+   * <p>Values computed by {@code getOrElseUpdate} and refreshed in the background are counted as
+   * loads.
+   *
+   * @return a snapshot of the statistics of this cache.
+   */
+  public CacheStats stats() {
+    return cache.synchronous().stats();
+  }
+
+  /** @return the off-heap tier of this cache, if it has one. */
+  public Optional<OffHeapStore> getOffHeapStore() {
+    return Optional.ofNullable(offHeapStore);
+  }
+
   @CheckForNull
   @Override
   public CompletableFuture<V> getIfPresent(@Nonnull Object key) {
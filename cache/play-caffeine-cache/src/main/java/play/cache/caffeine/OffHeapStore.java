@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.cache.caffeine;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded store of serialized values outside of the Java heap, used as a second tier under a
+ * {@link NamedCaffeineCache}.
+ *
+ * <p>The values are stored in a single direct buffer, split into blocks of a fixed size. A value
+ * spans as many blocks as it needs, which don't have to be contiguous. When there aren't enough
+ * free blocks to store a value, the least recently used values are evicted.
+ *
+ * <p>Only the keys and the block indices of the values are kept on the heap.
+ *
+ * <p>The values evicted from the cache are demoted to the store asynchronously, by its removal
+ * listener, so a key may be written or removed in the meantime. The store remembers when each key
+ * was last invalidated, for a while, so that it doesn't demote the values written to the cache
+ * before.
+ */
+public final class OffHeapStore {
+
+  // How long invalidations are remembered, well past the delay of the removal notifications
+  private static final long INVALIDATION_TTL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private static final class Entry {
+    final int[] blocks;
+    final int length;
+
+    Entry(int[] blocks, int length) {
+      this.blocks = blocks;
+      this.length = length;
+    }
+  }
+
+  private final ByteBuffer slab;
+  private final int blockSize;
+  private final int blockCount;
+  // A stack of the indices of the free blocks
+  private final int[] freeBlocks;
+  private int freeCount;
+  // The entries in access order, so the first is the least recently used
+  private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  // When each key was last invalidated, from System.nanoTime, oldest first
+  private final LinkedHashMap<Object, Long> invalidations = new LinkedHashMap<>();
+  private long clearedAt = System.nanoTime();
+
+  /**
+   * @param maxSize the maximum number of bytes stored.
+   * @param blockSize the size of the blocks the values are split into.
+   */
+  public OffHeapStore(long maxSize, int blockSize) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+    }
+    if (maxSize < blockSize) {
+      throw new IllegalArgumentException("maxSize must be at least blockSize: " + maxSize);
+    }
+    // A direct buffer can't hold more than Integer.MAX_VALUE bytes
+    this.blockCount = (int) Math.min(maxSize, Integer.MAX_VALUE) / blockSize;
+    this.blockSize = blockSize;
+    this.slab = ByteBuffer.allocateDirect(blockCount * blockSize);
+    this.freeBlocks = new int[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      freeBlocks[i] = blockCount - 1 - i;
+    }
+    this.freeCount = blockCount;
+  }
+
+  /**
+   * Stores a value, evicting the least recently used values if needed.
+   *
+   * @param key the key of the value.
+   * @param value the serialized value.
+   * @return whether the value was stored, which it isn't if it's larger than the store.
+   */
+  public synchronized boolean put(Object key, byte[] value) {
+    free(entries.remove(key));
+    int needed = (value.length + blockSize - 1) / blockSize;
+    if (needed > blockCount) {
+      return false;
+    }
+    Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+    while (freeCount < needed) {
+      Entry evicted = leastRecentlyUsed.next();
+      leastRecentlyUsed.remove();
+      free(evicted);
+    }
+    int[] blocks = new int[needed];
+    ByteBuffer buffer = slab.duplicate();
+    for (int i = 0; i < needed; i++) {
+      blocks[i] = freeBlocks[--freeCount];
+      int offset = i * blockSize;
+      buffer.position(blocks[i] * blockSize);
+      buffer.put(value, offset, Math.min(blockSize, value.length - offset));
+    }
+    entries.put(key, new Entry(blocks, value.length));
+    return true;
+  }
+
+  /**
+   * Stores a value evicted from the cache, unless its key was invalidated since the value was
+   * written to the cache.
+   *
+   * @param key the key of the value.
+   * @param value the serialized value.
+   * @param writtenAt when the value was written to the cache, from {@link System#nanoTime}.
+   * @return whether the value was stored.
+   */
+  public synchronized boolean demote(Object key, byte[] value, long writtenAt) {
+    Long invalidatedAt = invalidations.get(key);
+    if (writtenAt - clearedAt < 0 || (invalidatedAt != null && writtenAt - invalidatedAt < 0)) {
+      return false;
+    }
+    return put(key, value);
+  }
+
+  /**
+   * Removes a value, and prevents the values of the key written to the cache until now from being
+   * demoted afterwards. Call it when the key is written to or removed from the cache.
+   *
+   * @param key the key of the value.
+   */
+  public synchronized void invalidate(Object key) {
+    free(entries.remove(key));
+    long now = System.nanoTime();
+    // Move the key last, to keep the invalidations ordered
+    invalidations.remove(key);
+    invalidations.put(key, now);
+    Iterator<Long> oldest = invalidations.values().iterator();
+    while (oldest.hasNext() && now - oldest.next() > INVALIDATION_TTL_NANOS) {
+      oldest.remove();
+    }
+  }
+
+  /**
+   * Removes all the values, and prevents the values written to the cache until now from being
+   * demoted afterwards.
+   */
+  public synchronized void invalidateAll() {
+    clear();
+    invalidations.clear();
+    clearedAt = System.nanoTime();
+  }
+
+  /**
+   * Removes a value and returns it.
+   *
+   * @param key the key of the value.
+   * @return the serialized value, or null if there is none.
+   */
+  public synchronized byte[] take(Object key) {
+    Entry entry = entries.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    byte[] value = new byte[entry.length];
+    ByteBuffer buffer = slab.duplicate();
+    for (int i = 0; i < entry.blocks.length; i++) {
+      int offset = i * blockSize;
+      buffer.position(entry.blocks[i] * blockSize);
+      buffer.get(value, offset, Math.min(blockSize, value.length - offset));
+    }
+    free(entry);
+    return value;
+  }
+
+  /**
+   * Removes a value.
+   *
+   * @param key the key of the value.
+   */
+  public synchronized void remove(Object key) {
+    free(entries.remove(key));
+  }
+
+  /** Removes all the values. */
+  public synchronized void clear() {
+    for (Map.Entry<Object, Entry> entry : entries.entrySet()) {
+      free(entry.getValue());
+    }
+    entries.clear();
+  }
+
+  /** @return the number of values stored. */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** @return the number of bytes of the blocks used by the values stored. */
+  public synchronized long usedBytes() {
+    return (long) (blockCount - freeCount) * blockSize;
+  }
+
+  private void free(Entry entry) {
+    if (entry != null) {
+      for (int block : entry.blocks) {
+        freeBlocks[freeCount++] = block;
+      }
+    }
+  }
+}
@@ -4,6 +4,7 @@
 
 package play.api.cache.caffeine
 
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.Executor
 
 import javax.inject.Inject
@@ -16,6 +17,7 @@ import akka.stream.Materializer
 import com.github.benmanes.caffeine.cache.Cache
 import com.google.common.primitives.Primitives
 import play.cache.caffeine.NamedCaffeineCache
+import play.cache.caffeine.OffHeapStore
 import play.api.cache._
 import play.api.inject._
 import play.api.Configuration
@@ -27,10 +29,12 @@ import play.cache.{ DefaultAsyncCacheApi => JavaDefaultAsyncCacheApi }
 import play.cache.{ SyncCacheApi => JavaSyncCacheApi }
 
 import scala.compat.java8.FutureConverters
+import scala.compat.java8.OptionConverters._
 import scala.concurrent.duration.Duration
 import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
 import scala.reflect.ClassTag
+import scala.util.Try
 
 /**
  * CaffeineCache components for compile time injection
@@ -180,27 +184,70 @@ private[play] case class CaffeineCacheExistsException(msg: String, cause: Throwa
     extends RuntimeException(msg, cause)
 
 class SyncCaffeineCacheApi @Inject() (val cache: NamedCaffeineCache[Any, Any]) extends SyncCacheApi {
-  private val syncCache: Cache[Any, Any] = cache.synchronous()
+  private val syncCache: Cache[Any, Any]           = cache.synchronous()
+  private val offHeapStore: Option[OffHeapStore] = cache.getOffHeapStore.asScala
+
+  /**
+   * Whether the cache refreshes its values after they are written, in which case the values computed by
+   * `getOrElseUpdate` keep the function they were computed with.
+   */
+  private[caffeine] val refreshes: Boolean = syncCache.policy.refreshAfterWrite.isPresent
 
   override def set(key: String, value: Any, expiration: Duration): Unit = {
+    // Invalidate before the value is created, so that only the values written before are kept from the store
+    invalidateOffHeap(key)
     syncCache.put(key, ExpirableCacheValue(value, Some(expiration)))
     Done
   }
 
-  override def remove(key: String): Unit = syncCache.invalidate(key)
+  override def remove(key: String): Unit = {
+    syncCache.invalidate(key)
+    invalidateOffHeap(key)
+  }
 
   override def getOrElseUpdate[A: ClassTag](key: String, expiration: Duration)(orElse: => A): A = {
-    syncCache.get(key, _ => ExpirableCacheValue(orElse, Some(expiration))).asInstanceOf[ExpirableCacheValue[A]].value
+    def reload = if (refreshes) Some(() => Future.fromTry(Try[Any](orElse))) else None
+    syncCache
+      .get(key, _ => takeOffHeap(key).getOrElse(ExpirableCacheValue[Any](orElse, Some(expiration), reload)))
+      .asInstanceOf[ExpirableCacheValue[A]]
+      .value
   }
 
   override def get[T](key: String)(implicit ct: ClassTag[T]): Option[T] = {
     Option(syncCache.getIfPresent(key).asInstanceOf[ExpirableCacheValue[T]])
+      .orElse(promote(key).asInstanceOf[Option[ExpirableCacheValue[T]]])
       .filter { v =>
         Primitives.wrap(ct.runtimeClass).isInstance(v.value) ||
         ct == ClassTag.Nothing || (ct == ClassTag.Unit && v.value == ((): Unit))
       }
       .map(_.value)
   }
+
+  /**
+   * Take a value out of the off-heap tier, if it's there and hasn't expired.
+   */
+  private[caffeine] def takeOffHeap(key: String): Option[ExpirableCacheValue[Any]] = {
+    offHeapStore.flatMap(store => Option(store.take(key))).flatMap(OffHeapCodec.decode(key, _))
+  }
+
+  /**
+   * Move a value from the off-heap tier back to the cache, unless the cache got a value for the key in the meantime.
+   *
+   * @return the value of the key in the cache.
+   */
+  private[caffeine] def promote(key: String): Option[ExpirableCacheValue[Any]] = {
+    takeOffHeap(key).map { value =>
+      Option(syncCache.asMap.putIfAbsent(key, value)).getOrElse(value).asInstanceOf[ExpirableCacheValue[Any]]
+    }
+  }
+
+  /**
+   * Remove the value of a key from the off-heap tier, and keep the values written to the cache so far from being
+   * moved there once they are evicted.
+   */
+  private[caffeine] def invalidateOffHeap(key: String): Unit = offHeapStore.foreach(_.invalidate(key))
+
+  private[caffeine] def invalidateAllOffHeap(): Unit = offHeapStore.foreach(_.invalidateAll())
 }
 
 /**
@@ -216,7 +263,7 @@ class CaffeineCacheApi @Inject() (val cache: NamedCaffeineCache[Any, Any]) exten
 
   def get[T: ClassTag](key: String): Future[Option[T]] = {
     val resultJFuture = cache.getIfPresent(key)
-    if (resultJFuture == null) Future.successful(None)
+    if (resultJFuture == null) Future.successful(sync.promote(key).map(_.value.asInstanceOf[T]))
     else
       FutureConverters
         .toScala(resultJFuture)
@@ -229,16 +276,97 @@ class CaffeineCacheApi @Inject() (val cache: NamedCaffeineCache[Any, Any]) exten
   }
 
   def getOrElseUpdate[A: ClassTag](key: String, expiration: Duration)(orElse: => Future[A]): Future[A] = {
+    val reload = if (sync.refreshes) Some(() => orElse.asInstanceOf[Future[Any]]) else None
     lazy val orElseAsJavaFuture = FutureConverters
-      .toJava(orElse.map(ExpirableCacheValue(_, Some(expiration)).asInstanceOf[Any])(trampoline))
+      .toJava(orElse.map(ExpirableCacheValue[Any](_, Some(expiration), reload).asInstanceOf[Any])(trampoline))
       .toCompletableFuture
 
-    val resultAsJavaFuture = cache.get(key, (_: Any, _: Executor) => orElseAsJavaFuture)
+    val resultAsJavaFuture = cache.get(
+      key,
+      (_: Any, _: Executor) =>
+        sync.takeOffHeap(key) match {
+          case Some(value) => CompletableFuture.completedFuture[Any](value)
+          case None        => orElseAsJavaFuture
+        }
+    )
     FutureConverters.toScala(resultAsJavaFuture).map(_.asInstanceOf[ExpirableCacheValue[A]].value)(trampoline)
   }
 
   def removeAll(): Future[Done] = {
     cache.synchronous.invalidateAll
+    sync.invalidateAllOffHeap()
+    Future.successful(Done)
+  }
+
+  override def getAll[T: ClassTag](keys: Seq[String]): Future[Map[String, T]] = {
+    val (present, absent) = keys.distinct.map(key => key -> cache.getIfPresent(key)).partition(_._2 != null)
+    // Most values are already computed, so only wait for the ones still being loaded
+    val (loaded, loading) = present.partition { case (_, future) => future.isDone }
+    val promoted = absent.flatMap {
+      case (key, _) => sync.promote(key).map(value => key -> value.value.asInstanceOf[T])
+    }
+    val values = loaded.collect {
+      case (key, future) if !future.isCompletedExceptionally =>
+        key -> future.join().asInstanceOf[ExpirableCacheValue[T]].value
+    }.toMap ++ promoted
+    if (loading.isEmpty) {
+      Future.successful(values)
+    } else {
+      implicit val ec: ExecutionContext = trampoline
+      Future
+        .sequence(loading.map {
+          case (key, future) =>
+            FutureConverters
+              .toScala(future)
+              .map(value => Option(key -> value.asInstanceOf[ExpirableCacheValue[T]].value))
+              .recover { case _ => None }
+        })
+        .map(values ++ _.flatten)
+    }
+  }
+
+  override def setAll(values: Map[String, Any], expiration: Duration): Future[Done] = {
+    import scala.collection.JavaConverters._
+    values.keys.foreach(sync.invalidateOffHeap)
+    cache
+      .synchronous()
+      .putAll(values.map { case (key, value) => key -> ExpirableCacheValue(value, Some(expiration)) }.asJava)
+    Future.successful(Done)
+  }
+
+  override def removeAll(keys: Seq[String]): Future[Done] = {
+    import scala.collection.JavaConverters._
+    cache.synchronous().invalidateAll(keys.asJava)
+    keys.foreach(sync.invalidateOffHeap)
     Future.successful(Done)
   }
+
+  override def getOrElseUpdateAll[A: ClassTag](keys: Seq[String], expiration: Duration)(
+      orElse: Set[String] => Future[Map[String, A]]
+  ): Future[Map[String, A]] = {
+    import scala.collection.JavaConverters._
+    def reload(key: String): Option[() => Future[Any]] =
+      if (sync.refreshes) Some(() => orElse(Set(key)).map(_.get(key).orNull[Any])(trampoline)) else None
+    // Caffeine calls the loader once with all the keys that are absent, and coalesces concurrent loads of a key
+    val resultAsJavaFuture = cache.getAll(
+      keys.distinct.asJava,
+      (missing: java.lang.Iterable[_ <: Any], _: Executor) => {
+        val missingKeys = missing.asScala.map(_.toString).toSet
+        val promoted    = missingKeys.flatMap(key => sync.takeOffHeap(key).map(key -> _)).toMap
+        val toLoad      = missingKeys -- promoted.keySet
+        val loaded = (if (toLoad.isEmpty) Future.successful(Map.empty[String, A]) else orElse(toLoad)).map { values =>
+          val expirable = values.map {
+            case (key, value) => key -> ExpirableCacheValue[Any](value, Some(expiration), reload(key))
+          }
+          (promoted ++ expirable).map { case (key, value) => (key: Any) -> (value: Any) }.asJava
+        }(trampoline)
+        FutureConverters.toJava(loaded).toCompletableFuture
+      }
+    )
+    FutureConverters
+      .toScala(resultAsJavaFuture)
+      .map(_.asScala.iterator.map {
+        case (key, value) => key.toString -> value.asInstanceOf[ExpirableCacheValue[A]].value
+      }.toMap)(trampoline)
+  }
 }
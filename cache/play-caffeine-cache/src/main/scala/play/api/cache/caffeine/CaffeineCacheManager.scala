@@ -9,9 +9,13 @@ import java.util.concurrent.ConcurrentMap
 import akka.actor.ActorSystem
 import com.github.benmanes.caffeine.cache.AsyncCache
 import com.github.benmanes.caffeine.cache.Caffeine
+import com.github.benmanes.caffeine.cache.RemovalCause
+import com.github.benmanes.caffeine.cache.RemovalListener
+import com.github.benmanes.caffeine.cache.stats.CacheStats
 import com.typesafe.config.Config
 import play.cache.caffeine.CaffeineParser
 import play.cache.caffeine.NamedCaffeineCache
+import play.cache.caffeine.OffHeapStore
 
 import java.util.Collections
 
@@ -24,15 +28,31 @@ class CaffeineCacheManager(private val config: Config, private val actorSystem:
       .computeIfAbsent(
         cacheName,
         cacheName => {
-          val cacheBuilder: Caffeine[K, V] = getCacheBuilder(cacheName).asInstanceOf[Caffeine[K, V]]
+          val offHeapStore = this.offHeapStore(cacheName)
+          val cacheBuilder = {
+            val builder = getCacheBuilder(cacheName).asInstanceOf[Caffeine[String, ExpirableCacheValue[Any]]]
+            offHeapStore.fold(builder)(store => builder.removalListener(CaffeineCacheManager.demoteTo(store)))
+          }
+          val cache =
+            if (refreshes(cacheName)) cacheBuilder.buildAsync[String, ExpirableCacheValue[Any]](RefreshingCacheLoader)
+            else cacheBuilder.buildAsync[String, ExpirableCacheValue[Any]]()
           val namedCache =
-            new NamedCaffeineCache[K, V](cacheName, cacheBuilder.buildAsync().asInstanceOf[AsyncCache[K, V]])
+            new NamedCaffeineCache[K, V](cacheName, cache.asInstanceOf[AsyncCache[K, V]], offHeapStore.orNull)
           namedCache.asInstanceOf[NamedCaffeineCache[_, _]]
         }
       )
       .asInstanceOf[NamedCaffeineCache[K, V]]
   }
 
+  /**
+   * The statistics of each cache created so far, which are only recorded for the caches enabling `record-stats`.
+   */
+  def stats: Map[String, CacheStats] = {
+    scala.collection.JavaConverters.mapAsScalaMap(cacheMap).iterator.map {
+      case (name, cache) => name -> cache.stats()
+    }.toMap
+  }
+
   /* JAVA API */
   def getCacheNames(): java.util.Set[String] = {
     Collections.unmodifiableSet(cacheMap.keySet())
@@ -44,12 +64,53 @@ class CaffeineCacheManager(private val config: Config, private val actorSystem:
 
   private[caffeine] def getCacheBuilder(cacheName: String): Caffeine[_, _] = {
     val defaultExpiry: DefaultCaffeineExpiry = new DefaultCaffeineExpiry
-    val caches: Config                       = config.getConfig("caches")
-    val defaults: Config                     = config.getConfig("defaults")
-    val cacheConfig =
-      if (caches.hasPath(cacheName))
-        caches.getConfig(cacheName).withFallback(defaults)
-      else defaults
-    CaffeineParser.from(cacheConfig, actorSystem).expireAfter(defaultExpiry)
+    CaffeineParser.from(cacheConfig(cacheName), actorSystem).expireAfter(defaultExpiry)
+  }
+
+  private def cacheConfig(cacheName: String): Config = {
+    val caches: Config   = config.getConfig("caches")
+    val defaults: Config = config.getConfig("defaults")
+    if (caches.hasPath(cacheName))
+      caches.getConfig(cacheName).withFallback(defaults)
+    else defaults
+  }
+
+  /**
+   * Whether a cache refreshes its values after they are written, which requires it to be built with a loader.
+   */
+  private def refreshes(cacheName: String): Boolean = {
+    // hasPath is false for null values
+    cacheConfig(cacheName).hasPath("refresh-after-write")
+  }
+
+  /**
+   * The off-heap tier of a cache, if it's enabled.
+   */
+  private def offHeapStore(cacheName: String): Option[OffHeapStore] = {
+    val cacheConfig = this.cacheConfig(cacheName)
+    if (cacheConfig.hasPath("off-heap.enabled") && cacheConfig.getBoolean("off-heap.enabled")) {
+      Some(
+        new OffHeapStore(
+          cacheConfig.getMemorySize("off-heap.max-size").toBytes,
+          cacheConfig.getMemorySize("off-heap.block-size").toBytes.toInt
+        )
+      )
+    } else None
+  }
+}
+
+private[caffeine] object CaffeineCacheManager {
+
+  /**
+   * Move the values evicted from a cache for its size to its off-heap tier. Expired values are discarded.
+   *
+   * Removal listeners run asynchronously, so the store discards the values whose key was written or removed since
+   * they were written, rather than resurrecting them.
+   */
+  def demoteTo(store: OffHeapStore): RemovalListener[String, ExpirableCacheValue[Any]] = {
+    (key: String, value: ExpirableCacheValue[Any], cause: RemovalCause) =>
+      if (cause.wasEvicted && cause != RemovalCause.EXPIRED && key != null && value != null) {
+        OffHeapCodec.encode(key, value).foreach(store.demote(key, _, value.createdAt))
+      }
   }
 }
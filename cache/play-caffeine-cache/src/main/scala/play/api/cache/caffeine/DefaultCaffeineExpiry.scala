@@ -13,7 +13,7 @@ import scala.concurrent.duration._
 @InternalApi
 private[caffeine] class DefaultCaffeineExpiry extends Expiry[String, ExpirableCacheValue[Any]] {
   def expireAfterCreate(key: String, value: ExpirableCacheValue[Any], currentTime: Long): Long = {
-    calculateExpirationTime(value.durationMaybe)
+    calculateExpirationTime(value, currentTime)
   }
 
   def expireAfterUpdate(
@@ -22,18 +22,24 @@ private[caffeine] class DefaultCaffeineExpiry extends Expiry[String, ExpirableCa
       currentTime: Long,
       currentDuration: Long
   ): Long = {
-    calculateExpirationTime(value.durationMaybe)
+    calculateExpirationTime(value, currentTime)
   }
 
   def expireAfterRead(key: String, value: ExpirableCacheValue[Any], currentTime: Long, currentDuration: Long): Long = {
     currentDuration
   }
 
-  private def calculateExpirationTime(durationMaybe: Option[Duration]): Long = {
-    durationMaybe match {
-      case Some(duration) if duration.isFinite && duration.lteq(0.second) => 1.second.toNanos
-      case Some(duration) if duration.isFinite                            => duration.toNanos
-      case _                                                              => Long.MaxValue
+  /**
+   * The time left until the value expires, counted from when it was created, so a value written back by a refresh
+   * keeps its expiration.
+   */
+  private def calculateExpirationTime(value: ExpirableCacheValue[Any], currentTime: Long): Long = {
+    value.durationMaybe match {
+      case Some(duration) if duration.isFinite =>
+        val nanos   = if (duration.lteq(0.second)) 1.second.toNanos else duration.toNanos
+        val elapsed = currentTime - value.createdAt
+        if (elapsed <= 0) nanos else math.max(0L, nanos - elapsed)
+      case _ => Long.MaxValue
     }
   }
 }
@@ -6,7 +6,24 @@ package play.api.cache.caffeine
 
 import akka.annotation.InternalApi
 
+import scala.concurrent.Future
 import scala.concurrent.duration.Duration
 
+/**
+ * A cached value.
+ *
+ * @param durationMaybe How long the value is kept for.
+ * @param reload Computes a new value for the key, when the cache refreshes its values after they are written.
+ */
 @InternalApi
-private[caffeine] case class ExpirableCacheValue[V](value: V, durationMaybe: Option[Duration] = None)
+private[caffeine] case class ExpirableCacheValue[V](
+    value: V,
+    durationMaybe: Option[Duration] = None,
+    reload: Option[() => Future[V]] = None
+) {
+
+  /**
+   * When the value was created, from `System.nanoTime`, so its expiration can be kept when it's moved off-heap.
+   */
+  val createdAt: Long = System.nanoTime()
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.api.cache.caffeine
+
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.InputStream
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.io.ObjectStreamClass
+import java.nio.ByteBuffer
+
+import akka.annotation.InternalApi
+import play.api.Logger
+
+import scala.concurrent.duration._
+import scala.util.control.NonFatal
+
+/**
+ * Serializes the values moved to the off-heap tier of a cache, along with the time they have left.
+ */
+@InternalApi
+private[caffeine] object OffHeapCodec {
+  private val logger = Logger(getClass)
+
+  private val NoExpiration = Long.MaxValue
+
+  /**
+   * Serialize a value, if it's serializable.
+   */
+  def encode(key: Any, value: ExpirableCacheValue[Any]): Option[Array[Byte]] = value.value match {
+    case serializable: java.io.Serializable =>
+      try {
+        val bytes = new ByteArrayOutputStream()
+        val header = new DataOutputStream(bytes)
+        header.writeLong(System.nanoTime())
+        header.writeLong(timeLeft(value))
+        val out = new ObjectOutputStream(bytes)
+        out.writeObject(serializable)
+        out.close()
+        Some(bytes.toByteArray)
+      } catch {
+        case NonFatal(e) =>
+          logger.debug(s"Discarding the value of $key evicted from the cache, since it can't be serialized", e)
+          None
+      }
+    case _ => None
+  }
+
+  /**
+   * Deserialize a value, unless it has expired.
+   */
+  def decode(key: Any, bytes: Array[Byte]): Option[ExpirableCacheValue[Any]] = {
+    val header    = ByteBuffer.wrap(bytes)
+    val encodedAt = header.getLong
+    val timeLeft  = header.getLong
+    val remaining = timeLeft - (System.nanoTime() - encodedAt)
+    if (timeLeft != NoExpiration && remaining <= 0) {
+      None
+    } else {
+      try {
+        val in = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(bytes, 16, bytes.length - 16))
+        try {
+          val duration = if (timeLeft == NoExpiration) None else Some(remaining.nanos)
+          Some(ExpirableCacheValue[Any](in.readObject(), duration))
+        } finally {
+          in.close()
+        }
+      } catch {
+        case NonFatal(e) =>
+          logger.warn(s"Discarding the off-heap value of $key, since it can't be deserialized", e)
+          None
+      }
+    }
+  }
+
+  private def timeLeft(value: ExpirableCacheValue[Any]): Long = value.durationMaybe match {
+    case Some(duration: FiniteDuration) =>
+      // Mirror DefaultCaffeineExpiry, which keeps non-positive durations for a second
+      val nanos = if (duration <= Duration.Zero) 1.second.toNanos else duration.toNanos
+      nanos - math.max(0L, System.nanoTime() - value.createdAt)
+    case _ => NoExpiration
+  }
+
+  /**
+   * Resolves classes with the context class loader, so values of application classes can be deserialized.
+   */
+  private class ContextClassLoaderObjectInputStream(in: InputStream) extends ObjectInputStream(in) {
+    override def resolveClass(desc: ObjectStreamClass): Class[_] = {
+      val loader = Thread.currentThread.getContextClassLoader
+      if (loader == null) super.resolveClass(desc)
+      else
+        try Class.forName(desc.getName, false, loader)
+        catch { case _: ClassNotFoundException => super.resolveClass(desc) }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.api.cache.caffeine
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.Executor
+
+import akka.annotation.InternalApi
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader
+import play.api.libs.streams.Execution.trampoline
+
+import scala.compat.java8.FutureConverters
+import scala.concurrent.Future
+
+/**
+ * Reloads the values of a cache refreshing them after they are written, with the function they were computed with.
+ *
+ * Values are only loaded with the function given to the cache when they are missing, so this never loads them.
+ */
+@InternalApi
+private[caffeine] object RefreshingCacheLoader extends AsyncCacheLoader[String, ExpirableCacheValue[Any]] {
+  override def asyncLoad(key: String, executor: Executor): CompletableFuture[ExpirableCacheValue[Any]] = {
+    CompletableFuture.completedFuture(null)
+  }
+
+  override def asyncReload(
+      key: String,
+      oldValue: ExpirableCacheValue[Any],
+      executor: Executor
+  ): CompletableFuture[ExpirableCacheValue[Any]] = {
+    oldValue.reload match {
+      case Some(reload) =>
+        // Run the function on the cache executor, rather than on the thread that read the value
+        CompletableFuture
+          .supplyAsync[Future[Any]](() => reload(), executor)
+          .thenCompose[ExpirableCacheValue[Any]] { (reloaded: Future[Any]) =>
+            // A null value removes the key
+            val value = reloaded.map(v => if (v == null) null else oldValue.copy(value = v))(trampoline)
+            FutureConverters.toJava(value): CompletionStage[ExpirableCacheValue[Any]]
+          }
+      case None =>
+        // Values that were set rather than computed can't be refreshed. Writing them back keeps their expiration.
+        CompletableFuture.completedFuture(oldValue)
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.cache.caffeine;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class OffHeapStoreSpec {
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void take_shouldReturnAndRemoveTheValueSpanningSeveralBlocks() {
+    OffHeapStore store = new OffHeapStore(64, 4);
+    store.put("key", bytes("a value longer than a block"));
+
+    assertThat(store.take("key"), equalTo(bytes("a value longer than a block")));
+    assertThat(store.take("key"), nullValue());
+    assertThat(store.usedBytes(), equalTo(0L));
+  }
+
+  @Test
+  public void put_shouldEvictTheLeastRecentlyUsedValuesWhenFull() {
+    OffHeapStore store = new OffHeapStore(8, 4);
+    store.put("key1", bytes("1234"));
+    store.put("key2", bytes("5678"));
+    store.put("key3", bytes("9abc"));
+
+    assertThat(store.size(), equalTo(2));
+    assertThat(store.take("key1"), nullValue());
+    assertThat(store.take("key3"), equalTo(bytes("9abc")));
+  }
+
+  @Test
+  public void put_shouldRejectValuesLargerThanTheStore() {
+    OffHeapStore store = new OffHeapStore(8, 4);
+    store.put("key1", bytes("1234"));
+
+    assertThat(store.put("key2", bytes("123456789")), equalTo(false));
+    assertThat(store.take("key1"), equalTo(bytes("1234")));
+  }
+
+  @Test
+  public void put_shouldReplaceTheValueOfTheKey() {
+    OffHeapStore store = new OffHeapStore(8, 4);
+    store.put("key", bytes("12345678"));
+    store.put("key", bytes("abc"));
+
+    assertThat(store.usedBytes(), equalTo(4L));
+    assertThat(store.take("key"), equalTo(bytes("abc")));
+  }
+
+  @Test
+  public void demote_shouldDiscardTheValuesWrittenBeforeTheirKeyWasInvalidated() {
+    OffHeapStore store = new OffHeapStore(64, 4);
+    long writtenAt = System.nanoTime() - 1;
+    store.invalidate("key");
+
+    assertThat(store.demote("key", bytes("stale"), writtenAt), equalTo(false));
+    assertThat(store.demote("key", bytes("fresh"), System.nanoTime()), equalTo(true));
+    assertThat(store.take("key"), equalTo(bytes("fresh")));
+  }
+
+  @Test
+  public void demote_shouldDiscardTheValuesWrittenBeforeTheStoreWasInvalidated() {
+    OffHeapStore store = new OffHeapStore(64, 4);
+    long writtenAt = System.nanoTime() - 1;
+    store.invalidateAll();
+
+    assertThat(store.demote("key", bytes("stale"), writtenAt), equalTo(false));
+    assertThat(store.size(), equalTo(0));
+  }
+}
@@ -4,10 +4,15 @@
 
 package play.api.cache.caffeine
 
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
 
 import javax.inject.Inject
 import javax.inject.Provider
+import com.github.benmanes.caffeine.cache.AsyncCache
+import com.github.benmanes.caffeine.cache.Caffeine
+import com.github.benmanes.caffeine.cache.RemovalCause
 import org.specs2.mock.Mockito
 import org.mockito.Mockito.verify
 import org.mockito.Mockito.never
@@ -17,6 +22,8 @@ import play.api.inject._
 import play.api.test.PlaySpecification
 import play.api.test.WithApplication
 import play.cache.NamedCache
+import play.cache.caffeine.NamedCaffeineCache
+import play.cache.caffeine.OffHeapStore
 
 import scala.concurrent.duration._
 import scala.concurrent.Await
@@ -124,6 +131,128 @@ class CaffeineCacheApiSpec extends PlaySpecification {
       Await.result(cacheApi.get("foo"), 1.second) must beNone
     }
 
+    "get, set and remove several values at once" in new WithApplication() {
+      val cacheApi = app.injector.instanceOf[AsyncCacheApi]
+      Await.result(cacheApi.setAll(Map("foo" -> "bar", "baz" -> "qux")), 1.second) must be(akka.Done)
+      Await.result(cacheApi.getAll[String](Seq("foo", "baz", "missing")), 1.second) must_== Map(
+        "foo" -> "bar",
+        "baz" -> "qux"
+      )
+      Await.result(cacheApi.removeAll(Seq("foo", "missing")), 1.second) must be(akka.Done)
+      Await.result(cacheApi.getAll[String](Seq("foo", "baz")), 1.second) must_== Map("baz" -> "qux")
+    }
+
+    "load all the missing values at once" in new WithApplication() {
+      val cacheApi = app.injector.instanceOf[AsyncCacheApi]
+      Await.result(cacheApi.set("foo", "bar"), 1.second)
+      var requested = Set.empty[String]
+      val result = cacheApi.getOrElseUpdateAll[String](Seq("foo", "baz", "none")) { missing =>
+        requested = missing
+        Future.successful(Map("baz" -> "qux"))
+      }
+      Await.result(result, 1.second) must_== Map("foo" -> "bar", "baz" -> "qux")
+      requested must_== Set("baz", "none")
+      Await.result(cacheApi.get[String]("baz"), 1.second) must beSome("qux")
+    }
+
+    "move values evicted for size off-heap and back" in new WithApplication(
+      _.configure(
+        "play.cache.caffeine.caches.play.maximum-size"     -> 1,
+        "play.cache.caffeine.caches.play.off-heap.enabled" -> true
+      )
+    ) {
+      val cache        = app.injector.instanceOf[NamedCaffeineCache[Any, Any]]
+      val syncCacheApi = app.injector.instanceOf[SyncCacheApi]
+      val store        = cache.getOffHeapStore.get
+      syncCacheApi.set("foo", "bar")
+      syncCacheApi.set("baz", "qux")
+      eventually(store.size must_== 1)
+
+      val (evicted, value) = if (cache.getIfPresent("foo") == null) ("foo", "bar") else ("baz", "qux")
+      syncCacheApi.get[String](evicted) must beSome(value)
+    }
+
+    "not move values removed from the cache off-heap" in new WithApplication(
+      _.configure("play.cache.caffeine.caches.play.off-heap.enabled" -> true)
+    ) {
+      val cache        = app.injector.instanceOf[NamedCaffeineCache[Any, Any]]
+      val syncCacheApi = app.injector.instanceOf[SyncCacheApi]
+      syncCacheApi.set("foo", "bar")
+      syncCacheApi.remove("foo")
+      cache.synchronous().cleanUp()
+      cache.getOffHeapStore.get.size must_== 0
+      syncCacheApi.get[String]("foo") must beNone
+    }
+
+    "not move values removed while they are evicted off-heap" in {
+      // Run the removal notifications only when asked, as if they were delayed
+      val notifications = new ConcurrentLinkedQueue[Runnable]()
+      val store         = new OffHeapStore(1024, 64)
+      val caffeine = Caffeine
+        .newBuilder()
+        .maximumSize(1)
+        .executor((task: Runnable) => { notifications.add(task); () })
+        .asInstanceOf[Caffeine[String, ExpirableCacheValue[Any]]]
+        .removalListener[String, ExpirableCacheValue[Any]](CaffeineCacheManager.demoteTo(store))
+      val asyncCache   = caffeine.buildAsync[String, ExpirableCacheValue[Any]]().asInstanceOf[AsyncCache[Any, Any]]
+      val cache        = new NamedCaffeineCache[Any, Any]("off-heap", asyncCache, store)
+      val syncCacheApi = new SyncCaffeineCacheApi(cache)
+      syncCacheApi.set("foo", "bar")
+      syncCacheApi.set("baz", "qux")
+      cache.synchronous().cleanUp()
+      val evicted = if (cache.getIfPresent("foo") == null) "foo" else "baz"
+
+      syncCacheApi.remove(evicted)
+      while (!notifications.isEmpty) notifications.poll().run()
+      store.size must_== 0
+      syncCacheApi.get[String](evicted) must beNone
+    }
+
+    "not move values replaced while they are evicted off-heap" in {
+      val store    = new OffHeapStore(1024, 64)
+      val listener = CaffeineCacheManager.demoteTo(store)
+      val evicted  = ExpirableCacheValue[Any]("bar")
+
+      store.invalidate("foo")
+      listener.onRemoval("foo", evicted, RemovalCause.SIZE)
+      store.size must_== 0
+      listener.onRemoval("foo", ExpirableCacheValue[Any]("qux"), RemovalCause.SIZE)
+      store.size must_== 1
+    }
+
+    "refresh values computed by getOrElseUpdate in the background" in new WithApplication(
+      _.configure(
+        "play.cache.caffeine.caches.play.refresh-after-write" -> "100ms",
+        "play.cache.caffeine.caches.play.record-stats"        -> true
+      )
+    ) {
+      val cacheApi = app.injector.instanceOf[AsyncCacheApi]
+      val computed = new AtomicInteger()
+      def get() =
+        Await.result(cacheApi.getOrElseUpdate[Int]("foo")(Future.successful(computed.incrementAndGet())), 1.second)
+
+      get() must_== 1
+      Thread.sleep(200)
+      // The stale value is served while it's refreshed
+      get() must_== 1
+      eventually(get() must be_>=(2))
+
+      val stats = app.injector.instanceOf[CaffeineCacheManager].stats("play")
+      stats.loadSuccessCount must be_>=(2L)
+      stats.hitCount must be_>=(2L)
+    }
+
+    "keep the expiration of values that can't be refreshed" in new WithApplication(
+      _.configure("play.cache.caffeine.caches.play.refresh-after-write" -> "100ms")
+    ) {
+      val syncCacheApi = app.injector.instanceOf[SyncCacheApi]
+      syncCacheApi.set("foo", "bar", 1.second)
+      Thread.sleep(200)
+      syncCacheApi.get[String]("foo") must beSome("bar")
+      Thread.sleep(1000)
+      syncCacheApi.get[String]("foo") must beNone
+    }
+
     "put and return the value given with orElse function if there is no value with the given key" in new WithApplication() {
       val syncCacheApi   = app.injector.instanceOf[SyncCacheApi]
       val result: String = syncCacheApi.getOrElseUpdate("aaa")("ddd")
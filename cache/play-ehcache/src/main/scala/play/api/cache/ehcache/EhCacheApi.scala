@@ -187,20 +187,7 @@ private[play] case class EhCacheExistsException(msg: String, cause: Throwable) e
 
 class SyncEhCacheApi @Inject() (private[ehcache] val cache: Ehcache) extends SyncCacheApi {
   override def set(key: String, value: Any, expiration: Duration): Unit = {
-    val element = new Element(key, value)
-    expiration match {
-      case infinite: Duration.Infinite => element.setEternal(true)
-      case finite: FiniteDuration =>
-        val seconds = finite.toSeconds
-        if (seconds <= 0) {
-          element.setTimeToLive(1)
-        } else if (seconds > Int.MaxValue) {
-          element.setTimeToLive(Int.MaxValue)
-        } else {
-          element.setTimeToLive(seconds.toInt)
-        }
-    }
-    cache.put(element)
+    cache.put(element(key, value, expiration))
     Done
   }
 
@@ -219,12 +206,54 @@ class SyncEhCacheApi @Inject() (private[ehcache] val cache: Ehcache) extends Syn
   override def get[T](key: String)(implicit ct: ClassTag[T]): Option[T] = {
     Option(cache.get(key))
       .map(_.getObjectValue)
-      .filter { v =>
-        Primitives.wrap(ct.runtimeClass).isInstance(v) ||
-        ct == ClassTag.Nothing || (ct == ClassTag.Unit && v == ((): Unit))
-      }
+      .filter(isInstance[T])
       .asInstanceOf[Option[T]]
   }
+
+  private[ehcache] def getAll[T: ClassTag](keys: Seq[String]): Map[String, T] = {
+    import scala.collection.JavaConverters._
+    cache
+      .getAll(keys.asJava)
+      .asScala
+      .iterator
+      .collect {
+        case (key, element) if element != null && isInstance[T](element.getObjectValue) =>
+          key.toString -> element.getObjectValue.asInstanceOf[T]
+      }
+      .toMap
+  }
+
+  private[ehcache] def setAll(values: Map[String, Any], expiration: Duration): Unit = {
+    import scala.collection.JavaConverters._
+    cache.putAll(values.map { case (key, value) => element(key, value, expiration) }.asJavaCollection)
+  }
+
+  private[ehcache] def removeAll(keys: Seq[String]): Unit = {
+    import scala.collection.JavaConverters._
+    cache.removeAll(keys.asJava)
+  }
+
+  private def element(key: String, value: Any, expiration: Duration): Element = {
+    val element = new Element(key, value)
+    expiration match {
+      case infinite: Duration.Infinite => element.setEternal(true)
+      case finite: FiniteDuration =>
+        val seconds = finite.toSeconds
+        if (seconds <= 0) {
+          element.setTimeToLive(1)
+        } else if (seconds > Int.MaxValue) {
+          element.setTimeToLive(Int.MaxValue)
+        } else {
+          element.setTimeToLive(seconds.toInt)
+        }
+    }
+    element
+  }
+
+  private def isInstance[T](value: Any)(implicit ct: ClassTag[T]): Boolean = {
+    Primitives.wrap(ct.runtimeClass).isInstance(value) ||
+    ct == ClassTag.Nothing || (ct == ClassTag.Unit && value == ((): Unit))
+  }
 }
 
 /**
@@ -259,4 +288,18 @@ class EhCacheApi @Inject() (private[ehcache] val cache: Ehcache)(implicit contex
     cache.removeAll()
     Done
   }
+
+  override def getAll[T: ClassTag](keys: Seq[String]): Future[Map[String, T]] = Future {
+    sync.getAll[T](keys)
+  }
+
+  override def setAll(values: Map[String, Any], expiration: Duration): Future[Done] = Future {
+    sync.setAll(values, expiration)
+    Done
+  }
+
+  override def removeAll(keys: Seq[String]): Future[Done] = Future {
+    sync.removeAll(keys)
+    Done
+  }
 }
@@ -15,6 +15,7 @@ import play.api.test.WithApplication
 import play.cache.{ AsyncCacheApi => JavaAsyncCacheApi }
 import play.cache.{ SyncCacheApi => JavaSyncCacheApi }
 
+import scala.collection.JavaConverters._
 import scala.compat.java8.FutureConverters._
 import scala.concurrent.duration._
 
@@ -87,6 +88,28 @@ class JavaCacheApiSpec(implicit ee: ExecutionEnv) extends PlaySpecification {
       await(cacheApi.removeAll().toScala)
       cacheApi.get[String]("foo").toScala must beEqualTo(Optional.empty()).await
     }
+
+    "get, set and remove several values at once" in new WithApplication {
+      val cacheApi = app.injector.instanceOf[JavaAsyncCacheApi]
+      await(cacheApi.setAll(Map[String, AnyRef]("foo" -> "bar", "baz" -> "qux").asJava).toScala)
+      cacheApi.getAll[String](Seq("foo", "baz", "missing").asJava).toScala must beEqualTo(
+        Map("foo" -> "bar", "baz" -> "qux").asJava
+      ).await
+
+      await(cacheApi.removeAll(Seq("foo").asJava).toScala)
+      cacheApi.getAll[String](Seq("foo", "baz").asJava).toScala must beEqualTo(Map("baz" -> "qux").asJava).await
+    }
+
+    "load all the missing values at once" in new WithApplication {
+      val cacheApi = app.injector.instanceOf[JavaAsyncCacheApi]
+      await(cacheApi.set("foo", "bar").toScala)
+      val result = cacheApi.getOrElseUpdateAll[String](
+        Seq("foo", "baz").asJava,
+        (missing: java.util.Set[String]) => CompletableFuture.completedFuture(Map("baz" -> "qux").asJava)
+      )
+      result.toScala must beEqualTo(Map("foo" -> "bar", "baz" -> "qux").asJava).await
+      cacheApi.get[String]("baz").toScala must beEqualTo(Optional.of("qux")).await
+    }
   }
 
   "Java SyncCacheApi" should {
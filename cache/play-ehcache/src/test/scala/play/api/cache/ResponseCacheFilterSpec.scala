@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.api.cache
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import akka.Done
+import play.api.http.HttpEntity
+import play.api.Application
+import play.api.mvc._
+import play.api.test._
+
+import scala.concurrent.duration._
+import scala.concurrent.Future
+import scala.concurrent.Promise
+
+class ResponseCacheFilterSpec extends PlaySpecification {
+  sequential
+
+  // Tests here don't use the body
+  val Action = ActionBuilder.ignoringBody
+
+  val Cacheable = CACHE_CONTROL -> "public, max-age=60"
+
+  /**
+   * Move the time the response of the given request was stored back by the given duration, rather than waiting for it
+   * to get stale.
+   */
+  def ageCachedResponse(config: ResponseCacheFilterConfig, request: RequestHeader, by: FiniteDuration)(
+      implicit app: Application
+  ): Unit = {
+    val cache    = app.injector.instanceOf[AsyncCacheApi]
+    val key      = config.keyPrefix + request.host + request.uri
+    val response = ResponseCacheFilter.CachedResponse.decode(await(cache.get[ByteString](key)).get)
+    val aged     = response.copy(storedAt = response.storedAt - by.toMillis)
+    await(cache.set(key, ResponseCacheFilter.CachedResponse.encode(aged)))
+  }
+
+  def filter(config: ResponseCacheFilterConfig = ResponseCacheFilterConfig())(implicit app: Application) =
+    new ResponseCacheFilter(app.injector.instanceOf[AsyncCacheApi], config)(app.materializer)
+
+  "the response cache filter" should {
+    "cache responses" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val action  = filter()(app)(Action(Results.Ok("" + invoked.incrementAndGet()).withHeaders(Cacheable)))
+      contentAsString(action(FakeRequest("GET", "/cached")).run()) must_== "1"
+      val result = action(FakeRequest("GET", "/cached")).run()
+      contentAsString(result) must_== "1"
+      header(AGE, result) must beSome
+      contentAsString(action(FakeRequest("GET", "/b")).run()) must_== "2"
+      invoked.get() must_== 2
+    }
+
+    "coalesce concurrent misses for the same key" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val promise = Promise[Result]()
+      val action = filter()(app)(Action.async {
+        invoked.incrementAndGet()
+        promise.future
+      })
+      val result1 = action(FakeRequest("GET", "/coalesced")).run()
+      val result2 = action(FakeRequest("GET", "/coalesced")).run()
+      promise.success(Results.Ok("shared").withHeaders(Cacheable))
+      contentAsString(result1) must_== "shared"
+      contentAsString(result2) must_== "shared"
+      invoked.get() must_== 1
+    }
+
+    "not cache responses that must not be stored" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val action = filter()(app)(Action {
+        Results.Ok("" + invoked.incrementAndGet()).withHeaders(CACHE_CONTROL -> "no-store")
+      })
+      contentAsString(action(FakeRequest("GET", "/no-store")).run()) must_== "1"
+      contentAsString(action(FakeRequest("GET", "/no-store")).run()) must_== "2"
+    }
+
+    "not cache responses that don't opt in to shared caching" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val action  = filter()(app)(Action(Results.Ok("" + invoked.incrementAndGet())))
+      contentAsString(action(FakeRequest("GET", "/implicit")).run()) must_== "1"
+      contentAsString(action(FakeRequest("GET", "/implicit")).run()) must_== "2"
+    }
+
+    "not serve requests with credentials from the cache" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val action  = filter()(app)(Action(Results.Ok("" + invoked.incrementAndGet()).withHeaders(Cacheable)))
+      contentAsString(action(FakeRequest("GET", "/credentials")).run()) must_== "1"
+      val request = FakeRequest("GET", "/credentials").withHeaders(AUTHORIZATION -> "Basic Zm9vOmJhcg==")
+      contentAsString(action(request).run()) must_== "2"
+    }
+
+    "not serve requests with cookies from the cache" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val action  = filter()(app)(Action(Results.Ok("" + invoked.incrementAndGet()).withHeaders(Cacheable)))
+      contentAsString(action(FakeRequest("GET", "/cookies")).run()) must_== "1"
+      val request = FakeRequest("GET", "/cookies").withHeaders(COOKIE -> "session=alice")
+      contentAsString(action(request).run()) must_== "2"
+    }
+
+    "not replay responses setting cookies" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val action = filter()(app)(Action {
+        val user = invoked.incrementAndGet()
+        Results.Ok(s"user$user").withHeaders(Cacheable).withCookies(Cookie("session", s"user$user"))
+      })
+      contentAsString(action(FakeRequest("GET", "/set-cookie")).run()) must_== "user1"
+      val result = action(FakeRequest("GET", "/set-cookie")).run()
+      contentAsString(result) must_== "user2"
+      cookies(result).get("session").map(_.value) must beSome("user2")
+      invoked.get() must_== 2
+    }
+
+    "store a response per variant" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val action = filter()(app)(Action { (request: Request[_]) =>
+        val language = request.headers.get(ACCEPT_LANGUAGE).getOrElse("")
+        Results.Ok(s"$language${invoked.incrementAndGet()}").withHeaders(Cacheable, VARY -> ACCEPT_LANGUAGE)
+      })
+      def get(language: String) =
+        contentAsString(action(FakeRequest("GET", "/variants").withHeaders(ACCEPT_LANGUAGE -> language)).run())
+      get("en") must_== "en1"
+      get("fr") must_== "fr2"
+      get("en") must_== "en1"
+      get("fr") must_== "fr2"
+      invoked.get() must_== 2
+    }
+
+    "serve stale responses if refreshing them fails" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val config  = ResponseCacheFilterConfig().withStaleIfError(1.minute)
+      val action = filter(config)(app)(Action {
+        if (invoked.incrementAndGet() == 1) Results.Ok("fresh").withHeaders(CACHE_CONTROL -> "max-age=60")
+        else Results.InternalServerError("failed")
+      })
+      val request = FakeRequest("GET", "/stale")
+      contentAsString(action(request).run()) must_== "fresh"
+      ageCachedResponse(config, request, 90.seconds)
+      val result = action(request).run()
+      status(result) must_== OK
+      contentAsString(result) must_== "fresh"
+      invoked.get() must_== 2
+    }
+
+    "drain the streamed body of errors replaced by stale responses" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val drained = Promise[Done]()
+      val config  = ResponseCacheFilterConfig().withStaleIfError(1.minute)
+      val action = filter(config)(app)(Action {
+        if (invoked.incrementAndGet() == 1) Results.Ok("fresh").withHeaders(CACHE_CONTROL -> "max-age=60")
+        else {
+          val body = Source(List("fai", "led").map(ByteString(_))).watchTermination() { (_, done) =>
+            drained.completeWith(done)
+          }
+          Results.ServiceUnavailable.sendEntity(HttpEntity.Streamed(body, None, None))
+        }
+      })
+      val request = FakeRequest("GET", "/stale-streamed")
+      contentAsString(action(request).run()) must_== "fresh"
+      ageCachedResponse(config, request, 90.seconds)
+      val result = action(request).run()
+      status(result) must_== OK
+      contentAsString(result) must_== "fresh"
+      await(drained.future) must_== Done
+    }
+
+    "release the key of an action that throws" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val action = filter()(app)(EssentialAction { request =>
+        if (invoked.incrementAndGet() == 1) throw new RuntimeException("boom")
+        Action(Results.Ok("recovered").withHeaders(Cacheable))(request)
+      })
+      await(action(FakeRequest("GET", "/throws")).run()) must throwA[RuntimeException]("boom")
+      contentAsString(action(FakeRequest("GET", "/throws")).run()) must_== "recovered"
+      invoked.get() must_== 2
+    }
+
+    "let coalesced requests run the action when the shared one fails" in new WithApplication() {
+      val invoked = new AtomicInteger()
+      val promise = Promise[Result]()
+      val action = filter()(app)(Action.async {
+        if (invoked.incrementAndGet() == 1) promise.future
+        else Future.successful(Results.Ok("own").withHeaders(Cacheable))
+      })
+      val result1 = action(FakeRequest("GET", "/failed")).run()
+      val result2 = action(FakeRequest("GET", "/failed")).run()
+      result2.isCompleted must beFalse
+      promise.failure(new RuntimeException("boom"))
+      await(result1) must throwA[RuntimeException]("boom")
+      contentAsString(result2) must_== "own"
+      invoked.get() must_== 2
+    }
+  }
+
+  "a cached response" should {
+    "be encoded and decoded" in {
+      val response = ResponseCacheFilter.CachedResponse(
+        storedAt = 1L,
+        freshFor = 2L,
+        staleWhileRevalidate = 3L,
+        staleIfError = 4L,
+        varyNames = Vector("accept-language"),
+        varyValues = Vector("en"),
+        status = 200,
+        headers = Map("X-Foo" -> "bar", ETAG -> "\"é\""),
+        contentType = Some("text/plain"),
+        body = ByteString("body")
+      )
+      ResponseCacheFilter.CachedResponse.decode(ResponseCacheFilter.CachedResponse.encode(response)) must_== response
+    }
+  }
+}
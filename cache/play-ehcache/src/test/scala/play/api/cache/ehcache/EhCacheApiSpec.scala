@@ -84,6 +84,30 @@ class EhCacheApiSpec extends PlaySpecification {
       Await.result(cacheApi.removeAll(), 1.second) must be(akka.Done)
       Await.result(cacheApi.get("foo"), 1.second) must beNone
     }
+
+    "get, set and remove several values at once" in new WithApplication() {
+      val cacheApi = app.injector.instanceOf[AsyncCacheApi]
+      Await.result(cacheApi.setAll(Map("foo" -> "bar", "baz" -> "qux")), 1.second) must be(akka.Done)
+      Await.result(cacheApi.getAll[String](Seq("foo", "baz", "missing")), 1.second) must_== Map(
+        "foo" -> "bar",
+        "baz" -> "qux"
+      )
+      Await.result(cacheApi.removeAll(Seq("foo", "missing")), 1.second) must be(akka.Done)
+      Await.result(cacheApi.getAll[String](Seq("foo", "baz")), 1.second) must_== Map("baz" -> "qux")
+    }
+
+    "load all the missing values at once" in new WithApplication() {
+      val cacheApi = app.injector.instanceOf[AsyncCacheApi]
+      Await.result(cacheApi.set("foo", "bar"), 1.second)
+      var requested = Set.empty[String]
+      val result = cacheApi.getOrElseUpdateAll[String](Seq("foo", "baz", "none")) { missing =>
+        requested = missing
+        Future.successful(Map("baz" -> "qux"))
+      }
+      Await.result(result, 1.second) must_== Map("foo" -> "bar", "baz" -> "qux")
+      requested must_== Set("baz", "none")
+      Await.result(cacheApi.get[String]("baz"), 1.second) must beSome("qux")
+    }
   }
 }
 
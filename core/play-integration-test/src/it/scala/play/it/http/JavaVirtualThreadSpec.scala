@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.it.http
+
+import play.api.Application
+import play.api.inject.guice.GuiceApplicationBuilder
+import play.api.libs.ws.WSResponse
+import play.api.mvc.EssentialAction
+import play.api.routing.HandlerDef
+import play.api.routing.Router
+import play.api.test.PlaySpecification
+import play.api.test.TestServer
+import play.api.test.WsTestClient
+import play.libs.concurrent.VirtualThreadExecutor
+import play.mvc.Http.Request
+import play.mvc.Result
+import play.mvc.Results
+import play.mvc.RunOnVirtualThread
+
+import scala.util.Try
+
+class JavaVirtualThreadSpec extends PlaySpecification with WsTestClient {
+  sequential
+
+  def makeRequest[T](controller: MockController, modifiers: Seq[String] = Nil)(block: WSResponse => T): T = {
+    implicit val port = testServerPort
+    lazy val app: Application = GuiceApplicationBuilder()
+      .routes {
+        case _ =>
+          val action     = JAction(app, controller)
+          val handlerDef =
+            HandlerDef(getClass.getClassLoader, "", "Controller", "action", Nil, "GET", "/", modifiers = modifiers)
+          EssentialAction(request => action(request.addAttr(Router.Attrs.HandlerDef, handlerDef)))
+      }
+      .build()
+
+    running(TestServer(port, app)) {
+      block(await(wsUrl("/").get()))
+    }
+  }
+
+  // Whether the action ran on a virtual thread, or on a thread of the HTTP execution context if they aren't available
+  val expected = if (VirtualThreadExecutor.isAvailable) "virtual" else "dispatcher"
+
+  "Java actions" should {
+    "run on a virtual thread if the action is annotated" in makeRequest(new MockController {
+      @RunOnVirtualThread
+      override def action(request: Request): Result = Results.ok(JavaVirtualThreadSpec.currentThread)
+    }) { response =>
+      response.body must_== expected
+    }
+
+    "run on a virtual thread if the controller is annotated" in makeRequest(new VirtualThreadController) { response =>
+      response.body must_== expected
+    }
+
+    "run on a virtual thread if the route has the virtualThread modifier" in makeRequest(
+      new ThreadController,
+      modifiers = Seq(RunOnVirtualThread.ROUTE_MODIFIER)
+    ) { response =>
+      response.body must_== expected
+    }
+
+    "run on the current thread otherwise" in makeRequest(new ThreadController, modifiers = Seq("other")) { response =>
+      response.body must_!= "virtual"
+    }
+  }
+}
+
+object JavaVirtualThreadSpec {
+
+  /** Describes the current thread: a virtual thread, a thread of a dispatcher, or another thread. */
+  def currentThread: String = {
+    val thread = Thread.currentThread
+    // Thread.isVirtual only exists from Java 21
+    val isVirtual = Try(classOf[Thread].getMethod("isVirtual").invoke(thread).asInstanceOf[Boolean]).getOrElse(false)
+    if (isVirtual) "virtual"
+    else if (thread.getName.contains("default-dispatcher")) "dispatcher"
+    else thread.getName
+  }
+}
+
+class ThreadController extends MockController {
+  override def action(request: Request): Result = Results.ok(JavaVirtualThreadSpec.currentThread)
+}
+
+@RunOnVirtualThread
+class VirtualThreadController extends ThreadController
@@ -5,6 +5,7 @@
 package play.it.http.parsing
 
 import akka.NotUsed
+import akka.stream.scaladsl.Sink
 import akka.stream.scaladsl.Source
 import akka.util.ByteString
 import play.api.Application
@@ -14,6 +15,7 @@ import play.api.libs.Files.TemporaryFile
 import play.api.libs.Files.TemporaryFileCreator
 import play.api.mvc._
 import play.api.test._
+import play.core.parsers.Multipart
 import play.core.parsers.Multipart.FileInfoMatcher
 import play.core.parsers.Multipart.PartInfoMatcher
 import play.utils.PlayIO
@@ -413,6 +415,50 @@ class MultipartFormDataParserSpec extends PlaySpecification with WsTestClient {
       }
     }
 
+    "stream file parts to sinks" in new WithApplication() {
+      val handler = Multipart.handleFilePartWithSink(maxPartLength = 1000, digestAlgorithm = Some("SHA-256")) { _ =>
+        Sink.fold[ByteString, ByteString](ByteString.empty)(_ ++ _)
+      }
+      val parser = parse
+        .multipartFormData(handler)
+        .apply(
+          FakeRequest().withHeaders(
+            CONTENT_TYPE -> "multipart/form-data; boundary=aabbccddee"
+          )
+        )
+
+      val result = await(parser.run(Source.single(ByteString(body))))
+
+      result must beRight.like {
+        case parts =>
+          parts.dataParts.get("text1") must beSome(Seq("the first text field"))
+          parts.file("file1") must beSome.like {
+            case filePart =>
+              val sha256 = java.security.MessageDigest.getInstance("SHA-256").digest("the first file\r\n".getBytes)
+              filePart.ref.result.utf8String must_== "the first file\r\n"
+              filePart.ref.digest must beSome(ByteString(sha256))
+              filePart.fileSize must_== 16
+          }
+      }
+    }
+
+    "not stream file parts longer than the max part length" in new WithApplication() {
+      val handler = Multipart.handleFilePartWithSink(maxPartLength = 10)(_ => Sink.ignore)
+      val parser = parse
+        .multipartFormData(handler)
+        .apply(
+          FakeRequest().withHeaders(
+            CONTENT_TYPE -> "multipart/form-data; boundary=aabbccddee"
+          )
+        )
+
+      val result = await(parser.run(Source.single(ByteString(body))))
+
+      result must beLeft.like {
+        case error => error.header.status must_== REQUEST_ENTITY_TOO_LARGE
+      }
+    }
+
     "return server internal error when file upload fails because temporary file creator fails" in withClientAndServer(
       1 /* super small total space */
     ) { ws =>
@@ -12,6 +12,13 @@ import play.api.test.ServerEndpointRecipe
 import play.core.server.NettyServer
 
 object NettyServerEndpointRecipes {
+  private def http2Conf(cleartext: Boolean): Configuration = Configuration(
+    "play.server.netty.http2.enabled"   -> true,
+    "play.server.netty.http2.cleartext" -> cleartext
+  )
+
+  private val http2Protocols = Set(HttpProtocol.HTTP_1_0, HttpProtocol.HTTP_1_1, HttpProtocol.HTTP_2_0)
+
   val Netty11Plaintext = new HttpServerEndpointRecipe(
     "Netty HTTP/1.1 (plaintext)",
     NettyServer.provider,
@@ -28,8 +35,26 @@ object NettyServerEndpointRecipes {
     Option("netty")
   )
 
+  val Netty20Plaintext = new HttpServerEndpointRecipe(
+    "Netty HTTP/2 (plaintext)",
+    NettyServer.provider,
+    http2Conf(cleartext = true),
+    http2Protocols,
+    Option("netty")
+  )
+
+  val Netty20Encrypted = new HttpsServerEndpointRecipe(
+    "Netty HTTP/2 (encrypted)",
+    NettyServer.provider,
+    http2Conf(cleartext = false),
+    http2Protocols,
+    Option("netty")
+  )
+
   val AllRecipes: Seq[ServerEndpointRecipe] = Seq(
     Netty11Plaintext,
     Netty11Encrypted
   )
+
+  val AllRecipesIncludingExperimental: Seq[ServerEndpointRecipe] = AllRecipes ++ Seq(Netty20Plaintext, Netty20Encrypted)
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.j
+
+import java.util.concurrent.CompletionStage
+
+import scala.concurrent.Await
+import scala.concurrent.duration.Duration
+
+import org.openjdk.jmh.annotations._
+import play.api.inject.guice.GuiceApplicationBuilder
+import play.api.mvc.Request
+import play.api.routing.HandlerDef
+import play.api.Application
+import play.core.routing.HandlerInvokerFactory
+import play.core.test.FakeRequest
+import play.mvc.Http.RequestBody
+import play.mvc.Http.{ Request => JRequest }
+import play.mvc.{ Result => JResult }
+import play.mvc.Results
+import play.mvc.With
+
+/**
+ * This benchmark handles a request with a Java action that is composed with three actions, the way the router hands
+ * it the components of the application: it creates the action from its handler, and runs its action chain.
+ */
+@State(Scope.Benchmark)
+class JavaAction_01_InvokeAnnotatedAction {
+  var app: Application                  = null
+  var components: JavaHandlerComponents = null
+  var handler: JavaHandler              = null
+  var request: Request[RequestBody]     = null
+  var result: play.api.mvc.Result       = null
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    app = GuiceApplicationBuilder().build()
+    components = app.injector.instanceOf[JavaHandlerComponents]
+
+    val controller = new JavaAction_01_Controller
+    val handlerDef = HandlerDef(
+      getClass.getClassLoader,
+      "router",
+      classOf[JavaAction_01_Controller].getName,
+      "index",
+      Nil,
+      "GET",
+      "/",
+      "",
+      Nil
+    )
+    handler = HandlerInvokerFactory.wrapJava
+      .createInvoker(controller.index(), handlerDef)
+      .call(controller.index())
+      .asInstanceOf[JavaHandler]
+    request = FakeRequest("GET", "/").withBody(new RequestBody(null))
+  }
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit = {
+    app.stop()
+  }
+
+  @Setup(Level.Iteration)
+  def setupIteration(): Unit = {
+    result = null
+  }
+
+  @TearDown(Level.Iteration)
+  def tearDownIteration(): Unit = {
+    // Check the benchmark got the correct result
+    assert(result.header.status == 200)
+  }
+
+  @Benchmark
+  def invokeAnnotatedAction(): Unit = {
+    val action = handler.withComponents(components).asInstanceOf[JavaAction]
+    result = Await.result(action(request), Duration.Inf)
+  }
+}
+
+class JavaAction_01_Controller {
+  @With(
+    Array(
+      classOf[JavaAction_01_FirstAction],
+      classOf[JavaAction_01_SecondAction],
+      classOf[JavaAction_01_ThirdAction]
+    )
+  )
+  def index(): JResult = Results.ok()
+}
+
+class JavaAction_01_FirstAction extends play.mvc.Action.Simple {
+  override def call(request: JRequest): CompletionStage[JResult] = delegate.call(request)
+}
+
+class JavaAction_01_SecondAction extends play.mvc.Action.Simple {
+  override def call(request: JRequest): CompletionStage[JResult] = delegate.call(request)
+}
+
+class JavaAction_01_ThirdAction extends play.mvc.Action.Simple {
+  override def call(request: JRequest): CompletionStage[JResult] = delegate.call(request)
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.parsers
+
+import scala.concurrent.Await
+import scala.concurrent.duration.Duration
+import scala.util.Random
+
+import akka.actor.ActorSystem
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import akka.stream.Materializer
+import akka.util.ByteString
+import org.openjdk.jmh.annotations._
+import play.api.libs.streams.Accumulator
+import play.api.mvc.MultipartFormData.FilePart
+import play.api.mvc.BodyParser
+import play.api.mvc.MultipartFormData
+import play.api.mvc.RequestHeader
+import play.api.mvc.MvcHelpers
+
+/**
+ * This benchmark parses a multipart body holding a single file part, which arrives in chunks of the size of
+ * Netty's default `maxChunkSize`, and counts the bytes of the file.
+ */
+@State(Scope.Benchmark)
+class Multipart_01_ParseFilePart {
+  val boundary  = "-----------------------------14568445977970839651285587160"
+  val chunkSize = 8192
+
+  /** The length of the file part. */
+  @Param(Array("1024", "1048576", "104857600"))
+  var partSize: Int = 0
+
+  var system: ActorSystem                         = null
+  var materializer: Materializer                  = null
+  var parser: BodyParser[MultipartFormData[Long]] = null
+  var requestHeader: RequestHeader                = null
+  var header: ByteString                          = null
+  var chunk: ByteString                           = null
+  var footer: ByteString                          = null
+  var result: Long                                = 0
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    system = ActorSystem("Multipart_01_ParseFilePart")
+    materializer = Materializer.matFromSystem(system)
+    import system.dispatcher
+
+    val filePartHandler: Multipart.FilePartHandler[Long] = fileInfo =>
+      Accumulator(Sink.fold[Long, ByteString](0L)(_ + _.length)).map { length =>
+        FilePart(fileInfo.partName, fileInfo.fileName, fileInfo.contentType, length)
+      }
+    parser = Multipart.multipartParser(1024, false, filePartHandler, null)(materializer)
+    requestHeader = MvcHelpers.requestHeaderFromHeaders(
+      List("Content-Type" -> s"multipart/form-data; boundary=$boundary")
+    )
+
+    header = ByteString(
+      s"--$boundary\r\n" +
+        "Content-Disposition: form-data; name=\"file\"; filename=\"file.bin\"\r\n" +
+        "Content-Type: application/octet-stream\r\n" +
+        "\r\n"
+    )
+    // random bytes, so that the body holds the bytes of the boundary as often as a real file would
+    val bytes = new Array[Byte](math.min(partSize, chunkSize))
+    new Random(0).nextBytes(bytes)
+    chunk = ByteString(bytes)
+    footer = ByteString(s"\r\n--$boundary--\r\n")
+  }
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit = {
+    system.terminate()
+  }
+
+  @Setup(Level.Iteration)
+  def setupIteration(): Unit = {
+    result = 0
+  }
+
+  @TearDown(Level.Iteration)
+  def tearDownIteration(): Unit = {
+    // Check the benchmark got the correct result
+    assert(result == partSize)
+  }
+
+  @Benchmark
+  def parseFilePart(): Unit = {
+    val body = Source.single(header) ++
+      Source.fromIterator(() => Iterator.fill(partSize / chunk.length)(chunk)) ++
+      Source.single(footer)
+    val parsed = Await.result(parser(requestHeader).run(body)(materializer), Duration.Inf)
+    result = parsed.toOption.get.files.head.ref
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.routing
+
+import org.openjdk.jmh.annotations._
+import play.api.mvc.Handler
+import play.api.mvc.RequestHeader
+import play.core.test.FakeRequest
+
+/**
+ * This benchmark routes a request matching the last route of a routes file, either by trying
+ * every route in turn or through the RouteDispatcher that the routes compiler generates.
+ */
+@State(Scope.Benchmark)
+class GeneratedRouter_01_RouteRequest {
+  @Param(Array("10", "100", "1000"))
+  var routeCount: Int = 0
+
+  @Param(Array("linear", "dispatcher"))
+  var lookup: String = null
+
+  var routes: PartialFunction[RequestHeader, Handler] = null
+  var request: RequestHeader                          = null
+  var result: Handler                                 = null
+
+  @Setup(Level.Iteration)
+  def setup(): Unit = {
+    // Alternate static and dynamic routes, in the same shape as a typical REST API
+    val extractors = (0 until routeCount).map { i =>
+      if (i % 2 == 0) {
+        Route("GET", PathPattern(List(StaticPart("/"), StaticPart(s"api/resource$i"))))
+      } else {
+        val parts = List(StaticPart("/"), StaticPart(s"api/resource$i/"), DynamicPart("id", "[^/]+", true))
+        Route("GET", PathPattern(parts))
+      }
+    }
+    val handlers = extractors.indices.map(i => new Handler { override def toString = s"handler$i" })
+
+    def dispatch(index: Int, request: RequestHeader): Option[Handler] = {
+      val extractor = extractors(index)
+      request match {
+        case extractor(_) => Some(handlers(index))
+        case _            => None
+      }
+    }
+
+    routes = lookup match {
+      case "linear" =>
+        Function.unlift { (request: RequestHeader) =>
+          extractors.indices.iterator.map(dispatch(_, request)).collectFirst { case Some(handler) => handler }
+        }
+      case "dispatcher" =>
+        RouteDispatcher(extractors.map(RouteDispatcher.route))(dispatch)
+    }
+    request = FakeRequest("GET", s"/api/resource${routeCount - 1}/42")
+    result = null
+  }
+
+  @TearDown(Level.Iteration)
+  def tearDown(): Unit = {
+    // Check the benchmark got the correct result
+    assert(result.toString == s"handler${routeCount - 1}")
+  }
+
+  @Benchmark
+  def routeRequest(): Unit = {
+    result = routes.applyOrElse(request, (_: RequestHeader) => null)
+  }
+}
@@ -34,6 +34,19 @@ object GzipFlow {
       .via(Compression.gzip(compressionLevel))
   }
 
+  /**
+   * Create a Deflate Flow, producing the zlib format used by the `deflate` content coding, with the given buffer size.
+   * The bufferSize controls how much data is sent to the compressor in one go, like for [[gzip]].
+   */
+  def deflate(
+      bufferSize: Int = 512,
+      compressionLevel: Int = Deflater.DEFAULT_COMPRESSION
+  ): Flow[ByteString, ByteString, _] = {
+    Flow[ByteString]
+      .via(chunkerIfNeeded(bufferSize))
+      .via(Compression.deflate(compressionLevel, nowrap = false))
+  }
+
   private def chunkerIfNeeded(bufferSize: Int): Flow[ByteString, ByteString, Any] =
     if (bufferSize > 0 || bufferSize < Int.MaxValue) Flow.fromGraph(new Chunker(bufferSize))
     else Flow[ByteString]
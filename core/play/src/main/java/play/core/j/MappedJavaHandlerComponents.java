@@ -13,6 +13,7 @@ import scala.concurrent.ExecutionContext;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Supplier;
+import javax.inject.Provider;
 
 /**
  * The components necessary to handle a Java handler.
@@ -64,6 +65,13 @@ public class MappedJavaHandlerComponents implements JavaHandlerComponents {
     return (A) this.actions.get(actionClass).get();
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public <A extends Action<?>> Provider<A> getActionProvider(Class<A> actionClass) {
+    Supplier<Action<?>> supplier = this.actions.get(actionClass);
+    return () -> (A) supplier.get();
+  }
+
   @Override
   public ActionCreator actionCreator() {
     return this.actionCreator;
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.libs.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An executor that runs each task on a new virtual thread.
+ *
+ * <p>Virtual threads are cheap to create and to block, so blocking code, such as JDBC or JPA
+ * calls, can run on them without starving a thread pool that has to be sized by hand. They require
+ * Java 21 or later, see {@link #isAvailable()}.
+ *
+ * <p>Wrap the executor with {@link HttpExecution#fromThread(Executor)} to preserve the context
+ * ClassLoader of the current thread. Java actions can also be run on it with the {@link
+ * play.mvc.RunOnVirtualThread} annotation.
+ */
+public final class VirtualThreadExecutor implements Executor {
+
+  private static final ThreadFactory FACTORY = createFactory();
+
+  private static final VirtualThreadExecutor INSTANCE = new VirtualThreadExecutor();
+
+  private VirtualThreadExecutor() {}
+
+  /**
+   * Whether virtual threads are available on this JVM.
+   *
+   * @return true on Java 21 or later.
+   */
+  public static boolean isAvailable() {
+    return FACTORY != null;
+  }
+
+  /**
+   * The executor, shared by all its users, since it doesn't pool threads.
+   *
+   * @return the executor.
+   * @throws IllegalStateException if virtual threads are not available on this JVM.
+   */
+  public static VirtualThreadExecutor getInstance() {
+    if (!isAvailable()) {
+      throw new IllegalStateException("Virtual threads require Java 21 or later");
+    }
+    return INSTANCE;
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (command == null) {
+      throw new NullPointerException("command");
+    }
+    if (FACTORY == null) {
+      throw new RejectedExecutionException("Virtual threads require Java 21 or later");
+    }
+    FACTORY.newThread(command).start();
+  }
+
+  /** Creates the factory of virtual threads reflectively, since Play also runs on older JVMs. */
+  private static ThreadFactory createFactory() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Method name = builderClass.getMethod("name", String.class, long.class);
+      builder = name.invoke(builder, "play-virtual-thread-", 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+}
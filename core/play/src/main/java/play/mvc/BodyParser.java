@@ -4,9 +4,11 @@
 
 package play.mvc;
 
+import akka.NotUsed;
 import akka.stream.Materializer;
 import akka.stream.javadsl.Flow;
 import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
 import akka.stream.javadsl.StreamConverters;
 import akka.util.ByteString;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -22,6 +24,7 @@ import play.api.mvc.PlayBodyParsers;
 import play.core.j.JavaHttpErrorHandlerAdapter;
 import play.core.j.JavaParsers;
 import play.core.parsers.FormUrlEncodedParser;
+import play.core.parsers.IncrementalJsonParser;
 import play.core.parsers.Multipart;
 import play.http.HttpErrorHandler;
 import play.libs.F;
@@ -49,6 +52,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -133,7 +137,8 @@ public interface BodyParser<A> {
           || parsers.ApplicationXmlMatcher().pattern().matcher(contentType).matches()) {
         parser = new TolerantXml(httpConfiguration, errorHandler);
       } else if (contentType.equals("text/json") || contentType.equals("application/json")) {
-        parser = new TolerantJson(httpConfiguration, errorHandler);
+        parser =
+            new TolerantJson(httpConfiguration.parser().maxMemoryBuffer(), errorHandler, true);
       } else if (contentType.equals("application/x-www-form-urlencoded")) {
         parser = new FormUrlEncoded(httpConfiguration, errorHandler);
       } else if (contentType.equals("multipart/form-data")) {
@@ -146,19 +151,32 @@ public interface BodyParser<A> {
     }
   }
 
-  /** Parse the body as Json if the Content-Type is text/json or application/json. */
+  /**
+   * Parse the body as Json if the Content-Type is text/json or application/json.
+   *
+   * @see TolerantJson
+   */
   class Json extends TolerantJson {
     private final HttpErrorHandler errorHandler;
 
     public Json(long maxLength, HttpErrorHandler errorHandler) {
-      super(maxLength, errorHandler);
+      this(maxLength, errorHandler, false);
+    }
+
+    /**
+     * @param maxLength The maximum length of the body.
+     * @param errorHandler The error handler of the bad requests.
+     * @param parseIncrementally Whether the bodies that arrive in several chunks are parsed as they
+     *     arrive, rather than being buffered and parsed with {@link #parse}.
+     */
+    public Json(long maxLength, HttpErrorHandler errorHandler, boolean parseIncrementally) {
+      super(maxLength, errorHandler, parseIncrementally);
       this.errorHandler = errorHandler;
     }
 
     @Inject
     public Json(HttpConfiguration httpConfiguration, HttpErrorHandler errorHandler) {
-      super(httpConfiguration, errorHandler);
-      this.errorHandler = errorHandler;
+      this(httpConfiguration.parser().maxMemoryBuffer(), errorHandler);
     }
 
     @Override
@@ -172,23 +190,204 @@ public interface BodyParser<A> {
     }
   }
 
-  /** Parse the body as Json without checking the Content-Type. */
-  class TolerantJson extends BufferingBodyParser<JsonNode> {
+  /**
+   * Parse the body as Json without checking the Content-Type.
+   *
+   * <p>A body that arrives in a single chunk is parsed with {@link #parse}. A body that arrives in
+   * several chunks is buffered and parsed with {@link #parse} too, unless the parser is created
+   * with {@code parseIncrementally}, in which case the chunks are parsed as they arrive, rather
+   * than being buffered first.
+   */
+  class TolerantJson extends MaxLengthBodyParser<JsonNode> {
+    private final long maxLength;
+    private final HttpErrorHandler errorHandler;
+    private final boolean parseIncrementally;
+
     public TolerantJson(long maxLength, HttpErrorHandler errorHandler) {
-      super(maxLength, errorHandler, "Error decoding json body");
+      this(maxLength, errorHandler, false);
+    }
+
+    /**
+     * @param maxLength The maximum length of the body.
+     * @param errorHandler The error handler of the bad requests.
+     * @param parseIncrementally Whether the bodies that arrive in several chunks are parsed as they
+     *     arrive, rather than being buffered and parsed with {@link #parse}.
+     */
+    public TolerantJson(long maxLength, HttpErrorHandler errorHandler, boolean parseIncrementally) {
+      super(maxLength, errorHandler);
+      this.maxLength = maxLength;
+      this.errorHandler = errorHandler;
+      this.parseIncrementally = parseIncrementally;
     }
 
     @Inject
     public TolerantJson(HttpConfiguration httpConfiguration, HttpErrorHandler errorHandler) {
-      super(httpConfiguration, errorHandler, "Error decoding json body");
+      this(httpConfiguration.parser().maxMemoryBuffer(), errorHandler);
+    }
+
+    @Override
+    public Accumulator<ByteString, F.Either<Result, JsonNode>> apply(Http.RequestHeader request) {
+      Accumulator<ByteString, F.Either<Result, JsonNode>> incremental = super.apply(request);
+      if (BodyParserUtils.contentLengthHeaderExceedsMaxLength(request.asScala(), maxLength)) {
+        return incremental;
+      }
+      return Accumulator.<ByteString, F.Either<Result, JsonNode>>strict(
+          maybeStrictBytes -> {
+            ByteString bytes = maybeStrictBytes.orElse(ByteString.emptyByteString());
+            if (bytes.size() > maxLength) {
+              return requestEntityTooLarge(request);
+            }
+            try {
+              return CompletableFuture.completedFuture(
+                  F.Either.<Result, JsonNode>Right(parse(request, bytes)));
+            } catch (Exception e) {
+              return invalidJson(request, e);
+            }
+          },
+          incremental.toSink());
     }
 
     @Override
+    protected final Accumulator<ByteString, F.Either<Result, JsonNode>> apply1(
+        Http.RequestHeader request) {
+      if (!parseIncrementally()) {
+        return JavaParsers.reserveBodyBuffer(
+            request,
+            maxLength,
+            errorHandler,
+            Accumulator.<ByteString, ByteString>fromSink(
+                    Sink.fold(ByteString.emptyByteString(), ByteString::concat))
+                .mapFuture(
+                    bytes -> {
+                      try {
+                        return CompletableFuture.completedFuture(
+                            F.Either.<Result, JsonNode>Right(parse(request, bytes)));
+                      } catch (Exception e) {
+                        return invalidJson(request, e);
+                      }
+                    },
+                    JavaParsers.trampoline()));
+      }
+      return JavaParsers.reserveBodyBuffer(
+              request,
+              maxLength,
+              errorHandler,
+              Accumulator.fromSink(IncrementalJsonParser.jsonNodeSink(play.libs.Json.mapper()))
+                  .map(json -> F.Either.<Result, JsonNode>Right(json), JavaParsers.trampoline()))
+          .recoverWith(
+              e -> invalidJson(request, e instanceof CompletionException ? e.getCause() : e),
+              JavaParsers.trampoline());
+    }
+
+    private CompletionStage<F.Either<Result, JsonNode>> invalidJson(
+        Http.RequestHeader request, Throwable e) {
+      return errorHandler
+          .onClientError(
+              request, Status.BAD_REQUEST, "Error decoding json body: " + e.getMessage())
+          .thenApply(F.Either::Left);
+    }
+
+    /**
+     * Whether the bodies that arrive in several chunks are parsed as they arrive, rather than being
+     * buffered and parsed with {@link #parse}.
+     *
+     * @return Whether the bodies are parsed as they arrive, as given to the constructor.
+     */
+    protected boolean parseIncrementally() {
+      return parseIncrementally;
+    }
+
+    /**
+     * Parse a body that arrived in a single chunk, or every body if {@link #parseIncrementally} is
+     * false.
+     *
+     * @param request The request associated with the body.
+     * @param bytes The bytes of the body.
+     * @return The body.
+     * @throws Exception If the body failed to parse, in which case a 400 bad request error will be
+     *     returned.
+     */
     protected JsonNode parse(Http.RequestHeader request, ByteString bytes) throws Exception {
       return play.libs.Json.parse(bytes.iterator().asInputStream());
     }
   }
 
+  /**
+   * Stream the elements of a top-level Json array in the body, if the Content-Type is text/json or
+   * application/json.
+   */
+  class JsonArrayElements extends TolerantJsonArrayElements {
+    private final HttpErrorHandler errorHandler;
+
+    public JsonArrayElements(long maxLength, HttpErrorHandler errorHandler) {
+      super(maxLength, errorHandler);
+      this.errorHandler = errorHandler;
+    }
+
+    @Inject
+    public JsonArrayElements(HttpConfiguration httpConfiguration, HttpErrorHandler errorHandler) {
+      super(httpConfiguration, errorHandler);
+      this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public Accumulator<ByteString, F.Either<Result, Source<JsonNode, ?>>> apply(
+        Http.RequestHeader request) {
+      return BodyParsers.validateContentType(
+          errorHandler,
+          request,
+          "Expected application/json",
+          ct -> ct.equalsIgnoreCase("application/json") || ct.equalsIgnoreCase("text/json"),
+          super::apply);
+    }
+  }
+
+  /**
+   * Stream the elements of a top-level Json array in the body, without checking the Content-Type.
+   *
+   * <p>The body is parsed as it arrives, and each element is emitted as soon as it has been parsed,
+   * with backpressure from the source to the request body. The source fails if the body isn't a
+   * Json array encoded in UTF-8, or is longer than the max length.
+   */
+  class TolerantJsonArrayElements implements BodyParser<Source<JsonNode, ?>> {
+    private final long maxLength;
+    private final HttpErrorHandler errorHandler;
+
+    public TolerantJsonArrayElements(long maxLength, HttpErrorHandler errorHandler) {
+      this.maxLength = maxLength;
+      this.errorHandler = errorHandler;
+    }
+
+    @Inject
+    public TolerantJsonArrayElements(
+        HttpConfiguration httpConfiguration, HttpErrorHandler errorHandler) {
+      this(httpConfiguration.parser().maxDiskBuffer(), errorHandler);
+    }
+
+    @Override
+    public Accumulator<ByteString, F.Either<Result, Source<JsonNode, ?>>> apply(
+        Http.RequestHeader request) {
+      if (BodyParserUtils.contentLengthHeaderExceedsMaxLength(request.asScala(), maxLength)) {
+        return Accumulator.done(
+            errorHandler
+                .onClientError(request, Status.REQUEST_ENTITY_TOO_LARGE, "Request entity too large")
+                .thenApply(F.Either::Left));
+      }
+      Flow<ByteString, ByteString, ?> takeUpTo =
+          Flow.fromGraph(play.api.mvc.BodyParsers$.MODULE$.takeUpTo(maxLength));
+      Flow<ByteString, ByteString, NotUsed> reserve =
+          JavaParsers.reserveStreamedBodyBuffer(maxLength);
+      Flow<ByteString, JsonNode, NotUsed> elements =
+          IncrementalJsonParser.jsonNodeArrayElements(play.libs.Json.mapper()).asJava();
+      return Accumulator.<ByteString>source()
+          .map(
+              body ->
+                  F.Either.<Result, Source<JsonNode, ?>>Right(
+                      body.via(takeUpTo).via(reserve).via(elements)),
+              JavaParsers.trampoline());
+    }
+  }
+
   /** Parse the body as Xml if the Content-Type is application/xml. */
   class Xml extends TolerantXml {
     private final HttpErrorHandler errorHandler;
@@ -508,8 +707,7 @@ public interface BodyParser<A> {
     protected Map<String, String[]> parse(Http.RequestHeader request, ByteString bytes)
         throws Exception {
       String charset = request.charset().orElse("UTF-8");
-      String urlEncodedString = bytes.decodeString("UTF-8");
-      return FormUrlEncodedParser.parseAsJavaArrayValues(urlEncodedString, charset);
+      return FormUrlEncodedParser.parseAsJavaArrayValues(bytes, charset);
     }
   }
 
@@ -599,12 +797,14 @@ public interface BodyParser<A> {
 
   /** A body parser that first buffers */
   abstract class BufferingBodyParser<A> extends MaxLengthBodyParser<A> {
+    private final long maxLength;
     private final HttpErrorHandler errorHandler;
     private final String errorMessage;
 
     protected BufferingBodyParser(
         long maxLength, HttpErrorHandler errorHandler, String errorMessage) {
       super(maxLength, errorHandler);
+      this.maxLength = maxLength;
       this.errorHandler = errorHandler;
       this.errorMessage = errorMessage;
     }
@@ -617,26 +817,30 @@ public interface BodyParser<A> {
     @Override
     protected final Accumulator<ByteString, F.Either<Result, A>> apply1(
         Http.RequestHeader request) {
-      Accumulator<ByteString, ByteString> byteStringByteStringAccumulator =
-          Accumulator.strict(
-              maybeStrictBytes ->
-                  CompletableFuture.completedFuture(
-                      maybeStrictBytes.orElse(ByteString.emptyByteString())),
-              Sink.fold(ByteString.emptyByteString(), ByteString::concat));
-      Accumulator<ByteString, F.Either<Result, A>> byteStringEitherAccumulator =
-          byteStringByteStringAccumulator.mapFuture(
-              bytes -> {
-                try {
-                  return CompletableFuture.completedFuture(F.Either.Right(parse(request, bytes)));
-                } catch (Exception e) {
-                  return errorHandler
-                      .onClientError(
-                          request, Status.BAD_REQUEST, errorMessage + ": " + e.getMessage())
-                      .thenApply(F.Either::<Result, A>Left);
-                }
-              },
-              JavaParsers.trampoline());
-      return byteStringEitherAccumulator;
+      // Reserve the bytes of a body that isn't strict from the body buffer budget until it's parsed
+      Accumulator<ByteString, F.Either<Result, A>> buffered =
+          JavaParsers.reserveBodyBuffer(
+              request,
+              maxLength,
+              errorHandler,
+              Accumulator.<ByteString, ByteString>fromSink(
+                      Sink.fold(ByteString.emptyByteString(), ByteString::concat))
+                  .mapFuture(bytes -> parseBody(request, bytes), JavaParsers.trampoline()));
+      return Accumulator.strict(
+          maybeStrictBytes ->
+              parseBody(request, maybeStrictBytes.orElse(ByteString.emptyByteString())),
+          buffered.toSink());
+    }
+
+    private CompletionStage<F.Either<Result, A>> parseBody(
+        Http.RequestHeader request, ByteString bytes) {
+      try {
+        return CompletableFuture.completedFuture(F.Either.Right(parse(request, bytes)));
+      } catch (Exception e) {
+        return errorHandler
+            .onClientError(request, Status.BAD_REQUEST, errorMessage + ": " + e.getMessage())
+            .thenApply(F.Either::<Result, A>Left);
+      }
     }
 
     /**
@@ -863,6 +1067,83 @@ public interface BodyParser<A> {
     }
   }
 
+  /**
+   * A body parser for multipart bodies that streams each file part to a sink as the body arrives,
+   * rather than to a temporary file.
+   *
+   * <p>The length and, if a digest algorithm is given, the digest of each file are computed
+   * concurrently with the sink. A file longer than the maximum part length fails the parsing of the
+   * body with a 413 result: the rest of the body is not read, and no later file is streamed to a
+   * sink.
+   */
+  abstract class StreamingMultipartFormData<A>
+      extends DelegatingMultipartFormDataBodyParser<Multipart.StreamedFile<A>> {
+
+    private final long maxPartLength;
+    private final Optional<String> digestAlgorithm;
+
+    public StreamingMultipartFormData(
+        Materializer materializer,
+        long maxMemoryBufferSize,
+        long maxLength,
+        long maxPartLength,
+        Optional<String> digestAlgorithm,
+        HttpErrorHandler errorHandler) {
+      super(materializer, maxMemoryBufferSize, maxLength, false, errorHandler);
+      this.maxPartLength = maxPartLength;
+      this.digestAlgorithm = digestAlgorithm;
+    }
+
+    /**
+     * Creates the sink a file is streamed to.
+     *
+     * @param fileInfo the file.
+     * @return the sink, whose materialized value is completed once the file has been handled.
+     */
+    public abstract Sink<ByteString, CompletionStage<A>> createSink(Multipart.FileInfo fileInfo);
+
+    @Override
+    public Function<
+            Multipart.FileInfo,
+            Accumulator<ByteString, Http.MultipartFormData.FilePart<Multipart.StreamedFile<A>>>>
+        createFilePartHandler() {
+      scala.Function1<
+              Multipart.FileInfo,
+              play.api.libs.streams.Accumulator<
+                  ByteString,
+                  play.api.mvc.MultipartFormData.FilePart<Multipart.StreamedFile<A>>>>
+          handler =
+              Multipart.handleFilePartWithSink(
+                  maxPartLength,
+                  OptionConverters.toScala(digestAlgorithm),
+                  new AbstractFunction1<
+                      Multipart.FileInfo,
+                      akka.stream.scaladsl.Sink<ByteString, Future<A>>>() {
+                    @Override
+                    public akka.stream.scaladsl.Sink<ByteString, Future<A>> apply(
+                        Multipart.FileInfo fileInfo) {
+                      return createSink(fileInfo)
+                          .mapMaterializedValue(FutureConverters::toScala)
+                          .asScala();
+                    }
+                  });
+      return fileInfo ->
+          handler
+              .apply(fileInfo)
+              .asJava()
+              .map(
+                  filePart ->
+                      new Http.MultipartFormData.FilePart<>(
+                          filePart.key(),
+                          filePart.filename(),
+                          OptionConverters.toJava(filePart.contentType()).orElse(null),
+                          filePart.ref(),
+                          filePart.fileSize(),
+                          filePart.dispositionType()),
+                  JavaParsers.trampoline());
+    }
+  }
+
   @SuppressWarnings("unchecked")
   // covariance: BodyParser<?> <: BodyParser<Object>, given BodyParser<A> is covariant in A
   static <A extends B, B> BodyParser<B> widen(final BodyParser<A> parser) {
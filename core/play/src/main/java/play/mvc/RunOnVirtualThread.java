@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.mvc;
+
+import java.lang.annotation.*;
+
+/**
+ * Runs the action chain of an <code>Action</code>, or of all the actions of a <code>Controller
+ * </code>, on a new virtual thread, so that they can block without starving the default execution
+ * context.
+ *
+ * <p>Routes can also be run on a virtual thread with the <code>virtualThread</code> route
+ * modifier. Virtual threads require Java 21 or later; on older JVMs the actions run on the default
+ * execution context, and a warning is logged.
+ *
+ * @see play.libs.concurrent.VirtualThreadExecutor
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RunOnVirtualThread {
+
+  /** The route modifier that runs the action chain of a route on a virtual thread. */
+  String ROUTE_MODIFIER = "virtualThread";
+}
@@ -8,15 +8,23 @@ import java.io._
 import java.net.JarURLConnection
 import java.net.URL
 import java.net.URLConnection
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
 import java.time._
 import java.time.format.DateTimeFormatter
 import java.time.format.DateTimeParseException
 import java.util.Date
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.LongAdder
 import java.util.regex.Pattern
 import javax.inject.Inject
 import javax.inject.Provider
 import javax.inject.Singleton
 
+import akka.stream.scaladsl.FileIO
 import akka.stream.scaladsl.StreamConverters
 
 import play.api._
@@ -32,7 +40,7 @@ import play.utils.UriEncoding
 import play.utils.ExecCtxUtils
 
 import scala.annotation.tailrec
-import scala.collection.concurrent.TrieMap
+import scala.collection.JavaConverters._
 import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
 import scala.concurrent.Promise
@@ -127,16 +135,14 @@ import Execution.trampoline
  * which may mean that it is on a separate thread thus permitting long running operations to occur. Other threads
  * requiring the same resource will be given the future of the result immediately.
  *
- * There are no explicit bounds on the cache as it isn't considered likely that the number of distinct asset requests would
- * result in an overflow of memory. Bounds are implied given the number of distinct assets that are available to be
- * served by the project.
+ * The number of remembered assets is bounded, see `play.assets.metadataCache.maxEntries`, since applications serving
+ * external or user uploaded directories may be asked for any number of distinct assets.
  *
- * Instead of a SelfPopulatingMap, a better strategy would be to furnish the assets controller with all of the asset
- * information on startup. This shouldn't be that difficult as sbt-web has that information available. Such an
- * approach would result in an immutable map being used which in theory should be faster.
+ * Assets can also be indexed on startup, see `play.assets.index`, in which case their information is held in an
+ * immutable map and this map is only used for the assets that aren't in the index.
  */
-private class SelfPopulatingMap[K, V] {
-  private val store = TrieMap[K, Future[Option[V]]]()
+private class SelfPopulatingMap[K, V](maxEntries: Int) {
+  private[controllers] val store = new BoundedCache[K, Future[Option[V]]](maxEntries)
 
   def putIfAbsent(k: K)(pf: K => Option[V])(implicit ec: ExecutionContext): Future[Option[V]] = {
     lazy val p = Promise[Option[V]]()
@@ -154,6 +160,115 @@ private class SelfPopulatingMap[K, V] {
   }
 }
 
+/*
+ * A concurrent cache of at most maxEntries entries, evicted with the CLOCK algorithm.
+ *
+ * The entries are kept in insertion order. When the cache is full, the clock hand goes through them from the oldest:
+ * an entry that has been read since the hand last passed it is given a second chance and moved to the back, the first
+ * entry that hasn't is evicted. Reads are lock free, only inserts that need to evict an entry take a lock.
+ *
+ * Removed and replaced entries stay in the clock until the hand passes them, so the hand also goes around the clock
+ * once it holds as many of them as the cache holds entries, which keeps the clock bounded however many entries are
+ * removed, such as the lookups of missing assets.
+ */
+private class BoundedCache[K, V](maxEntries: Int) {
+  private final class Entry(val key: K, val value: V) {
+    @volatile var referenced = false
+  }
+
+  private val entries   = new ConcurrentHashMap[K, Entry]()
+  private val clock     = new ConcurrentLinkedQueue[Entry]()
+  private val clockSize = new AtomicInteger()
+  private val hits      = new LongAdder
+  private val misses    = new LongAdder
+  private val evictions = new LongAdder
+
+  def get(key: K): Option[V] = {
+    val entry = entries.get(key)
+    if (entry == null) {
+      misses.increment()
+      None
+    } else {
+      entry.referenced = true
+      hits.increment()
+      Some(entry.value)
+    }
+  }
+
+  def put(key: K, value: V): Unit = {
+    val entry = new Entry(key, value)
+    entries.put(key, entry)
+    added(entry)
+  }
+
+  /*
+   * Insert the value unless there already is one for the key, counting a hit if there is and a miss if there isn't.
+   */
+  def putIfAbsent(key: K, value: V): Option[V] = {
+    val entry    = new Entry(key, value)
+    val existing = entries.putIfAbsent(key, entry)
+    if (existing == null) {
+      misses.increment()
+      added(entry)
+      None
+    } else {
+      existing.referenced = true
+      hits.increment()
+      Some(existing.value)
+    }
+  }
+
+  def remove(key: K): Unit = entries.remove(key)
+
+  def stats: AssetsCacheStats = AssetsCacheStats(hits.sum, misses.sum, evictions.sum, entries.size)
+
+  /*
+   * The number of entries in the clock, including the removed ones the hand hasn't passed yet.
+   */
+  private[controllers] def clockLength: Int = clockSize.get
+
+  private def added(entry: Entry): Unit = {
+    clock.add(entry)
+    if (clockSize.incrementAndGet() > 2 * maxEntries || entries.size > maxEntries) sweep()
+  }
+
+  private def sweep(): Unit = synchronized {
+    // Go around the clock once to drop the removed entries, and on while the cache is over its capacity
+    var unvisited = clockSize.get
+    while ((unvisited > 0 || entries.size > maxEntries) && !clock.isEmpty) {
+      unvisited -= 1
+      val entry = clock.poll()
+      clockSize.decrementAndGet()
+      // Removed and replaced entries are dropped
+      if (entries.get(entry.key) eq entry) {
+        if (entries.size > maxEntries && !entry.referenced) {
+          if (entries.remove(entry.key, entry)) evictions.increment()
+        } else {
+          if (entries.size > maxEntries) entry.referenced = false
+          clock.add(entry)
+          clockSize.incrementAndGet()
+        }
+      }
+    }
+  }
+}
+
+/**
+ * Statistics of a cache of the [[DefaultAssetsMetadata]].
+ *
+ * @param hits The number of lookups that found their value in the cache.
+ * @param misses The number of lookups that didn't.
+ * @param evictions The number of entries evicted because the cache was full.
+ * @param entries The number of entries in the cache.
+ */
+case class AssetsCacheStats(hits: Long, misses: Long, evictions: Long, entries: Int) {
+
+  /**
+   * The ratio of the lookups that found their value in the cache, or 1 if there was no lookup.
+   */
+  def hitRate: Double = if (hits + misses == 0) 1.0 else hits.toDouble / (hits + misses)
+}
+
 case class AssetsConfiguration(
     path: String = "/public",
     urlPrefix: String = "/assets",
@@ -171,7 +286,10 @@ case class AssetsConfiguration(
       AssetEncoding.Gzip,
       AssetEncoding.Xz,
       AssetEncoding.Bzip2
-    )
+    ),
+    directory: Option[String] = None,
+    indexAssets: Boolean = false,
+    metadataCacheMaxEntries: Int = 10000
 ) {
   // Sorts configured cache-control by keys so that we can have from more
   // specific configuration to less specific, where the overall sorting is
@@ -266,7 +384,10 @@ object AssetsConfiguration {
         .getDeprecated[Option[Boolean]]("play.assets.checkForMinified", "assets.checkForMinified")
         .getOrElse(mode != Mode.Dev),
       textContentTypes = c.get[Seq[String]]("play.assets.textContentTypes").toSet,
-      encodings = getAssetEncodings(c)
+      encodings = getAssetEncodings(c),
+      directory = c.getOptional[String]("play.assets.directory"),
+      indexAssets = c.get[Boolean]("play.assets.index") && mode != Mode.Dev,
+      metadataCacheMaxEntries = c.get[Int]("play.assets.metadataCache.maxEntries")
     )
     logAssetsConfiguration(assetsConfiguration)
     assetsConfiguration
@@ -406,16 +527,28 @@ trait AssetsFinder { self =>
  *
  * If your application uses reverse routing with assets or the [[Assets]] static object, you should use the
  * [[AssetsMetadataProvider]] to set up needed statics.
+ *
+ * If `play.assets.index` is enabled, the metadata of all the assets under the configured path is computed on startup,
+ * so that serving them never needs to look up resources. Assets that aren't in the index are still looked up.
  */
 @Singleton
-class DefaultAssetsMetadata(
+class DefaultAssetsMetadata private[controllers] (
     config: AssetsConfiguration,
     resource: String => Option[URL],
-    fileMimeTypes: FileMimeTypes
+    fileMimeTypes: FileMimeTypes,
+    assetNames: Option[() => Set[String]]
 ) extends AssetsMetadata {
+  def this(config: AssetsConfiguration, resource: String => Option[URL], fileMimeTypes: FileMimeTypes) =
+    this(config, resource, fileMimeTypes, None)
+
   @Inject
   def this(env: Environment, config: AssetsConfiguration, fileMimeTypes: FileMimeTypes) =
-    this(config, env.resource _, fileMimeTypes)
+    this(
+      config,
+      DefaultAssetsMetadata.resource(env, config),
+      fileMimeTypes,
+      if (config.indexAssets) Some(() => DefaultAssetsMetadata.assetNames(env, config)) else None
+    )
 
   lazy val finder: AssetsFinder = new AssetsFinder {
     val assetsBasePath  = config.path
@@ -439,63 +572,94 @@ class DefaultAssetsMetadata(
   // full asset information. At least the determination of the digest should be relatively quick (certainly not as
   // involved as determining the full asset info).
 
-  private lazy val digestCache = TrieMap[String, Option[String]]()
+  private lazy val digestCache = new BoundedCache[String, String](config.metadataCacheMaxEntries)
 
   private[controllers] def digest(path: String): Option[String] = {
-    digestCache.getOrElse(
-      path, {
-        val maybeDigestUrl: Option[URL] = resource(path + "." + config.digestAlgorithm)
-        val maybeDigest: Option[String] = maybeDigestUrl.map { url =>
-          val source = scala.io.Source.fromURL(url)
-          try source.getLines().mkString.trim
-          finally source.close()
-        }
-        if (config.enableCaching && maybeDigest.isDefined) digestCache.put(path, maybeDigest)
+    if (index.exists(_.names(path))) {
+      index.flatMap(_.digests.get(path))
+    } else {
+      digestCache.get(path).orElse {
+        val maybeDigest = digestOf(path, resource)
+        if (config.enableCaching) maybeDigest.foreach(digestCache.put(path, _))
         maybeDigest
       }
-    )
+    }
+  }
+
+  private def digestOf(path: String, lookup: String => Option[URL]): Option[String] = {
+    val maybeDigestUrl: Option[URL] = lookup(path + "." + config.digestAlgorithm)
+    maybeDigestUrl.map { url =>
+      val source = scala.io.Source.fromURL(url)
+      try source.getLines().mkString.trim
+      finally source.close()
+    }
   }
 
   // Sames goes for the minified paths cache.
-  private lazy val minifiedPathsCache = TrieMap[String, String]()
+  private lazy val minifiedPathsCache = new BoundedCache[String, String](config.metadataCacheMaxEntries)
 
   private def minifiedPath(path: String): String = {
-    minifiedPathsCache.getOrElse(
-      path, {
-        def minifiedPathFor(delim: Char): Option[String] = {
-          val ext       = path.reverse.takeWhile(_ != '.').reverse
-          val noextPath = path.dropRight(ext.length + 1)
-          val minPath   = noextPath + delim + "min." + ext
-          resource(minPath).map(_ => minPath)
+    index match {
+      case Some(index) if index.names(path) => minifiedPathOf(path, name => index.names(name))
+      case _ =>
+        minifiedPathsCache.get(path).getOrElse {
+          val maybeMinifiedPath = minifiedPathOf(path, name => resource(name).isDefined)
+          if (config.enableCaching) minifiedPathsCache.put(path, maybeMinifiedPath)
+          maybeMinifiedPath
         }
-        val maybeMinifiedPath = if (config.checkForMinified) {
-          minifiedPathFor('.').orElse(minifiedPathFor('-')).getOrElse(path)
-        } else {
-          path
-        }
-        if (config.enableCaching) minifiedPathsCache.put(path, maybeMinifiedPath)
-        maybeMinifiedPath
-      }
-    )
+    }
+  }
+
+  private def minifiedPathOf(path: String, exists: String => Boolean): String = {
+    def minifiedPathFor(delim: Char): Option[String] = {
+      val ext       = path.reverse.takeWhile(_ != '.').reverse
+      val noextPath = path.dropRight(ext.length + 1)
+      val minPath   = noextPath + delim + "min." + ext
+      Some(minPath).filter(exists)
+    }
+    if (config.checkForMinified) {
+      minifiedPathFor('.').orElse(minifiedPathFor('-')).getOrElse(path)
+    } else {
+      path
+    }
   }
 
-  private lazy val assetInfoCache = new SelfPopulatingMap[String, AssetInfo]()
+  private lazy val assetInfoCache = new SelfPopulatingMap[String, AssetInfo](config.metadataCacheMaxEntries)
+
+  /**
+   * The statistics of the caches of the digests, the minified paths and the information of the assets, by name.
+   */
+  def cacheStats: Map[String, AssetsCacheStats] = Map(
+    "digest"       -> digestCache.stats,
+    "minifiedPath" -> minifiedPathsCache.stats,
+    "assetInfo"    -> assetInfoCache.store.stats
+  )
 
   private def assetInfoFromResource(name: String): Option[AssetInfo] = blocking {
-    for (url <- resource(name)) yield {
+    assetInfoOf(name, resource, digest)
+  }
+
+  private def assetInfoOf(
+      name: String,
+      lookup: String => Option[URL],
+      digestFor: String => Option[String]
+  ): Option[AssetInfo] = {
+    for (url <- lookup(name)) yield {
       val compressionUrls: Seq[(String, URL)] = config.encodings
-        .map(ae => (ae.acceptEncoding, resource(ae.forFilename(name))))
+        .map(ae => (ae.acceptEncoding, lookup(ae.forFilename(name))))
         .collect { case (key: String, Some(url: URL)) => (key, url) }
 
-      new AssetInfo(name, url, compressionUrls, digest(name), config, fileMimeTypes)
+      new AssetInfo(name, url, compressionUrls, digestFor(name), config, fileMimeTypes)
     }
   }
 
   private def assetInfo(name: String): Future[Option[AssetInfo]] = {
-    if (config.enableCaching) {
-      assetInfoCache.putIfAbsent(name)(assetInfoFromResource)
-    } else {
-      Future.successful(assetInfoFromResource(name))
+    index.flatMap(_.assets.get(name)) match {
+      case Some(indexed) => Future.successful(Some(indexed))
+      case None if config.enableCaching =>
+        assetInfoCache.putIfAbsent(name)(assetInfoFromResource)
+      case None =>
+        Future.successful(assetInfoFromResource(name))
     }
   }
 
@@ -505,6 +669,89 @@ class DefaultAssetsMetadata(
   ): Future[Option[(AssetInfo, AcceptEncoding)]] = {
     assetInfo(name).map(_.map(_ -> AcceptEncoding.forRequest(request)))
   }
+
+  private val index: Option[DefaultAssetsMetadata.Index] = assetNames.map { assetNames =>
+    val names = assetNames()
+    // Only look up the resources of the assets that exist
+    val lookup  = (name: String) => if (names(name)) resource(name) else None
+    val digests = names.flatMap(name => digestOf(name, lookup).map(name -> _)).toMap
+    val assets  = names.flatMap(name => assetInfoOf(name, lookup, digests.get).map(name -> _)).toMap
+    DefaultAssetsMetadata.Index(names, digests, assets)
+  }
+}
+
+private[controllers] object DefaultAssetsMetadata {
+
+  /**
+   * The metadata of all the assets, computed on startup.
+   *
+   * @param names The names of the assets.
+   * @param digests The digests of the assets, by name.
+   * @param assets The information about the assets, by name.
+   */
+  private[controllers] case class Index(
+      names: Set[String],
+      digests: Map[String, String],
+      assets: Map[String, AssetInfo]
+  )
+
+  /**
+   * Finds the resources of the assets in the configured directory, if any, and then in the classpath.
+   *
+   * The directory has the same layout as the classpath, for example with the assets jar extracted to it, so that the
+   * asset `/public/main.css` is the file `public/main.css` of the directory.
+   */
+  def resource(env: Environment, config: AssetsConfiguration): String => Option[URL] =
+    config.directory match {
+      case None => env.resource _
+      case Some(directory) =>
+        val base = Paths.get(directory).toAbsolutePath.normalize
+        name => {
+          val file = base.resolve(name.dropWhile(_ == '/')).normalize
+          // Don't let the name escape the directory
+          if (file.startsWith(base) && Files.isRegularFile(file)) Some(file.toUri.toURL) else env.resource(name)
+        }
+    }
+
+  /**
+   * The names of all the assets under the configured path, in the configured directory, if any, and in the classpath.
+   */
+  def assetNames(env: Environment, config: AssetsConfiguration): Set[String] = {
+    val base = config.path.stripPrefix("/").stripSuffix("/")
+    val inDirectory = config.directory.toSet[String].flatMap { directory =>
+      filesIn(Paths.get(directory).toAbsolutePath.normalize.resolve(base))
+    }
+    val inClasspath = env.classLoader.getResources(base).asScala.toSet[URL].flatMap { url =>
+      url.getProtocol match {
+        case "file" => filesIn(Paths.get(url.toURI))
+        case "jar"  => entriesIn(url.openConnection().asInstanceOf[JarURLConnection])
+        case _      => Set.empty[String]
+      }
+    }
+    (inDirectory ++ inClasspath).map(name => s"/$base/$name")
+  }
+
+  private def filesIn(directory: Path): Set[String] = {
+    if (Files.isDirectory(directory)) {
+      val files = Files.walk(directory)
+      try {
+        files.iterator.asScala
+          .filter(Files.isRegularFile(_))
+          .map(file => directory.relativize(file).toString.replace(File.separatorChar, '/'))
+          .toSet
+      } finally files.close()
+    } else Set.empty
+  }
+
+  private def entriesIn(connection: JarURLConnection): Set[String] = {
+    val prefix = Option(connection.getEntryName).fold("")(_ + "/")
+    try {
+      connection.getJarFile.entries.asScala
+        .filter(entry => !entry.isDirectory && entry.getName.startsWith(prefix))
+        .map(_.getName.drop(prefix.length))
+        .toSet
+    } finally Resources.closeUrlConnection(connection)
+  }
 }
 
 /*
@@ -584,6 +831,19 @@ private class AssetInfo(
 
   val mimeType: String = fileMimeTypes.forFileName(name).fold(ContentTypes.BINARY)(addCharsetIfNeeded)
 
+  // The lengths of the asset and its encoded versions, when they can be known without reading them
+  private val lengths: Map[URL, Long] = {
+    def lengthOf(url: URL): Option[Long] = url.getProtocol match {
+      case "file" => Some(new File(url.toURI).length)
+      case "jar" =>
+        val connection = url.openConnection.asInstanceOf[JarURLConnection]
+        try Option(connection.getJarEntry).map(_.getSize).filter(_ >= 0)
+        finally Resources.closeUrlConnection(connection)
+      case _ => None
+    }
+    (url +: compressedUrls.map(_._2)).flatMap(url => lengthOf(url).map(url -> _)).toMap
+  }
+
   lazy val parsedLastModified = lastModified.flatMap(Assets.parseModifiedDate)
 
   def bestEncoding(acceptEncoding: AcceptEncoding): Option[String] =
@@ -596,6 +856,8 @@ private class AssetInfo(
   // handle that case.
   def url(acceptEncoding: AcceptEncoding): URL =
     bestEncoding(acceptEncoding).flatMap(encodingsByName.get).getOrElse(url)
+
+  def length(acceptEncoding: AcceptEncoding): Option[Long] = lengths.get(url(acceptEncoding))
 }
 
 /**
@@ -823,24 +1085,8 @@ class AssetsBuilder(errorHandler: HttpErrorHandler, meta: AssetsMetadata) extend
 
     val pendingResult: Future[Result] = assetInfoFuture.flatMap {
       case Some((assetInfo, acceptEncoding)) =>
-        val connection = assetInfo.url(acceptEncoding).openConnection()
-        // Make sure it's not a directory
-        if (Resources.isUrlConnectionADirectory(connection)) {
-          Resources.closeUrlConnection(connection)
-          notFound
-        } else {
-          val stream = connection.getInputStream
-          val source = StreamConverters.fromInputStream(() => stream)
-          // FIXME stream.available does not necessarily return the length of the file. According to the docs "It is never
-          // correct to use the return value of this method to allocate a buffer intended to hold all data in this stream."
-          val result = RangeResult.ofSource(
-            stream.available(),
-            source,
-            request.headers.get(RANGE),
-            None,
-            Option(assetInfo.mimeType)
-          )
-
+        val url = assetInfo.url(acceptEncoding)
+        def assetResult(result: => Result): Future[Result] =
           Future.successful(maybeNotModified(request, assetInfo, aggressiveCaching).getOrElse {
             cacheableResult(
               assetInfo,
@@ -848,6 +1094,31 @@ class AssetsBuilder(errorHandler: HttpErrorHandler, meta: AssetsMetadata) extend
               asEncodedResult(result, acceptEncoding, assetInfo)
             )
           })
+
+        fileOf(url) match {
+          case Some(file) if Files.isDirectory(file) => notFound
+          case Some(file)                            => assetResult(fileResult(file, assetInfo))
+          case None =>
+            val connection = url.openConnection()
+            // Make sure it's not a directory
+            if (Resources.isUrlConnectionADirectory(connection)) {
+              Resources.closeUrlConnection(connection)
+              notFound
+            } else {
+              val stream = connection.getInputStream
+              val source = StreamConverters.fromInputStream(() => stream)
+              // FIXME stream.available does not necessarily return the length of the file. According to the docs "It is
+              // never correct to use the return value of this method to allocate a buffer intended to hold all data in
+              // this stream." It is only used when the length of the asset is unknown.
+              val result = RangeResult.ofSource(
+                assetInfo.length(acceptEncoding).getOrElse(stream.available().toLong),
+                source,
+                request.headers.get(RANGE),
+                None,
+                Option(assetInfo.mimeType)
+              )
+              assetResult(result)
+            }
         }
       case None => notFound
     }
@@ -864,6 +1135,22 @@ class AssetsBuilder(errorHandler: HttpErrorHandler, meta: AssetsMetadata) extend
     }
   }
 
+  private def fileOf(url: URL): Option[Path] =
+    if (url.getProtocol == "file") Some(Paths.get(url.toURI)) else None
+
+  /**
+   * Serves an asset read from a file, with its exact length, and marks a response of the whole file with its
+   * [[play.api.http.FileRegion FileRegion]] so that the server can send it without copying it through the heap.
+   */
+  private def fileResult(file: Path, assetInfo: AssetInfo)(implicit request: RequestHeader): Result = {
+    val length = Files.size(file)
+    // 8192 is the default chunkSize used by Akka Streams
+    val source = (start: Long) => (start, FileIO.fromPath(file, chunkSize = 8192, startPosition = start))
+    val result =
+      RangeResult.ofSource(Some(length), source, request.headers.get(RANGE), None, Option(assetInfo.mimeType))
+    if (result.header.status == OK) FileRegion.attach(result, file, length) else result
+  }
+
   /**
    * Get the name of the resource for a static resource. Used by `at`.
    *
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.api.http
+
+import java.nio.file.Path
+
+import play.api.libs.typedmap.TypedKey
+import play.api.mvc.Result
+
+/**
+ * A region of a file that the body of a result is streamed from.
+ *
+ * A server backend may send the region straight from the file to the socket, such as with Netty's `FileRegion` and
+ * `FileChannel.transferTo`, rather than copying it through the heap. The region is only used while the body of the
+ * result is still `entity`, so filters that replace the body, for example to compress it, don't need to know about it.
+ *
+ * @param path The file.
+ * @param offset The offset of the region in the file.
+ * @param length The length of the region.
+ * @param entity The body of the result, streamed from the region.
+ */
+final case class FileRegion(path: Path, offset: Long, length: Long, entity: HttpEntity)
+
+object FileRegion {
+
+  /**
+   * The attribute of a result holding the region of a file its body is streamed from.
+   */
+  val Attr: TypedKey[FileRegion] = TypedKey("FileRegion")
+
+  /**
+   * Mark the body of a result as streamed from the whole of a file.
+   *
+   * @param result The result, whose body must be streamed from the file.
+   * @param path The file.
+   * @param length The length of the file.
+   */
+  def attach(result: Result, path: Path, length: Long): Result =
+    result.addAttr(Attr, FileRegion(path, 0, length, result.body))
+
+  /**
+   * The region of a file the body of a result is streamed from, unless the body has been replaced since.
+   */
+  def of(result: Result): Option[FileRegion] = result.attrs.get(Attr).filter(_.entity eq result.body)
+}
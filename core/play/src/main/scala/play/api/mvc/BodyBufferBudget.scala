@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.api.mvc
+
+import java.util.concurrent.TimeUnit
+
+import akka.NotUsed
+import akka.actor.ActorSystem
+import akka.actor.ExtendedActorSystem
+import akka.actor.Extension
+import akka.actor.ExtensionId
+import akka.stream.scaladsl.Flow
+import akka.stream.Attributes
+import akka.stream.FlowShape
+import akka.stream.Inlet
+import akka.stream.Outlet
+import akka.stream.stage.GraphStageLogic
+import akka.stream.stage.GraphStageWithMaterializedValue
+import akka.stream.stage.InHandler
+import akka.stream.stage.OutHandler
+import akka.stream.stage.TimerGraphStageLogic
+import akka.util.ByteString
+import play.api.http.HeaderNames
+import play.api.libs.streams.Accumulator
+import play.core.Execution.Implicits.trampoline
+
+import scala.concurrent.duration._
+import scala.concurrent.Promise
+import scala.util.Try
+
+/**
+ * The memory that all the request bodies buffered by body parsers may use together.
+ *
+ * The per parser limits, such as `play.http.parser.maxMemoryBuffer`, bound the memory of each body, but not of all the
+ * bodies in flight, so many concurrent requests with large bodies can exhaust the heap. With a budget, configured with
+ * `play.http.parser.memoryBudget`, each body that is buffered in memory reserves the bytes of every chunk from the
+ * budget as the chunk arrives, up to the maximum length of its parser. While the budget is exhausted, the body waits
+ * for other bodies to release their bytes, without being read, so the server stops reading it from the socket. Bodies
+ * that are being read are granted their bytes first, since they release them sooner, and new bodies are granted their
+ * bytes in the order they asked for them. Bodies release their bytes once they have been parsed.
+ *
+ * A body that waits longer than `play.http.parser.memoryBudgetTimeout` is rejected with a `503 Service Unavailable`,
+ * and a body that can't fit in the whole budget is rejected with a `413 Request Entity Too Large`.
+ *
+ * The budget is shared by all the body parsers of an actor system, get it with `BodyBufferBudget(actorSystem)`.
+ *
+ * @param capacity The number of bytes of the budget.
+ * @param timeout How long a body may wait for bytes of the budget.
+ */
+final class BodyBufferBudget private (val capacity: Long, val timeout: FiniteDuration) extends Extension {
+  import BodyBufferBudget.Lease
+
+  /**
+   * Whether bodies reserve their bytes from this budget, false if no budget is configured.
+   */
+  val enabled: Boolean = capacity < Long.MaxValue
+
+  // The reserved bytes and the bodies waiting for bytes, guarded by waiting
+  private var reserved = 0L
+  private val waiting  = new java.util.ArrayDeque[Lease]()
+
+  /**
+   * The number of bytes reserved by the bodies being buffered.
+   */
+  def reservedBytes: Long = waiting.synchronized(reserved)
+
+  /**
+   * The number of bodies waiting for bytes.
+   */
+  def waitingBodies: Int = waiting.synchronized(waiting.size)
+
+  /**
+   * Reserve bytes for the body of the given lease, straight away if they fit in the budget, and if the body is being
+   * read already or no other body waits. Otherwise the body waits until they can be granted, and the `onGranted` of the
+   * lease is called then. A lease that has been released is granted its bytes straight away, without reserving them,
+   * since its body has been parsed.
+   *
+   * @return Whether the bytes were granted straight away.
+   */
+  private[mvc] def reserve(lease: Lease, bytes: Long): Boolean = waiting.synchronized {
+    if (lease.released) {
+      true
+    } else if ((lease.granted > 0 || waiting.isEmpty) && reserved + bytes <= capacity) {
+      reserved += bytes
+      lease.granted += bytes
+      true
+    } else {
+      lease.pending = bytes
+      waiting.add(lease)
+      false
+    }
+  }
+
+  /**
+   * Stop waiting for bytes.
+   *
+   * @return Whether the body was still waiting, if not its bytes were granted in the meantime.
+   */
+  private[mvc] def cancel(lease: Lease): Boolean = waiting.synchronized {
+    val removed = waiting.remove(lease)
+    if (removed) lease.pending = 0
+    removed
+  }
+
+  /**
+   * Release some of the granted bytes of a lease, and grant the bytes of the waiting bodies that fit in the budget.
+   */
+  private[mvc] def release(lease: Lease, bytes: Long): Unit = {
+    val granted = waiting.synchronized {
+      val released = math.min(bytes, lease.granted)
+      lease.granted -= released
+      reserved -= released
+      grantWaiting()
+    }
+    granted.foreach(_.onGranted())
+  }
+
+  /**
+   * Release all the bytes of a lease for good. If its body still waits, it is let through without reserving its bytes.
+   */
+  private[mvc] def releaseAll(lease: Lease): Unit = {
+    val granted = waiting.synchronized {
+      lease.released = true
+      reserved -= lease.granted
+      lease.granted = 0
+      val stillWaiting = waiting.remove(lease)
+      lease.pending = 0
+      if (stillWaiting) lease :: grantWaiting() else grantWaiting()
+    }
+    granted.foreach(_.onGranted())
+  }
+
+  // Must be called while holding the lock on waiting
+  private def grantWaiting(): List[Lease] = {
+    var granted = List.empty[Lease]
+    // Once a new body doesn't fit, the new bodies behind it wait, but the bodies being read may still be granted
+    var newBodiesWait = false
+    val iterator      = waiting.iterator
+    while (iterator.hasNext) {
+      val next  = iterator.next()
+      val isNew = next.granted == 0
+      if ((!isNew || !newBodiesWait) && reserved + next.pending <= capacity) {
+        iterator.remove()
+        reserved += next.pending
+        next.granted += next.pending
+        next.pending = 0
+        granted ::= next
+      } else if (isNew) {
+        newBodiesWait = true
+      }
+    }
+    granted.reverse
+  }
+}
+
+object BodyBufferBudget extends ExtensionId[BodyBufferBudget] {
+  override def get(system: ActorSystem): BodyBufferBudget = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): BodyBufferBudget = {
+    val config      = system.settings.config
+    val path        = "play.http.parser.memoryBudget"
+    val timeoutPath = "play.http.parser.memoryBudgetTimeout"
+    val timeout =
+      if (config.hasPath(timeoutPath)) config.getDuration(timeoutPath, TimeUnit.MILLISECONDS).millis else 10.seconds
+    if (!config.hasPathOrNull(path) || config.getIsNull(path)) new BodyBufferBudget(Long.MaxValue, timeout)
+    else new BodyBufferBudget(config.getBytes(path), timeout)
+  }
+
+  /**
+   * The bytes a body has reserved from the budget, and those it waits for, guarded by the budget.
+   */
+  private[mvc] final class Lease(val onGranted: () => Unit) {
+    var granted  = 0L
+    var pending  = 0L
+    var released = false
+  }
+
+  /**
+   * A body was rejected because it waited for the bytes of the budget longer than its timeout.
+   */
+  final class BudgetExhaustedException private[mvc] (val timeout: FiniteDuration)
+      extends RuntimeException(s"The body waited more than $timeout for the body buffer budget")
+
+  /**
+   * A body was rejected because it needs more bytes than the whole budget.
+   */
+  final class BodyExceedsBudgetException private[mvc] (val capacity: Long)
+      extends RuntimeException(s"The body exceeds the body buffer budget of $capacity bytes")
+
+  /**
+   * The result of a body that waited for the bytes of the budget longer than its timeout.
+   */
+  private[play] def serviceUnavailable(e: BudgetExhaustedException): Result =
+    Results.ServiceUnavailable.withHeaders(HeaderNames.RETRY_AFTER -> e.timeout.toSeconds.max(1).toString)
+
+  /**
+   * Reserve the bytes of the body consumed by the given accumulator from the budget of the materializer's actor system
+   * as they arrive, and release them once the accumulator has completed, that is once the body has been parsed.
+   *
+   * The accumulator fails with a [[BudgetExhaustedException]] or a [[BodyExceedsBudgetException]] if the body is
+   * rejected.
+   *
+   * @param request The request of the body.
+   * @param maxLength The maximum number of bytes that the accumulator buffers in memory.
+   * @param accumulator The accumulator that parses the body.
+   */
+  private[play] def reserve[A](request: RequestHeader, maxLength: Long)(
+      accumulator: Accumulator[ByteString, A]
+  ): Accumulator[ByteString, A] = {
+    Accumulator(Flow.fromGraph(new ReserveBytes(request, maxLength, inFlight = false)).toMat(accumulator.toSink) {
+      (parsed, result) =>
+        result.onComplete(_ => parsed.trySuccess(()))
+        result
+    })
+  }
+
+  /**
+   * Reserve the bytes of every chunk of a streamed body from the budget of the materializer's actor system as it
+   * arrives, and release them once the next chunk is pulled, that is once the stream has handled the chunk. The stream
+   * fails with a [[BudgetExhaustedException]] or a [[BodyExceedsBudgetException]] if a chunk is rejected.
+   *
+   * @param maxLength The maximum number of bytes of a chunk that the stream buffers in memory.
+   */
+  private[play] def reserveInFlight(maxLength: Long): Flow[ByteString, ByteString, NotUsed] =
+    Flow.fromGraph(new ReserveBytes(null, maxLength, inFlight = true)).mapMaterializedValue(_ => NotUsed)
+
+  private case object WaitTimeout
+
+  /**
+   * Reserves the bytes of each chunk before passing it on. Unless `inFlight`, the bytes of the whole body are reserved,
+   * until the materialized promise is completed. Otherwise only the bytes of the last chunk are, until the next one is
+   * pulled.
+   */
+  private class ReserveBytes(request: RequestHeader, maxLength: Long, inFlight: Boolean)
+      extends GraphStageWithMaterializedValue[FlowShape[ByteString, ByteString], Promise[Unit]] {
+    private val in  = Inlet[ByteString]("ReserveBytes.in")
+    private val out = Outlet[ByteString]("ReserveBytes.out")
+
+    override def shape: FlowShape[ByteString, ByteString] = FlowShape.of(in, out)
+
+    override def createLogicAndMaterializedValue(
+        inheritedAttributes: Attributes
+    ): (GraphStageLogic, Promise[Unit]) = {
+      val parsed = Promise[Unit]()
+      val logic = new TimerGraphStageLogic(shape) with InHandler with OutHandler {
+        private var budget: BodyBufferBudget = _
+        private var lease: Lease             = _
+        // The bytes this stage holds, and the chunk that waits for its bytes
+        private var reservedBytes            = 0L
+        private var waitingChunk: ByteString = _
+        private var waitingBytes             = 0L
+
+        override def preStart(): Unit = {
+          budget = BodyBufferBudget(materializer.system)
+          if (budget.enabled) {
+            val onGranted = getAsyncCallback[Unit](_ => granted())
+            lease = new Lease(() => onGranted.invoke(()))
+            if (!inFlight) {
+              parsed.future.onComplete(_ => budget.releaseAll(lease))
+              // A body that can't fit in the whole budget is rejected before it's read
+              val contentLength = request.headers.get(HeaderNames.CONTENT_LENGTH).flatMap(h => Try(h.toLong).toOption)
+              if (contentLength.exists(math.min(_, maxLength) > budget.capacity)) {
+                failStage(new BodyExceedsBudgetException(budget.capacity))
+              }
+            }
+          }
+        }
+
+        override def onPush(): Unit = {
+          val chunk = grab(in)
+          // Bodies of parsers that spill to disk may be longer than the bytes they buffer in memory
+          val bytes = math.min(chunk.size, maxLength - reservedBytes)
+          if (lease == null || bytes <= 0) {
+            push(out, chunk)
+          } else if (reservedBytes + bytes > budget.capacity) {
+            failStage(new BodyExceedsBudgetException(budget.capacity))
+          } else if (budget.reserve(lease, bytes)) {
+            reservedBytes += bytes
+            push(out, chunk)
+          } else {
+            waitingChunk = chunk
+            waitingBytes = bytes
+            scheduleOnce(WaitTimeout, budget.timeout)
+          }
+        }
+
+        private def granted(): Unit = {
+          if (waitingChunk != null) {
+            cancelTimer(WaitTimeout)
+            reservedBytes += waitingBytes
+            push(out, waitingChunk)
+            waitingChunk = null
+            if (isClosed(in)) completeStage()
+          }
+        }
+
+        override protected def onTimer(timerKey: Any): Unit = {
+          // If the body doesn't wait anymore, its bytes were granted, and it is pushed with the callback
+          if (waitingChunk != null && budget.cancel(lease)) failStage(new BudgetExhaustedException(budget.timeout))
+        }
+
+        override def onPull(): Unit = {
+          if (inFlight && reservedBytes > 0) {
+            budget.release(lease, reservedBytes)
+            reservedBytes = 0
+          }
+          pull(in)
+        }
+
+        override def onUpstreamFinish(): Unit = {
+          // Complete once the waiting chunk has been pushed
+          if (waitingChunk == null) completeStage()
+        }
+
+        override def postStop(): Unit = {
+          if (lease != null) {
+            if (waitingChunk != null) budget.cancel(lease)
+            if (inFlight) budget.releaseAll(lease)
+          }
+        }
+
+        setHandlers(in, out, this)
+      }
+      (logic, parsed)
+    }
+  }
+}
@@ -15,6 +15,7 @@ import akka.actor.ActorSystem
 import akka.stream._
 import akka.stream.scaladsl.Flow
 import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
 import akka.stream.scaladsl.StreamConverters
 import akka.stream.stage._
 import akka.util.ByteString
@@ -31,6 +32,7 @@ import play.api.libs.json._
 import play.api.libs.streams.Accumulator
 import play.api.mvc.MultipartFormData._
 import play.core.Execution
+import play.core.parsers.IncrementalJsonParser
 import play.core.parsers.Multipart
 import play.utils.PlayIO
 
@@ -605,23 +607,24 @@ trait PlayBodyParsers extends BodyParserUtils {
       enforceMaxLength(
         request,
         maxLength,
-        Accumulator
-          .strict[ByteString, RawBuffer](
-            { maybeStrictBytes =>
-              Future.successful(
-                RawBuffer(memoryThreshold, temporaryFileCreator, maybeStrictBytes.getOrElse(ByteString.empty))
-              )
-            }, {
-              val buffer = RawBuffer(memoryThreshold, temporaryFileCreator)
-              val sink = Sink.fold[RawBuffer, ByteString](buffer) { (bf, bs) =>
-                bf.push(bs); bf
-              }
-              sink.mapMaterializedValue { future =>
-                future.andThen { case _ => buffer.close() }
-              }
+        Accumulator.strict[ByteString, Either[Result, RawBuffer]](
+          { maybeStrictBytes =>
+            Future.successful(
+              Right(RawBuffer(memoryThreshold, temporaryFileCreator, maybeStrictBytes.getOrElse(ByteString.empty)))
+            )
+          }, {
+            val buffer = RawBuffer(memoryThreshold, temporaryFileCreator)
+            val sink = Sink.fold[RawBuffer, ByteString](buffer) { (bf, bs) =>
+              bf.push(bs); bf
             }
-          )
-          .map(buffer => Right(buffer))
+            // Only the part of the body below the memory threshold is buffered in memory
+            reserveBodyBuffer(request, math.min(memoryThreshold, maxLength))(
+              Accumulator(sink.mapMaterializedValue { future =>
+                future.andThen { case _ => buffer.close() }
+              }).map(Right(_))
+            ).toSink
+          }
+        )
       )
     }
 
@@ -638,11 +641,50 @@ trait PlayBodyParsers extends BodyParserUtils {
    * @param maxLength Max length (in bytes) allowed or returns EntityTooLarge HTTP response.
    */
   def tolerantJson(maxLength: Long): BodyParser[JsValue] =
-    tolerantBodyParser[JsValue]("json", maxLength, "Invalid Json") { (request, bytes) =>
-      // Encoding notes: RFC 4627 requires that JSON be encoded in Unicode, and states that whether that's
-      // UTF-8, UTF-16 or UTF-32 can be auto detected by reading the first two bytes. So we ignore the declared
-      // charset and don't decode, we passing the byte array as is because Jackson supports auto detection.
-      Json.parse(bytes.iterator.asInputStream)
+    BodyParser("json, maxLength=" + maxLength) { request =>
+      import Execution.Implicits.trampoline
+
+      def invalidJson(e: Throwable): Future[Either[Result, JsValue]] = {
+        logger.debug("Invalid Json", e)
+        createBadResult("Invalid Json: " + e.getMessage)(request).map(Left(_))
+      }
+
+      def parseBody(bytes: ByteString): Future[Either[Result, JsValue]] = {
+        try {
+          // Encoding notes: RFC 4627 requires that JSON be encoded in Unicode, and states that whether that's
+          // UTF-8, UTF-16 or UTF-32 can be auto detected by reading the first two bytes. So we ignore the declared
+          // charset and don't decode, we passing the byte array as is because Jackson supports auto detection.
+          Future.successful(Right(Json.parse(bytes.iterator.asInputStream)))
+        } catch {
+          case NonFatal(e) => invalidJson(e)
+        }
+      }
+
+      if (BodyParserUtils.contentLengthHeaderExceedsMaxLength(request, maxLength)) {
+        Accumulator.done(requestEntityTooLarge(request))
+      } else {
+        Accumulator.strict[ByteString, Either[Result, JsValue]](
+          // If the body was strict
+          {
+            case Some(bytes) if bytes.size <= maxLength =>
+              parseBody(bytes)
+            case None =>
+              parseBody(ByteString.empty)
+            case _ => requestEntityTooLarge(request)
+          },
+          // Otherwise parse the chunks as they arrive, rather than buffering them
+          enforceMaxLength(
+            request,
+            maxLength,
+            reserveBodyBuffer(request, maxLength)(
+              Accumulator(IncrementalJsonParser.jsValueSink).map(json => Right(json): Either[Result, JsValue])
+            ).recoverWith {
+              // Exceeding the max length is reported by enforceMaxLength
+              case NonFatal(e) if !e.isInstanceOf[BodyParsers.MaxLengthLimitAttained] => invalidJson(e)
+            }
+          ).toSink
+        )
+      }
     }
 
   /**
@@ -684,6 +726,53 @@ trait PlayBodyParsers extends BodyParserUtils {
    */
   def json[A](implicit reader: Reads[A]): BodyParser[A] = jsonReads(json)
 
+  /**
+   * Stream the elements of a top-level Json array in the body, without checking the Content-Type.
+   *
+   * The body is parsed as it arrives, and each element is emitted as soon as it has been parsed, with backpressure
+   * from the source to the request body. The source fails if the body isn't a Json array encoded in UTF-8, or is
+   * longer than the max length.
+   *
+   * @param maxLength Max length (in bytes) allowed or returns EntityTooLarge HTTP response.
+   */
+  def tolerantJsonArrayElements(maxLength: Long): BodyParser[Source[JsValue, _]] =
+    BodyParser("jsonArrayElements, maxLength=" + maxLength) { request =>
+      import Execution.Implicits.trampoline
+      if (BodyParserUtils.contentLengthHeaderExceedsMaxLength(request, maxLength)) {
+        Accumulator.done(requestEntityTooLarge(request))
+      } else {
+        Accumulator.source[ByteString].map { body =>
+          Right(
+            body
+              .via(Flow.fromGraph(new BodyParsers.TakeUpTo(maxLength)))
+              .via(BodyBufferBudget.reserveInFlight(maxLength))
+              .via(IncrementalJsonParser.jsValueArrayElements)
+          )
+        }
+      }
+    }
+
+  /**
+   * Stream the elements of a top-level Json array in the body, without checking the Content-Type.
+   */
+  def tolerantJsonArrayElements: BodyParser[Source[JsValue, _]] = tolerantJsonArrayElements(DefaultMaxDiskLength)
+
+  /**
+   * Stream the elements of a top-level Json array in the body, if the Content-Type is text/json or application/json.
+   *
+   * @param maxLength Max length (in bytes) allowed or returns EntityTooLarge HTTP response.
+   */
+  def jsonArrayElements(maxLength: Long): BodyParser[Source[JsValue, _]] = when(
+    _.contentType.exists(m => m.equalsIgnoreCase("text/json") || m.equalsIgnoreCase("application/json")),
+    tolerantJsonArrayElements(maxLength),
+    createBadResult("Expecting text/json or application/json body", UNSUPPORTED_MEDIA_TYPE)
+  )
+
+  /**
+   * Stream the elements of a top-level Json array in the body, if the Content-Type is text/json or application/json.
+   */
+  def jsonArrayElements: BodyParser[Source[JsValue, _]] = jsonArrayElements(DefaultMaxDiskLength)
+
   /**
    * Parse the body as Json given a BodyParser,
    * validating the result with the Json reader.
@@ -858,9 +947,8 @@ trait PlayBodyParsers extends BodyParserUtils {
     tolerantBodyParser("formUrlEncoded", maxLength, "Error parsing application/x-www-form-urlencoded") {
       (request, bytes) =>
         import play.core.parsers._
-        val charset          = request.charset.getOrElse("UTF-8")
-        val urlEncodedString = bytes.decodeString("UTF-8")
-        FormUrlEncodedParser.parse(urlEncodedString, charset)
+        val charset = request.charset.getOrElse("UTF-8")
+        FormUrlEncodedParser.parse(bytes, charset)
     }
 
   /**
@@ -1051,6 +1139,23 @@ trait PlayBodyParsers extends BodyParserUtils {
     }
   }
 
+  /**
+   * Reserve the bytes of the body consumed by the given accumulator from the body buffer budget until it has been
+   * parsed, or reject the body if the budget can't hold it.
+   */
+  private[play] def reserveBodyBuffer[A](request: RequestHeader, maxLength: Long)(
+      accumulator: Accumulator[ByteString, Either[Result, A]]
+  ): Accumulator[ByteString, Either[Result, A]] = {
+    BodyBufferBudget
+      .reserve(request, maxLength)(accumulator)
+      .recoverWith {
+        case e: BodyBufferBudget.BudgetExhaustedException =>
+          Future.successful(Left(BodyBufferBudget.serviceUnavailable(e)))
+        case e: BodyBufferBudget.BodyExceedsBudgetException =>
+          createBadResult(e.getMessage, REQUEST_ENTITY_TOO_LARGE)(request).map(Left(_))(Execution.trampoline)
+      }(Execution.trampoline)
+  }
+
   /**
    * Create a body parser that uses the given parser and enforces the given max length.
    *
@@ -1091,9 +1196,11 @@ trait PlayBodyParsers extends BodyParserUtils {
           enforceMaxLength(
             request,
             maxLength,
-            Accumulator(
-              Sink.fold[ByteString, ByteString](ByteString.empty)((state, bs) => state ++ bs)
-            ).mapFuture(parseBody)
+            reserveBodyBuffer(request, maxLength)(
+              Accumulator(
+                Sink.fold[ByteString, ByteString](ByteString.empty)((state, bs) => state ++ bs)
+              ).mapFuture(parseBody)
+            )
           ).toSink
         )
       }
@@ -8,6 +8,7 @@ import java.util.Locale
 
 import play.api.http.HeaderNames
 import play.core.utils.CaseInsensitiveOrdered
+import play.core.utils.HeaderIndex
 
 import scala.collection.JavaConverters._
 
@@ -59,12 +60,12 @@ class Headers(protected var _headers: Seq[(String, String)]) {
   /**
    * Optionally returns the first header value associated with a key.
    */
-  def get(key: String): Option[String] = getAll(key).headOption
+  def get(key: String): Option[String] = index.get(key)
 
   /**
    * Retrieve all header values associated with the given key.
    */
-  def getAll(key: String): Seq[String] = toMap.getOrElse(key, Nil)
+  def getAll(key: String): Seq[String] = index.getAll(key)
 
   /**
    * Retrieve all header keys
@@ -84,6 +85,11 @@ class Headers(protected var _headers: Seq[(String, String)]) {
    */
   def replace(headers: (String, String)*): Headers = remove(headers.map(_._1): _*).add(headers: _*)
 
+  /**
+   * An index of the headers for case-insensitive lookups, so reading a header doesn't need to build `toMap`.
+   */
+  private lazy val index: HeaderIndex = HeaderIndex(headers)
+
   /**
    * Transform the Headers to a Map
    */
@@ -8,10 +8,12 @@ import java.lang.annotation.Annotation
 import java.lang.reflect.AnnotatedElement;
 import java.util.concurrent.CompletionStage
 import javax.inject.Inject
+import javax.inject.Provider
 
 import play.api.http.ActionCompositionConfiguration
 import play.api.http.HttpConfiguration
 import play.api.inject.Injector
+import play.api.routing.Router.RequestImplicits._
 import play.api.Logger
 
 import scala.compat.java8.FutureConverters
@@ -58,6 +60,10 @@ class JavaActionAnnotations(
     }
     .flatten
 
+  val runOnVirtualThread: Boolean =
+    method.isAnnotationPresent(classOf[play.mvc.RunOnVirtualThread]) ||
+      controllerAnnotations.exists(_._1.isInstanceOf[play.mvc.RunOnVirtualThread])
+
   val actionMixins: Seq[(Annotation, Class[_ <: JAction[_]], AnnotatedElement)] = {
     val methodAnnotations = method.getDeclaredAnnotations.map((_, method))
     val allDeclaredAnnotations: Seq[(java.lang.annotation.Annotation, AnnotatedElement)] =
@@ -95,6 +101,11 @@ class JavaActionAnnotations(
       })
       .reverse
   }
+
+  /**
+   * The action mixins as an array, so that the chain of each request is assembled without traversing a `Seq`.
+   */
+  private[j] val actionMixinArray: Array[(Annotation, Class[_ <: JAction[_]], AnnotatedElement)] = actionMixins.toArray
 }
 
 /*
@@ -112,6 +123,15 @@ abstract class JavaAction(val handlerComponents: JavaHandlerComponents)
 
   val executionContext: ExecutionContext = handlerComponents.executionContext
 
+  /**
+   * The action mixins of the annotations, with the providers of their actions.
+   *
+   * Java routes override this with the providers resolved on the first request of the route, so that the actions of
+   * the other requests are created without looking their class up.
+   */
+  protected def actionMixinProviders: Array[JavaAction.ActionMixinProvider] =
+    JavaAction.actionMixinProviders(handlerComponents, annotations)
+
   def apply(req: Request[play.mvc.Http.RequestBody]): Future[Result] = {
     val javaRequest: JRequest = new JRequestImpl(req)
 
@@ -129,14 +149,23 @@ abstract class JavaAction(val handlerComponents: JavaHandlerComponents)
       baseAction
     }
 
-    val firstUserDeclaredAction = annotations.actionMixins.foldLeft[JAction[_ <: Any]](endOfChainAction) {
-      case (delegate, (annotation, actionClass, annotatedElement)) =>
-        val action = handlerComponents.getAction(actionClass).asInstanceOf[play.mvc.Action[Object]]
-        action.configuration = annotation
+    // The providers of the mixins are resolved once per route, only the actions themselves are created per request,
+    // since they hold the state of the request's chain
+    val firstUserDeclaredAction = {
+      val mixins                      = actionMixinProviders
+      var delegate: JAction[_ <: Any] = endOfChainAction
+      var i                           = 0
+      while (i < mixins.length) {
+        val mixin  = mixins(i)
+        val action = mixin._2.get().asInstanceOf[play.mvc.Action[Object]]
+        action.configuration = mixin._1
         delegate.precursor = action
         action.delegate = delegate
-        action.annotatedElement = annotatedElement
-        action
+        action.annotatedElement = mixin._3
+        delegate = action
+        i += 1
+      }
+      delegate
     }
 
     val firstAction = if (config.executeActionCreatorActionFirst) {
@@ -147,9 +176,15 @@ abstract class JavaAction(val handlerComponents: JavaHandlerComponents)
       firstUserDeclaredAction
     }
 
-    val trampolineWithContext: ExecutionContext = {
+    // The action chain runs on a new virtual thread if requested (or on the HTTP execution context if virtual threads
+    // aren't available), and otherwise on the current thread
+    val actionContext: ExecutionContext = {
       val javaClassLoader = Thread.currentThread.getContextClassLoader
-      new HttpExecutionContext(javaClassLoader, trampoline)
+      val runOnVirtualThread =
+        annotations.runOnVirtualThread || req.hasRouteModifier(play.mvc.RunOnVirtualThread.ROUTE_MODIFIER)
+      val delegate =
+        if (runOnVirtualThread) JavaAction.virtualThreadContext.getOrElse(executionContext) else trampoline
+      new HttpExecutionContext(javaClassLoader, delegate)
     }
     if (logger.isDebugEnabled) {
       val actionChain = play.api.libs.Collections
@@ -173,13 +208,47 @@ abstract class JavaAction(val handlerComponents: JavaHandlerComponents)
     }
     val actionFuture: Future[Future[JResult]] = Future {
       FutureConverters.toScala(firstAction.call(javaRequest))
-    }(trampolineWithContext)
+    }(actionContext)
     val flattenedActionFuture: Future[JResult] = actionFuture.flatMap(identity)(trampoline)
     val resultFuture: Future[Result]           = flattenedActionFuture.map(_.asScala)(trampoline)
     resultFuture
   }
 }
 
+object JavaAction {
+  private val logger = Logger(classOf[JavaAction])
+
+  /**
+   * An action mixin: its annotation, the provider of its actions, and the element it annotates.
+   */
+  type ActionMixinProvider = (Annotation, Provider[_ <: JAction[_]], AnnotatedElement)
+
+  /**
+   * Resolves the providers of the actions of the action mixins of the given annotations.
+   */
+  private[play] def actionMixinProviders(
+      handlerComponents: JavaHandlerComponents,
+      annotations: JavaActionAnnotations
+  ): Array[ActionMixinProvider] = {
+    annotations.actionMixinArray.map {
+      case (annotation, actionClass, annotatedElement) =>
+        (annotation, handlerComponents.getActionProvider(actionClass), annotatedElement): ActionMixinProvider
+    }
+  }
+
+  /**
+   * Runs each task on a new virtual thread, if virtual threads are available.
+   */
+  private lazy val virtualThreadContext: Option[ExecutionContext] = {
+    if (play.libs.concurrent.VirtualThreadExecutor.isAvailable) {
+      Some(ExecutionContext.fromExecutor(play.libs.concurrent.VirtualThreadExecutor.getInstance))
+    } else {
+      logger.warn("Virtual threads require Java 21 or later, running actions on the default execution context instead")
+      None
+    }
+  }
+}
+
 /**
  * A Java handler.
  *
@@ -215,8 +284,21 @@ class DefaultJavaContextComponents @Inject() (
 ) extends JavaContextComponents
 
 trait JavaHandlerComponents {
+
+  /**
+   * Returns the body parser of the given class. Java routes get their body parser once, and reuse it for all their
+   * requests, whatever the scope of its binding.
+   */
   def getBodyParser[A <: JBodyParser[_]](parserClass: Class[A]): A
   def getAction[A <: JAction[_]](actionClass: Class[A]): A
+
+  /**
+   * Returns a provider of the actions of the given class, which creates a new action each time, like `getAction`.
+   * Java routes resolve the providers of their actions once, so that creating the actions of each request takes no
+   * lookup.
+   */
+  def getActionProvider[A <: JAction[_]](actionClass: Class[A]): Provider[A] = () => getAction(actionClass)
+
   def actionCreator: play.http.ActionCreator
   def httpConfiguration: HttpConfiguration
   def executionContext: ExecutionContext
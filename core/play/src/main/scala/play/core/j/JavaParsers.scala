@@ -9,10 +9,17 @@ import java.util.concurrent.Executor
 
 import play.api.libs.Files.TemporaryFile
 
+import akka.NotUsed
+import akka.stream.javadsl.Flow
 import akka.stream.Materializer
+import akka.util.ByteString
 
 import scala.collection.JavaConverters._
+import scala.compat.java8.FutureConverters._
+import scala.concurrent.Future
+import play.api.http.Status
 import play.api.mvc._
+import play.libs.F
 import play.libs.Files.DelegateTemporaryFile
 import play.libs.Files.{ TemporaryFile => JTemporaryFile }
 
@@ -54,6 +61,45 @@ object JavaParsers {
 
   def trampoline: Executor = play.core.Execution.Implicits.trampoline
 
+  /**
+   * Reserve the bytes of the body consumed by the given accumulator from the body buffer budget until it has been
+   * parsed, or reject the body if the budget can't hold it.
+   *
+   * @param request The request of the body.
+   * @param maxLength The maximum number of bytes that the accumulator buffers in memory.
+   * @param errorHandler The error handler that renders the rejection of a body that can't fit in the budget.
+   * @param accumulator The accumulator that parses the body.
+   * @return The accumulator that reserves the bytes of the body.
+   */
+  def reserveBodyBuffer[A](
+      request: play.mvc.Http.RequestHeader,
+      maxLength: Long,
+      errorHandler: play.http.HttpErrorHandler,
+      accumulator: play.libs.streams.Accumulator[ByteString, F.Either[play.mvc.Result, A]]
+  ): play.libs.streams.Accumulator[ByteString, F.Either[play.mvc.Result, A]] = {
+    BodyBufferBudget
+      .reserve(request.asScala, maxLength)(accumulator.asScala)
+      .recoverWith {
+        case e: BodyBufferBudget.BudgetExhaustedException =>
+          Future.successful(F.Either.Left[play.mvc.Result, A](BodyBufferBudget.serviceUnavailable(e).asJava))
+        case e: BodyBufferBudget.BodyExceedsBudgetException =>
+          errorHandler
+            .onClientError(request, Status.REQUEST_ENTITY_TOO_LARGE, e.getMessage)
+            .toScala
+            .map(result => F.Either.Left[play.mvc.Result, A](result))(play.core.Execution.trampoline)
+      }(play.core.Execution.trampoline)
+      .asJava
+  }
+
+  /**
+   * Reserve the bytes of every chunk of a streamed body from the body buffer budget until the next chunk is pulled.
+   *
+   * @param maxLength The maximum number of bytes of a chunk that the stream buffers in memory.
+   * @return The flow that reserves the bytes of the chunks.
+   */
+  def reserveStreamedBodyBuffer(maxLength: Long): Flow[ByteString, ByteString, NotUsed] =
+    BodyBufferBudget.reserveInFlight(maxLength).asJava
+
   /**
    * Flattens the completion of body parser.
    *
@@ -4,7 +4,13 @@
 
 package play.core.parsers
 
-import java.net.URLDecoder
+import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
+
+import scala.collection.immutable.ListMap
+import scala.collection.mutable
+
+import akka.util.ByteString
 
 /** An object for parsing application/x-www-form-urlencoded data */
 object FormUrlEncodedParser {
@@ -24,17 +30,34 @@ object FormUrlEncodedParser {
   /**
    * Parse the content type "application/x-www-form-urlencoded" which consists of a bunch of & separated key=value
    * pairs, both of which are URL encoded. We are careful in this parser to maintain the original order of the
-   * keys by using OrderPreserving.groupBy as some applications depend on the original browser ordering.
+   * keys as some applications depend on the original browser ordering.
    * @param data The body content of the request, or whatever needs to be so parsed
    * @param encoding The character encoding of data
    * @return A ListMap of keys to the sequence of values for that key
    */
-  def parse(data: String, encoding: String = "utf-8"): Map[String, Seq[String]] = {
-    // Generate the pairs of values from the string.
-    val pairs: Seq[(String, String)] = parseToPairs(data, encoding)
+  def parse(data: String, encoding: String = "utf-8"): Map[String, Seq[String]] =
+    parse(ByteString(data, "UTF-8"), encoding)
+
+  /**
+   * Parse the content type "application/x-www-form-urlencoded", straight from the bytes of the body, maintaining the
+   * original order of the keys.
+   *
+   * Characters that are not escaped are read as UTF-8, and escaped ones are decoded with `encoding`.
+   * @param data The body content of the request, or whatever needs to be so parsed
+   * @param encoding The character encoding of the escaped characters in data
+   * @return A ListMap of keys to the sequence of values for that key
+   */
+  def parse(data: ByteString, encoding: String): Map[String, Seq[String]] = {
+    // The linked map retains the insertion order of the keys, and builds the sequence of values of each key.
+    val values = mutable.LinkedHashMap.empty[String, mutable.Builder[String, Seq[String]]]
+    foreachPair(data, encoding) { (key, value) =>
+      values.getOrElseUpdate(key, Seq.newBuilder[String]) += value
+      ()
+    }
 
-    // Group the pairs by the key (first item of the pair) being sure to preserve insertion order
-    play.utils.OrderPreserving.groupBy(pairs)(_._1)
+    val b = ListMap.newBuilder[String, Seq[String]]
+    for ((key, builder) <- values) b += key -> builder.result()
+    b.result()
   }
 
   /**
@@ -57,15 +80,36 @@ object FormUrlEncodedParser {
    * @param encoding The character encoding of data
    * @return A Map of keys to the sequence of array values for that key
    */
-  def parseAsJavaArrayValues(data: String, encoding: String): java.util.Map[String, Array[String]] = {
-    import scala.collection.JavaConverters._
-    parse(data, encoding).map {
-      case (key, values) =>
-        key -> values.toArray
-    }.asJava
-  }
+  def parseAsJavaArrayValues(data: String, encoding: String): java.util.Map[String, Array[String]] =
+    parseAsJavaArrayValues(ByteString(data, "UTF-8"), encoding)
 
-  private[this] val parameterDelimiter = "[&;]".r
+  /**
+   * Parse the content type "application/x-www-form-urlencoded" straight from the bytes of the body, mapping to a Java
+   * compatible format that maintains the original order of the keys.
+   * @param data The body content of the request, or whatever needs to be so parsed
+   * @param encoding The character encoding of the escaped characters in data
+   * @return A Map of keys to the sequence of array values for that key
+   */
+  def parseAsJavaArrayValues(data: ByteString, encoding: String): java.util.Map[String, Array[String]] = {
+    val values = new java.util.LinkedHashMap[String, java.util.ArrayList[String]]
+    foreachPair(data, encoding) { (key, value) =>
+      var list = values.get(key)
+      if (list == null) {
+        list = new java.util.ArrayList[String](1)
+        values.put(key, list)
+      }
+      list.add(value)
+      ()
+    }
+
+    val result = new java.util.LinkedHashMap[String, Array[String]](values.size * 4 / 3 + 1)
+    val it     = values.entrySet.iterator
+    while (it.hasNext) {
+      val entry = it.next()
+      result.put(entry.getKey, entry.getValue.toArray(new Array[String](entry.getValue.size)))
+    }
+    result
+  }
 
   /**
    * Do the basic parsing into a sequence of key/value pairs
@@ -74,15 +118,99 @@ object FormUrlEncodedParser {
    * @return The sequence of key/value pairs
    */
   private def parseToPairs(data: String, encoding: String): Seq[(String, String)] = {
-    val split = parameterDelimiter.split(data)
-    if (split.length == 1 && split(0).isEmpty) {
-      Seq.empty
-    } else {
-      split.map { param =>
-        val parts = param.split("=", -1)
-        val key   = URLDecoder.decode(parts(0), encoding)
-        val value = URLDecoder.decode(parts.lift(1).getOrElse(""), encoding)
-        key -> value
+    val pairs = Vector.newBuilder[(String, String)]
+    foreachPair(ByteString(data, "UTF-8"), encoding)((key, value) => pairs += key -> value)
+    pairs.result()
+  }
+
+  /**
+   * Call `f` with each of the decoded key/value pairs of the data, in a single pass over its bytes.
+   *
+   * This gives the same pairs as splitting the data decoded as UTF-8 on `&` and `;`, splitting each parameter on `=`
+   * and URL decoding both parts: empty parameters are kept unless they are at the end of the data, and the value of a
+   * parameter stops at the next `=`.
+   */
+  private def foreachPair(data: ByteString, encoding: String)(f: (String, String) => Unit): Unit = {
+    val bytes        = data.toArray
+    val decoder      = new ComponentDecoder(bytes, Charset.forName(encoding))
+    var pendingEmpty = 0
+    var start        = 0
+    while (start <= bytes.length) {
+      var end          = start
+      var firstEquals  = -1
+      var secondEquals = -1
+      while (end < bytes.length && bytes(end) != '&' && bytes(end) != ';') {
+        if (bytes(end) == '=') {
+          if (firstEquals < 0) firstEquals = end
+          else if (secondEquals < 0) secondEquals = end
+        }
+        end += 1
+      }
+
+      if (end == start) {
+        pendingEmpty += 1
+      } else {
+        while (pendingEmpty > 0) {
+          f("", "")
+          pendingEmpty -= 1
+        }
+        if (firstEquals < 0) f(decoder.decode(start, end), "")
+        else {
+          val valueEnd = if (secondEquals < 0) end else secondEquals
+          f(decoder.decode(start, firstEquals), decoder.decode(firstEquals + 1, valueEnd))
+        }
+      }
+      start = end + 1
+    }
+  }
+
+  /**
+   * URL decodes ranges of a byte array, like `java.net.URLDecoder` does for strings, reusing its buffers across ranges.
+   */
+  private final class ComponentDecoder(bytes: Array[Byte], charset: Charset) {
+    private[this] val chars                = new java.lang.StringBuilder
+    private[this] var escaped: Array[Byte] = Array.emptyByteArray
+
+    def decode(start: Int, end: Int): String = {
+      // Most keys and values are plain ASCII, which is read as it is
+      var i = start
+      while (i < end && bytes(i) >= 0 && bytes(i) != '%' && bytes(i) != '+') i += 1
+      if (i == end) new String(bytes, start, end - start, StandardCharsets.ISO_8859_1)
+      else {
+        chars.setLength(0)
+        chars.append(new String(bytes, start, i - start, StandardCharsets.ISO_8859_1))
+        decodeFrom(i, end)
+        chars.toString
+      }
+    }
+
+    private def decodeFrom(from: Int, end: Int): Unit = {
+      var i = from
+      while (i < end) {
+        val b = bytes(i)
+        if (b == '+') {
+          chars.append(' ')
+          i += 1
+        } else if (b == '%') {
+          // Consecutive escapes are decoded together, since a character may be encoded as several bytes
+          if (escaped.length < (end - i) / 3) escaped = new Array[Byte]((end - i) / 3)
+          var length = 0
+          while (i < end && bytes(i) == '%') {
+            if (i + 2 >= end) throw new IllegalArgumentException("URLDecoder: Incomplete trailing escape (%) pattern")
+            val high = Character.digit(bytes(i + 1).toInt, 16)
+            val low  = Character.digit(bytes(i + 2).toInt, 16)
+            if (high < 0 || low < 0)
+              throw new IllegalArgumentException("URLDecoder: Illegal hex characters in escape (%) pattern")
+            escaped(length) = ((high << 4) + low).toByte
+            length += 1
+            i += 3
+          }
+          chars.append(new String(escaped, 0, length, charset))
+        } else {
+          val run = i
+          while (i < end && bytes(i) != '%' && bytes(i) != '+') i += 1
+          chars.append(new String(bytes, run, i - run, StandardCharsets.UTF_8))
+        }
       }
     }
   }
@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.parsers
+
+import java.math.MathContext
+import java.util.concurrent.CompletionStage
+
+import akka.NotUsed
+import akka.stream.javadsl
+import akka.stream.scaladsl.Flow
+import akka.stream.scaladsl.Keep
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParseException
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.core.async.ByteArrayFeeder
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import play.api.libs.json._
+import play.core.Execution.Implicits.trampoline
+
+import scala.collection.immutable
+import scala.compat.java8.FutureConverters._
+import scala.concurrent.Future
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Parses JSON as its bytes arrive, with Jackson's non-blocking parser, rather than once they have all been buffered.
+ *
+ * Only the JSON values being built are kept in memory, not the bytes they were parsed from. The non-blocking parser
+ * only supports UTF-8, so JSON encoded in UTF-16 or UTF-32, which is detected from its first bytes, is buffered and
+ * parsed once it has all arrived instead.
+ *
+ * A parser is stateful and must only be used for one body.
+ *
+ * @param builder Builds the JSON values from the tokens.
+ * @param factory The factory of the Jackson parser.
+ * @param arrayElements Whether to produce each element of a top-level array, rather than the top-level value.
+ */
+private[play] final class IncrementalJsonParser[J](
+    builder: IncrementalJsonParser.Builder[J],
+    factory: JsonFactory,
+    arrayElements: Boolean
+) {
+  import IncrementalJsonParser._
+
+  // The bytes received until the encoding is detected, or all of them if the JSON isn't encoded in UTF-8
+  private var pending                 = ByteString.empty
+  private var encodingDetected        = false
+  private var parser: JsonParser      = _
+  private var feeder: ByteArrayFeeder = _
+  private val containers              = new ArrayBuffer[Container[J]]()
+  private var inTopLevelArray         = false
+  private var topLevelValueDone       = false
+  private var produced: Vector[J]     = Vector.empty
+
+  /**
+   * Parse the next bytes.
+   *
+   * @return The values completed by these bytes.
+   */
+  def feed(bytes: ByteString): immutable.Seq[J] = {
+    if (feeder != null) {
+      feedInput(bytes)
+    } else {
+      pending ++= bytes
+      if (!encodingDetected && pending.length >= 4) detectEncoding()
+    }
+    takeProduced()
+  }
+
+  /**
+   * Signal that there are no more bytes.
+   *
+   * @return The values completed by the end of the input.
+   * @throws JsonParseException if the input ended before the JSON was complete.
+   */
+  def end(): immutable.Seq[J] = {
+    if (!encodingDetected) detectEncoding()
+    if (feeder != null) {
+      feeder.endOfInput()
+    } else {
+      parser = factory.createParser(pending.toArray)
+      pending = ByteString.empty
+    }
+    parseAvailable()
+    if (containers.nonEmpty || inTopLevelArray) {
+      throw new JsonParseException(parser, "Unexpected end-of-input: the JSON is incomplete")
+    }
+    if (!topLevelValueDone) {
+      throw new JsonParseException(parser, "No content to map due to end-of-input")
+    }
+    takeProduced()
+  }
+
+  private def detectEncoding(): Unit = {
+    encodingDetected = true
+    if (isUtf8(pending)) {
+      parser = factory.createNonBlockingByteArrayParser()
+      feeder = parser.getNonBlockingInputFeeder.asInstanceOf[ByteArrayFeeder]
+      feedInput(pending)
+      pending = ByteString.empty
+    }
+  }
+
+  private def feedInput(bytes: ByteString): Unit = {
+    bytes.asByteBuffers.foreach { buffer =>
+      if (buffer.hasArray) {
+        val start = buffer.arrayOffset + buffer.position()
+        feeder.feedInput(buffer.array, start, start + buffer.remaining)
+      } else {
+        val array = new Array[Byte](buffer.remaining)
+        buffer.duplicate().get(array)
+        feeder.feedInput(array, 0, array.length)
+      }
+      parseAvailable()
+    }
+  }
+
+  private def takeProduced(): immutable.Seq[J] = {
+    val values = produced
+    produced = Vector.empty
+    values
+  }
+
+  private def parseAvailable(): Unit = {
+    // Like Json.parse, ignore anything after the top-level value
+    var token = if (topLevelValueDone) null else parser.nextToken()
+    while (token != null && token != JsonToken.NOT_AVAILABLE) {
+      handle(token)
+      token = if (topLevelValueDone) null else parser.nextToken()
+    }
+  }
+
+  private def handle(token: JsonToken): Unit = {
+    token match {
+      case JsonToken.START_ARRAY if arrayElements && !inTopLevelArray && containers.isEmpty =>
+        inTopLevelArray = true
+      case JsonToken.END_ARRAY if inTopLevelArray && containers.isEmpty =>
+        inTopLevelArray = false
+        topLevelValueDone = true
+      case _ if arrayElements && !inTopLevelArray && containers.isEmpty =>
+        throw new JsonParseException(parser, s"Expected a JSON array but got $token")
+      case JsonToken.START_OBJECT => containers += new Container[J](isObject = true)
+      case JsonToken.START_ARRAY  => containers += new Container[J](isObject = false)
+      case JsonToken.FIELD_NAME   => containers.last.fieldName = parser.getCurrentName
+      case JsonToken.END_OBJECT   => complete(builder.obj(pop().fields))
+      case JsonToken.END_ARRAY    => complete(builder.array(pop().elements))
+      case JsonToken.VALUE_STRING => complete(builder.string(parser.getText))
+      case JsonToken.VALUE_TRUE   => complete(builder.boolean(true))
+      case JsonToken.VALUE_FALSE  => complete(builder.boolean(false))
+      case JsonToken.VALUE_NULL   => complete(builder.nul)
+      case JsonToken.VALUE_NUMBER_INT | JsonToken.VALUE_NUMBER_FLOAT =>
+        complete(builder.number(parser))
+      case other =>
+        throw new JsonParseException(parser, s"Unexpected $other")
+    }
+  }
+
+  private def pop(): Container[J] = containers.remove(containers.length - 1)
+
+  private def complete(value: J): Unit = {
+    if (containers.nonEmpty) {
+      containers.last.add(value)
+    } else {
+      produced :+= value
+      if (!inTopLevelArray) topLevelValueDone = true
+    }
+  }
+}
+
+private[play] object IncrementalJsonParser {
+
+  /**
+   * Builds JSON values of type `J`.
+   */
+  trait Builder[J] {
+    def obj(fields: collection.Seq[(String, J)]): J
+    def array(elements: collection.Seq[J]): J
+    def string(value: String): J
+    def number(parser: JsonParser): J
+    def boolean(value: Boolean): J
+    def nul: J
+  }
+
+  private final class Container[J](val isObject: Boolean) {
+    var fieldName: String = _
+    val fields            = new ArrayBuffer[(String, J)]()
+    val elements          = new ArrayBuffer[J]()
+
+    def add(value: J): Unit = {
+      if (isObject) fields += (fieldName -> value) else elements += value
+    }
+  }
+
+  private val DefaultFactory = new JsonFactory()
+
+  /**
+   * Whether JSON starting with these bytes is encoded in UTF-8.
+   *
+   * JSON starts with two ASCII characters (RFC 4627, section 3), so it has a zero in its first four bytes if it is
+   * encoded in UTF-16 or UTF-32, unless it starts with a UTF-16 byte order mark.
+   */
+  private def isUtf8(bytes: ByteString): Boolean = {
+    val bom = bytes.length >= 2 && {
+      val (first, second) = (bytes(0) & 0xFF, bytes(1) & 0xFF)
+      (first == 0xFE && second == 0xFF) || (first == 0xFF && second == 0xFE)
+    }
+    !bom && !bytes.take(4).contains(0: Byte)
+  }
+
+  /**
+   * Builds play-json values, with the same number limits as `Json.parse`.
+   */
+  object JsValueBuilder extends Builder[JsValue] {
+    // The limits of play-json's default BigDecimalParseSettings
+    private val MaxNumberLength = 310
+    private val MaxNumberScale  = 6178
+
+    def obj(fields: collection.Seq[(String, JsValue)]): JsValue = JsObject(fields)
+    def array(elements: collection.Seq[JsValue]): JsValue       = JsArray(elements.toVector)
+    def string(value: String): JsValue                          = JsString(value)
+    def number(parser: JsonParser): JsValue = {
+      val text = parser.getText
+      if (text.length > MaxNumberLength) {
+        throw new IllegalArgumentException(s"Number is larger than supported for field '${parser.getCurrentName}'")
+      }
+      val number = BigDecimal(text, MathContext.DECIMAL128)
+      // A small number may have a huge exponent, which is too expensive to compute with
+      if (number.scale.abs > MaxNumberScale) {
+        throw new IllegalArgumentException(
+          s"Number scale (${number.scale}) is out of limits for field '${parser.getCurrentName}'"
+        )
+      }
+      JsNumber(number)
+    }
+    def boolean(value: Boolean): JsValue = JsBoolean(value)
+    def nul: JsValue                     = JsNull
+  }
+
+  /**
+   * Builds Jackson trees, with the node factory and number features of the given mapper.
+   */
+  final class JsonNodeBuilder(mapper: ObjectMapper) extends Builder[JsonNode] {
+    private val nodes      = mapper.getNodeFactory
+    private val bigDecimal = mapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+
+    def obj(fields: collection.Seq[(String, JsonNode)]): JsonNode = {
+      val node = nodes.objectNode()
+      fields.foreach { case (name, value) => node.set[JsonNode](name, value) }
+      node
+    }
+    def array(elements: collection.Seq[JsonNode]): JsonNode = {
+      val node = nodes.arrayNode(elements.size)
+      elements.foreach(element => node.add(element))
+      node
+    }
+    def string(value: String): JsonNode = nodes.textNode(value)
+    def number(parser: JsonParser): JsonNode = parser.getNumberType match {
+      case JsonParser.NumberType.INT         => nodes.numberNode(parser.getIntValue)
+      case JsonParser.NumberType.LONG        => nodes.numberNode(parser.getLongValue)
+      case JsonParser.NumberType.BIG_INTEGER => nodes.numberNode(parser.getBigIntegerValue)
+      case _ if bigDecimal                   => nodes.numberNode(parser.getDecimalValue)
+      case _                                 => nodes.numberNode(parser.getDoubleValue)
+    }
+    def boolean(value: Boolean): JsonNode = nodes.booleanNode(value)
+    def nul: JsonNode                     = nodes.nullNode()
+  }
+
+  /**
+   * A parser of a play-json value.
+   */
+  def jsValue(): IncrementalJsonParser[JsValue] =
+    new IncrementalJsonParser(JsValueBuilder, DefaultFactory, arrayElements = false)
+
+  /**
+   * A parser of a Jackson tree, configured like the given mapper.
+   */
+  def jsonNode(mapper: ObjectMapper): IncrementalJsonParser[JsonNode] =
+    new IncrementalJsonParser(new JsonNodeBuilder(mapper), mapper.getFactory, arrayElements = false)
+
+  /**
+   * A flow emitting the values of the parser as soon as each of them is parsed, from the bytes that complete it or
+   * from the end of the input.
+   */
+  private def values[J](newParser: () => IncrementalJsonParser[J]): Flow[ByteString, J, NotUsed] = {
+    Flow[ByteString]
+      .map(Some(_))
+      .concat(Source.single(None))
+      .statefulMapConcat { () =>
+        val parser = newParser()
+
+        {
+          case Some(bytes) => parser.feed(bytes)
+          case None        => parser.end()
+        }
+      }
+  }
+
+  /**
+   * A flow parsing a top-level JSON array and emitting its elements as soon as each of them is parsed.
+   *
+   * The flow fails with a `JsonParseException` if the bytes aren't a JSON array.
+   */
+  def arrayElements[J](newParser: () => IncrementalJsonParser[J]): Flow[ByteString, J, NotUsed] = values(newParser)
+
+  /**
+   * A sink parsing a top-level JSON value, completed with the value once all the bytes have been parsed.
+   *
+   * The sink fails with a `JsonParseException` if the bytes aren't a single complete JSON value.
+   */
+  def value[J](newParser: () => IncrementalJsonParser[J]): Sink[ByteString, Future[J]] = {
+    values(newParser).toMat(Sink.seq)(Keep.right).mapMaterializedValue(_.map {
+      case Seq(value) => value
+      case other =>
+        throw new JsonParseException(null: JsonParser, s"Expected one JSON value but got ${other.size}")
+    })
+  }
+
+  /**
+   * A sink parsing a top-level JSON value as a play-json value.
+   */
+  def jsValueSink: Sink[ByteString, Future[JsValue]] = value(() => jsValue())
+
+  /**
+   * A sink parsing a top-level JSON value as a Jackson tree, configured like the given mapper.
+   */
+  def jsonNodeSink(mapper: ObjectMapper): javadsl.Sink[ByteString, CompletionStage[JsonNode]] =
+    value(() => jsonNode(mapper)).mapMaterializedValue(_.toJava).asJava
+
+  /**
+   * A flow emitting the elements of a top-level JSON array as play-json values.
+   */
+  def jsValueArrayElements: Flow[ByteString, JsValue, NotUsed] =
+    arrayElements(() => new IncrementalJsonParser(JsValueBuilder, DefaultFactory, arrayElements = true))
+
+  /**
+   * A flow emitting the elements of a top-level JSON array as Jackson trees, configured like the given mapper.
+   */
+  def jsonNodeArrayElements(mapper: ObjectMapper): Flow[ByteString, JsonNode, NotUsed] =
+    arrayElements(() => new IncrementalJsonParser(new JsonNodeBuilder(mapper), mapper.getFactory, arrayElements = true))
+}
@@ -5,9 +5,12 @@
 package play.core.parsers
 
 import java.net.URLDecoder
+import java.security.MessageDigest
+import java.util.Optional
 
 import scala.annotation.tailrec
 import scala.collection.mutable.ListBuffer
+import scala.compat.java8.OptionConverters._
 import scala.concurrent.Future
 import scala.util.Failure
 
@@ -126,12 +129,22 @@ object Multipart {
       errorHandler: HttpErrorHandler
   )(implicit mat: Materializer): BodyParser[MultipartFormData[A]] = BodyParser { request =>
     partParser(maxMemoryBufferSize, allowEmptyFiles, errorHandler) {
-      val handleFileParts = Flow[Part[Source[ByteString, _]]].mapAsync(1) {
-        case filePart: FilePart[Source[ByteString, _]] =>
-          filePartHandler(FileInfo(filePart.key, filePart.filename, filePart.contentType, filePart.dispositionType))
-            .run(filePart.ref)
-        case other: Part[_] => Future.successful(other.asInstanceOf[Part[Nothing]])
-      }
+      // Once a part exceeds a limit the body is rejected with a 413, so stop there: this cancels the upstream and no
+      // later file part is fed to its handler.
+      def untilLimitExceeded[P <: Part[_]] =
+        Flow[P].takeWhile(part => !part.isInstanceOf[MaxMemoryBufferExceeded], inclusive = true)
+
+      val handleFileParts = untilLimitExceeded[Part[Source[ByteString, _]]]
+        .mapAsync(1) {
+          case filePart: FilePart[Source[ByteString, _]] =>
+            filePartHandler(FileInfo(filePart.key, filePart.filename, filePart.contentType, filePart.dispositionType))
+              .run(filePart.ref)
+              .recover[Part[A]] {
+                case e: FilePartTooLargeException => MaxMemoryBufferExceeded(e.getMessage)
+              }
+          case other: Part[_] => Future.successful(other.asInstanceOf[Part[Nothing]])
+        }
+        .via(untilLimitExceeded[Part[A]])
 
       val multipartAccumulator = Accumulator(Sink.fold[Seq[Part[A]], Part[A]](Vector.empty)(_ :+ _)).mapFuture {
         parts =>
@@ -183,6 +196,68 @@ object Multipart {
       }
   }
 
+  /**
+   * A file streamed to a sink by [[handleFilePartWithSink]].
+   *
+   * @param result The value materialized by the sink.
+   * @param digest The digest of the file, if a digest algorithm was given.
+   */
+  case class StreamedFile[A](result: A, digest: Option[ByteString]) {
+    def getResult: A = result
+
+    def getDigest: Optional[ByteString] = digest.asJava
+  }
+
+  /**
+   * Fails the handling of a file part that is longer than allowed, which makes the body parser return a 413 result.
+   */
+  class FilePartTooLargeException(message: String) extends RuntimeException(message)
+
+  /**
+   * Handles each file part by streaming it to a sink as the body arrives, rather than buffering it in a temporary file.
+   *
+   * The length and, if a digest algorithm is given, the digest of the file are computed concurrently with the sink,
+   * asynchronously from it, so hashing doesn't slow the sink down.
+   *
+   * @param maxPartLength The maximum length of a file. Longer files fail the parsing of the body with a 413 result.
+   * @param digestAlgorithm The name of the digest algorithm, such as `SHA-256`, see [[java.security.MessageDigest]].
+   * @param sink Creates the sink a file is streamed to.
+   */
+  def handleFilePartWithSink[A](maxPartLength: Long, digestAlgorithm: Option[String] = None)(
+      sink: FileInfo => Sink[ByteString, Future[A]]
+  ): FilePartHandler[StreamedFile[A]] = {
+    case fileInfo @ FileInfo(partName, filename, contentType, dispositionType) =>
+      val limit = Flow[ByteString].statefulMapConcat { () =>
+        var length = 0L
+
+        { bytes =>
+          length += bytes.length
+          if (length > maxPartLength) {
+            throw new FilePartTooLargeException(s"File $filename is larger than $maxPartLength bytes")
+          }
+          bytes :: Nil
+        }
+      }
+      val lengthAndDigest = Sink
+        .fold[(Long, Option[MessageDigest]), ByteString]((0L, digestAlgorithm.map(MessageDigest.getInstance))) {
+          case ((length, digest), bytes) =>
+            digest.foreach(md => bytes.asByteBuffers.foreach(buffer => md.update(buffer)))
+            (length + bytes.length, digest)
+        }
+        .async
+
+      Accumulator(limit.alsoToMat(lengthAndDigest)(Keep.right).toMat(sink(fileInfo))(Keep.both).mapMaterializedValue {
+        case (lengthAndDigest, result) =>
+          for {
+            (length, digest) <- lengthAndDigest
+            value            <- result
+          } yield {
+            val file = StreamedFile(value, digest.map(digest => ByteString(digest.digest())))
+            FilePart(partName, filename, contentType, file, length, dispositionType)
+          }
+      })
+  }
+
   case class FileInfo(
       /** Name of the part in HTTP request (e.g. field name) */
       partName: String,
@@ -295,6 +370,12 @@ object Multipart {
   private def byteAt(input: ByteString, ix: Int): Byte =
     if (ix < input.length) input(ix) else throw NotEnoughDataException
 
+  // slices of a single array are left as they are, only a ByteString made of several chunks is copied
+  private def compact(input: ByteString): ByteString = input match {
+    case _: ByteString.ByteStrings => input.compact
+    case _                         => input
+  }
+
   private object NotEnoughDataException extends RuntimeException(null, null, false, false)
 
   private val crlfcrlf: ByteString = {
@@ -339,9 +420,9 @@ object Multipart {
       array
     }
 
-    // we use the Boyer-Moore string search algorithm for finding the boundaries in the multipart entity,
-    // see: http://www.cgjennings.ca/fjs/ and http://ijes.info/4/1/42544103.pdf
-    private val boyerMoore = new BoyerMoore(needle)
+    // we use the Boyer-Moore-Horspool string search algorithm for finding the boundaries in the multipart entity,
+    // see: https://en.wikipedia.org/wiki/Boyer%E2%80%93Moore%E2%80%93Horspool_algorithm
+    private val boundaryMatcher = new BoundaryMatcher(needle)
 
     val in  = Inlet[ByteString]("BodyPartParser.in")
     val out = Outlet[RawPart]("BodyPartParser.out")
@@ -356,7 +437,7 @@ object Multipart {
 
         override def onPush(): Unit = {
           if (!terminated) {
-            state(grab(in))
+            state(compact(grab(in)))
             if (output.nonEmpty) push(out, dequeue())
             else if (!terminated) pull(in)
             else completeStage()
@@ -379,7 +460,7 @@ object Multipart {
         setHandlers(in, out, this)
 
         def tryParseInitialBoundary(input: ByteString): StateResult = {
-          // we don't use boyerMoore here because we are testing for the boundary *without* a
+          // we don't use boundaryMatcher here because we are testing for the boundary *without* a
           // preceding CRLF and at a known location (the very beginning of the entity)
           try {
             if (boundary(input, 0)) {
@@ -396,7 +477,7 @@ object Multipart {
         def parsePreamble(input: ByteString, offset: Int): StateResult = {
           try {
             @tailrec def rec(index: Int): StateResult = {
-              val needleEnd = boyerMoore.nextIndex(input, index) + needle.length
+              val needleEnd = boundaryMatcher.nextIndex(input, index) + needle.length
               if (crlf(input, needleEnd)) parseHeader(input, needleEnd + 2, 0)
               else if (doubleDash(input, needleEnd)) terminate()
               else rec(needleEnd)
@@ -460,7 +541,7 @@ object Multipart {
                   }
                 }
                 case PartInfoMatcher(name) =>
-                  handleDataPart(input, partStart, memoryBufferSize + name.length, name)
+                  handleDataPart(input, partStart, memoryBufferSize + name.length, name, ByteString.empty)
                 case _ =>
                   handleBadPart(input, partStart, totalMemoryBufferSize, headers)
               }
@@ -471,7 +552,7 @@ object Multipart {
             nonEmpty: (ByteString) => StateResult
         )(empty: (ByteString) => StateResult): StateResult = {
           try {
-            val currentPartEnd = boyerMoore.nextIndex(input, partStart)
+            val currentPartEnd = boundaryMatcher.nextIndex(input, partStart)
             if (currentPartEnd - partStart == 0) {
               empty(input)
             } else {
@@ -488,7 +569,7 @@ object Multipart {
               } else {
                 // There was not even enough space in the input to contain the needle. Only after we have enough data
                 // of at least the size of the needle we can decide if the body is empty or not.
-                state = more => checkEmptyBody(input ++ more, partStart, memoryBufferSize)(nonEmpty)(empty)
+                state = more => checkEmptyBody(compact(input ++ more), partStart, memoryBufferSize)(nonEmpty)(empty)
                 done()
               }
           }
@@ -513,7 +594,7 @@ object Multipart {
 
         def handleFileData(input: ByteString, offset: Int, memoryBufferSize: Int): StateResult = {
           try {
-            val currentPartEnd = boyerMoore.nextIndex(input, offset)
+            val currentPartEnd = boundaryMatcher.nextIndex(input, offset)
             val needleEnd      = currentPartEnd + needle.length
             if (crlf(input, needleEnd)) {
               emit(input.slice(offset, currentPartEnd))
@@ -537,28 +618,43 @@ object Multipart {
           }
         }
 
-        def handleDataPart(input: ByteString, partStart: Int, memoryBufferSize: Int, partName: String): StateResult = {
+        /**
+         * The bytes of the part that have already been searched for the boundary are kept in `scanned`, and only the
+         * end of the input, which may hold the start of the boundary, is searched again with the next chunk.
+         */
+        def handleDataPart(
+            input: ByteString,
+            partStart: Int,
+            memoryBufferSize: Int,
+            partName: String,
+            scanned: ByteString
+        ): StateResult = {
           try {
-            val currentPartEnd      = boyerMoore.nextIndex(input, partStart)
+            val currentPartEnd      = boundaryMatcher.nextIndex(input, partStart)
             val needleEnd           = currentPartEnd + needle.length
-            val newMemoryBufferSize = memoryBufferSize + (currentPartEnd - partStart)
+            val newMemoryBufferSize = memoryBufferSize + scanned.length + (currentPartEnd - partStart)
             if (newMemoryBufferSize > maxMemoryBufferSize) {
               bufferExceeded("Memory buffer full on part " + partName)
             } else if (crlf(input, needleEnd)) {
-              emit(DataPart(partName, input.slice(partStart, currentPartEnd).utf8String))
+              emit(DataPart(partName, (scanned ++ input.slice(partStart, currentPartEnd)).utf8String))
               parseHeader(input, needleEnd + 2, newMemoryBufferSize)
             } else if (doubleDash(input, needleEnd)) {
-              emit(DataPart(partName, input.slice(partStart, currentPartEnd).utf8String))
+              emit(DataPart(partName, (scanned ++ input.slice(partStart, currentPartEnd)).utf8String))
               terminate()
             } else {
               fail("Unexpected boundary")
             }
           } catch {
             case NotEnoughDataException =>
-              if (memoryBufferSize + (input.length - partStart - needle.length) > maxMemoryBufferSize) {
+              val scanEnd = input.length - needle.length - 2
+              if (memoryBufferSize + scanned.length + (scanEnd - partStart) > maxMemoryBufferSize) {
                 bufferExceeded("Memory buffer full on part " + partName)
+              } else if (scanEnd > partStart) {
+                val newScanned = scanned ++ input.slice(partStart, scanEnd)
+                continue(input.drop(scanEnd), 0)(handleDataPart(_, _, memoryBufferSize, partName, newScanned))
+              } else {
+                continue(input, partStart)(handleDataPart(_, _, memoryBufferSize, partName, scanned))
               }
-              continue(input, partStart)(handleDataPart(_, _, memoryBufferSize, partName))
           }
         }
 
@@ -569,7 +665,7 @@ object Multipart {
             headers: Map[String, String]
         ): StateResult = {
           try {
-            val currentPartEnd = boyerMoore.nextIndex(input, partStart)
+            val currentPartEnd = boundaryMatcher.nextIndex(input, partStart)
             val needleEnd      = currentPartEnd + needle.length
             if (crlf(input, needleEnd)) {
               emit(BadPart(headers))
@@ -582,7 +678,10 @@ object Multipart {
             }
           } catch {
             case NotEnoughDataException =>
-              continue(input, partStart)(handleBadPart(_, _, memoryBufferSize, headers))
+              // the body of a bad part is discarded, only the end of the input may hold the start of the boundary
+              val scanEnd = input.length - needle.length - 2
+              if (scanEnd > partStart) continue(input.drop(scanEnd), 0)(handleBadPart(_, _, memoryBufferSize, headers))
+              else continue(input, partStart)(handleBadPart(_, _, memoryBufferSize, headers))
           }
         }
 
@@ -601,8 +700,11 @@ object Multipart {
         }
 
         def continue(input: ByteString, offset: Int)(next: (ByteString, Int) => StateResult): StateResult = {
+          // the consumed bytes are dropped and the rest is compacted with the new data, so that the boundary matcher
+          // works on a single array. The states that search for a boundary only keep the bytes they haven't searched
+          // yet, so that a long part isn't copied again with every chunk
           state = math.signum(offset - input.length) match {
-            case -1 => more => next(input ++ more, offset)
+            case -1 => more => next(compact(input.drop(offset) ++ more), 0)
             case 0  => next(_, 0)
             case 1  => throw new IllegalStateException
           }
@@ -646,16 +748,20 @@ object Multipart {
   }
 
   /**
-   * Copied from Akka HTTP.
+   * Boyer-Moore-Horspool string search over a `ByteBuffer` view of the input.
    *
-   * Straight-forward Boyer-Moore string search implementation.
+   * Only the shift for the last byte of the window is used: the bytes of a boundary are rare in the body, so most
+   * windows are skipped by nearly the whole length of the needle after a single comparison. The input is searched
+   * through a `ByteBuffer` view rather than by indexing into the `ByteString`, which for a `ByteString` made of several
+   * chunks looks up the chunk of every byte. The parser compacts its input as data arrives, so the view doesn't copy.
    */
-  private class BoyerMoore(needle: Array[Byte]) {
+  private class BoundaryMatcher(needle: Array[Byte]) {
     require(needle.length > 0, "needle must be non-empty")
 
-    private[this] val nl1 = needle.length - 1
+    private[this] val nl1  = needle.length - 1
+    private[this] val last = needle(nl1)
 
-    private[this] val charTable: Array[Int] = {
+    private[this] val skipTable: Array[Int] = {
       val table = Array.fill(256)(needle.length)
       @tailrec def rec(i: Int): Unit =
         if (i < nl1) {
@@ -666,44 +772,25 @@ object Multipart {
       table
     }
 
-    private[this] val offsetTable: Array[Int] = {
-      val table = new Array[Int](needle.length)
-
-      @tailrec def isPrefix(i: Int, j: Int): Boolean =
-        i == needle.length || needle(i) == needle(j) && isPrefix(i + 1, j + 1)
-      @tailrec def loop1(i: Int, lastPrefixPosition: Int): Unit =
-        if (i >= 0) {
-          val nextLastPrefixPosition = if (isPrefix(i + 1, 0)) i + 1 else lastPrefixPosition
-          table(nl1 - i) = nextLastPrefixPosition - i + nl1
-          loop1(i - 1, nextLastPrefixPosition)
-        }
-      loop1(nl1, needle.length)
-
-      @tailrec def suffixLength(i: Int, j: Int, result: Int): Int =
-        if (i >= 0 && needle(i) == needle(j)) suffixLength(i - 1, j - 1, result + 1) else result
-      @tailrec def loop2(i: Int): Unit =
-        if (i < nl1) {
-          val sl = suffixLength(i, nl1, 0)
-          table(sl) = nl1 - i + sl
-          loop2(i + 1)
-        }
-      loop2(0)
-      table
-    }
-
     /**
      * Returns the index of the next occurrence of `needle` in `haystack` that is >= `offset`.
      * If none is found a `NotEnoughDataException` is thrown.
      */
     def nextIndex(haystack: ByteString, offset: Int): Int = {
-      @tailrec def rec(i: Int, j: Int): Int = {
-        val byte = byteAt(haystack, i)
-        if (needle(j) == byte) {
-          if (j == 0) i // found
-          else rec(i - 1, j - 1)
-        } else rec(i + math.max(offsetTable(nl1 - j), charTable(byte & 0xff)), nl1)
-      }
-      rec(offset + nl1, nl1)
+      val buffer = haystack.asByteBuffer
+      val end    = buffer.limit()
+
+      @tailrec def matches(start: Int, j: Int): Boolean =
+        j < 0 || buffer.get(start + j) == needle(j) && matches(start, j - 1)
+
+      @tailrec def rec(i: Int): Int =
+        if (i >= end) throw NotEnoughDataException
+        else {
+          val byte = buffer.get(i)
+          if (byte == last && matches(i - nl1, nl1 - 1)) i - nl1 // found
+          else rec(i + skipTable(byte & 0xff))
+        }
+      rec(offset + nl1)
     }
   }
 }
@@ -31,11 +31,17 @@ object Route {
   /**
    * Create a params extractor from the given method and path pattern.
    */
-  def apply(method: String, pathPattern: PathPattern) = new ParamsExtractor {
+  def apply(method: String, pathPattern: PathPattern): ParamsExtractor = new MethodPathExtractor(method, pathPattern)
+
+  /**
+   * A params extractor that matches a method and a path pattern, exposed so that the route can be indexed.
+   */
+  private[routing] final class MethodPathExtractor(val method: String, val pathPattern: PathPattern)
+      extends ParamsExtractor {
     def unapply(request: RequestHeader): Option[RouteParams] = {
       if (method == request.method) {
-        pathPattern(request.path).map { groups =>
-          RouteParams(groups, request.queryString)
+        pathPattern.matchPath(request.path).map { pathParams =>
+          RouteParams(pathParams, request.queryString)
         }
       } else {
         None
@@ -62,11 +68,19 @@ object Include {
 
 case class Param[T](name: String, value: Either[String, T])
 
-case class RouteParams(path: Map[String, Either[Throwable, String]], queryString: Map[String, Seq[String]]) {
+/**
+ * The parameters of a request matched by a route.
+ *
+ * Path parameters are read from the [[PathParams]] view of the matched path, so they are only extracted and decoded
+ * when a route binds them.
+ */
+final class RouteParams private (pathParams: PathParams, val queryString: Map[String, Seq[String]]) {
+  lazy val path: Map[String, Either[Throwable, String]] = pathParams.toMap
+
   def fromPath[T](key: String, default: Option[T] = None)(implicit binder: PathBindable[T]): Param[T] = {
     Param(
       key,
-      path.get(key).map(v => v.fold(t => Left(t.getMessage), binder.bind(key, _))).getOrElse {
+      pathParams.get(key).map(v => v.fold(t => Left(t.getMessage), binder.bind(key, _))).getOrElse {
         default.map(d => Right(d)).getOrElse(Left("Missing parameter: " + key))
       }
     )
@@ -88,6 +102,17 @@ case class RouteParams(path: Map[String, Either[Throwable, String]], queryString
   }
 }
 
+object RouteParams {
+  def apply(path: Map[String, Either[Throwable, String]], queryString: Map[String, Seq[String]]): RouteParams =
+    new RouteParams(PathParams(path), queryString)
+
+  def apply(pathParams: PathParams, queryString: Map[String, Seq[String]]): RouteParams =
+    new RouteParams(pathParams, queryString)
+
+  def unapply(params: RouteParams): Option[(Map[String, Either[Throwable, String]], Map[String, Seq[String]])] =
+    Some((params.path, params.queryString))
+}
+
 /**
  * A generated router.
  */
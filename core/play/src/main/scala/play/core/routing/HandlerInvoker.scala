@@ -104,15 +104,45 @@ object HandlerInvokerFactory {
         _annotations
       }
 
+      // Cache the body parser per set of components, since body parsers, unlike actions, don't hold per request state,
+      // and looking them up in the injector on every request is costly. The parser is reused for all the requests of
+      // the route even if its binding isn't a singleton, as documented on JavaHandlerComponents.getBodyParser.
+      // (It's OK that this is unsynchronized since the initialization should be idempotent.)
+      private var _parser: (JavaHandlerComponents, BodyParser[RequestBody]) = null
+      def cachedParser(handlerComponents: JavaHandlerComponents, annotations: JavaActionAnnotations) = {
+        val cached = _parser
+        if (cached != null && (cached._1 eq handlerComponents)) {
+          cached._2
+        } else {
+          val parser = javaBodyParserToScala(handlerComponents.getBodyParser(annotations.parser))
+          _parser = (handlerComponents, parser)
+          parser
+        }
+      }
+
+      // Cache the providers of the actions of the mixins per set of components, the actions themselves are created by
+      // each request.
+      // (It's OK that this is unsynchronized since the initialization should be idempotent.)
+      private var _actionMixinProviders: (JavaHandlerComponents, Array[JavaAction.ActionMixinProvider]) = null
+      def cachedActionMixinProviders(handlerComponents: JavaHandlerComponents, annotations: JavaActionAnnotations) = {
+        val cached = _actionMixinProviders
+        if (cached != null && (cached._1 eq handlerComponents)) {
+          cached._2
+        } else {
+          val providers = play.core.j.JavaAction.actionMixinProviders(handlerComponents, annotations)
+          _actionMixinProviders = (handlerComponents, providers)
+          providers
+        }
+      }
+
       override def call(call: => A): Handler = new JavaHandler {
         def withComponents(handlerComponents: JavaHandlerComponents): Handler = {
           new play.core.j.JavaAction(handlerComponents) {
             override val annotations = cachedAnnotations(handlerComponents.httpConfiguration.actionComposition)
-            override val parser = {
-              val javaParser = handlerComponents.getBodyParser(annotations.parser)
-              javaBodyParserToScala(javaParser)
-            }
+            override val parser      = cachedParser(handlerComponents, annotations)
             override def invocation(req: JRequest): CompletionStage[JResult] = resultCall(req, call)
+
+            override protected val actionMixinProviders = cachedActionMixinProviders(handlerComponents, annotations)
           }
         }
       }
@@ -5,8 +5,9 @@
 package play.core.routing
 
 import java.net.URI
+import java.nio.charset.StandardCharsets
 
-import scala.util.control.Exception
+import scala.util.control.NonFatal
 
 /**
  * A part of a path.
@@ -37,46 +38,71 @@ case class StaticPart(value: String) extends PathPart {
 case class PathPattern(parts: Seq[PathPart]) {
   import java.util.regex._
 
-  private def decodeIfEncoded(decode: Boolean, groupCount: Int): Matcher => Either[Throwable, String] =
-    matcher =>
-      Exception.allCatch[String].either {
-        if (decode) {
-          val group = matcher.group(groupCount)
-          // If param is not correctly encoded, get path will return null, so we prepend a / to it
-          new URI("/" + group).getPath.drop(1)
-        } else
-          matcher.group(groupCount)
-      }
+  // The dynamic parts of the pattern, in order, with the index of the regex group that captures each of them
+  private lazy val dynamicParts: Array[DynamicPart] = parts.collect { case part: DynamicPart => part }.toArray
 
-  private lazy val (regex, groups) = {
-    Some(parts.foldLeft("", Map.empty[String, Matcher => Either[Throwable, String]], 0) { (s, e) =>
+  private lazy val (regex, groupIndices) = {
+    Some(parts.foldLeft("", Vector.empty[Int], 0) { (s, e) =>
       e match {
         case StaticPart(p) => ((s._1 + Pattern.quote(p)), s._2, s._3)
-        case DynamicPart(k, r, encodeable) => {
+        case DynamicPart(_, r, _) => {
           (
             (s._1 + "(" + r + ")"),
-            (s._2 + (k -> decodeIfEncoded(encodeable, s._3 + 1))),
+            (s._2 :+ (s._3 + 1)),
             s._3 + 1 + Pattern.compile(r).matcher("").groupCount
           )
         }
       }
     }).map {
-      case (r, g, _) => Pattern.compile("^" + r + "$") -> g
+      case (r, g, _) => Pattern.compile("^" + r + "$") -> g.toArray
     }.get
   }
 
+  /**
+   * The literal prefix that every path matched by this pattern starts with, that is, the concatenation of the
+   * static parts that precede the first dynamic part.
+   */
+  lazy val staticPrefix: String = parts.takeWhile(_.isInstanceOf[StaticPart]).collect {
+    case StaticPart(value) => value
+  }.mkString
+
+  // A pattern without dynamic parts only ever matches its static prefix, so it doesn't need a regex
+  private lazy val isStatic: Boolean = dynamicParts.isEmpty
+
   /**
    * Apply the path pattern to a given candidate path to see if it matches.
    *
    * @param path The path to match against.
    * @return The map of extracted parameters, or none if the path didn't match.
    */
-  def apply(path: String): Option[Map[String, Either[Throwable, String]]] = {
-    val matcher = regex.matcher(path)
-    if (matcher.matches) {
-      Some(groups.mapValues(_(matcher)).toMap)
+  def apply(path: String): Option[Map[String, Either[Throwable, String]]] = matchPath(path).map(_.toMap)
+
+  /**
+   * Match the path pattern against a given candidate path, without extracting the parameters.
+   *
+   * Only the bounds of the dynamic parts are recorded when the path matches; parameters are extracted and decoded
+   * from the path when they are read from the returned [[PathParams]].
+   *
+   * @param path The path to match against.
+   * @return A view of the parameters in the path, or none if the path didn't match.
+   */
+  def matchPath(path: String): Option[PathParams] = {
+    if (isStatic) {
+      if (path == staticPrefix) Some(PathParams.empty) else None
     } else {
-      None
+      val matcher = regex.matcher(path)
+      if (matcher.matches) {
+        val bounds = new Array[Int](groupIndices.length * 2)
+        var i      = 0
+        while (i < groupIndices.length) {
+          bounds(i * 2) = matcher.start(groupIndices(i))
+          bounds(i * 2 + 1) = matcher.end(groupIndices(i))
+          i += 1
+        }
+        Some(new PathPattern.MatchedPathParams(dynamicParts, path, bounds))
+      } else {
+        None
+      }
     }
   }
 
@@ -86,3 +112,129 @@ case class PathPattern(parts: Seq[PathPart]) {
       case StaticPart(path)                 => path
     }.mkString
 }
+
+object PathPattern {
+
+  /**
+   * The parameters of a path matched by a path pattern, read by index from the bounds of the matched groups.
+   */
+  private final class MatchedPathParams(parts: Array[DynamicPart], path: String, bounds: Array[Int])
+      extends PathParams {
+    private def value(index: Int): Either[Throwable, String] = {
+      val start = bounds(index * 2)
+      // A group that didn't take part in the match has no value
+      val group = if (start < 0) null else path.substring(start, bounds(index * 2 + 1))
+      if (parts(index).encodeable) {
+        try Right(decodePathParam(group))
+        catch {
+          case NonFatal(e) => Left(e)
+        }
+      } else {
+        Right(group)
+      }
+    }
+
+    def get(name: String): Option[Either[Throwable, String]] = {
+      // If a name is used twice, the last part wins
+      var i = parts.length - 1
+      while (i >= 0 && parts(i).name != name) i -= 1
+      if (i < 0) None else Some(value(i))
+    }
+
+    def toMap: Map[String, Either[Throwable, String]] = parts.indices.map(i => parts(i).name -> value(i)).toMap
+  }
+
+  // The ASCII characters that java.net.URI accepts unescaped in a path
+  private val pathChars: Array[Boolean] = {
+    val chars = new Array[Boolean](128)
+    (('a' to 'z') ++ ('A' to 'Z') ++ ('0' to '9') ++ "-_.!~*'():@&=+$,;/").foreach(c => chars(c) = true)
+    chars
+  }
+
+  private def hexValue(c: Char): Int = if (c < 128) Character.digit(c, 16) else -1
+
+  /**
+   * Decode a path parameter the same way as `new URI("/" + param).getPath.drop(1)`.
+   *
+   * Parameters made of legal ASCII characters and percent-encoded octets, which is what servers hand us in practice,
+   * are decoded directly. Anything else is left to `java.net.URI` so that edge cases and errors are handled the same.
+   */
+  private[routing] def decodePathParam(param: String): String = {
+    if (param == null || param.isEmpty || param.charAt(0) == '/') {
+      decodeWithUri(param)
+    } else {
+      val length  = param.length
+      var escapes = 0
+      var simple  = true
+      var i       = 0
+      while (simple && i < length) {
+        val c = param.charAt(i)
+        if (c == '%') {
+          simple = i + 2 < length && hexValue(param.charAt(i + 1)) >= 0 && hexValue(param.charAt(i + 2)) >= 0
+          escapes += 1
+          i += 3
+        } else {
+          simple = c < 128 && pathChars(c)
+          i += 1
+        }
+      }
+      if (!simple) {
+        decodeWithUri(param)
+      } else if (escapes == 0) {
+        param
+      } else {
+        val bytes = new Array[Byte](length - escapes * 2)
+        var in    = 0
+        var out   = 0
+        while (in < length) {
+          val c = param.charAt(in)
+          if (c == '%') {
+            bytes(out) = ((hexValue(param.charAt(in + 1)) << 4) + hexValue(param.charAt(in + 2))).toByte
+            in += 3
+          } else {
+            bytes(out) = c.toByte
+            in += 1
+          }
+          out += 1
+        }
+        new String(bytes, StandardCharsets.UTF_8)
+      }
+    }
+  }
+
+  private def decodeWithUri(param: String): String = {
+    // If param is not correctly encoded, get path will return null, so we prepend a / to it
+    new URI("/" + param).getPath.drop(1)
+  }
+}
+
+/**
+ * The parameters extracted from a path by a [[PathPattern]].
+ */
+abstract class PathParams {
+
+  /**
+   * Get the value of a parameter.
+   *
+   * @param name The name of the parameter.
+   * @return The decoded parameter, or the error raised when decoding it, or none if there is no such parameter.
+   */
+  def get(name: String): Option[Either[Throwable, String]]
+
+  /**
+   * Extract all parameters in a map.
+   */
+  def toMap: Map[String, Either[Throwable, String]]
+}
+
+object PathParams {
+  val empty: PathParams = apply(Map.empty)
+
+  /**
+   * Path parameters that have already been extracted in a map.
+   */
+  def apply(params: Map[String, Either[Throwable, String]]): PathParams = new PathParams {
+    def get(name: String): Option[Either[Throwable, String]] = params.get(name)
+    def toMap: Map[String, Either[Throwable, String]]        = params
+  }
+}
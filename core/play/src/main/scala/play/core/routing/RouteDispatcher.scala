@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.routing
+
+import java.util.Arrays
+
+import play.api.mvc.Handler
+import play.api.mvc.RequestHeader
+
+import scala.collection.mutable
+
+/**
+ * A dispatch table for generated routers.
+ *
+ * Rather than trying every rule of a router in turn, the dispatcher indexes routes by HTTP method and by the static
+ * prefix of their path pattern in a character trie. Looking up a request walks the trie along the request path,
+ * which yields the indices of the only rules that can possibly match it, so the number of path patterns evaluated
+ * is proportional to the depth of the path rather than to the number of routes in the routes file.
+ *
+ * Candidate rules are still tried in declaration order, so the first matching rule wins, exactly as it does when
+ * trying every rule in turn.
+ *
+ * @param entries The dispatch entry of each rule, in declaration order.
+ * @param dispatch Tries the rule at the given index against the request, returning its handler if it matched.
+ */
+final class RouteDispatcher(entries: Seq[RouteDispatcher.Entry], dispatch: (Int, RequestHeader) => Option[Handler])
+    extends PartialFunction[RequestHeader, Handler] {
+  import RouteDispatcher._
+
+  private[this] val indexedEntries = entries.toIndexedSeq
+
+  // Rules that can't be indexed are candidates for every request
+  private[this] val wildcards: Array[Int] = indexedEntries.indices.filter(indexedEntries(_) == Wildcard).toArray
+
+  private[this] val methodTries: Map[String, Node] = {
+    val routes = indexedEntries.zipWithIndex.collect {
+      case (MethodAndPrefix(method, prefix), index) => (method, prefix, index)
+    }
+    routes.groupBy(_._1).map {
+      case (method, methodRoutes) =>
+        val root = new NodeBuilder
+        methodRoutes.foreach { case (_, prefix, index) => root.insert(prefix, 0, index) }
+        method -> root.build(wildcards)
+    }
+  }
+
+  /**
+   * Find the indices of the rules that may match the given request, in declaration order.
+   */
+  private def candidates(request: RequestHeader): Array[Int] = {
+    methodTries.get(request.method) match {
+      case Some(root) =>
+        val path  = request.path
+        var node  = root
+        var i     = 0
+        var child = if (path.isEmpty) null else node.child(path.charAt(0))
+        while (child ne null) {
+          node = child
+          i += 1
+          child = if (i < path.length) node.child(path.charAt(i)) else null
+        }
+        node.candidates
+      case None => wildcards
+    }
+  }
+
+  override def applyOrElse[A1 <: RequestHeader, B1 >: Handler](request: A1, default: A1 => B1): B1 = {
+    val indices = candidates(request)
+    var i       = 0
+    while (i < indices.length) {
+      val handler = dispatch(indices(i), request)
+      if (handler.isDefined) return handler.get
+      i += 1
+    }
+    default(request)
+  }
+
+  override def isDefinedAt(request: RequestHeader): Boolean =
+    candidates(request).exists(dispatch(_, request).isDefined)
+
+  override def apply(request: RequestHeader): Handler =
+    applyOrElse(request, (r: RequestHeader) => throw new MatchError(r))
+}
+
+object RouteDispatcher {
+
+  /**
+   * How a rule is indexed by the dispatcher.
+   */
+  sealed abstract class Entry
+
+  private case object Wildcard extends Entry
+
+  private final case class MethodAndPrefix(method: String, prefix: String) extends Entry
+
+  /**
+   * The entry for a route, indexed by its method and the static prefix of its path pattern.
+   */
+  def route(extractor: Route.ParamsExtractor): Entry = extractor match {
+    case route: Route.MethodPathExtractor => MethodAndPrefix(route.method, route.pathPattern.staticPrefix)
+    case _                                => Wildcard
+  }
+
+  /**
+   * The entry for an included router.
+   *
+   * Included routers may be arbitrary routers, so they are tried for every request.
+   */
+  def include(include: Include): Entry = Wildcard
+
+  def apply(entries: Seq[Entry])(dispatch: (Int, RequestHeader) => Option[Handler]): RouteDispatcher =
+    new RouteDispatcher(entries, dispatch)
+
+  private final class Node(keys: Array[Char], children: Array[Node], val candidates: Array[Int]) {
+    def child(c: Char): Node = {
+      val i = Arrays.binarySearch(keys, c)
+      if (i >= 0) children(i) else null
+    }
+  }
+
+  private final class NodeBuilder {
+    private val children  = mutable.TreeMap.empty[Char, NodeBuilder]
+    private val terminals = mutable.ArrayBuffer.empty[Int]
+
+    def insert(prefix: String, offset: Int, index: Int): Unit = {
+      if (offset == prefix.length) {
+        terminals += index
+      } else {
+        children.getOrElseUpdate(prefix.charAt(offset), new NodeBuilder).insert(prefix, offset + 1, index)
+      }
+    }
+
+    /**
+     * Build the node, whose candidates are the candidates of its ancestors plus the rules ending at this node.
+     */
+    def build(inherited: Array[Int]): Node = {
+      val candidates = if (terminals.isEmpty) inherited else (inherited ++ terminals).sorted
+      new Node(
+        children.keys.toArray,
+        children.values.map(_.build(candidates)).toArray,
+        candidates
+      )
+    }
+  }
+}
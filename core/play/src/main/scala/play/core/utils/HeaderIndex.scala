@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.utils
+
+import scala.collection.immutable
+
+/**
+ * An index of HTTP headers for case-insensitive lookups by name.
+ *
+ * Header names and values are kept in their original order in flat arrays, which are indexed by an open-addressing
+ * hash table whose hash function folds ASCII case. Building the index doesn't copy the headers, and looking up a
+ * header neither allocates nor compares more than a couple of names. Since header names are tokens of ASCII
+ * characters, names are compared ignoring ASCII case only.
+ */
+private[play] final class HeaderIndex private (names: Array[String], values: Array[String]) {
+  import HeaderIndex._
+
+  // Maps a slot to the index of the first header with a given name, plus one, so that zero marks an empty slot
+  private[this] val table: Array[Int] = new Array[Int](tableSize(names.length))
+
+  // Maps the index of a header to the index of the next header with the same name, or -1 if there is none
+  private[this] val next: Array[Int] = Array.fill(names.length)(-1)
+
+  {
+    val last = new Array[Int](names.length)
+    var i    = 0
+    while (i < names.length) {
+      val slot  = findSlot(names(i))
+      val first = table(slot) - 1
+      if (first < 0) {
+        table(slot) = i + 1
+        last(i) = i
+      } else {
+        next(last(first)) = i
+        last(first) = i
+      }
+      i += 1
+    }
+  }
+
+  /**
+   * Find the slot holding the given name, or the empty slot where it would be inserted.
+   */
+  private def findSlot(name: String): Int = {
+    val mask  = table.length - 1
+    var slot  = hash(name) & mask
+    var entry = table(slot)
+    while (entry != 0 && !equalsIgnoreAsciiCase(names(entry - 1), name)) {
+      slot = (slot + 1) & mask
+      entry = table(slot)
+    }
+    slot
+  }
+
+  /**
+   * The index of the first header with the given name, or -1 if there is none.
+   */
+  def indexOf(name: String): Int = table(findSlot(name)) - 1
+
+  def size: Int = names.length
+
+  def contains(name: String): Boolean = indexOf(name) >= 0
+
+  /**
+   * Get the first value of the header with the given name.
+   */
+  def get(name: String): Option[String] = {
+    val i = indexOf(name)
+    if (i < 0) None else Some(values(i))
+  }
+
+  /**
+   * Get all the values of the header with the given name, in order.
+   */
+  def getAll(name: String): immutable.Seq[String] = {
+    var i = indexOf(name)
+    if (i < 0) {
+      Nil
+    } else {
+      val builder = List.newBuilder[String]
+      while (i >= 0) {
+        builder += values(i)
+        i = next(i)
+      }
+      builder.result()
+    }
+  }
+}
+
+private[play] object HeaderIndex {
+
+  /**
+   * Index the given headers.
+   */
+  def apply(headers: Seq[(String, String)]): HeaderIndex = {
+    val names  = new Array[String](headers.size)
+    val values = new Array[String](headers.size)
+    var i      = 0
+    headers.foreach {
+      case (name, value) =>
+        names(i) = name
+        values(i) = value
+        i += 1
+    }
+    new HeaderIndex(names, values)
+  }
+
+  /**
+   * Index the given header names and values, which are not copied so must not be modified afterwards.
+   */
+  def apply(names: Array[String], values: Array[String]): HeaderIndex = {
+    require(names.length == values.length, "There must be as many header names as header values")
+    new HeaderIndex(names, values)
+  }
+
+  /**
+   * The size of a power of two table that is at most half full with the given number of entries.
+   */
+  private def tableSize(entries: Int): Int = Integer.highestOneBit(math.max(entries * 2 - 1, 1)) * 2
+
+  private def toLowerAscii(c: Char): Int = if (c >= 'A' && c <= 'Z') c + ('a' - 'A') else c
+
+  private def hash(name: String): Int = {
+    var h = 0
+    var i = 0
+    while (i < name.length) {
+      h = 31 * h + toLowerAscii(name.charAt(i))
+      i += 1
+    }
+    h ^ (h >>> 16)
+  }
+
+  private def equalsIgnoreAsciiCase(a: String, b: String): Boolean = {
+    (a eq b) || (a.length == b.length && {
+      var i = 0
+      while (i < a.length && toLowerAscii(a.charAt(i)) == toLowerAscii(b.charAt(i))) i += 1
+      i == a.length
+    })
+  }
+}
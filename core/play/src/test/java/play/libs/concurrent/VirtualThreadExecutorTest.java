@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.libs.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadExecutorTest {
+
+  @Test
+  public void runsTasksOnNewVirtualThreads() throws Exception {
+    assumeTrue(VirtualThreadExecutor.isAvailable());
+    CompletableFuture<Thread> first =
+        CompletableFuture.supplyAsync(Thread::currentThread, VirtualThreadExecutor.getInstance());
+    CompletableFuture<Thread> second =
+        CompletableFuture.supplyAsync(Thread::currentThread, VirtualThreadExecutor.getInstance());
+    Thread thread = first.get(1, TimeUnit.SECONDS);
+    assertThat(Thread.class.getMethod("isVirtual").invoke(thread), equalTo(true));
+    assertThat(thread, not(equalTo(second.get(1, TimeUnit.SECONDS))));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void isNotAvailableBeforeJava21() {
+    assumeTrue(!VirtualThreadExecutor.isAvailable());
+    VirtualThreadExecutor.getInstance();
+  }
+}
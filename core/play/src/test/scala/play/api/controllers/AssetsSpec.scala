@@ -4,9 +4,11 @@
 
 package controllers
 
+import java.nio.file.Files
 import java.time.Instant
 
 import org.specs2.mutable.Specification
+import play.api.Environment
 import play.api.http.DefaultFileMimeTypesProvider
 import play.api.http.DefaultHttpErrorHandler
 import play.api.http.FileMimeTypes
@@ -246,5 +248,73 @@ class AssetsSpec extends Specification {
       // If it uses the escaped path, the file won't be found, and so last modified will be 0
       Instant.from(lastModified).toEpochMilli must_!= 0
     }
+
+    "look up assets in the configured directory before the classpath" in {
+      val parent    = Files.createTempDirectory("assets")
+      val directory = Files.createDirectories(parent.resolve("assets/public")).getParent
+      val file      = Files.write(directory.resolve("public/file withspace.css"), "body {}".getBytes)
+      Files.write(parent.resolve("secret.txt"), "secret".getBytes)
+      val config   = AssetsConfiguration(directory = Some(directory.toString))
+      val resource = DefaultAssetsMetadata.resource(Environment.simple(), config)
+
+      resource("/public/file withspace.css") must beSome(file.toUri.toURL)
+      // Not in the directory, so looked up in the classpath
+      resource("/file withspace.css") must beSome(this.getClass.getClassLoader.getResource("file withspace.css"))
+      // Not outside of the directory
+      resource("/public/../../secret.txt") must beNone
+    }
+
+    "index the assets on startup" in {
+      val directory = Files.createTempDirectory("assets")
+      Files.createDirectories(directory.resolve("public/js"))
+      Files.write(directory.resolve("public/js/main.js"), "main()".getBytes)
+      Files.write(directory.resolve("public/js/main.min.js"), "main()".getBytes)
+      Files.write(directory.resolve("public/js/main.min.js.md5"), "abc".getBytes)
+      implicit val fileMimeTypes: FileMimeTypes = new DefaultFileMimeTypesProvider(FileMimeTypesConfiguration()).get
+      val config   = AssetsConfiguration(directory = Some(directory.toString), indexAssets = true)
+      val metadata = new DefaultAssetsMetadata(Environment.simple(), config, fileMimeTypes)
+
+      DefaultAssetsMetadata.assetNames(Environment.simple(), config) must containAllOf(
+        Seq("/public/js/main.js", "/public/js/main.min.js", "/public/js/main.min.js.md5")
+      )
+      // The files aren't looked up anymore once indexed
+      Files.delete(directory.resolve("public/js/main.min.js.md5"))
+      metadata.digest("/public/js/main.min.js") must beSome("abc")
+      metadata.finder.path("js/main.js") must_== "/assets/js/abc-main.min.js"
+    }
+
+    "bound the metadata caches" in {
+      val cache = new BoundedCache[String, String](2)
+      cache.put("a", "1")
+      cache.put("b", "2")
+      // Read a, so that it gets a second chance
+      cache.get("a") must beSome("1")
+      cache.put("c", "3")
+
+      cache.get("b") must beNone
+      cache.get("a") must beSome("1")
+      cache.get("c") must beSome("3")
+      cache.stats must_== AssetsCacheStats(hits = 3, misses = 1, evictions = 1, entries = 2)
+    }
+
+    "bound the metadata caches when looking up many missing assets" in {
+      val assetInfos = new SelfPopulatingMap[String, String](10)
+      (1 to 10000).foreach { i =>
+        assetInfos.putIfAbsent(s"/missing$i")(_ => None)(play.core.Execution.trampoline)
+      }
+      assetInfos.store.stats.entries must_== 0
+      assetInfos.store.clockLength must be_<=(20)
+    }
+
+    "keep the live entries of the metadata caches when dropping the removed ones" in {
+      val cache = new BoundedCache[String, String](2)
+      cache.put("a", "1")
+      (1 to 100).foreach { i =>
+        cache.putIfAbsent(s"missing$i", "")
+        cache.remove(s"missing$i")
+      }
+      cache.get("a") must beSome("1")
+      cache.clockLength must be_<=(4)
+    }
   }
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.api.http
+
+import java.nio.file.Paths
+
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import org.specs2.mutable.Specification
+import play.api.mvc.ResponseHeader
+import play.api.mvc.Result
+
+class FileRegionSpec extends Specification {
+  val path   = Paths.get("file.txt")
+  val result = Result(ResponseHeader(200), HttpEntity.Streamed(Source.single(ByteString("foo")), Some(3), None))
+
+  "FileRegion" should {
+    "be found on the result it is attached to" in {
+      FileRegion.of(FileRegion.attach(result, path, 3)) must beSome(FileRegion(path, 0, 3, result.body))
+    }
+    "be kept when the headers of the result change" in {
+      FileRegion.of(FileRegion.attach(result, path, 3).withHeaders("foo" -> "bar")) must beSome
+    }
+    "not be used once the body of the result has been replaced" in {
+      val replaced = FileRegion.attach(result, path, 3).copy(body = HttpEntity.Strict(ByteString("bar"), None))
+      FileRegion.of(replaced) must beNone
+    }
+    "not be found on other results" in {
+      FileRegion.of(result) must beNone
+    }
+  }
+}
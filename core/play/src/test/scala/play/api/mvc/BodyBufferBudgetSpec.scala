@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.api.mvc
+
+import akka.actor.ActorSystem
+import akka.stream.Materializer
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import com.fasterxml.jackson.databind.JsonNode
+import com.typesafe.config.ConfigFactory
+import org.specs2.mutable.Specification
+import org.specs2.specification.AfterAll
+import play.api.libs.json.JsNumber
+import play.api.libs.streams.Accumulator
+import play.api.Environment
+import play.api.Mode
+import play.core.test.FakeRequest
+import play.http.DefaultHttpErrorHandler
+import play.libs.F
+
+import scala.compat.java8.FutureConverters._
+import scala.compat.java8.OptionConverters._
+import scala.concurrent.duration._
+import scala.concurrent.Await
+import scala.concurrent.Future
+import scala.concurrent.Promise
+
+class BodyBufferBudgetSpec extends Specification with AfterAll {
+  sequential
+
+  implicit val system = ActorSystem(
+    "body-buffer-budget-spec",
+    ConfigFactory
+      .parseString("play.http.parser { memoryBudget = 100, memoryBudgetTimeout = 1 second }")
+      .withFallback(ConfigFactory.load())
+  )
+  implicit val mat = Materializer.matFromSystem
+  val parse        = PlayBodyParsers()
+  val budget       = BodyBufferBudget(system)
+
+  val javaErrorHandler =
+    new DefaultHttpErrorHandler(ConfigFactory.empty(), Environment(null, null, Mode.Prod).asJava, null, null)
+
+  override def afterAll: Unit = {
+    system.terminate()
+  }
+
+  def request(contentLength: Int) = FakeRequest("POST", "/").withHeaders("Content-Length" -> contentLength.toString)
+
+  /** A body that sends the given bytes, and then the rest once the returned promise is completed. */
+  def pendingBody(bytes: ByteString): (Source[ByteString, _], Promise[ByteString]) = {
+    val rest = Promise[ByteString]()
+    (Source.single(bytes) ++ Source.future(rest.future), rest)
+  }
+
+  /** Hold 80 bytes of the budget with a body that is being read, until the returned promise is completed. */
+  def holdBytes(): (Future[Either[Result, String]], Promise[ByteString]) = {
+    val (body, rest) = pendingBody(ByteString("a" * 80))
+    val held         = parse.tolerantText(request(81)).run(body)
+    budget.reservedBytes must be_==(80).eventually
+    (held, rest)
+  }
+
+  /** A json array of 31 bytes, which arrives in a chunk of 25 bytes and a chunk of 6 bytes. */
+  val jsonArray = Source(ByteString("[" + ("1," * 14) + "2]").grouped(25).toList)
+
+  def runJava[A](parser: play.mvc.BodyParser[A], body: Source[ByteString, _]): Future[F.Either[play.mvc.Result, A]] =
+    parser(new play.mvc.Http.RequestBuilder().method("POST").path("/").build()).run(body.asJava, mat).toScala
+
+  "BodyBufferBudget" should {
+    "be read from the configuration" in {
+      budget.enabled must beTrue
+      budget.capacity must_== 100
+      budget.timeout must_== 1.second
+    }
+
+    "release the bytes of a body once it has been parsed" in {
+      val body   = ByteString("a" * 80)
+      val result = Await.result(parse.tolerantText(request(80)).run(Source.single(body)), 1.second)
+      result must beRight("a" * 80)
+      budget.reservedBytes must be_==(0).eventually
+    }
+
+    "reserve the bytes of a body as its chunks arrive" in {
+      val (body, rest) = pendingBody(ByteString("c" * 10))
+      val result       = parse.tolerantText(60).apply(FakeRequest("POST", "/")).run(body)
+      budget.reservedBytes must be_==(10).eventually
+
+      rest.success(ByteString("d" * 20))
+      Await.result(result, 1.second) must beRight("c" * 10 + "d" * 20)
+      budget.reservedBytes must be_==(0).eventually
+    }
+
+    "hold the bytes of a body until its parser has completed" in {
+      val parsed = Promise[Either[Result, ByteString]]()
+      val bytes  = Accumulator(Sink.fold[ByteString, ByteString](ByteString.empty)(_ ++ _))
+      val parser = bytes.mapFuture(_ => parsed.future)(system.dispatcher)
+      val result = BodyBufferBudget.reserve(request(30), 100)(parser).run(Source.single(ByteString("e" * 30)))
+      budget.reservedBytes must be_==(30).eventually
+      result.isCompleted must beFalse
+
+      parsed.success(Right(ByteString("parsed")))
+      Await.result(result, 1.second) must beRight(ByteString("parsed"))
+      budget.reservedBytes must be_==(0).eventually
+    }
+
+    "not read bodies while the budget is exhausted" in {
+      val (first, rest) = pendingBody(ByteString("a" * 60))
+      val firstResult   = parse.tolerantText(request(80)).run(first)
+      budget.reservedBytes must be_==(60).eventually
+
+      val second = parse.tolerantText(request(50)).run(Source.single(ByteString("b" * 50)))
+      budget.waitingBodies must be_==(1).eventually
+      second.isCompleted must beFalse
+
+      // The first body is being read, so its next chunk doesn't wait behind the second body
+      rest.success(ByteString("a" * 20))
+      Await.result(firstResult, 1.second) must beRight("a" * 80)
+      Await.result(second, 1.second) must beRight("b" * 50)
+      budget.reservedBytes must be_==(0).eventually
+      budget.waitingBodies must_== 0
+    }
+
+    "reject bodies that wait longer than the timeout with a 503" in {
+      val (held, rest) = holdBytes()
+      val rejected     = parse.tolerantText(request(50)).run(Source.single(ByteString("b" * 50)))
+      Await.result(rejected, 5.seconds) must beLeft.like {
+        case r =>
+          (r.header.status must_== 503).and(r.header.headers.get("Retry-After") must beSome("1"))
+      }
+      budget.waitingBodies must_== 0
+
+      rest.success(ByteString("a"))
+      Await.result(held, 1.second) must beRight("a" * 81)
+      budget.reservedBytes must be_==(0).eventually
+    }
+
+    "reject bodies that can't fit in the budget with a 413" in {
+      val declared = parse.tolerantText(request(150)).run(Source.single(ByteString("f" * 150)))
+      Await.result(declared, 1.second).left.map(_.header.status) must beLeft(413)
+
+      val streamed =
+        parse.tolerantText(1000).apply(FakeRequest("POST", "/")).run(Source(List.fill(3)(ByteString("f" * 50))))
+      Await.result(streamed, 1.second).left.map(_.header.status) must beLeft(413)
+      budget.reservedBytes must be_==(0).eventually
+    }
+
+    "release the bytes of a body that fails" in {
+      val result = parse.tolerantText(request(80)).run(Source.failed(new RuntimeException("boom")))
+      Await.result(result, 1.second) must throwA[RuntimeException]
+      budget.reservedBytes must be_==(0).eventually
+    }
+
+    "reserve the bytes of json bodies" in {
+      val (held, rest) = holdBytes()
+      val result       = parse.tolerantJson(100).apply(FakeRequest("POST", "/")).run(jsonArray)
+      budget.waitingBodies must be_==(1).eventually
+
+      rest.success(ByteString("a"))
+      Await.result(held, 1.second) must beRight("a" * 81)
+      Await.result(result, 1.second).map(_.as[Seq[Int]]) must beRight(Seq.fill(14)(1) :+ 2)
+      budget.reservedBytes must be_==(0).eventually
+    }
+
+    "reserve the chunks of streamed json arrays while they are parsed" in {
+      val (held, rest) = holdBytes()
+      val result       = parse.tolerantJsonArrayElements(1000).apply(FakeRequest("POST", "/")).run(jsonArray)
+      val elements = result.flatMap {
+        case Right(source) => source.runWith(Sink.seq)
+        case Left(r)       => Future.failed(new RuntimeException(s"Unexpected ${r.header.status}"))
+      }(system.dispatcher)
+      budget.waitingBodies must be_==(1).eventually
+      elements.isCompleted must beFalse
+
+      rest.success(ByteString("a"))
+      Await.result(held, 1.second) must beRight("a" * 81)
+      Await.result(elements, 1.second) must_== Seq.fill(14)(JsNumber(1)) :+ JsNumber(2)
+      budget.reservedBytes must be_==(0).eventually
+    }
+
+    "reserve the bytes of bodies of the Java body parsers" in {
+      val (held, rest) = holdBytes()
+      val textBody     = Source(List.fill(2)(ByteString("g" * 25)))
+      val text         = runJava(new play.mvc.BodyParser.TolerantText(100, javaErrorHandler), textBody)
+      val json         = runJava(new play.mvc.BodyParser.TolerantJson(100, javaErrorHandler), jsonArray)
+      budget.waitingBodies must be_==(2).eventually
+
+      rest.success(ByteString("a"))
+      Await.result(held, 1.second) must beRight("a" * 81)
+      Await.result(text, 1.second).right.asScala must beSome("g" * 50)
+      Await.result(json, 1.second).right.asScala.map(_.size) must beSome(15)
+      budget.reservedBytes must be_==(0).eventually
+    }
+
+    "reserve the chunks of Java streamed json arrays while they are parsed" in {
+      val (held, rest) = holdBytes()
+      val result       = runJava(new play.mvc.BodyParser.TolerantJsonArrayElements(1000, javaErrorHandler), jsonArray)
+      val elements = result.flatMap { either =>
+        either.right.asScala.fold(Future.failed[Seq[JsonNode]](new RuntimeException("Unexpected result"))) { source =>
+          source.asScala.runWith(Sink.seq)
+        }
+      }(system.dispatcher)
+      budget.waitingBodies must be_==(1).eventually
+      elements.isCompleted must beFalse
+
+      rest.success(ByteString("a"))
+      Await.result(held, 1.second) must beRight("a" * 81)
+      Await.result(elements, 1.second).map(_.asInt) must_== Seq.fill(14)(1) :+ 2
+      budget.reservedBytes must be_==(0).eventually
+    }
+
+    "reject Java bodies that wait longer than the timeout with a 503" in {
+      val (held, rest) = holdBytes()
+      val result       = runJava(new play.mvc.BodyParser.TolerantJson(100, javaErrorHandler), jsonArray)
+      Await.result(result, 5.seconds).left.asScala.map(_.status) must beSome(503)
+
+      rest.success(ByteString("a"))
+      Await.result(held, 1.second) must beRight("a" * 81)
+      budget.reservedBytes must be_==(0).eventually
+    }
+  }
+}
@@ -9,6 +9,12 @@ import akka.stream.scaladsl._
 import akka.actor.ActorSystem
 import akka.util.ByteString
 import org.specs2.mutable.Specification
+import play.api.http.DefaultHttpErrorHandler
+import play.api.http.Status
+import play.api.libs.streams.Accumulator
+import play.api.libs.Files.SingletonTemporaryFileCreator
+import play.api.mvc.MultipartFormData.FilePart
+import play.core.parsers.Multipart
 import play.core.test.FakeHeaders
 import play.core.test.FakeRequest
 
@@ -58,5 +64,112 @@ class MultipartBodyParserSpec extends Specification {
       val response = playBodyParsers.multipartFormData.apply(request).run(body)
       Await.result(response, Duration.Inf) must throwA[IOOperationIncompleteException]
     }
+
+    "find boundaries that are split across chunks" in {
+      val boundary = "-----------------------------14568445977970839651285587160"
+      // content that contains the start of the boundary, to make sure partial matches are skipped
+      val content = ByteString(("abc\r\n--" + boundary.take(20) + "\r\n-") * 500)
+      val body = ByteString(
+        s"--$boundary\r\n" +
+          "Content-Disposition: form-data; name=\"text\"\r\n" +
+          "\r\n" +
+          "some value\r\n" +
+          s"--$boundary\r\n" +
+          "Content-Disposition: form-data; name=\"file\"; filename=\"file.bin\"\r\n" +
+          "Content-Type: application/octet-stream\r\n" +
+          "\r\n"
+      ) ++ content ++ ByteString(s"\r\n--$boundary--\r\n")
+
+      val filePartHandler: Multipart.FilePartHandler[ByteString] = fileInfo =>
+        Accumulator(Sink.fold[ByteString, ByteString](ByteString.empty)(_ ++ _)).map { bytes =>
+          FilePart(fileInfo.partName, fileInfo.fileName, fileInfo.contentType, bytes)
+        }
+      val parser = Multipart.multipartParser(1024, false, filePartHandler, null)
+      val request = FakeRequest(
+        method = "POST",
+        uri = "/x",
+        headers = FakeHeaders(Seq("Content-Type" -> s"multipart/form-data; boundary=$boundary")),
+        body = ()
+      )
+
+      def parse(chunks: List[ByteString]) =
+        Await.result(parser(request).run(Source(chunks)), Duration.Inf) must beRight.like {
+          case form =>
+            (form.dataParts must_== Map("text" -> Seq("some value"))).and(form.files.map(_.ref) must_== Seq(content))
+        }
+
+      // chunks made of several segments, as they are when the parser concatenates buffered input
+      val ropes = body.grouped(7).grouped(3).map(_.foldLeft(ByteString.empty)(_ ++ _)).toList
+
+      parse(body.grouped(1).toList)
+      parse(body.grouped(61).toList)
+      parse(ropes)
+    }
+
+    "parse data parts and bad parts that span many chunks" in {
+      val boundary = "-----------------------------14568445977970839651285587160"
+      // values that contain the start of the boundary, to make sure partial matches at the end of a chunk are kept
+      val value = ("abc\r\n--" + boundary.take(20) + "\r\n-") * 200
+      val body = ByteString(
+        s"--$boundary\r\n" +
+          "Content-Type: text/plain\r\n" +
+          "\r\n" +
+          value +
+          s"\r\n--$boundary\r\n" +
+          "Content-Disposition: form-data; name=\"text\"\r\n" +
+          "\r\n" +
+          value +
+          s"\r\n--$boundary--\r\n"
+      )
+
+      val parser = Multipart.multipartParser(
+        value.length + 100,
+        false,
+        Multipart.handleFilePartAsTemporaryFile(SingletonTemporaryFileCreator),
+        DefaultHttpErrorHandler
+      )
+      val request = FakeRequest(
+        method = "POST",
+        uri = "/x",
+        headers = FakeHeaders(Seq("Content-Type" -> s"multipart/form-data; boundary=$boundary")),
+        body = ()
+      )
+
+      def parse(chunks: List[ByteString]) =
+        Await.result(parser(request).run(Source(chunks)), Duration.Inf) must beRight.like {
+          case form =>
+            (form.dataParts must_== Map("text" -> Seq(value))).and(form.badParts must haveSize(1))
+        }
+
+      parse(body.grouped(1).toList)
+      parse(body.grouped(61).toList)
+    }
+
+    "reject data parts that span many chunks once they exceed the memory buffer" in {
+      val boundary = "-----------------------------14568445977970839651285587160"
+      val body = ByteString(
+        s"--$boundary\r\n" +
+          "Content-Disposition: form-data; name=\"text\"\r\n" +
+          "\r\n" +
+          ("a" * 10000) +
+          s"\r\n--$boundary--\r\n"
+      )
+
+      val parser = Multipart.multipartParser(
+        1024,
+        false,
+        Multipart.handleFilePartAsTemporaryFile(SingletonTemporaryFileCreator),
+        DefaultHttpErrorHandler
+      )
+      val request = FakeRequest(
+        method = "POST",
+        uri = "/x",
+        headers = FakeHeaders(Seq("Content-Type" -> s"multipart/form-data; boundary=$boundary")),
+        body = ()
+      )
+
+      val result = Await.result(parser(request).run(Source(body.grouped(61).toList)), Duration.Inf)
+      result.left.toOption.map(_.header.status) must beSome(Status.REQUEST_ENTITY_TOO_LARGE)
+    }
   }
 }
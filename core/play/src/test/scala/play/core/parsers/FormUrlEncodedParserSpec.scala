@@ -4,6 +4,7 @@
 
 package play.core.parsers
 
+import akka.util.ByteString
 import org.specs2.mutable.Specification
 
 class FormUrlEncodedParserSpec extends Specification {
@@ -40,6 +41,35 @@ class FormUrlEncodedParserSpec extends Specification {
     "decode when there are no fields" in {
       FormUrlEncodedParser.parse("") must beEmpty
     }
+    "decode percent-escapes and plus signs" in {
+      FormUrlEncodedParser.parse("a+b=c%20d%26e&f=%C3%A9t%C3%A9+%E2%82%AC") must_== Map(
+        "a b" -> List("c d&e"),
+        "f"   -> List("été €")
+      )
+    }
+    "decode escapes with the given encoding and the rest as UTF-8" in {
+      FormUrlEncodedParser.parse(ByteString("f=%E9t%E9+été", "UTF-8"), "ISO-8859-1") must_== Map(
+        "f" -> List("été été")
+      )
+    }
+    "decode empty fields in the middle of forms and values up to the next equals sign" in {
+      FormUrlEncodedParser.parse(ByteString("foo=bar&&b%20z=1=2;foo=%2B+&x&;"), "utf-8") must_== Map(
+        "foo" -> List("bar", "+ "),
+        ""    -> List(""),
+        "b z" -> List("1"),
+        "x"   -> List("")
+      )
+    }
+    "fail on invalid escapes" in {
+      FormUrlEncodedParser.parse("foo=%zz") must throwAn[IllegalArgumentException]
+      FormUrlEncodedParser.parse("foo=bar%2") must throwAn[IllegalArgumentException]
+    }
+    "decode forms to Java maps of arrays, retaining field order" in {
+      val result = FormUrlEncodedParser.parseAsJavaArrayValues(ByteString("b=1&a=2&b=3"), "utf-8")
+      result.keySet.toArray.toList must_== List("b", "a")
+      result.get("b").toList must_== List("1", "3")
+      result.get("a").toList must_== List("2")
+    }
     "ensure field order is retained, when requested" in {
       val url_encoded                      = "Zero=zero&One=one&Two=two&Three=three&Four=four&Five=five&Six=six&Seven=seven"
       val result: Map[String, Seq[String]] = FormUrlEncodedParser.parse(url_encoded)
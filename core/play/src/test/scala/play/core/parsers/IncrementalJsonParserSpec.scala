@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.parsers
+
+import akka.actor.ActorSystem
+import akka.stream.scaladsl.Source
+import akka.stream.Materializer
+import akka.util.ByteString
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParseException
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.specs2.mutable.Specification
+import org.specs2.specification.AfterAll
+import play.api.libs.json._
+
+import scala.concurrent.duration._
+import scala.concurrent.Await
+
+class IncrementalJsonParserSpec extends Specification with AfterAll {
+  implicit val system = ActorSystem("incremental-json-parser-spec")
+  implicit val mat    = Materializer.matFromSystem
+
+  override def afterAll(): Unit = {
+    system.terminate()
+  }
+
+  def parse[J](parser: IncrementalJsonParser[J], json: ByteString, chunkSize: Int = 1): Seq[J] = {
+    json.grouped(chunkSize).flatMap(parser.feed).toList ++ parser.end()
+  }
+
+  def parse(json: String): JsValue = parse(IncrementalJsonParser.jsValue(), ByteString(json)).head
+
+  def arrayElementsParser() =
+    new IncrementalJsonParser(IncrementalJsonParser.JsValueBuilder, new JsonFactory(), arrayElements = true)
+
+  "IncrementalJsonParser" should {
+    "parse JSON fed one byte at a time" in {
+      val json = """{"a":[1,2.5,"x",true,false,null],"b":{"c":{}},"d":[],"e":"bär"}"""
+      parse(json) must_== Json.parse(json)
+    }
+    "parse JSON fed in chunks" in {
+      val json = ByteString("""{"a":[1,2,3],"b":"foo"}""")
+      parse(IncrementalJsonParser.jsValue(), json, chunkSize = 5).head must_== Json.parse(json.toArray)
+    }
+    "parse top-level scalars" in {
+      parse("123") must_== JsNumber(123)
+      parse("\"foo\"") must_== JsString("foo")
+    }
+    "parse JSON encoded in UTF-16 and UTF-32" in {
+      val json = """{"foo":"bär"}"""
+      parse(IncrementalJsonParser.jsValue(), ByteString(json.getBytes("utf-16"))).head must_== Json.parse(json)
+      parse(IncrementalJsonParser.jsValue(), ByteString(json.getBytes("utf-32"))).head must_== Json.parse(json)
+    }
+    "parse very deep JSON" in {
+      val depth = 50000
+      var json  = (parse(s"""{"foo": ${"[" * depth} "asdf" ${"]" * depth}}""") \ "foo").as[JsValue]
+      while (json.isInstanceOf[JsArray]) {
+        json = json.as[JsArray].value.head
+      }
+      json must_== JsString("asdf")
+    }
+    "ignore anything after the top-level value, like Json.parse" in {
+      parse("""{"foo":1} {"bar":2}""") must_== Json.obj("foo" -> 1)
+    }
+    "reject invalid JSON" in {
+      parse("""{"foo:}""") must throwA[JsonParseException]
+    }
+    "reject incomplete JSON" in {
+      parse("""{"foo":[1,2""") must throwA[JsonParseException]
+    }
+    "reject empty input" in {
+      parse("") must throwA[JsonParseException]
+    }
+    "reject numbers out of the limits of Json.parse" in {
+      parse(s"""{"foo":${"1" * 311}}""") must throwA[IllegalArgumentException]("Number is larger than supported")
+      parse("""{"foo":1e1000000000}""") must throwA[IllegalArgumentException]("Number scale .* is out of limits")
+      parse("""{"foo":1e-6179}""") must throwA[IllegalArgumentException]("Number scale .* is out of limits")
+      parse("""{"foo":1e6178}""") must_== Json.obj("foo" -> BigDecimal("1e6178"))
+    }
+    "produce the values as soon as they are complete" in {
+      val parser = IncrementalJsonParser.jsValue()
+      parser.feed(ByteString("""{"foo":""")) must beEmpty
+      parser.feed(ByteString("1}")) must_== Seq(Json.obj("foo" -> 1))
+      parser.end() must beEmpty
+    }
+    "build Jackson trees" in {
+      val mapper = new ObjectMapper()
+      val json   = """{"a":[1,12345678901,2.5,"x"],"b":null}"""
+      parse(IncrementalJsonParser.jsonNode(mapper), ByteString(json)).head must_== mapper.readTree(json)
+    }
+    "produce the elements of a top-level array" in {
+      val parser = arrayElementsParser()
+      parser.feed(ByteString("""[{"a":1},""")) must_== Seq(Json.obj("a" -> 1))
+      parser.feed(ByteString("""[2,3],"x"""")) must_== Seq(Json.arr(2, 3), JsString("x"))
+      parser.feed(ByteString("]")) must beEmpty
+      parser.end() must beEmpty
+    }
+    "parse a value fed in chunks with a sink" in {
+      def parseWithSink(json: String) = {
+        val chunks = Source(ByteString(json).grouped(3).toList)
+        Await.result(chunks.runWith(IncrementalJsonParser.jsValueSink), 1.second)
+      }
+      // The last chunk completes these values, before the end of the input
+      parseWithSink("""{"foo":[1,2,3]}""") must_== Json.obj("foo" -> Json.arr(1, 2, 3))
+      parseWithSink("[1,2,3,4]") must_== Json.arr(1, 2, 3, 4)
+      // Only the end of the input completes a top-level number
+      parseWithSink("12345") must_== JsNumber(12345)
+      parseWithSink("""{"foo":[1,2""") must throwA[JsonParseException]
+      parseWithSink("") must throwA[JsonParseException]
+    }
+    "reject a top-level value that isn't an array when producing its elements" in {
+      val parser = arrayElementsParser()
+      parser.feed(ByteString("""{"a":1}""")) must throwA[JsonParseException]
+    }
+  }
+}
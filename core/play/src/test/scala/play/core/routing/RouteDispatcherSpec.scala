@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.routing
+
+import org.specs2.mutable.Specification
+import play.api.mvc._
+import play.api.routing.Router
+import play.core.test.FakeRequest
+
+class RouteDispatcherSpec extends Specification {
+  case class TestHandler(name: String) extends Handler
+
+  /**
+   * Build a dispatcher the same way the routes compiler does, one handler per rule.
+   */
+  def dispatcher(rules: (Route.ParamsExtractor, String)*): RouteDispatcher = {
+    val extractors = rules.toIndexedSeq
+    RouteDispatcher(extractors.map(rule => RouteDispatcher.route(rule._1))) { (index, request) =>
+      val (extractor, name) = extractors(index)
+      request match {
+        case extractor(_) => Some(TestHandler(name))
+        case _            => None
+      }
+    }
+  }
+
+  def route(method: String, parts: PathPart*) = Route(method, PathPattern(parts))
+
+  def handlerFor(dispatcher: RouteDispatcher, method: String, path: String): Option[String] =
+    dispatcher.lift(FakeRequest(method, path)).collect { case TestHandler(name) => name }
+
+  "RouteDispatcher" should {
+    "dispatch static routes" in {
+      val d = dispatcher(
+        route("GET", StaticPart("/foo")) -> "foo",
+        route("GET", StaticPart("/foo/bar")) -> "foobar",
+        route("GET", StaticPart("/")) -> "root"
+      )
+      handlerFor(d, "GET", "/foo") must beSome("foo")
+      handlerFor(d, "GET", "/foo/bar") must beSome("foobar")
+      handlerFor(d, "GET", "/") must beSome("root")
+      handlerFor(d, "GET", "/foo/baz") must beNone
+      handlerFor(d, "GET", "") must beNone
+    }
+
+    "dispatch on the request method" in {
+      val d = dispatcher(
+        route("GET", StaticPart("/foo")) -> "get",
+        route("POST", StaticPart("/foo")) -> "post"
+      )
+      handlerFor(d, "GET", "/foo") must beSome("get")
+      handlerFor(d, "POST", "/foo") must beSome("post")
+      handlerFor(d, "PUT", "/foo") must beNone
+    }
+
+    "dispatch dynamic routes" in {
+      val d = dispatcher(
+        route("GET", StaticPart("/items/"), DynamicPart("id", "[0-9]+", true)) -> "item",
+        route("GET", StaticPart("/items/"), DynamicPart("id", "[0-9]+", true), StaticPart("/edit")) -> "edit",
+        route("GET", DynamicPart("path", ".+", false)) -> "catchall"
+      )
+      handlerFor(d, "GET", "/items/1") must beSome("item")
+      handlerFor(d, "GET", "/items/1/edit") must beSome("edit")
+      handlerFor(d, "GET", "/items/foo") must beSome("catchall")
+    }
+
+    "preserve the declaration order of the rules" in {
+      val d = dispatcher(
+        route("GET", StaticPart("/a/"), DynamicPart("rest", ".*", false)) -> "first",
+        route("GET", StaticPart("/a/b")) -> "second"
+      )
+      handlerFor(d, "GET", "/a/b") must beSome("first")
+    }
+
+    "try rules that can't be indexed for every request" in {
+      val included = new Include(Router.from {
+        case r if r.path == "/included" => TestHandler("included")
+      })
+      val foo = route("GET", StaticPart("/foo"))
+      val d = RouteDispatcher(Seq(RouteDispatcher.route(foo), RouteDispatcher.include(included))) {
+        case (0, foo(_))  => Some(TestHandler("foo"))
+        case (1, request) => included.unapply(request)
+        case _            => None
+      }
+      handlerFor(d, "GET", "/foo") must beSome("foo")
+      handlerFor(d, "GET", "/included") must beSome("included")
+      handlerFor(d, "DELETE", "/included") must beSome("included")
+      handlerFor(d, "GET", "/bar") must beNone
+    }
+
+    "be defined only for requests it can dispatch" in {
+      val d = dispatcher(route("GET", StaticPart("/foo")) -> "foo")
+      d.isDefinedAt(FakeRequest("GET", "/foo")) must beTrue
+      d.isDefinedAt(FakeRequest("GET", "/bar")) must beFalse
+      d(FakeRequest("GET", "/bar")) must throwA[MatchError]
+    }
+  }
+}
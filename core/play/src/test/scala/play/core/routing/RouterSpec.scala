@@ -74,6 +74,48 @@ class RouterSpec extends Specification {
       val pathString  = "/path/to/this/is/some%20file/with/id"
       pathPattern(pathString).get("foo") must beRight("this/is/some%20file/with/id")
     }
+
+    "match paths without extracting the parameters" in {
+      val pathPattern = PathPattern(
+        Seq(StaticPart("/"), DynamicPart("a", "[^/]+", true), StaticPart("/"), DynamicPart("b", "[^/]+", false))
+      )
+      val params = pathPattern.matchPath("/x%20y/z%20w").get
+      params.get("a") must beSome(Right("x y"))
+      params.get("b") must beSome(Right("z%20w"))
+      params.get("c") must beNone
+      params.toMap must_== Map("a" -> Right("x y"), "b" -> Right("z%20w"))
+      pathPattern.matchPath("/x") must beNone
+    }
+
+    "match static paths" in {
+      val pathPattern = PathPattern(Seq(StaticPart("/path/"), StaticPart("to")))
+      pathPattern.matchPath("/path/to").map(_.toMap) must beSome(Map.empty[String, Either[Throwable, String]])
+      pathPattern.matchPath("/path/to/") must beNone
+    }
+
+    "decode path parameters the same way as java.net.URI" in {
+      val params = Seq(
+        "plain",
+        "some%20file",
+        "bar:baz",
+        "%E2%84%9Bat",
+        "%C3a%A9",
+        "a%2Fb",
+        "café",
+        "a b",
+        "a?b",
+        "a#b",
+        "/leading",
+        "invalid%2",
+        "invalid%zz",
+        ""
+      )
+      foreach(params) { param =>
+        val expected = scala.util.Try(new java.net.URI("/" + param).getPath.drop(1)).toEither.left.map(_.getMessage)
+        val actual   = scala.util.Try(PathPattern.decodePathParam(param)).toEither.left.map(_.getMessage)
+        actual must_== expected
+      }
+    }
   }
 
   "SimpleRouter" should {
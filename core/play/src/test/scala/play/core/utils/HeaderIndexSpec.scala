@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.utils
+
+import org.specs2.mutable.Specification
+
+class HeaderIndexSpec extends Specification {
+  val index = HeaderIndex(
+    Seq(
+      "Host"         -> "www.playframework.com",
+      "Accept"       -> "text/html",
+      "X-Forwarded"  -> "a",
+      "Content-Type" -> "text/plain",
+      "x-forwarded"  -> "b",
+      "X-FORWARDED"  -> "c"
+    )
+  )
+
+  "HeaderIndex" should {
+    "get headers ignoring case" in {
+      index.get("host") must beSome("www.playframework.com")
+      index.get("CONTENT-TYPE") must beSome("text/plain")
+      index.contains("accept") must beTrue
+    }
+
+    "get the first value of a repeated header" in {
+      index.get("x-forwarded") must beSome("a")
+    }
+
+    "get all the values of a repeated header in order" in {
+      index.getAll("X-Forwarded") must_== Seq("a", "b", "c")
+      index.getAll("Accept") must_== Seq("text/html")
+    }
+
+    "not find missing headers" in {
+      index.get("Cookie") must beNone
+      index.getAll("Cookie") must beEmpty
+      index.contains("Hos") must beFalse
+    }
+
+    "handle no headers" in {
+      val empty = HeaderIndex(Nil)
+      empty.size must_== 0
+      empty.get("Host") must beNone
+    }
+
+    "handle many headers" in {
+      val many = HeaderIndex((0 until 100).map(i => s"Header-$i" -> i.toString))
+      foreach(0 until 100) { i =>
+        many.get(s"header-$i") must beSome(i.toString)
+      }
+    }
+  }
+}
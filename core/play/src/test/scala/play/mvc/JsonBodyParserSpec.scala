@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.mvc
+
+import java.util.concurrent.TimeUnit
+
+import akka.actor.ActorSystem
+import akka.stream.Materializer
+import akka.stream.javadsl.Source
+import akka.util.ByteString
+import com.fasterxml.jackson.databind.JsonNode
+import com.typesafe.config.ConfigFactory
+import org.specs2.mutable.Specification
+import org.specs2.specification.AfterAll
+import play.api.Environment
+import play.api.Mode
+import play.http.DefaultHttpErrorHandler
+import play.libs.F
+import play.libs.Json
+
+import scala.collection.JavaConverters._
+import scala.compat.java8.OptionConverters._
+
+class JsonBodyParserSpec extends Specification with AfterAll {
+  "Java Json body parsers" title
+
+  implicit val system       = ActorSystem("java-json-body-parser-spec")
+  implicit val materializer = Materializer.matFromSystem
+
+  def afterAll(): Unit = {
+    materializer.shutdown()
+    system.terminate()
+  }
+
+  val errorHandler =
+    new DefaultHttpErrorHandler(ConfigFactory.empty(), Environment(null, null, Mode.Prod).asJava, null, null)
+
+  def request = new Http.RequestBuilder().method("POST").path("/").build()
+
+  /** Parse a body fed in chunks of three bytes, so that it isn't strict. */
+  def parseInChunks(parser: BodyParser[JsonNode], body: String): F.Either[Result, JsonNode] = {
+    parser
+      .apply(request)
+      .run(Source.from(ByteString(body).grouped(3).toList.asJava), materializer)
+      .toCompletableFuture
+      .get(5, TimeUnit.SECONDS)
+  }
+
+  /** A parser that wraps the body it parses, as applications customizing the json parser do. */
+  class WrappingJson(parseIncrementally: Boolean = false)
+      extends BodyParser.TolerantJson(1024, errorHandler, parseIncrementally) {
+    override protected def parse(request: Http.RequestHeader, bytes: ByteString): JsonNode =
+      Json.newObject().set[JsonNode]("wrapped", super.parse(request, bytes))
+  }
+
+  "TolerantJson" should {
+    "parse bodies that arrive in several chunks" in {
+      val result = parseInChunks(new BodyParser.TolerantJson(1024, errorHandler), """{"foo":[1,2,3]}""")
+      result.right.asScala must beSome(Json.parse("""{"foo":[1,2,3]}"""))
+    }
+
+    "parse bodies that arrive in several chunks incrementally if created to" in {
+      val parser = new BodyParser.TolerantJson(1024, errorHandler, true)
+      // The last chunk completes the value, before the end of the body
+      parseInChunks(parser, """{"foo":[1,2,3]}""").right.asScala must beSome(Json.parse("""{"foo":[1,2,3]}"""))
+      parseInChunks(parser, """[1,2,3,4]""").right.asScala must beSome(Json.parse("""[1,2,3,4]"""))
+      parseInChunks(parser, "12345").right.asScala must beSome(Json.parse("12345"))
+    }
+
+    "reject invalid bodies that arrive in several chunks incrementally" in {
+      val parser = new BodyParser.TolerantJson(1024, errorHandler, true)
+      parseInChunks(parser, """{"foo":[1,2""").left.asScala.map(_.status) must beSome(Http.Status.BAD_REQUEST)
+      parseInChunks(parser, "").left.asScala.map(_.status) must beSome(Http.Status.BAD_REQUEST)
+    }
+
+    "parse the bodies of subclasses with their parse method" in {
+      val result = parseInChunks(new WrappingJson, """{"foo":[1,2,3]}""")
+      result.right.asScala must beSome(Json.parse("""{"wrapped":{"foo":[1,2,3]}}"""))
+    }
+
+    "reject invalid bodies of subclasses" in {
+      val result = parseInChunks(new WrappingJson, """{"foo":[1,2""")
+      result.left.asScala.map(_.status) must beSome(Http.Status.BAD_REQUEST)
+    }
+
+    "parse the bodies of subclasses incrementally if they opt in" in {
+      val result = parseInChunks(new WrappingJson(parseIncrementally = true), """{"foo":[1,2,3]}""")
+      result.right.asScala must beSome(Json.parse("""{"foo":[1,2,3]}"""))
+    }
+  }
+}
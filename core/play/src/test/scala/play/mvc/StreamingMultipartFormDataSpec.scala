@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.mvc
+
+import java.util.Optional
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.actor.ActorSystem
+import akka.stream.Materializer
+import akka.stream.javadsl.Sink
+import akka.stream.javadsl.Source
+import akka.util.ByteString
+import com.typesafe.config.ConfigFactory
+import org.specs2.mutable.Specification
+import org.specs2.specification.AfterAll
+import play.api.Environment
+import play.api.Mode
+import play.api.http.HeaderNames
+import play.api.http.Status
+import play.core.parsers.Multipart
+import play.http.DefaultHttpErrorHandler
+import play.libs.F
+
+import scala.collection.JavaConverters._
+import scala.compat.java8.OptionConverters._
+
+class StreamingMultipartFormDataSpec extends Specification with AfterAll {
+  "Java StreamingMultipartFormData" title
+
+  implicit val system       = ActorSystem("java-streaming-multipart-form-data-spec")
+  implicit val materializer = Materializer.matFromSystem
+
+  def afterAll(): Unit = {
+    materializer.shutdown()
+    system.terminate()
+  }
+
+  val errorHandler =
+    new DefaultHttpErrorHandler(ConfigFactory.empty(), Environment(null, null, Mode.Prod).asJava, null, null)
+
+  /** A parser streaming each file to a string, recording the files whose sink was created. */
+  class StringParser(maxPartLength: Long)
+      extends BodyParser.StreamingMultipartFormData[String](
+        materializer,
+        102400,
+        1024 * 1024,
+        maxPartLength,
+        Optional.of("SHA-256"),
+        errorHandler
+      ) {
+    val sinks = new ConcurrentLinkedQueue[String]()
+
+    override def createSink(fileInfo: Multipart.FileInfo): Sink[ByteString, CompletionStage[String]] = {
+      sinks.add(fileInfo.fileName)
+      Sink.fold[String, ByteString]("", (acc, bytes) => acc + bytes.utf8String)
+    }
+  }
+
+  def filePart(name: String, content: String): String =
+    s"""--aabbccddee
+       |Content-Disposition: form-data; name="$name"; filename="$name.txt"
+       |Content-Type: text/plain
+       |
+       |$content
+       |""".stripMargin.replace("\n", "\r\n")
+
+  def parse(
+      parser: StringParser,
+      chunks: Seq[ByteString],
+      pulled: AtomicInteger = new AtomicInteger
+  ): F.Either[Result, Http.MultipartFormData[Multipart.StreamedFile[String]]] = {
+    val request = new Http.RequestBuilder()
+      .method("POST")
+      .path("/x")
+      .header(HeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=aabbccddee")
+      .build()
+    val body = Source.fromIterator[ByteString](() => {
+      chunks.iterator.map { chunk =>
+        pulled.incrementAndGet()
+        chunk
+      }.asJava
+    })
+    parser
+      .apply(request)
+      .run(body, materializer)
+      .toCompletableFuture
+      .get(5, TimeUnit.SECONDS)
+  }
+
+  "StreamingMultipartFormData" should {
+    "stream files to the sinks created for them" in {
+      val parser = new StringParser(maxPartLength = 100)
+      val body   = filePart("file1", "the first file") + filePart("file2", "the second file") + "--aabbccddee--"
+      // A chunk boundary in the middle of each file
+      val result = parse(parser, ByteString(body).grouped(50).toSeq)
+
+      result.left.asScala must beNone
+      val files = result.right.get.getFiles.asScala.map(file => file.getKey -> file.getRef.getResult).toMap
+      files must_== Map("file1" -> "the first file", "file2" -> "the second file")
+      val sha256 = java.security.MessageDigest.getInstance("SHA-256").digest("the first file".getBytes)
+      result.right.get.getFile("file1").getRef.digest must beSome(ByteString(sha256))
+      parser.sinks.asScala.toSeq must_== Seq("file1.txt", "file2.txt")
+    }
+
+    "stop reading the body and streaming files once a file is too long" in {
+      val parser = new StringParser(maxPartLength = 20)
+      val head = ByteString(
+        filePart("file1", "small") +
+          filePart("file2", "a file longer than the limit") +
+          filePart("file3", "small") +
+          "--aabbccddee\r\nContent-Disposition: form-data; name=\"text\"\r\n\r\n"
+      )
+      // Many chunks follow the file that is too long, so that reading them all would be noticed
+      val tail   = Seq.fill(1000)(ByteString("0123456789")) :+ ByteString("\r\n--aabbccddee--")
+      val pulled = new AtomicInteger
+      val result = parse(parser, head +: tail, pulled)
+
+      result.left.asScala.map(_.status) must beSome(Status.REQUEST_ENTITY_TOO_LARGE)
+      parser.sinks.asScala.toSeq must_== Seq("file1.txt", "file2.txt")
+      pulled.get must be_<(tail.size)
+    }
+  }
+}
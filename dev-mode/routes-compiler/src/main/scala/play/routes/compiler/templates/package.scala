@@ -38,6 +38,14 @@ package object templates {
    */
   def invokerIdentifier(route: Route, index: Int): String = baseIdentifier(route, index) + "_invoker"
 
+  /**
+   * Generate the route dispatcher entry for the given rule
+   */
+  def dispatchEntry(rule: Rule, ident: String, index: Int): String = rule match {
+    case route: Route     => s"RouteDispatcher.route(${routeIdentifier(route, index)})"
+    case include: Include => s"RouteDispatcher.include(prefixed_${ident}_$index)"
+  }
+
   /**
    * Generate a router object identifier
    */
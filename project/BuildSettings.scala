@@ -319,6 +319,48 @@ object BuildSettings {
         .exclude[ReversedMissingMethodProblem]("play.api.db.evolutions.EvolutionsDatasourceConfig.substitutionsEscape"),
       // Remove routeAndCall(...) methods that depended on StaticRoutesGenerator
       ProblemFilters.exclude[DirectMissingMethodProblem]("play.test.Helpers.routeAndCall"),
+      // Extract path parameters lazily from the matched path in generated routers, see the migration guide
+      ProblemFilters.exclude[MissingTypesProblem]("play.core.routing.RouteParams"),
+      ProblemFilters.exclude[MissingTypesProblem]("play.core.routing.RouteParams$"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.this"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.copy"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.copy$default$1"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.copy$default$2"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.canEqual"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.productArity"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.productElement"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.productElementName"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.productElementNames"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.productIterator"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.productPrefix"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.curried"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.core.routing.RouteParams.tupled"),
+      ProblemFilters.exclude[IncompatibleSignatureProblem]("play.core.routing.RouteParams.unapply"),
+      // Add bulk operations to AsyncCacheApi
+      ProblemFilters.exclude[ReversedMissingMethodProblem]("play.api.cache.AsyncCacheApi.getAll"),
+      ProblemFilters.exclude[ReversedMissingMethodProblem]("play.api.cache.AsyncCacheApi.setAll"),
+      ProblemFilters.exclude[ReversedMissingMethodProblem]("play.api.cache.AsyncCacheApi.setAll$default$2"),
+      ProblemFilters.exclude[ReversedMissingMethodProblem]("play.api.cache.AsyncCacheApi.removeAll"),
+      ProblemFilters.exclude[ReversedMissingMethodProblem]("play.api.cache.AsyncCacheApi.getOrElseUpdateAll"),
+      ProblemFilters
+        .exclude[ReversedMissingMethodProblem]("play.api.cache.AsyncCacheApi.getOrElseUpdateAll$default$2"),
+      // Parse json bodies incrementally
+      ProblemFilters.exclude[MissingTypesProblem]("play.mvc.BodyParser$TolerantJson"),
+      ProblemFilters.exclude[MissingTypesProblem]("play.mvc.BodyParser$Json"),
+      ProblemFilters.exclude[ReversedMissingMethodProblem]("play.api.mvc.PlayBodyParsers.tolerantJsonArrayElements"),
+      ProblemFilters.exclude[ReversedMissingMethodProblem]("play.api.mvc.PlayBodyParsers.jsonArrayElements"),
+      // Serve assets from files without copying them through the heap
+      ProblemFilters.exclude[DirectMissingMethodProblem]("controllers.AssetsConfiguration.apply"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("controllers.AssetsConfiguration.copy"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("controllers.AssetsConfiguration.this"),
+      ProblemFilters.exclude[IncompatibleSignatureProblem]("controllers.AssetsConfiguration.unapply"),
+      // Check CSRF tokens in bodies as they arrive
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.filters.csrf.CSRFConfig.apply"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.filters.csrf.CSRFConfig.copy"),
+      ProblemFilters.exclude[DirectMissingMethodProblem]("play.filters.csrf.CSRFConfig.this"),
+      ProblemFilters.exclude[IncompatibleSignatureProblem]("play.filters.csrf.CSRFConfig.unapply"),
+      // Resolve the providers of the actions of Java routes once
+      ProblemFilters.exclude[ReversedMissingMethodProblem]("play.core.j.JavaHandlerComponents.getActionProvider"),
     ),
     (Compile / unmanagedSourceDirectories) += {
       val suffix = CrossVersion.partialVersion(scalaVersion.value) match {
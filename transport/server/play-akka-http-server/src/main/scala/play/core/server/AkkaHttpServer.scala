@@ -44,6 +44,8 @@ import play.core.ApplicationProvider
 import play.core.server.Server.ServerStoppedReason
 import play.core.server.akkahttp.AkkaModelConversion
 import play.core.server.akkahttp.HttpRequestDecoder
+import play.core.server.common.ActionInvoker
+import play.core.server.common.AdmissionController
 import play.core.server.common.ReloadCache
 import play.core.server.common.ServerDebugInfo
 import play.core.server.common.ServerResultUtils
@@ -105,7 +107,9 @@ class AkkaHttpServer(context: AkkaHttpServer.Context) extends Server {
   private val httpsWantClientAuth = serverConfig.get[Boolean]("https.wantClientAuth")
   private val illegalResponseHeaderValueProcessingMode =
     akkaServerConfig.get[String]("illegal-response-header-value-processing-mode")
-  private val wsBufferLimit = serverConfig.get[ConfigMemorySize]("websocket.frame.maxLength").toBytes.toInt
+  private val wsBufferLimit       = serverConfig.get[ConfigMemorySize]("websocket.frame.maxLength").toBytes.toInt
+  private val actionInvoker       = ActionInvoker.fromConfiguration(serverConfig)
+  private val admissionController = AdmissionController.fromConfiguration(serverConfig)
 
   private val http2Enabled: Boolean = akkaServerConfig.getOptional[Boolean]("http2.enabled").getOrElse(false)
 
@@ -398,7 +402,8 @@ class AkkaHttpServer(context: AkkaHttpServer.Context) extends Server {
       action: EssentialAction,
       errorHandler: HttpErrorHandler
   )(implicit ec: ExecutionContext, mat: Materializer): Future[HttpResponse] = {
-    val futureAcc: Future[Accumulator[ByteString, Result]] = Future(action(taggedRequestHeader))
+    val futureAcc: Future[Accumulator[ByteString, Result]] =
+      actionInvoker.invoke(admissionController(action, errorHandler), taggedRequestHeader)(ec)
 
     val source = if (request.header[Expect].contains(Expect.`100-continue`)) {
       // If we expect 100 continue, then we must not feed the source into the accumulator until the accumulator
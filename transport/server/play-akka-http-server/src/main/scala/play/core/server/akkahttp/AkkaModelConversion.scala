@@ -29,6 +29,7 @@ import play.api.mvc.request.RequestTarget
 import play.core.server.common.ForwardedHeaderHandler
 import play.core.server.common.PathAndQueryParser
 import play.core.server.common.ServerResultUtils
+import play.core.utils.HeaderIndex
 import play.mvc.Http.HeaderNames
 
 import scala.collection.immutable
@@ -348,13 +349,26 @@ final case class AkkaHeadersWrapper(
     h2
   }
 
-  override def hasHeader(headerName: String): Boolean =
-    headerName.toLowerCase(Locale.ROOT) match {
-      case CONTENT_LENGTH_LOWER_CASE    => knownContentLength.isDefined
-      case TRANSFER_ENCODING_LOWER_CASE => isChunked.isDefined
-      case CONTENT_TYPE_LOWER_CASE      => contentType.isDefined
-      case _                            => get(headerName).isDefined
+  /**
+   * An index of the raw Akka HTTP headers, which shares the Akka header names and values rather than copying them.
+   */
+  private lazy val rawHeaderIndex: HeaderIndex = {
+    val names  = new Array[String](hs.size)
+    val values = new Array[String](hs.size)
+    var i      = 0
+    hs.foreach { h =>
+      names(i) = h.name
+      values(i) = h.value
+      i += 1
     }
+    HeaderIndex(names, values)
+  }
+
+  override def hasHeader(headerName: String): Boolean =
+    if (headerName.equalsIgnoreCase(CONTENT_LENGTH_LOWER_CASE)) knownContentLength.isDefined
+    else if (headerName.equalsIgnoreCase(TRANSFER_ENCODING_LOWER_CASE)) isChunked.isDefined
+    else if (headerName.equalsIgnoreCase(CONTENT_TYPE_LOWER_CASE)) contentType.isDefined
+    else rawHeaderIndex.contains(headerName)
 
   override def hasBody: Boolean = request.entity match {
     case HttpEntity.Strict(_, data) => data.length > 0
@@ -365,20 +379,16 @@ final case class AkkaHeadersWrapper(
     get(key).getOrElse(throw new RuntimeException(s"Header with name $key not found!"))
 
   override def get(key: String): Option[String] =
-    key.toLowerCase(Locale.ROOT) match {
-      case CONTENT_LENGTH_LOWER_CASE    => knownContentLength
-      case TRANSFER_ENCODING_LOWER_CASE => isChunked
-      case CONTENT_TYPE_LOWER_CASE      => contentType
-      case lowerCased                   => hs.collectFirst { case h if h.is(lowerCased) => h.value }
-    }
+    if (key.equalsIgnoreCase(CONTENT_LENGTH_LOWER_CASE)) knownContentLength
+    else if (key.equalsIgnoreCase(TRANSFER_ENCODING_LOWER_CASE)) isChunked
+    else if (key.equalsIgnoreCase(CONTENT_TYPE_LOWER_CASE)) contentType
+    else rawHeaderIndex.get(key)
 
   override def getAll(key: String): immutable.Seq[String] =
-    key.toLowerCase(Locale.ROOT) match {
-      case CONTENT_LENGTH_LOWER_CASE    => knownContentLength.toList
-      case TRANSFER_ENCODING_LOWER_CASE => isChunked.toList
-      case CONTENT_TYPE_LOWER_CASE      => contentType.toList
-      case lowerCased                   => hs.collect { case h if h.is(lowerCased) => h.value }
-    }
+    if (key.equalsIgnoreCase(CONTENT_LENGTH_LOWER_CASE)) knownContentLength.toList
+    else if (key.equalsIgnoreCase(TRANSFER_ENCODING_LOWER_CASE)) isChunked.toList
+    else if (key.equalsIgnoreCase(CONTENT_TYPE_LOWER_CASE)) contentType.toList
+    else rawHeaderIndex.getAll(key)
 
   override lazy val keys: immutable.Set[String] = {
     hs.map(_.name).toSet ++
@@ -32,6 +32,21 @@ class AkkaHeadersWrapperTest extends Specification {
       actualHeaderValue mustEqual "text/plain; charset=UTF-8"
     }
 
+    "get raw headers ignoring case" in {
+      val headers = scala.collection.immutable.Seq(
+        RawHeader("X-Custom", "a"),
+        RawHeader("Accept", "text/html"),
+        RawHeader("x-custom", "b")
+      )
+      val request        = emptyRequest.copy(headers = headers)
+      val headersWrapper = AkkaHeadersWrapper(request, None, request.headers, None, "some-uri")
+
+      headersWrapper.get("x-CUSTOM") must beSome("a")
+      headersWrapper.getAll("X-Custom") must_== Seq("a", "b")
+      headersWrapper.hasHeader("ACCEPT") must beTrue
+      headersWrapper.get("Missing") must beNone
+    }
+
     "remove a header" in {
       val name            = "my-private-header"
       val plainTextEntity = HttpEntity("Some payload")
@@ -4,7 +4,9 @@
 
 package play.core.server
 
+import java.lang.management.ManagementFactory
 import java.net.InetSocketAddress
+import javax.management.ObjectName
 
 import akka.Done
 import akka.actor.ActorSystem
@@ -19,6 +21,7 @@ import com.typesafe.netty.HandlerPublisher
 import com.typesafe.netty.http.HttpStreamsServerHandler
 import io.netty.bootstrap.Bootstrap
 import io.netty.channel._
+import io.netty.channel.epoll.Epoll
 import io.netty.channel.epoll.EpollChannelOption
 import io.netty.channel.epoll.EpollEventLoopGroup
 import io.netty.channel.epoll.EpollServerSocketChannel
@@ -37,6 +40,8 @@ import play.api.internal.libs.concurrent.CoordinatedShutdownSupport
 import play.api.routing.Router
 import play.core._
 import play.core.server.Server.ServerStoppedReason
+import play.core.server.common.ActionInvoker
+import play.core.server.common.AdmissionController
 import play.core.server.netty._
 import play.core.server.ssl.ServerSSLEngine
 import play.server.SSLEngineProvider
@@ -51,6 +56,11 @@ sealed trait NettyTransport
 case object Jdk    extends NettyTransport
 case object Native extends NettyTransport
 
+/**
+ * The io_uring transport of the Netty incubator, which is used if its artifact is on the classpath.
+ */
+case object IoUring extends NettyTransport
+
 /**
  * creates a Server implementation based Netty
  */
@@ -81,28 +91,70 @@ class NettyServer(
   private val httpIdleTimeout     = serverConfig.get[Duration]("http.idleTimeout")
   private val httpsIdleTimeout    = serverConfig.get[Duration]("https.idleTimeout")
   private val wsBufferLimit       = serverConfig.get[ConfigMemorySize]("websocket.frame.maxLength").toBytes.toInt
-
-  private lazy val transport = nettyConfig.get[String]("transport") match {
-    case "native" => Native
-    case "jdk"    => Jdk
-    case _        => throw ServerStartException("Netty transport configuration value should be either jdk or native")
-  }
+  private val http2Config         = nettyConfig.get[Configuration]("http2")
+  private val http2Enabled        = http2Config.get[Boolean]("enabled")
+  private val h2cEnabled          = http2Enabled && http2Config.get[Boolean]("cleartext")
+  private val http2MaxStreams     = http2Config.get[Long]("maxConcurrentStreams")
+  private val acceptorsConfig     = nettyConfig.get[Int]("acceptors")
 
   import NettyServer._
 
+  private[server] lazy val transport =
+    selectTransport(nettyConfig.get[String]("transport"), IoUringSupport.isAvailable, Epoll.isAvailable)
+
   override def mode: Mode = config.mode
 
   /**
    * The event loop
    */
-  private val eventLoop = {
+  private val eventLoop: MultithreadEventLoopGroup = {
     val threadFactory = NamedThreadFactory("netty-event-loop")
     transport match {
-      case Native => new EpollEventLoopGroup(threadCount, threadFactory)
-      case Jdk    => new NioEventLoopGroup(threadCount, threadFactory)
+      case Native  => new EpollEventLoopGroup(threadCount, threadFactory)
+      case IoUring => IoUringSupport.newEventLoopGroup(threadCount, threadFactory)
+      case Jdk     => new NioEventLoopGroup(threadCount, threadFactory)
     }
   }
 
+  /**
+   * The number of server channels accepting connections on each port.
+   *
+   * Several acceptors bind the same port through SO_REUSEPORT, which is only supported by the native transports, so
+   * that the kernel spreads incoming connections over them. Each acceptor runs on its own event loop, which also
+   * serves the connections it accepts.
+   */
+  private[server] val acceptorCount = countAcceptors(acceptorsConfig, eventLoop.executorCount(), transport)
+
+  /**
+   * Invokes the actions of requests, inline or on the default execution context.
+   */
+  private[server] val actionInvoker = ActionInvoker.fromConfiguration(serverConfig)
+
+  /**
+   * Rejects the requests over the server's concurrency limit, if enabled.
+   */
+  private[server] val admissionController = AdmissionController.fromConfiguration(serverConfig)
+
+  /**
+   * Whether responses of whole files are sent as Netty file regions, which the io_uring transport doesn't support.
+   */
+  private[server] lazy val fileRegions = {
+    val enabled = nettyConfig.get[Boolean]("fileRegions")
+    if (enabled && transport == IoUring) {
+      logger.warn("Netty file regions aren't supported by the io_uring transport, sending files through the heap")
+      false
+    } else enabled
+  }
+
+  /**
+   * The number of tasks waiting to be run by each event loop.
+   *
+   * Event loops run both I/O and the tasks submitted to them, so a loop whose queue keeps growing is overloaded, and
+   * uneven queues show connections aren't spread evenly over the loops.
+   */
+  def eventLoopPendingTasks: Seq[Int] =
+    eventLoop.asScala.toList.collect { case loop: SingleThreadEventLoop => loop.pendingTasks() }
+
   /**
    * A reference to every channel, both server and incoming, this allows us to shutdown cleanly.
    */
@@ -141,7 +193,7 @@ class NettyServer(
       } else {
         logger.warn("Ignoring unknown Netty channel option: " + cleanKey)
         transport match {
-          case Native =>
+          case Native | IoUring =>
             logger.warn(
               "Valid values can be found at http://netty.io/4.1/api/io/netty/channel/ChannelOption.html, " +
                 "https://netty.io/4.1/api/io/netty/channel/unix/UnixChannelOption.html and " +
@@ -164,8 +216,9 @@ class NettyServer(
     val channelPublisher = new HandlerPublisher(serverChannelEventLoop, classOf[Channel])
 
     val channelClass = transport match {
-      case Native => classOf[EpollServerSocketChannel]
-      case Jdk    => classOf[NioServerSocketChannel]
+      case Native  => classOf[EpollServerSocketChannel]
+      case IoUring => IoUringSupport.serverSocketChannelClass
+      case Jdk     => classOf[NioServerSocketChannel]
     }
 
     val bootstrap = new Bootstrap()
@@ -175,6 +228,10 @@ class NettyServer(
       .handler(channelPublisher)
       .localAddress(address)
 
+    if (acceptorCount > 1) {
+      bootstrap.option(UnixChannelOption.SO_REUSEPORT, java.lang.Boolean.TRUE)
+    }
+
     setOptions(bootstrap.option, bootstrapOption, true)
 
     val channel = bootstrap.bind.await().channel()
@@ -189,10 +246,45 @@ class NettyServer(
   protected[this] def newRequestHandler(): ChannelInboundHandler =
     new PlayRequestHandler(this, serverHeader, maxContentLength, wsBufferLimit)
 
+  /**
+   * Add the handlers that serve requests to the pipeline of an HTTP/1 connection or of an HTTP/2 stream.
+   */
+  private def configureRequestHandlers(pipeline: ChannelPipeline): Unit = {
+    pipeline.addLast("decompressor", new HttpContentDecompressor())
+    if (logWire) {
+      pipeline.addLast("logging", new LoggingHandler(LogLevel.DEBUG))
+    }
+
+    val requestHandler = newRequestHandler()
+
+    // Use the streams handler to close off the connection.
+    pipeline.addLast("http-handler", new HttpStreamsServerHandler(Seq[ChannelHandler](requestHandler).asJava))
+
+    pipeline.addLast("request-handler", requestHandler)
+  }
+
+  /**
+   * Configure the pipeline of an HTTP/1 connection, which may be upgraded to cleartext HTTP/2 if h2c is enabled.
+   */
+  private def configureHttp1(pipeline: ChannelPipeline, h2c: Boolean): Unit = {
+    // Netty HTTP decoders/encoders/etc
+    if (h2c) {
+      val sourceCodec = new HttpServerCodec(maxInitialLineLength, maxHeaderSize, maxChunkSize)
+      val upgradeHandler = http2.newCleartextUpgradeHandler(sourceCodec, Http1Handlers, MaxH2cUpgradeLength)
+      pipeline.addLast("h2c-upgrade", upgradeHandler)
+    } else {
+      pipeline.addLast("decoder", new HttpRequestDecoder(maxInitialLineLength, maxHeaderSize, maxChunkSize))
+      pipeline.addLast("encoder", new HttpResponseEncoder())
+    }
+    configureRequestHandlers(pipeline)
+  }
+
+  private lazy val http2 = new NettyHttp2(http2MaxStreams, logWire, configureRequestHandlers)
+
   /**
    * Create a sink for the incoming connection channels.
    */
-  private def channelSink(port: Int, secure: Boolean): Sink[Channel, Future[Done]] = {
+  private def channelSink(port: Int, secure: Boolean, childEventLoop: () => EventLoop): Sink[Channel, Future[Done]] = {
     Sink.foreach[Channel] { (connChannel: Channel) =>
       // Setup the channel for explicit reads
       connChannel.config().setOption(ChannelOption.AUTO_READ, java.lang.Boolean.FALSE)
@@ -200,7 +292,7 @@ class NettyServer(
       setOptions(connChannel.config().setOption, channelOption)
 
       val pipeline = connChannel.pipeline()
-      if (secure) {
+      val sslEngine = if (secure) {
         sslEngineProvider.map { sslEngineProvider =>
           val sslEngine = sslEngineProvider.createSSLEngine()
           sslEngine.setUseClientMode(false)
@@ -211,16 +303,9 @@ class NettyServer(
             sslEngine.setNeedClientAuth(true)
           }
           pipeline.addLast("ssl", new SslHandler(sslEngine))
+          sslEngine
         }
-      }
-
-      // Netty HTTP decoders/encoders/etc
-      pipeline.addLast("decoder", new HttpRequestDecoder(maxInitialLineLength, maxHeaderSize, maxChunkSize))
-      pipeline.addLast("encoder", new HttpResponseEncoder())
-      pipeline.addLast("decompressor", new HttpContentDecompressor())
-      if (logWire) {
-        pipeline.addLast("logging", new LoggingHandler(LogLevel.DEBUG))
-      }
+      } else None
 
       val idleTimeout = if (secure) httpsIdleTimeout else httpIdleTimeout
       idleTimeout match {
@@ -231,16 +316,26 @@ class NettyServer(
           pipeline.addLast("idle-handler", new IdleStateHandler(0, 0, timeout, timeUnit))
       }
 
-      val requestHandler = newRequestHandler()
-
-      // Use the streams handler to close off the connection.
-      pipeline.addLast("http-handler", new HttpStreamsServerHandler(Seq[ChannelHandler](requestHandler).asJava))
-
-      pipeline.addLast("request-handler", requestHandler)
+      sslEngine match {
+        case Some(engine) if http2Enabled =>
+          // Let the client choose between HTTP/2 and HTTP/1.1 during the TLS handshake
+          NettyHttp2.enableAlpn(engine)
+          pipeline.addLast(
+            "alpn-handler",
+            new NettyHttp2.AlpnHandler({ (_, protocol) =>
+              if (protocol == NettyHttp2.H2) {
+                pipeline.addLast(new NettyHttp2.SwitchToHttp2(Nil, () => http2.newConnectionHandlers()))
+              } else {
+                configureHttp1(pipeline, h2c = false)
+              }
+            })
+          )
+        case _ =>
+          configureHttp1(pipeline, h2c = h2cEnabled && !secure)
+      }
 
       // And finally, register the channel with the event loop
-      val childChannelEventLoop = eventLoop.next()
-      childChannelEventLoop.register(connChannel)
+      childEventLoop().register(connChannel)
       allChannels.add(connChannel)
     }
   }
@@ -251,19 +346,52 @@ class NettyServer(
   // Maybe the HTTPS server channel
   private val httpsChannel = config.sslPort.map(bindChannel(_, secure = true))
 
+  /**
+   * The name of the MBean exporting the event loops, if `registerMBeans` is enabled. It's registered once the server
+   * is bound, so that its name has the port actually bound.
+   */
+  private val eventLoopsMBean: Option[ObjectName] =
+    if (!nettyConfig.get[Boolean]("registerMBeans")) None
+    else {
+      val name  = new ObjectName(s"play.server:type=NettyEventLoops,port=${mainAddress.getPort}")
+      val mbean = new NettyEventLoopsMXBean {
+        override def getTransport: String        = transportName(transport)
+        override def getPendingTasks: Array[Int] = eventLoopPendingTasks.toArray
+        override def getTotalPendingTasks: Int   = eventLoopPendingTasks.sum
+      }
+      ManagementFactory.getPlatformMBeanServer.registerMBean(mbean, name)
+      Some(name)
+    }
+
   private def bindChannel(port: Int, secure: Boolean): Channel = {
     val protocolName                   = if (secure) "HTTPS" else "HTTP"
     val address                        = new InetSocketAddress(config.address, port)
     val (serverChannel, channelSource) = bind(address)
-    channelSource.runWith(channelSink(port = port, secure = secure))
-    val boundAddress = serverChannel.localAddress()
+    val boundAddress                   = serverChannel.localAddress()
     if (boundAddress == null) {
       val e = new ServerListenException(protocolName, address)
       logger.error(e.getMessage)
       throw e
     }
+    if (acceptorCount > 1) {
+      // Every acceptor serves the connections it accepts on its own event loop
+      channelSource.runWith(channelSink(port, secure, () => serverChannel.eventLoop()))
+      // Bind the additional acceptors to the port actually bound, in case the port was chosen by the system
+      (1 until acceptorCount).foreach { _ =>
+        val (acceptorChannel, acceptorSource) = bind(boundAddress.asInstanceOf[InetSocketAddress])
+        if (acceptorChannel.localAddress() == null) {
+          val e = new ServerListenException(protocolName, address)
+          logger.error(e.getMessage)
+          throw e
+        }
+        acceptorSource.runWith(channelSink(port, secure, () => acceptorChannel.eventLoop()))
+      }
+    } else {
+      channelSource.runWith(channelSink(port, secure, () => eventLoop.next()))
+    }
     if (mode != Mode.Test) {
-      logger.info(s"Listening for $protocolName on $boundAddress")
+      val acceptors = if (acceptorCount > 1) s" with $acceptorCount acceptors" else ""
+      logger.info(s"Listening for $protocolName on $boundAddress$acceptors")
     }
     serverChannel
   }
@@ -287,6 +415,8 @@ class NettyServer(
 
     val unbindTimeout = cs.timeout(CoordinatedShutdown.PhaseServiceUnbind)
     cs.addTask(CoordinatedShutdown.PhaseServiceUnbind, "netty-server-unbind") { () =>
+      // The MBean isn't registered if the server failed to start
+      Option(eventLoopsMBean).flatten.foreach(ManagementFactory.getPlatformMBeanServer.unregisterMBean)
       // First, close all opened sockets
       allChannels.close().awaitUninterruptibly(unbindTimeout.toMillis - 100)
       // Now shutdown the event loop
@@ -359,7 +489,40 @@ class NettyServer(
       )
     )
 
-  override val serverEndpoints: ServerEndpoints = ServerEndpoints(Http1Plain.toSeq ++ Http1Encrypted.toSeq)
+  private lazy val Http2Plain = httpChannel
+    .map(_.localAddress().asInstanceOf[InetSocketAddress])
+    .map(address =>
+      ServerEndpoint(
+        description = "Netty HTTP/2 (plaintext)",
+        scheme = "http",
+        host = config.address,
+        port = address.getPort,
+        protocols = Set(HttpProtocol.HTTP_1_0, HttpProtocol.HTTP_1_1, HttpProtocol.HTTP_2_0),
+        serverAttribute = serverHeader,
+        ssl = None
+      )
+    )
+
+  private lazy val Http2Encrypted = httpsChannel
+    .map(_.localAddress().asInstanceOf[InetSocketAddress])
+    .map(address =>
+      ServerEndpoint(
+        description = "Netty HTTP/2 (encrypted)",
+        scheme = "https",
+        host = config.address,
+        port = address.getPort,
+        protocols = Set(HttpProtocol.HTTP_1_0, HttpProtocol.HTTP_1_1, HttpProtocol.HTTP_2_0),
+        serverAttribute = serverHeader,
+        ssl = sslEngineProvider.map(_.sslContext())
+      )
+    )
+
+  override val serverEndpoints: ServerEndpoints = {
+    val httpEndpoint  = if (h2cEnabled) Http2Plain else Http1Plain
+    val httpsEndpoint = if (http2Enabled) Http2Encrypted else Http1Encrypted
+
+    ServerEndpoints(httpEndpoint.toSeq ++ httpsEndpoint.toSeq)
+  }
 }
 
 /**
@@ -397,6 +560,56 @@ class NettyServerProvider extends ServerProvider {
 object NettyServer extends ServerFromRouter {
   private val logger = Logger(this.getClass)
 
+  /**
+   * The handlers of an HTTP/1 connection pipeline that are removed when it switches to HTTP/2.
+   */
+  private val Http1Handlers = Seq("decompressor", "logging", "http-handler", "request-handler")
+
+  /**
+   * The maximum length of the body of a request upgrading a connection to cleartext HTTP/2.
+   */
+  private val MaxH2cUpgradeLength = 64 * 1024
+
+  /**
+   * Select the transport of the given `play.server.netty.transport` configuration value.
+   *
+   * The `auto` transport prefers io_uring, then the native epoll transport, and falls back to the jdk transport when
+   * neither is available.
+   */
+  private[server] def selectTransport(
+      configured: String,
+      ioUringAvailable: => Boolean,
+      epollAvailable: => Boolean
+  ): NettyTransport = configured match {
+    case "native"   => Native
+    case "io_uring" => IoUring
+    case "jdk"      => Jdk
+    case "auto"     => if (ioUringAvailable) IoUring else if (epollAvailable) Native else Jdk
+    case _ =>
+      throw ServerStartException("Netty transport configuration value should be either jdk, native, io_uring or auto")
+  }
+
+  /**
+   * The `play.server.netty.transport` configuration value of the given transport.
+   */
+  private[server] def transportName(transport: NettyTransport): String = transport match {
+    case Native  => "native"
+    case IoUring => "io_uring"
+    case Jdk     => "jdk"
+  }
+
+  /**
+   * The number of acceptors of the given `play.server.netty.acceptors` configuration value: one per event loop thread
+   * if it isn't positive, and only one for the jdk transport, which doesn't support SO_REUSEPORT.
+   */
+  private[server] def countAcceptors(configured: Int, eventLoopThreads: Int, transport: NettyTransport): Int = {
+    val requested = if (configured <= 0) eventLoopThreads else configured
+    if (requested > 1 && transport == Jdk) {
+      logger.warn("Multiple Netty acceptors require SO_REUSEPORT, which the jdk transport doesn't support, using one")
+      1
+    } else requested
+  }
+
   implicit val provider: NettyServerProvider = new NettyServerProvider
 
   def main(args: Array[String]): Unit = {
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server.netty
+
+import java.util.concurrent.ThreadFactory
+
+import io.netty.channel.MultithreadEventLoopGroup
+import io.netty.channel.ServerChannel
+import play.core.server.ServerStartException
+
+import scala.util.Try
+
+/**
+ * Access to the io_uring transport of the Netty incubator.
+ *
+ * The transport is an optional dependency, so it's loaded reflectively: it's used only if the
+ * `netty-incubator-transport-native-io_uring` artifact is on the classpath.
+ */
+private[server] object IoUringSupport {
+  private val Package = "io.netty.incubator.channel.uring"
+
+  private def loadClass(name: String): Class[_] = Class.forName(s"$Package.$name")
+
+  /**
+   * Whether the io_uring transport is on the classpath and supported by the kernel.
+   */
+  lazy val isAvailable: Boolean =
+    Try(loadClass("IOUring").getMethod("isAvailable").invoke(null).asInstanceOf[Boolean]).getOrElse(false)
+
+  private def checkAvailable(): Unit = {
+    if (!isAvailable) {
+      throw ServerStartException(
+        "Netty io_uring transport requires netty-incubator-transport-native-io_uring and a Linux kernel supporting it"
+      )
+    }
+  }
+
+  def newEventLoopGroup(threadCount: Int, threadFactory: ThreadFactory): MultithreadEventLoopGroup = {
+    checkAvailable()
+    loadClass("IOUringEventLoopGroup")
+      .getConstructor(classOf[Int], classOf[ThreadFactory])
+      .newInstance(Int.box(threadCount), threadFactory)
+      .asInstanceOf[MultithreadEventLoopGroup]
+  }
+
+  def serverSocketChannelClass: Class[_ <: ServerChannel] = {
+    checkAvailable()
+    loadClass("IOUringServerSocketChannel").asSubclass(classOf[ServerChannel])
+  }
+}
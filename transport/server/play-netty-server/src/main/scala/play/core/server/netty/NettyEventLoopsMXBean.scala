@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server.netty
+
+/**
+ * The event loops of a Netty server, as exported through JMX when `play.server.netty.registerMBeans` is enabled.
+ *
+ * The MBean is registered as `play.server:type=NettyEventLoops,port=<port>`, where the port is the main port the
+ * server is bound to.
+ */
+trait NettyEventLoopsMXBean {
+
+  /**
+   * The transport of the event loops, either `jdk`, `native` or `io_uring`.
+   */
+  def getTransport: String
+
+  /**
+   * The number of tasks waiting to be run by each event loop.
+   */
+  def getPendingTasks: Array[Int]
+
+  /**
+   * The number of tasks waiting to be run by all the event loops.
+   */
+  def getTotalPendingTasks: Int
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server.netty
+
+import javax.net.ssl.SSLEngine
+
+import io.netty.channel._
+import io.netty.handler.codec.http.HttpServerCodec
+import io.netty.handler.codec.http.HttpServerUpgradeHandler
+import io.netty.handler.codec.http2._
+import io.netty.handler.logging.LogLevel
+import io.netty.handler.ssl.SslHandler
+import io.netty.handler.ssl.SslHandshakeCompletionEvent
+import io.netty.handler.timeout.IdleStateEvent
+import io.netty.util.AsciiString
+import io.netty.util.ReferenceCountUtil
+import play.api.Logger
+
+import scala.collection.mutable
+
+/**
+ * Support for serving HTTP/2 connections.
+ *
+ * An HTTP/2 connection is handled by a frame codec and a multiplex handler, which creates a child channel for every
+ * stream. Each stream channel converts the HTTP/2 frames to and from the HTTP/1 objects that the rest of Play's
+ * pipeline (the streams handler and the request handler) already works with, so a stream is served exactly like an
+ * HTTP/1 request on its own connection.
+ *
+ * @param maxConcurrentStreams The maximum number of streams a client may open concurrently on a connection.
+ * @param logWire Whether the HTTP/2 frames should be logged.
+ * @param configureStream Configures the pipeline of each stream channel after the stream codec.
+ */
+private[server] final class NettyHttp2(
+    maxConcurrentStreams: Long,
+    logWire: Boolean,
+    configureStream: ChannelPipeline => Unit
+) {
+  import NettyHttp2._
+
+  private[this] val streamInitializer = new ChannelInitializer[Channel] {
+    override def initChannel(stream: Channel): Unit = {
+      // Like connections, streams are read explicitly by the request handler
+      stream.config().setOption(ChannelOption.AUTO_READ, java.lang.Boolean.FALSE)
+      stream.pipeline().addLast("http2-stream-codec", new Http2StreamFrameToHttpObjectCodec(true))
+      configureStream(stream.pipeline())
+    }
+  }
+
+  private def newFrameCodec(): Http2FrameCodec = {
+    val builder = Http2FrameCodecBuilder
+      .forServer()
+      .initialSettings(Http2Settings.defaultSettings().maxConcurrentStreams(maxConcurrentStreams))
+    if (logWire) builder.frameLogger(new Http2FrameLogger(LogLevel.DEBUG, classOf[NettyHttp2]))
+    builder.build()
+  }
+
+  private def newHandlersAfterFrameCodec(): Seq[ChannelHandler] =
+    Seq(new Http2MultiplexHandler(streamInitializer), IdleConnectionHandler)
+
+  /**
+   * Create the handlers of an HTTP/2 connection, in pipeline order.
+   */
+  def newConnectionHandlers(): Seq[ChannelHandler] = newFrameCodec() +: newHandlersAfterFrameCodec()
+
+  /**
+   * Create the handler that upgrades a cleartext HTTP/1.1 connection to HTTP/2 (h2c), either through an
+   * `Upgrade: h2c` request or when the client sends the HTTP/2 connection preface straight away.
+   *
+   * @param sourceCodec The HTTP/1 codec of the connection.
+   * @param http1Handlers The names of the HTTP/1 handlers to remove from the connection pipeline when upgrading.
+   * @param maxUpgradeContentLength The maximum length of the body of an upgrade request.
+   */
+  def newCleartextUpgradeHandler(
+      sourceCodec: HttpServerCodec,
+      http1Handlers: Seq[String],
+      maxUpgradeContentLength: Int
+  ): ChannelHandler = {
+    val upgradeCodecFactory = new HttpServerUpgradeHandler.UpgradeCodecFactory {
+      override def newUpgradeCodec(protocol: CharSequence): HttpServerUpgradeHandler.UpgradeCodec = {
+        if (AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+          val handlers = newHandlersAfterFrameCodec() :+ new SwitchToHttp2(http1Handlers, () => Nil)
+          new Http2ServerUpgradeCodec(newFrameCodec(), handlers: _*)
+        } else null
+      }
+    }
+    val upgradeHandler        = new HttpServerUpgradeHandler(sourceCodec, upgradeCodecFactory, maxUpgradeContentLength)
+    val priorKnowledgeHandler = new SwitchToHttp2(http1Handlers, () => newConnectionHandlers())
+    new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler, priorKnowledgeHandler)
+  }
+}
+
+private[server] object NettyHttp2 {
+  private val logger = Logger(this.getClass)
+
+  /** The ALPN identifier of HTTP/2 over TLS. */
+  val H2 = "h2"
+
+  /** The ALPN identifier of HTTP/1.1. */
+  val Http11 = "http/1.1"
+
+  /**
+   * The name of the extension header that the stream codec adds to every request received over HTTP/2.
+   */
+  val StreamIdHeader: AsciiString = HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text()
+
+  /**
+   * Advertise HTTP/2 through ALPN on the given server SSL engine, preferring it over HTTP/1.1.
+   */
+  def enableAlpn(sslEngine: SSLEngine): Unit = {
+    val parameters = sslEngine.getSSLParameters
+    parameters.setApplicationProtocols(Array(H2, Http11))
+    sslEngine.setSSLParameters(parameters)
+  }
+
+  /**
+   * Switches a connection pipeline from HTTP/1 to HTTP/2.
+   *
+   * When added to the pipeline, this handler removes the given HTTP/1 handlers, replaces itself with the given HTTP/2
+   * handlers, and turns auto read on: HTTP/2 connections must be read continuously so that control frames are handled
+   * promptly, back pressure is applied to each stream through HTTP/2 flow control instead.
+   */
+  final class SwitchToHttp2(http1Handlers: Seq[String], http2Handlers: () => Seq[ChannelHandler])
+      extends ChannelHandlerAdapter {
+    override def handlerAdded(ctx: ChannelHandlerContext): Unit = {
+      val pipeline = ctx.pipeline()
+      http1Handlers.foreach { name =>
+        if (pipeline.get(name) != null) pipeline.remove(name)
+      }
+      http2Handlers().reverse.foreach(handler => pipeline.addAfter(ctx.name(), null, handler))
+      pipeline.remove(this)
+      ctx.channel().config().setAutoRead(true)
+    }
+  }
+
+  /**
+   * Closes HTTP/2 connections once they've been idle, since the idle events of the connection aren't seen by the
+   * request handlers of its streams.
+   */
+  @ChannelHandler.Sharable
+  object IdleConnectionHandler extends ChannelInboundHandlerAdapter {
+    override def userEventTriggered(ctx: ChannelHandlerContext, evt: AnyRef): Unit = evt match {
+      case idle: IdleStateEvent if ctx.channel().isOpen =>
+        logger.trace(s"Closing HTTP/2 connection channel after idle timeout $idle")
+        ctx.close()
+      case _ => super.userEventTriggered(ctx, evt)
+    }
+  }
+
+  /**
+   * Configures the pipeline of a TLS connection for the protocol negotiated through ALPN.
+   *
+   * Netty's `ApplicationProtocolNegotiationHandler` can't be used since it only supports engines that Netty wraps
+   * itself, so this handler reads the negotiated protocol from the JDK engine once the handshake completes. Until then
+   * it keeps the connection reading and buffers anything decrypted, which is then replayed to the configured pipeline.
+   *
+   * @param configure Configures the pipeline for the negotiated protocol, either `h2` or `http/1.1`.
+   */
+  final class AlpnHandler(configure: (ChannelHandlerContext, String) => Unit) extends ChannelInboundHandlerAdapter {
+    private[this] val buffered = mutable.Queue.empty[AnyRef]
+
+    override def channelActive(ctx: ChannelHandlerContext): Unit = {
+      ctx.read()
+      super.channelActive(ctx)
+    }
+
+    override def channelRead(ctx: ChannelHandlerContext, msg: AnyRef): Unit = buffered.enqueue(msg)
+
+    override def channelReadComplete(ctx: ChannelHandlerContext): Unit = ctx.read()
+
+    override def userEventTriggered(ctx: ChannelHandlerContext, evt: AnyRef): Unit = evt match {
+      case handshake: SslHandshakeCompletionEvent if handshake.isSuccess =>
+        val engine   = ctx.pipeline().get(classOf[SslHandler]).engine()
+        val protocol = Option(engine.getApplicationProtocol).filter(_.nonEmpty).getOrElse(Http11)
+        logger.trace(s"Negotiated $protocol through ALPN")
+        configure(ctx, protocol)
+        super.userEventTriggered(ctx, evt)
+        val replay = buffered.nonEmpty
+        while (buffered.nonEmpty) ctx.fireChannelRead(buffered.dequeue())
+        ctx.pipeline().remove(this)
+        // Let the configured handlers decide when to read next, or read the first request for them
+        if (replay) ctx.fireChannelReadComplete() else ctx.read()
+      case handshake: SslHandshakeCompletionEvent =>
+        logger.debug("TLS handshake failed, closing connection", handshake.cause())
+        ctx.close()
+      case _ => super.userEventTriggered(ctx, evt)
+    }
+
+    override def handlerRemoved(ctx: ChannelHandlerContext): Unit = {
+      // Only left over if the connection was closed before the handshake completed
+      while (buffered.nonEmpty) ReferenceCountUtil.release(buffered.dequeue())
+    }
+  }
+}
@@ -20,14 +20,19 @@ import com.typesafe.netty.http.StreamedHttpRequest
 import io.netty.buffer.ByteBuf
 import io.netty.buffer.Unpooled
 import io.netty.channel.Channel
+import io.netty.channel.DefaultFileRegion
 import io.netty.handler.codec.http._
+import io.netty.handler.codec.http2.Http2StreamChannel
 import io.netty.handler.ssl.SslHandler
 import io.netty.util.ReferenceCountUtil
+import org.reactivestreams.Publisher
 import play.api.Logger
+import play.api.http.FileRegion
 import play.api.http.HeaderNames._
 import play.api.http.HttpChunk
 import play.api.http.HttpEntity
 import play.api.http.HttpErrorHandler
+import play.api.http.HttpProtocol
 import play.api.libs.typedmap.TypedMap
 import play.api.mvc._
 import play.api.mvc.request.RemoteConnection
@@ -71,11 +76,17 @@ private[server] class NettyModelConversion(
     }
   }
 
+  /** The channel of the connection, which is the parent of the channel when serving an HTTP/2 stream. */
+  private def connectionChannel(channel: Channel): Channel = channel match {
+    case stream: Http2StreamChannel => stream.parent()
+    case _                          => channel
+  }
+
   /** Capture a request's connection info from its channel and headers. */
   private def createRemoteConnection(channel: Channel, headers: Headers): RemoteConnection = {
     val rawConnection = new RemoteConnection {
       override lazy val remoteAddress: InetAddress = channel.remoteAddress().asInstanceOf[InetSocketAddress].getAddress
-      private val sslHandler                       = Option(channel.pipeline().get(classOf[SslHandler]))
+      private lazy val sslHandler = Option(connectionChannel(channel).pipeline().get(classOf[SslHandler]))
       override def secure: Boolean                 = sslHandler.isDefined
       override lazy val clientCertificateChain: Option[Seq[X509Certificate]] = {
         try {
@@ -90,15 +101,21 @@ private[server] class NettyModelConversion(
     forwardedHeaderHandler.forwardedConnection(rawConnection, headers)
   }
 
-  /** Create request target information from a Netty request. */
+  /**
+   * Create request target information from a Netty request.
+   *
+   * Only the path is parsed eagerly, since an invalid path must fail the request. The query string is only extracted
+   * from the URI if it's used.
+   */
   private def createRequestTarget(request: HttpRequest): RequestTarget = {
-    val (parsedPath, parsedQueryString) = PathAndQueryParser.parse(request.uri)
+    val parsedPath = PathAndQueryParser.parsePath(request.uri)
 
     new RequestTarget {
-      override lazy val uri: URI       = new URI(uriString)
-      override def uriString: String   = request.uri
-      override val path: String        = parsedPath
-      override val queryString: String = parsedQueryString.stripPrefix("?")
+      override lazy val uri: URI                 = new URI(uriString)
+      override def uriString: String             = request.uri
+      override val path: String                  = parsedPath
+      private lazy val parsedQueryString: String = PathAndQueryParser.parseQueryString(uriString)
+      override lazy val queryString: String      = parsedQueryString.stripPrefix("?")
       override lazy val queryMap: Map[String, Seq[String]] = {
         val decoder = new QueryStringDecoder(parsedQueryString)
         try {
@@ -156,12 +173,20 @@ private[server] class NettyModelConversion(
    * later.
    */
   def createRequestHeader(channel: Channel, request: HttpRequest, target: RequestTarget): RequestHeader = {
+    // HTTP/2 streams are converted to HTTP/1.1 requests, so the version is told by the channel. Any stream id header of
+    // an HTTP/1 request was sent by the client, and is dropped so that it can't pass the request off as HTTP/2.
+    val version = channel match {
+      case _: Http2StreamChannel => HttpProtocol.HTTP_2_0
+      case _ =>
+        request.headers.remove(NettyHttp2.StreamIdHeader)
+        request.protocolVersion.text()
+    }
     val headers = new NettyHeadersWrapper(request.headers)
     new RequestHeaderImpl(
       createRemoteConnection(channel, headers),
       request.method.name(),
       target,
-      request.protocolVersion.text(),
+      version,
       headers,
       // Send an attribute so our tests can tell which kind of server we're using.
       // We only do this for the "non-default" engine, so we used to tag
@@ -199,7 +224,8 @@ private[server] class NettyModelConversion(
       result: Result,
       requestHeader: RequestHeader,
       httpVersion: HttpVersion,
-      errorHandler: HttpErrorHandler
+      errorHandler: HttpErrorHandler,
+      fileRegions: Boolean = false
   )(implicit mat: Materializer): Future[HttpResponse] = {
     resultUtils.resultConversionWithErrorHandling(requestHeader, result, errorHandler) { result =>
       val responseStatus = result.header.reasonPhrase match {
@@ -218,6 +244,9 @@ private[server] class NettyModelConversion(
         case HttpEntity.Strict(data, _) =>
           new DefaultFullHttpResponse(httpVersion, responseStatus, byteStringToByteBuf(data))
 
+        case HttpEntity.Streamed(_, _, _) if fileRegions && FileRegion.of(result).isDefined =>
+          createFileRegionResponse(FileRegion.of(result).get, httpVersion, responseStatus)
+
         case HttpEntity.Streamed(stream, _, _) =>
           createStreamedResponse(stream, httpVersion, responseStatus)
 
@@ -300,6 +329,29 @@ private[server] class NettyModelConversion(
     new DefaultStreamedHttpResponse(httpVersion, responseStatus, publisher)
   }
 
+  /**
+   * Create a Netty response sending a region of a file straight to the socket, with `FileChannel.transferTo`, rather
+   * than reading it through the heap. The body stream of the result is never run.
+   */
+  private def createFileRegionResponse(
+      region: FileRegion,
+      httpVersion: HttpVersion,
+      responseStatus: HttpResponseStatus
+  )(implicit mat: Materializer) = {
+    // The streams handler writes the elements of the body as they are, and the HTTP encoder writes file regions, so the
+    // region can be sent in place of the body content
+    val fileRegion: AnyRef = new DefaultFileRegion(region.path.toFile, region.offset, region.length)
+    val publisher          = Source.single(fileRegion).runWith(Sink.asPublisher(false))
+    new DefaultStreamedHttpResponse(httpVersion, responseStatus, publisher.asInstanceOf[Publisher[HttpContent]])
+  }
+
+  /**
+   * Whether responses may be sent as file regions on a channel, that is unless the content is encrypted by TLS or
+   * framed by HTTP/2, which need the bytes in memory.
+   */
+  def supportsFileRegions(channel: Channel): Boolean =
+    !channel.isInstanceOf[Http2StreamChannel] && channel.pipeline().get(classOf[SslHandler]) == null
+
   /** Create a Netty chunked response. */
   private def createChunkedResponse(
       chunks: Source[HttpChunk, _],
@@ -132,7 +132,7 @@ private[play] class PlayRequestHandler(
     handler match {
       //execute normal action
       case action: EssentialAction =>
-        handleAction(action, requestHeader, request, tryApp)
+        handleAction(channel, action, requestHeader, request, tryApp)
 
       case ws: WebSocket if requestHeader.headers.get(HeaderNames.UPGRADE).exists(_.equalsIgnoreCase("websocket")) =>
         logger.trace("Serving this request with: " + ws)
@@ -151,7 +151,7 @@ private[play] class PlayRequestHandler(
             case Left(result) =>
               // WebSocket was rejected, send result
               val action = EssentialAction(_ => Accumulator.done(result))
-              handleAction(action, requestHeader, request, tryApp)
+              handleAction(channel, action, requestHeader, request, tryApp)
             case Right(flow) =>
               import app.materializer
               val processor = WebSocketHandler.messageFlowToFrameProcessor(flow, wsBufferLimit)
@@ -163,7 +163,7 @@ private[play] class PlayRequestHandler(
             case error =>
               app.errorHandler.onServerError(requestHeader, error).flatMap { result =>
                 val action = EssentialAction(_ => Accumulator.done(result))
-                handleAction(action, requestHeader, request, tryApp)
+                handleAction(channel, action, requestHeader, request, tryApp)
               }
           }
 
@@ -180,7 +180,7 @@ private[play] class PlayRequestHandler(
               )
           )
         )
-        handleAction(action, requestHeader, request, tryApp)
+        handleAction(channel, action, requestHeader, request, tryApp)
 
       // This case usually indicates an error in Play's internal routing or handling logic
       case h =>
@@ -285,6 +285,7 @@ private[play] class PlayRequestHandler(
    * Handle an essential action.
    */
   private def handleAction(
+      channel: Channel,
       action: EssentialAction,
       requestHeader: RequestHeader,
       request: HttpRequest,
@@ -296,8 +297,9 @@ private[play] class PlayRequestHandler(
     }
     import play.core.Execution.Implicits.trampoline
 
-    // Execute the action on the Play default execution context
-    val actionFuture = Future(action(requestHeader))(mat.executionContext)
+    // Execute the action on the Play default execution context, unless it is invoked inline
+    val admittedAction = server.admissionController(action, errorHandler(tryApp))
+    val actionFuture   = server.actionInvoker.invoke(admittedAction, requestHeader)(mat.executionContext)
     for {
       // Execute the action and get a result, calling errorHandler if errors happen in this process
       actionResult <- actionFuture
@@ -319,8 +321,11 @@ private[play] class PlayRequestHandler(
         resultUtils(tryApp).validateResult(requestHeader, cleanedResult, errorHandler(tryApp))
       }
       // Convert the result to a Netty HttpResponse
-      convertedResult <- modelConversion(tryApp)
-        .convertResult(validatedResult, requestHeader, request.protocolVersion(), errorHandler(tryApp))
+      convertedResult <- {
+        val fileRegions = server.fileRegions && modelConversion(tryApp).supportsFileRegions(channel)
+        modelConversion(tryApp)
+          .convertResult(validatedResult, requestHeader, request.protocolVersion(), errorHandler(tryApp), fileRegions)
+      }
     } yield convertedResult
   }
 
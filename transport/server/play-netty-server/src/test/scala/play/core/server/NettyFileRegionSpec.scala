@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server
+
+import java.io.ByteArrayOutputStream
+import java.net.Socket
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.Properties
+
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import org.specs2.mutable.Specification
+import org.specs2.specification.AfterAll
+import play.api.http.FileRegion
+import play.api.http.HeaderNames
+import play.api.http.HttpEntity
+import play.api.mvc.Result
+import play.api.mvc.Results
+import play.api.Mode
+
+import scala.collection.JavaConverters._
+import scala.concurrent.duration._
+import scala.util.Try
+
+class NettyFileRegionSpec extends Specification with AfterAll {
+  sequential
+
+  // Large enough not to fit in the socket buffers, so that a client closing early interrupts the transfer
+  val fileBytes: Array[Byte] = Array.tabulate(8 * 1024 * 1024)(i => (i % 251).toByte)
+  val file: Path             = Files.write(Files.createTempFile("netty-file-region", ".bin"), fileBytes)
+
+  override def afterAll(): Unit = {
+    Files.deleteIfExists(file)
+  }
+
+  /**
+   * A result marked with a region of the file, whose body is made of other bytes of the same length, so that the
+   * bytes received show whether the region or the body was sent.
+   */
+  def regionResult(result: Results.Status, offset: Long, length: Long): Result = {
+    val bytes  = ByteString(Array.fill(length.toInt)('x'.toByte))
+    val body   = HttpEntity.Streamed(Source.single(bytes), Some(length), None)
+    val status = result.sendEntity(body)
+    status.addAttr(FileRegion.Attr, FileRegion(file, offset, length, status.body))
+  }
+
+  def withServer[T](fileRegions: Boolean)(block: NettyServer => T): T = {
+    val properties = new Properties()
+    properties.putAll(System.getProperties)
+    properties.setProperty("play.server.netty.fileRegions", fileRegions.toString)
+    val config = ServerConfig(port = Some(0), mode = Mode.Test, properties = properties)
+    val server = NettyServer.fromRouterWithComponents(config) { components =>
+      {
+        case request if request.path == "/whole" =>
+          components.defaultActionBuilder(regionResult(Results.Ok, 0, fileBytes.length))
+        case request if request.path == "/range" =>
+          components.defaultActionBuilder(
+            regionResult(Results.PartialContent, 1000, 500)
+              .withHeaders(HeaderNames.CONTENT_RANGE -> s"bytes 1000-1499/${fileBytes.length}")
+          )
+      }
+    }
+    try block(server.asInstanceOf[NettyServer])
+    finally server.stop()
+  }
+
+  def request(server: NettyServer, path: String): Socket = {
+    val socket = new Socket("localhost", server.httpPort.get)
+    socket.getOutputStream.write(
+      s"GET $path HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII)
+    )
+    socket
+  }
+
+  /** Get the status line and the body of a response. */
+  def get(server: NettyServer, path: String): (String, Array[Byte]) = {
+    val socket = request(server, path)
+    try {
+      val response = new ByteArrayOutputStream()
+      val in       = socket.getInputStream
+      val buffer   = new Array[Byte](64 * 1024)
+      var read     = in.read(buffer)
+      while (read != -1) {
+        response.write(buffer, 0, read)
+        read = in.read(buffer)
+      }
+      val bytes     = response.toByteArray
+      val headerEnd = ByteString(bytes).indexOfSlice(ByteString("\r\n\r\n"))
+      val status    = new String(bytes, 0, bytes.indexOf('\r'.toByte), StandardCharsets.US_ASCII)
+      (status, bytes.drop(headerEnd + 4))
+    } finally socket.close()
+  }
+
+  /** The number of file descriptors of this process open on the file, if they can be listed. */
+  def openDescriptors: Option[Int] = {
+    val fds = Paths.get("/proc/self/fd")
+    if (!Files.isDirectory(fds)) None
+    else {
+      val target = file.toRealPath()
+      val links  = Files.list(fds)
+      try Some(links.iterator.asScala.count(fd => Try(Files.readSymbolicLink(fd)).toOption.contains(target)))
+      finally links.close()
+    }
+  }
+
+  "NettyServer file regions" should {
+    "send the whole file of a region" in withServer(fileRegions = true) { server =>
+      val (status, body) = get(server, "/whole")
+      status must_== "HTTP/1.1 200 OK"
+      body.length must_== fileBytes.length
+      body.sameElements(fileBytes) must beTrue
+    }
+
+    "send a range of the file of a region" in withServer(fileRegions = true) { server =>
+      val (status, body) = get(server, "/range")
+      status must_== "HTTP/1.1 206 Partial Content"
+      body.toSeq must_== fileBytes.slice(1000, 1500).toSeq
+    }
+
+    "send the body of the result if file regions are disabled" in withServer(fileRegions = false) { server =>
+      val (_, body) = get(server, "/range")
+      new String(body, StandardCharsets.US_ASCII) must_== "x" * 500
+    }
+
+    "release the file when the client closes the connection early" in withServer(fileRegions = true) { server =>
+      val socket = request(server, "/whole")
+      socket.getInputStream.read(new Array[Byte](1000)) must be_>(0)
+      socket.close()
+
+      openDescriptors.getOrElse(0) must be_==(0).eventually(40, 100.millis)
+      // The server still serves the file
+      get(server, "/whole")._2.length must_== fileBytes.length
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server
+
+import java.lang.management.ManagementFactory
+import java.net.URL
+import java.util.Properties
+import java.util.concurrent.Executors
+
+import javax.management.ObjectName
+
+import io.netty.channel.epoll.Epoll
+import org.specs2.mutable.Specification
+import play.api.mvc.Results
+import play.api.Mode
+import play.core.server.netty.IoUringSupport
+
+import scala.io.Source
+
+class NettyServerTransportSpec extends Specification {
+  private def withServer[T](settings: (String, String)*)(block: NettyServer => T): T = {
+    val properties = new Properties()
+    properties.putAll(System.getProperties)
+    settings.foreach { case (key, value) => properties.setProperty(key, value) }
+    val config = ServerConfig(port = Some(0), mode = Mode.Test, properties = properties)
+    val server = NettyServer.fromRouterWithComponents(config) { components =>
+      { case _ => components.defaultActionBuilder(Results.Ok("ok")) }
+    }
+    try block(server.asInstanceOf[NettyServer])
+    finally server.stop()
+  }
+
+  private def get(server: NettyServer): String = {
+    val source = Source.fromURL(new URL(s"http://localhost:${server.httpPort.get}/"))
+    try source.mkString
+    finally source.close()
+  }
+
+  "NettyServer transport selection" should {
+    "use the configured transport" in {
+      NettyServer.selectTransport("jdk", ioUringAvailable = true, epollAvailable = true) must_== Jdk
+      NettyServer.selectTransport("native", ioUringAvailable = true, epollAvailable = true) must_== Native
+      NettyServer.selectTransport("io_uring", ioUringAvailable = false, epollAvailable = true) must_== IoUring
+    }
+    "prefer io_uring, then epoll, then the jdk transport when automatic" in {
+      NettyServer.selectTransport("auto", ioUringAvailable = true, epollAvailable = true) must_== IoUring
+      NettyServer.selectTransport("auto", ioUringAvailable = false, epollAvailable = true) must_== Native
+      NettyServer.selectTransport("auto", ioUringAvailable = false, epollAvailable = false) must_== Jdk
+    }
+    "reject an unknown transport" in {
+      NettyServer.selectTransport("kqueue", ioUringAvailable = true, epollAvailable = true) must throwA[
+        ServerStartException
+      ]
+    }
+    "fall back from io_uring when its artifact isn't on the classpath" in {
+      IoUringSupport.isAvailable must beFalse
+      IoUringSupport.newEventLoopGroup(1, Executors.defaultThreadFactory()) must throwA[ServerStartException]
+      IoUringSupport.serverSocketChannelClass must throwA[ServerStartException]
+      withServer("play.server.netty.transport" -> "auto") { server =>
+        server.transport must_== (if (Epoll.isAvailable) Native else Jdk)
+        get(server) must_== "ok"
+      }
+    }
+    "fail to start with io_uring when it isn't available" in {
+      withServer("play.server.netty.transport" -> "io_uring")(_ => ()) must throwA[ServerStartException]
+    }
+  }
+
+  "NettyServer acceptors" should {
+    "use one acceptor per event loop thread when not positive" in {
+      NettyServer.countAcceptors(0, eventLoopThreads = 4, Native) must_== 4
+      NettyServer.countAcceptors(-1, eventLoopThreads = 4, IoUring) must_== 4
+    }
+    "use the configured number of acceptors with the native transports" in {
+      NettyServer.countAcceptors(2, eventLoopThreads = 4, Native) must_== 2
+      NettyServer.countAcceptors(3, eventLoopThreads = 4, IoUring) must_== 3
+    }
+    "use only one acceptor with the jdk transport" in {
+      NettyServer.countAcceptors(2, eventLoopThreads = 4, Jdk) must_== 1
+      NettyServer.countAcceptors(0, eventLoopThreads = 4, Jdk) must_== 1
+    }
+    "serve requests with a single acceptor on the jdk transport" in {
+      withServer("play.server.netty.transport" -> "jdk", "play.server.netty.acceptors" -> "2") { server =>
+        server.acceptorCount must_== 1
+        get(server) must_== "ok"
+      }
+    }
+    "serve requests with several acceptors bound through SO_REUSEPORT" in {
+      if (!Epoll.isAvailable) skipped("the native epoll transport isn't available")
+      withServer("play.server.netty.transport" -> "native", "play.server.netty.acceptors" -> "2") { server =>
+        server.acceptorCount must_== 2
+        (1 to 10).map(_ => get(server)) must contain(be_==("ok")).forall
+      }
+    }
+  }
+
+  "NettyServer event loops" should {
+    def mbeanName(server: NettyServer) =
+      new ObjectName(s"play.server:type=NettyEventLoops,port=${server.mainAddress.getPort}")
+
+    "report the pending tasks of each event loop" in {
+      withServer("play.server.netty.eventLoopThreads" -> "3") { server =>
+        get(server) must_== "ok"
+        server.eventLoopPendingTasks must haveSize(3)
+        server.eventLoopPendingTasks must contain(be_>=(0)).forall
+      }
+    }
+    "not register an MBean by default" in {
+      withServer() { server =>
+        ManagementFactory.getPlatformMBeanServer.isRegistered(mbeanName(server)) must beFalse
+      }
+    }
+    "export the pending tasks of each event loop through JMX" in {
+      val mbeanServer = ManagementFactory.getPlatformMBeanServer
+      val name = withServer("play.server.netty.registerMBeans" -> "true", "play.server.netty.eventLoopThreads" -> "3") {
+        server =>
+          val name = mbeanName(server)
+          get(server) must_== "ok"
+          mbeanServer.getAttribute(name, "Transport") must_== NettyServer.transportName(server.transport)
+          val pendingTasks = mbeanServer.getAttribute(name, "PendingTasks").asInstanceOf[Array[Int]].toSeq
+          pendingTasks must haveSize(3)
+          pendingTasks must contain(be_>=(0)).forall
+          mbeanServer.getAttribute(name, "TotalPendingTasks").asInstanceOf[Int] must be_>=(0)
+          name
+      }
+      mbeanServer.isRegistered(name) must beFalse
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server.netty
+
+import io.netty.channel.embedded.EmbeddedChannel
+import io.netty.handler.codec.http.DefaultHttpRequest
+import io.netty.handler.codec.http.HttpMethod
+import io.netty.handler.codec.http.HttpVersion
+import org.specs2.mutable.Specification
+import play.api.http.HttpConfiguration
+import play.api.libs.crypto.CookieSignerProvider
+import play.api.mvc.DefaultCookieHeaderEncoding
+import play.api.mvc.DefaultFlashCookieBaker
+import play.api.mvc.DefaultSessionCookieBaker
+import play.core.server.common.ForwardedHeaderHandler
+import play.core.server.common.ServerResultUtils
+
+class NettyModelConversionSpec extends Specification {
+  private val conversion = {
+    val httpConfig     = HttpConfiguration()
+    val cookieSigner   = new CookieSignerProvider(httpConfig.secret).get
+    val sessionBaker   = new DefaultSessionCookieBaker(httpConfig.session, httpConfig.secret, cookieSigner)
+    val flashBaker     = new DefaultFlashCookieBaker(httpConfig.flash, httpConfig.secret, cookieSigner)
+    val cookieEncoding = new DefaultCookieHeaderEncoding(httpConfig.cookies)
+    val resultUtils    = new ServerResultUtils(sessionBaker, flashBaker, cookieEncoding)
+    val headerHandler  = new ForwardedHeaderHandler(ForwardedHeaderHandler.ForwardedHeaderHandlerConfig(None))
+    new NettyModelConversion(resultUtils, headerHandler, None)
+  }
+
+  "NettyModelConversion" should {
+    "not let HTTP/1.1 requests pass themselves off as HTTP/2 with a stream id header" in {
+      val request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/")
+      request.headers.add(NettyHttp2.StreamIdHeader, "3")
+      val requestHeader = conversion.convertRequest(new EmbeddedChannel(), request).get
+      requestHeader.version must_== "HTTP/1.1"
+      requestHeader.headers.get(NettyHttp2.StreamIdHeader.toString) must beNone
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server.common
+
+import java.util.concurrent.TimeUnit
+
+import scala.concurrent.duration.FiniteDuration
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.util.Try
+
+import akka.util.ByteString
+import play.api.libs.streams.Accumulator
+import play.api.mvc.EssentialAction
+import play.api.mvc.RequestHeader
+import play.api.mvc.Result
+import play.api.routing.Router.RequestImplicits._
+import play.api.Configuration
+import play.api.Logger
+
+/**
+ * Invokes the action of a request, to get the accumulator of its body.
+ *
+ * Actions are invoked on the given execution context, unless they are invoked inline, on the server thread that
+ * received the request, which saves a thread hop per request. That is the case for all actions if `inline` is set, and
+ * otherwise for the actions of routes with the `inline` modifier. The server only hops threads after that if the
+ * accumulator doesn't complete straight away.
+ *
+ * An inline action that blocks or takes long delays all the other requests of its server thread, so inline invocations
+ * that take longer than `warningThreshold` are logged.
+ *
+ * @param inline Whether all actions are invoked inline.
+ * @param warningThreshold How long an inline invocation may take before it is logged.
+ */
+private[server] final class ActionInvoker(inline: Boolean, warningThreshold: FiniteDuration) {
+  import ActionInvoker._
+
+  private val warningThresholdNanos = warningThreshold.toNanos
+
+  /**
+   * Invoke the action of a request.
+   */
+  def invoke(action: EssentialAction, request: RequestHeader)(
+      ec: ExecutionContext
+  ): Future[Accumulator[ByteString, Result]] = {
+    if (inline || request.hasRouteModifier(InlineModifier)) {
+      val start       = System.nanoTime()
+      val accumulator = Try(action(request))
+      val elapsed     = System.nanoTime() - start
+      if (elapsed > warningThresholdNanos) {
+        val millis = TimeUnit.NANOSECONDS.toMillis(elapsed)
+        logger.warn(
+          s"Invoking the action for ${request.method} ${request.path} inline took $millis ms, which delayed the other " +
+            "requests of the server thread. Actions that block should not be invoked inline."
+        )
+      }
+      Future.fromTry(accumulator)
+    } else {
+      Future(action(request))(ec)
+    }
+  }
+}
+
+private[server] object ActionInvoker {
+  private val logger = Logger(classOf[ActionInvoker])
+
+  /**
+   * The route modifier of the actions that are invoked inline.
+   */
+  val InlineModifier = "inline"
+
+  /**
+   * Create an action invoker from the `play.server` configuration.
+   */
+  def fromConfiguration(serverConfig: Configuration): ActionInvoker =
+    new ActionInvoker(
+      serverConfig.get[Boolean]("actions.inline"),
+      serverConfig.get[FiniteDuration]("actions.inlineWarningThreshold")
+    )
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server.common
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.ConcurrentHashMap
+import java.util.Locale
+
+import scala.annotation.tailrec
+import scala.concurrent.duration.FiniteDuration
+import scala.concurrent.Future
+import scala.util.control.NonFatal
+import scala.util.Failure
+import scala.util.Success
+
+import akka.stream.scaladsl.Flow
+import akka.stream.scaladsl.Keep
+import akka.stream.Materializer
+import akka.util.ByteString
+import play.api.http.HeaderNames
+import play.api.http.HttpErrorHandler
+import play.api.http.Status
+import play.api.libs.streams.Accumulator
+import play.api.mvc.EssentialAction
+import play.api.mvc.RequestHeader
+import play.api.mvc.Result
+import play.api.routing.HandlerDef
+import play.api.routing.Router
+import play.api.Configuration
+import play.api.Logger
+import play.core.Execution.Implicits.trampoline
+
+/**
+ * Limits the number of requests that are handled at the same time, and rejects the requests over the limit with a
+ * `503 Service Unavailable` and a `Retry-After` header, before their body is read.
+ *
+ * The limit adapts to the latency of the requests, by additive increase and multiplicative decrease: it grows by one
+ * for every `limit` requests that complete in time, and it shrinks by `backoffRatio` whenever an action fails, or takes
+ * longer than `latencyTolerance` times the latency its route has without load. So the limit settles around the number
+ * of requests the application can handle before they start to queue, wherever they queue. The latency of a request is
+ * measured from the time its body has been read, so that slow uploads don't shrink the limit, and it is compared with
+ * the latency of its own route, so that routes that are slow by nature don't shrink the limit for the fast ones.
+ * Requests whose body fails, for example because the client aborted them, leave the limit as it is.
+ *
+ * The latency of a route without load is the lowest latency of its requests over the last `latencyWindow` or two, so
+ * that it follows the route if it gets slower or faster for good. Routes are identified by their verb and path pattern,
+ * and the requests without a route, or of the routes beyond the first `MaxRoutes`, share a single latency.
+ *
+ * The limit is shared by all the requests, since they share the resources of the server, but requests are shed by
+ * priority, which is given by the modifiers of their route:
+ *
+ *  - requests of routes with one of the `criticalModifiers` are never rejected, although they count towards the limit,
+ *  - requests of routes with one of the `highPriorityModifiers` may use the whole limit,
+ *  - and the other requests are rejected once the requests in flight reach the limit less its `highPriorityShare`.
+ *
+ * Rejected requests are rendered by the `onServerError` method of the error handler, with a
+ * [[ServerOverloadedException]].
+ *
+ * @param settings The settings of the controller.
+ */
+private[server] final class AdmissionController(settings: AdmissionController.Settings) {
+  import AdmissionController._
+
+  private val inFlight = new AtomicInteger()
+
+  // The limit, as the bits of a double, so that it can be updated atomically
+  private val limitBits = new AtomicLong(java.lang.Double.doubleToLongBits(settings.initialLimit))
+
+  // The latency without load of each route
+  private val routeLatencies  = new ConcurrentHashMap[String, RouteLatency]()
+  private val unroutedLatency = new RouteLatency(settings.latencyWindow.toNanos)
+
+  private val retryAfter = settings.retryAfter.toSeconds.max(1).toString
+
+  private def limit: Double = java.lang.Double.longBitsToDouble(limitBits.get)
+
+  /**
+   * The current limit.
+   */
+  def currentLimit: Int = limit.toInt
+
+  /**
+   * The number of requests in flight.
+   */
+  def requestsInFlight: Int = inFlight.get
+
+  /**
+   * Wrap an action, so that it rejects its request if the server is over its limit. Returns the action itself if the
+   * controller is disabled.
+   *
+   * @param action The action to wrap.
+   * @param errorHandler The error handler that renders the rejections.
+   */
+  def apply(action: EssentialAction, errorHandler: HttpErrorHandler)(implicit mat: Materializer): EssentialAction = {
+    if (!settings.enabled) action
+    else {
+      EssentialAction { request =>
+        val route = request.attrs.get(Router.Attrs.HandlerDef)
+        if (!tryAcquire(priority(route))) {
+          logger.debug(s"Rejecting ${request.method} ${request.path}, ${inFlight.get} requests are in flight")
+          Accumulator.done(reject(request, errorHandler))
+        } else {
+          val timing = new RequestTiming
+          val accumulator =
+            try action(request)
+            catch {
+              case NonFatal(e) =>
+                release(route, timing, failed = true)
+                throw e
+            }
+          timeFromBodyRead(accumulator, timing)
+            .map { result =>
+              release(route, timing, failed = false)
+              result
+            }
+            .recover {
+              case e =>
+                release(route, timing, failed = true)
+                throw e
+            }
+        }
+      }
+    }
+  }
+
+  /**
+   * Render the rejection of a request with the error handler, as a `503 Service Unavailable` unless the error handler
+   * chose another status than 500.
+   */
+  private def reject(request: RequestHeader, errorHandler: HttpErrorHandler): Future[Result] = {
+    val limit     = currentLimit
+    val exception = new ServerOverloadedException(s"The server is over its limit of $limit requests in flight", limit)
+    errorHandler.onServerError(request, exception).map { result =>
+      val status =
+        if (result.header.status == Status.INTERNAL_SERVER_ERROR) Status.SERVICE_UNAVAILABLE else result.header.status
+      result.copy(header = result.header.copy(status = status)).withHeaders(HeaderNames.RETRY_AFTER -> retryAfter)
+    }
+  }
+
+  /**
+   * Set the start of the request once its body has been read, or once the action stops reading it, or record that the
+   * body failed. The accumulator stays strict, so that a body that is already in memory is still handed over as a
+   * single element.
+   */
+  private def timeFromBodyRead(accumulator: Accumulator[ByteString, Result], timing: RequestTiming)(
+      implicit mat: Materializer
+  ): Accumulator[ByteString, Result] = {
+    val bodyRead = Flow[ByteString].watchTermination() { (_, done) =>
+      done.onComplete {
+        case Success(_) => timing.start = System.nanoTime()
+        case Failure(_) => timing.bodyFailed = true
+      }
+    }
+    Accumulator.strict[ByteString, Result](
+      {
+        case Some(bytes) =>
+          timing.start = System.nanoTime()
+          accumulator.run(bytes)
+        case None =>
+          timing.start = System.nanoTime()
+          accumulator.run()
+      },
+      bodyRead.toMat(accumulator.toSink)(Keep.right)
+    )
+  }
+
+  private def priority(route: Option[HandlerDef]): Priority = {
+    route match {
+      case Some(handlerDef) if handlerDef.modifiers.nonEmpty =>
+        // Route modifiers are case insensitive
+        val modifiers = handlerDef.modifiers.map(_.toLowerCase(Locale.ROOT))
+        if (modifiers.exists(settings.criticalModifiers)) Critical
+        else if (modifiers.exists(settings.highPriorityModifiers)) High
+        else Normal
+      case _ => Normal
+    }
+  }
+
+  private def tryAcquire(priority: Priority): Boolean = priority match {
+    case Critical =>
+      inFlight.incrementAndGet()
+      true
+    case High   => tryAcquire(limit)
+    case Normal => tryAcquire(limit * (1 - settings.highPriorityShare))
+  }
+
+  @tailrec private def tryAcquire(allowed: Double): Boolean = {
+    val current = inFlight.get
+    if (current >= allowed) false
+    else if (inFlight.compareAndSet(current, current + 1)) true
+    else tryAcquire(allowed)
+  }
+
+  private def release(route: Option[HandlerDef], timing: RequestTiming, failed: Boolean): Unit = {
+    val latency = System.nanoTime() - timing.start
+    val current = inFlight.getAndDecrement()
+    // A request whose body failed, such as one aborted by the client, says nothing about the load of the server
+    if (!timing.bodyFailed) {
+      if (failed || latency > routeLatency(route).record(latency) * settings.latencyTolerance) {
+        updateLimit(limit => math.max(settings.minLimit, limit * settings.backoffRatio))
+      } else if (current * 2 >= limit) {
+        // Only grow the limit while it's being used, so that it doesn't grow without bound while the server idles
+        updateLimit(limit => math.min(settings.maxLimit, limit + 1 / limit))
+      }
+    }
+  }
+
+  @tailrec private def updateLimit(update: Double => Double): Unit = {
+    val bits    = limitBits.get
+    val updated = java.lang.Double.doubleToLongBits(update(java.lang.Double.longBitsToDouble(bits)))
+    if (!limitBits.compareAndSet(bits, updated)) updateLimit(update)
+  }
+
+  private def routeLatency(route: Option[HandlerDef]): RouteLatency = route match {
+    case Some(handlerDef) =>
+      // Not the HandlerDef itself, which holds the class loader of the application
+      val key     = handlerDef.verb + " " + handlerDef.path
+      val latency = routeLatencies.get(key)
+      if (latency != null) latency
+      else if (routeLatencies.size >= MaxRoutes) unroutedLatency
+      else routeLatencies.computeIfAbsent(key, _ => new RouteLatency(settings.latencyWindow.toNanos))
+    case None => unroutedLatency
+  }
+}
+
+private[server] object AdmissionController {
+  private val logger = Logger(classOf[AdmissionController])
+
+  /**
+   * The number of routes whose latency is kept apart.
+   */
+  val MaxRoutes = 1000
+
+  /**
+   * The start of a request, reset once its body has been read, and whether reading its body failed.
+   */
+  private final class RequestTiming {
+    @volatile var start: Long         = System.nanoTime()
+    @volatile var bodyFailed: Boolean = false
+  }
+
+  /**
+   * The latency of a route without load: the lowest latency of its successful requests in the current window and in
+   * the previous one, if the previous window has just ended.
+   */
+  private final class RouteLatency(windowNanos: Long) {
+    private val windowStart = new AtomicLong(System.nanoTime())
+    private val previousMin = new AtomicLong(Long.MaxValue)
+    private val currentMin  = new AtomicLong(Long.MaxValue)
+
+    /**
+     * Record the latency of a request, and return the latency without load.
+     */
+    def record(latency: Long): Long = {
+      val now   = System.nanoTime()
+      val start = windowStart.get
+      if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+        val lastMin = currentMin.getAndSet(latency)
+        previousMin.set(if (now - start < 2 * windowNanos) lastMin else Long.MaxValue)
+      } else {
+        currentMin.accumulateAndGet(latency, (a, b) => math.min(a, b))
+      }
+      math.min(previousMin.get, currentMin.get)
+    }
+  }
+
+  private sealed trait Priority
+  private case object Critical extends Priority
+  private case object High     extends Priority
+  private case object Normal   extends Priority
+
+  /**
+   * The settings of an admission controller, see the `play.server.admission` configuration.
+   */
+  final case class Settings(
+      enabled: Boolean,
+      initialLimit: Int,
+      minLimit: Int,
+      maxLimit: Int,
+      latencyTolerance: Double,
+      latencyWindow: FiniteDuration,
+      backoffRatio: Double,
+      retryAfter: FiniteDuration,
+      criticalModifiers: Set[String],
+      highPriorityModifiers: Set[String],
+      highPriorityShare: Double
+  ) {
+    require(0 < minLimit && minLimit <= initialLimit && initialLimit <= maxLimit, "limits must be ordered and positive")
+    require(latencyTolerance >= 1, "latencyTolerance must be at least 1")
+    require(latencyWindow.toNanos > 0, "latencyWindow must be positive")
+    require(0 < backoffRatio && backoffRatio < 1, "backoffRatio must be between 0 and 1")
+    require(0 <= highPriorityShare && highPriorityShare < 1, "highPriorityShare must be between 0 and 1")
+  }
+
+  /**
+   * Create an admission controller from the `play.server` configuration.
+   */
+  def fromConfiguration(serverConfig: Configuration): AdmissionController = {
+    val config = serverConfig.get[Configuration]("admission")
+    new AdmissionController(
+      Settings(
+        enabled = config.get[Boolean]("enabled"),
+        initialLimit = config.get[Int]("initialLimit"),
+        minLimit = config.get[Int]("minLimit"),
+        maxLimit = config.get[Int]("maxLimit"),
+        latencyTolerance = config.get[Double]("latencyTolerance"),
+        latencyWindow = config.get[FiniteDuration]("latencyWindow"),
+        backoffRatio = config.get[Double]("backoffRatio"),
+        retryAfter = config.get[FiniteDuration]("retryAfter"),
+        criticalModifiers = config.get[Seq[String]]("criticalModifiers").map(_.toLowerCase(Locale.ROOT)).toSet,
+        highPriorityModifiers = config.get[Seq[String]]("highPriorityModifiers").map(_.toLowerCase(Locale.ROOT)).toSet,
+        highPriorityShare = config.get[Double]("highPriorityShare")
+      )
+    )
+  }
+}
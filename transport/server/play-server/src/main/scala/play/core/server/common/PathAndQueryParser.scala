@@ -19,25 +19,15 @@ private[server] object PathAndQueryParser {
    */
   @throws[IllegalArgumentException]
   def parse(uri: String): (String, String) = {
-    // https://tools.ietf.org/html/rfc3986#section-3.3
-    val withoutHost = uri.dropWhile(_ != '/')
-    // The path is terminated by the first question mark ("?")
-    // or number sign ("#") character, or by the end of the URI.
-    val queryEndPos = Some(withoutHost.indexOf('#')).filter(_ != -1).getOrElse(withoutHost.length)
-    val pathEndPos  = Some(withoutHost.indexOf('?')).filter(_ != -1).getOrElse(queryEndPos)
-    val unsafePath  = withoutHost.substring(0, pathEndPos)
+    val withoutHost = stripHost(uri)
+    val queryEndPos = queryEnd(withoutHost)
+    val pathEndPos  = pathEnd(withoutHost, queryEndPos)
     // https://tools.ietf.org/html/rfc3986#section-3.4
     // The query component is indicated by the first question
     // mark ("?") character and terminated by a number sign ("#") character
     // or by the end of the URI.
     val queryString = withoutHost.substring(pathEndPos, queryEndPos)
-
-    // wrapping into URI to handle absoluteURI and path validation
-    val parsedPath = Option(new URI(unsafePath).getRawPath).getOrElse {
-      // if the URI has a invalid path, this will trigger a 400 error
-      throw new IllegalStateException(s"Cannot parse path from URI: $unsafePath")
-    }
-    (parsedPath, queryString)
+    (validatePath(withoutHost.substring(0, pathEndPos)), queryString)
   }
 
   /**
@@ -50,5 +40,83 @@ private[server] object PathAndQueryParser {
    * @return
    */
   @throws[IllegalArgumentException]
-  def parsePath(uri: String): String = parse(uri)._1
+  def parsePath(uri: String): String = {
+    val withoutHost = stripHost(uri)
+    validatePath(withoutHost.substring(0, pathEnd(withoutHost, queryEnd(withoutHost))))
+  }
+
+  /**
+   * Parse URI String and extract the query string part only, including the leading question mark if there is one.
+   * The path part is not validated.
+   */
+  def parseQueryString(uri: String): String = {
+    val withoutHost = stripHost(uri)
+    val queryEndPos = queryEnd(withoutHost)
+    withoutHost.substring(pathEnd(withoutHost, queryEndPos), queryEndPos)
+  }
+
+  // https://tools.ietf.org/html/rfc3986#section-3.3
+  private def stripHost(uri: String): String = {
+    val pathStart = uri.indexOf('/')
+    if (pathStart < 0) "" else if (pathStart == 0) uri else uri.substring(pathStart)
+  }
+
+  // The path is terminated by the first question mark ("?")
+  // or number sign ("#") character, or by the end of the URI.
+  private def queryEnd(withoutHost: String): Int = {
+    val fragmentPos = withoutHost.indexOf('#')
+    if (fragmentPos == -1) withoutHost.length else fragmentPos
+  }
+
+  private def pathEnd(withoutHost: String, queryEndPos: Int): Int = {
+    val queryPos = withoutHost.indexOf('?')
+    if (queryPos == -1) queryEndPos else queryPos
+  }
+
+  private def validatePath(unsafePath: String): String = {
+    if (isPlainPath(unsafePath)) {
+      // java.net.URI would give us back the same path
+      unsafePath
+    } else {
+      // wrapping into URI to handle absoluteURI and path validation
+      Option(new URI(unsafePath).getRawPath).getOrElse {
+        // if the URI has a invalid path, this will trigger a 400 error
+        throw new IllegalStateException(s"Cannot parse path from URI: $unsafePath")
+      }
+    }
+  }
+
+  // The ASCII characters that java.net.URI accepts unescaped in a path
+  private val pathChars: Array[Boolean] = {
+    val chars = new Array[Boolean](128)
+    (('a' to 'z') ++ ('A' to 'Z') ++ ('0' to '9') ++ "-_.!~*'():@&=+$,;/").foreach(c => chars(c) = true)
+    chars
+  }
+
+  private def isHexDigit(c: Char): Boolean = c < 128 && Character.digit(c, 16) >= 0
+
+  /**
+   * Whether the path is an absolute path made only of legal ASCII characters and valid percent-encoded octets, in
+   * which case it can't be mistaken for anything else than a path and doesn't need to be validated by
+   * [[java.net.URI]].
+   */
+  private def isPlainPath(path: String): Boolean = {
+    if (path.isEmpty || path.charAt(0) != '/' || path.startsWith("//")) {
+      false
+    } else {
+      var plain = true
+      var i     = 1
+      while (plain && i < path.length) {
+        val c = path.charAt(i)
+        if (c == '%') {
+          plain = i + 2 < path.length && isHexDigit(path.charAt(i + 1)) && isHexDigit(path.charAt(i + 2))
+          i += 3
+        } else {
+          plain = c < 128 && pathChars(c)
+          i += 1
+        }
+      }
+      plain
+    }
+  }
 }
@@ -0,0 +1,17 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server.common
+
+/**
+ * This exception is passed to the error handler when the Play server
+ * rejects a request because too many requests are in flight, see the
+ * `play.server.admission` configuration. The result of the error handler
+ * is sent with a `503 Service Unavailable` status if its status is 500,
+ * and with a `Retry-After` header.
+ *
+ * @param message The reason for the exception.
+ * @param limit The number of requests in flight the server was limited to.
+ */
+class ServerOverloadedException(message: String, val limit: Int) extends Exception(message, null, false, false)
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server.common
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.specs2.mutable.Specification
+import play.api.http.HttpConfiguration
+import play.api.libs.streams.Accumulator
+import play.api.libs.typedmap.TypedMap
+import play.api.mvc._
+import play.api.mvc.request.DefaultRequestFactory
+import play.api.mvc.request.RemoteConnection
+import play.api.mvc.request.RequestTarget
+import play.api.routing.HandlerDef
+import play.api.routing.Router
+
+import scala.concurrent.duration._
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext
+
+class ActionInvokerSpec extends Specification {
+  private def requestHeader(modifiers: String*): RequestHeader = {
+    val handlerDef =
+      HandlerDef(getClass.getClassLoader, "router", "Controller", "method", Nil, "GET", "/", "", modifiers)
+    new DefaultRequestFactory(HttpConfiguration()).createRequestHeader(
+      RemoteConnection("", false, None),
+      "GET",
+      RequestTarget("/", "/", Map.empty),
+      "HTTP/1.1",
+      Headers(),
+      TypedMap(Router.Attrs.HandlerDef -> handlerDef)
+    )
+  }
+
+  /** An execution context that counts the tasks it runs, and runs them on the calling thread. */
+  private class CountingExecutionContext extends ExecutionContext {
+    val tasks = new AtomicInteger()
+    def execute(runnable: Runnable): Unit = {
+      tasks.incrementAndGet()
+      runnable.run()
+    }
+    def reportFailure(cause: Throwable): Unit = ()
+  }
+
+  private val action = EssentialAction(_ => Accumulator.done(Results.Ok))
+
+  "ActionInvoker" should {
+    "invoke actions on the execution context by default" in {
+      val ec = new CountingExecutionContext
+      Await.result(new ActionInvoker(false, 10.millis).invoke(action, requestHeader())(ec), 1.second)
+      ec.tasks.get must_== 1
+    }
+    "invoke all actions inline when configured" in {
+      val ec     = new CountingExecutionContext
+      val future = new ActionInvoker(true, 10.millis).invoke(action, requestHeader())(ec)
+      future.isCompleted must beTrue
+      ec.tasks.get must_== 0
+    }
+    "invoke the actions of routes with the inline modifier inline" in {
+      val ec     = new CountingExecutionContext
+      val future = new ActionInvoker(false, 10.millis).invoke(action, requestHeader("inline"))(ec)
+      future.isCompleted must beTrue
+      ec.tasks.get must_== 0
+    }
+    "fail the future when an inline action throws" in {
+      val future = new ActionInvoker(true, 10.millis).invoke(EssentialAction(_ => sys.error("boom")), requestHeader())(
+        ExecutionContext.global
+      )
+      Await.result(future, 1.second) must throwA[RuntimeException]("boom")
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server.common
+
+import akka.actor.ActorSystem
+import akka.pattern.after
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import akka.stream.Materializer
+import akka.util.ByteString
+import org.specs2.mutable.Specification
+import org.specs2.specification.AfterAll
+import play.api.http.HttpConfiguration
+import play.api.http.HttpErrorHandler
+import play.api.libs.streams.Accumulator
+import play.api.libs.typedmap.TypedMap
+import play.api.mvc._
+import play.api.mvc.request.DefaultRequestFactory
+import play.api.mvc.request.RemoteConnection
+import play.api.mvc.request.RequestTarget
+import play.api.routing.HandlerDef
+import play.api.routing.Router
+
+import scala.concurrent.duration._
+import scala.concurrent.Await
+import scala.concurrent.Future
+import scala.concurrent.Promise
+
+class AdmissionControllerSpec extends Specification with AfterAll {
+  implicit val system       = ActorSystem("admission-controller-spec")
+  implicit val materializer = Materializer.matFromSystem
+
+  def afterAll(): Unit = {
+    materializer.shutdown()
+    system.terminate()
+  }
+
+  private def requestHeader(modifiers: String*): RequestHeader = routeRequestHeader("method", modifiers: _*)
+
+  /** A request header of the route to the given controller method. */
+  private def routeRequestHeader(method: String, modifiers: String*): RequestHeader = {
+    val handlerDef =
+      HandlerDef(getClass.getClassLoader, "router", "Controller", method, Nil, "GET", s"/$method", "", modifiers)
+    new DefaultRequestFactory(HttpConfiguration()).createRequestHeader(
+      RemoteConnection("", false, None),
+      "GET",
+      RequestTarget("/", "/", Map.empty),
+      "HTTP/1.1",
+      Headers(),
+      TypedMap(Router.Attrs.HandlerDef -> handlerDef)
+    )
+  }
+
+  private def settings(
+      enabled: Boolean = true,
+      latencyTolerance: Double = 1000,
+      latencyWindow: FiniteDuration = 1.minute
+  ) = AdmissionController.Settings(
+    enabled = enabled,
+    initialLimit = 10,
+    minLimit = 1,
+    maxLimit = 100,
+    latencyTolerance = latencyTolerance,
+    latencyWindow = latencyWindow,
+    backoffRatio = 0.5,
+    retryAfter = 3.seconds,
+    criticalModifiers = Set("health"),
+    highPriorityModifiers = Set("payment"),
+    highPriorityShare = 0.2
+  )
+
+  /** An action whose results complete when the given promise does. */
+  private def pendingAction(result: Promise[Result]) = EssentialAction(_ => Accumulator.done(result.future))
+
+  /** An action whose results complete the given delay after its body has been read. */
+  private def delayedAction(delay: FiniteDuration) = EssentialAction { _ =>
+    import system.dispatcher
+    Accumulator(Sink.ignore).mapFuture(_ => after(delay, system.scheduler)(Future.successful(Results.Ok)))
+  }
+
+  /** An error handler that renders server errors with the message of their exception. */
+  private class MessageErrorHandler(status: Int = 500) extends HttpErrorHandler {
+    def onClientError(request: RequestHeader, statusCode: Int, message: String): Future[Result] =
+      Future.successful(Results.Status(statusCode)(message))
+    def onServerError(request: RequestHeader, exception: Throwable): Future[Result] =
+      Future.successful(Results.Status(status)(exception.getMessage))
+  }
+
+  private def run(
+      controller: AdmissionController,
+      action: EssentialAction,
+      request: RequestHeader,
+      errorHandler: HttpErrorHandler = new MessageErrorHandler
+  ): Future[Result] =
+    controller(action, errorHandler)(request).run()
+
+  "AdmissionController" should {
+    "leave actions untouched when disabled" in {
+      val action = pendingAction(Promise())
+      new AdmissionController(settings(enabled = false))(action, new MessageErrorHandler) must beTheSameAs(action)
+    }
+    "reject requests over the limit before reading their body" in {
+      val controller = new AdmissionController(settings())
+      val pending    = Promise[Result]()
+      (1 to 8).foreach(_ => run(controller, pendingAction(pending), requestHeader()))
+      controller.requestsInFlight must_== 8
+
+      val result = Await.result(run(controller, pendingAction(pending), requestHeader()), 1.second)
+      result.header.status must_== 503
+      result.header.headers.get("Retry-After") must beSome("3")
+      controller.requestsInFlight must_== 8
+    }
+    "render the rejections with the error handler" in {
+      val controller = new AdmissionController(settings())
+      val pending    = Promise[Result]()
+      (1 to 8).foreach(_ => run(controller, pendingAction(pending), requestHeader()))
+
+      val result = Await.result(run(controller, pendingAction(pending), requestHeader()), 1.second)
+      val body   = Await.result(result.body.consumeData, 1.second).utf8String
+      body must_== "The server is over its limit of 10 requests in flight"
+
+      // A status other than 500 chosen by the error handler is kept
+      val errorHandler  = new MessageErrorHandler(429)
+      val tooManyResult = Await.result(run(controller, pendingAction(pending), requestHeader(), errorHandler), 1.second)
+      tooManyResult.header.status must_== 429
+      tooManyResult.header.headers.get("Retry-After") must beSome("3")
+    }
+    "admit high priority requests into the reserved share of the limit" in {
+      val controller = new AdmissionController(settings())
+      val pending    = Promise[Result]()
+      (1 to 8).foreach(_ => run(controller, pendingAction(pending), requestHeader()))
+      (1 to 2).foreach(_ => run(controller, pendingAction(pending), requestHeader("payment")))
+      controller.requestsInFlight must_== 10
+
+      val result = Await.result(run(controller, pendingAction(pending), requestHeader("Payment")), 1.second)
+      result.header.status must_== 503
+    }
+    "never reject critical requests" in {
+      val controller = new AdmissionController(settings())
+      val pending    = Promise[Result]()
+      (1 to 10).foreach(_ => run(controller, pendingAction(pending), requestHeader("payment")))
+
+      val result = run(controller, EssentialAction(_ => Accumulator.done(Results.Ok)), requestHeader("health"))
+      Await.result(result, 1.second).header.status must_== 200
+    }
+    "release the requests that complete or fail" in {
+      val controller = new AdmissionController(settings())
+      val succeeded  = Promise[Result]()
+      val failed     = Promise[Result]()
+      run(controller, pendingAction(succeeded), requestHeader())
+      run(controller, pendingAction(failed), requestHeader())
+      controller.requestsInFlight must_== 2
+
+      succeeded.success(Results.Ok)
+      failed.failure(new RuntimeException("boom"))
+      controller.requestsInFlight must_== 0
+    }
+    "shrink the limit when actions fail" in {
+      val controller = new AdmissionController(settings())
+      run(controller, EssentialAction(_ => sys.error("boom")), requestHeader()) must throwA[RuntimeException]
+      controller.currentLimit must_== 5
+    }
+    "leave the limit as it is when the body of a request fails" in {
+      val controller = new AdmissionController(settings())
+      val body       = Source.failed[ByteString](new RuntimeException("aborted"))
+      val result     = controller(delayedAction(0.millis), new MessageErrorHandler)(requestHeader()).run(body)
+      Await.result(result, 1.second) must throwA[RuntimeException]
+      controller.currentLimit must_== 10
+      controller.requestsInFlight must_== 0
+    }
+    "compare the latency of requests with the latency of their own route" in {
+      val controller = new AdmissionController(settings(latencyTolerance = 5))
+      Await.result(run(controller, delayedAction(0.millis), routeRequestHeader("fast")), 1.second)
+      (1 to 3).foreach { _ =>
+        Await.result(run(controller, delayedAction(50.millis), routeRequestHeader("slow")), 1.second)
+      }
+      controller.currentLimit must_== 10
+
+      Await.result(run(controller, delayedAction(50.millis), routeRequestHeader("fast")), 1.second)
+      controller.currentLimit must_== 5
+    }
+    "forget the latency of a route without load once two windows have passed" in {
+      val controller = new AdmissionController(settings(latencyTolerance = 5, latencyWindow = 50.millis))
+      Await.result(run(controller, delayedAction(0.millis), routeRequestHeader("route")), 1.second)
+      Thread.sleep(150)
+      // The route got slower for good
+      Await.result(run(controller, delayedAction(50.millis), routeRequestHeader("route")), 1.second)
+      controller.currentLimit must_== 10
+    }
+    "measure the latency of requests from the time their body has been read" in {
+      val controller = new AdmissionController(settings(latencyTolerance = 5))
+      val body       = Source.single(ByteString("body"))
+      val action     = controller(delayedAction(20.millis), new MessageErrorHandler)
+      Await.result(action(requestHeader()).run(body), 1.second)
+      Await.result(action(requestHeader()).run(body.initialDelay(200.millis)), 1.second)
+      controller.currentLimit must_== 10
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.core.server.common
+
+import java.net.URI
+
+import org.specs2.mutable.Specification
+
+import scala.util.Try
+
+class PathAndQueryParserSpec extends Specification {
+  "PathAndQueryParser" should {
+    "parse the path and query string" in {
+      PathAndQueryParser.parse("/a/b?c=d") must_== ("/a/b" -> "?c=d")
+      PathAndQueryParser.parse("/a/b") must_== ("/a/b" -> "")
+      PathAndQueryParser.parse("/a/b?c=d#e") must_== ("/a/b" -> "?c=d")
+      PathAndQueryParser.parse("http://localhost:9000/a?b") must_== ("/a" -> "?b")
+    }
+
+    "parse only the path" in {
+      PathAndQueryParser.parsePath("/a/b?c=d") must_== "/a/b"
+      PathAndQueryParser.parsePath("http://localhost:9000") must_== ""
+    }
+
+    "parse only the query string" in {
+      PathAndQueryParser.parseQueryString("/a/b?c=d") must_== "?c=d"
+      PathAndQueryParser.parseQueryString("/a/b") must_== ""
+    }
+
+    "validate paths the same way as java.net.URI" in {
+      val paths = Seq(
+        "/",
+        "/a/b;c=d",
+        "/some%20file",
+        "/a:b@c",
+        "//host/path",
+        "/café",
+        "/a b",
+        "/invalid%2",
+        "/invalid%zz",
+        "/a|b"
+      )
+      foreach(paths) { path =>
+        val expected = Try(new URI(path).getRawPath).toOption.flatMap(Option(_))
+        Try(PathAndQueryParser.parsePath(path)).toOption must_== expected
+      }
+    }
+  }
+}
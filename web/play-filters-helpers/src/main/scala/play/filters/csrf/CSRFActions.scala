@@ -133,7 +133,7 @@ class CSRFAction(
   }
 
   private def checkFormBody: (RequestHeader, EssentialAction, String, String) => Accumulator[ByteString, Result] =
-    checkBody(extractTokenFromFormBody)
+    checkBody(new FormBodyTokenScanner(_))
 
   private def checkMultipartBody(
       request: RequestHeader,
@@ -146,7 +146,7 @@ class CSRFAction(
       maybeBoundary <- mt.parameters.find(_._1.equalsIgnoreCase("boundary"))
       boundary      <- maybeBoundary._2
     } yield {
-      checkBody(extractTokenFromMultipartFormDataBody(ByteString(boundary)))(
+      checkBody(new MultipartBodyTokenScanner(ByteString(boundary), _, config.tokenBeforeFiles))(
         request,
         action,
         tokenFromHeader,
@@ -156,7 +156,7 @@ class CSRFAction(
   }
 
   private def checkBody[T](
-      extractor: (ByteString, String) => Option[String]
+      newScanner: String => BodyTokenScanner
   )(request: RequestHeader, action: EssentialAction, tokenFromHeader: String, tokenName: String) = {
     // We need to ensure that the action isn't actually executed until the body is validated.
     // To do that, we use Flow.splitWhen(_ => false).  This basically says, give me a Source
@@ -167,16 +167,21 @@ class CSRFAction(
     // CSRF check failures are used by failing the stream with a NoTokenInBody exception.
     Accumulator(
       Flow[ByteString]
-        .via(new BodyHandler(config, { body =>
-          if (extractor(body, tokenName).fold(false)(tokenProvider.compareTokens(_, tokenFromHeader))) {
-            filterLogger.trace("[CSRF] Valid token found in body")
-            true
-          } else {
-            filterLogger.warn("[CSRF] Check failed because no or invalid token found in body for " + request.uri)(
-              SecurityMarkerContext
-            )
-            false
-          }
+        .via(new BodyHandler(config, { () =>
+          val scanner = newScanner(tokenName)
+          (chunk, last) =>
+            scanner.scan(chunk, last) match {
+              case BodyToken.Found(token) if tokenProvider.compareTokens(token, tokenFromHeader) =>
+                filterLogger.trace("[CSRF] Valid token found in body")
+                Some(true)
+              case BodyToken.Incomplete if !last =>
+                None
+              case _ =>
+                filterLogger.warn("[CSRF] Check failed because no or invalid token found in body for " + request.uri)(
+                  SecurityMarkerContext
+                )
+                Some(false)
+            }
         }))
         .splitWhen(_ => false)
         .prefixAndTail(0) // TODO rewrite BodyHandler such that it emits sub-source then we can avoid all these dancing around
@@ -193,125 +198,225 @@ class CSRFAction(
           csrfActionHelper.clearTokenIfInvalid(request, errorHandler, "No CSRF token found in body")
       }
   }
+}
+
+/**
+ * The result of looking for the token in the body, or in its start.
+ */
+private sealed trait BodyToken
+
+private object BodyToken {
+
+  /** The token found in the body. */
+  final case class Found(token: String) extends BodyToken
+
+  /** The token isn't in the body. */
+  case object Missing extends BodyToken
+
+  /** The token wasn't found, but it may be in the rest of the body. */
+  case object Incomplete extends BodyToken
+}
+
+/**
+ * Looks for the token in a body as it arrives.
+ *
+ * The body is given one chunk at a time, and each byte is only scanned once, apart from the few bytes at the end of a
+ * chunk that may be the start of what is looked for, and the part being scanned (the headers of a multipart part, or
+ * the token) when it doesn't fit in the chunk. A scanner is used for a single body.
+ */
+private sealed trait BodyTokenScanner {
 
   /**
-   * Does a very simple parse of the form body to find the token, if it exists.
+   * Scans the next chunk of the body.
+   *
+   * @param chunk The next chunk of the body, which may be empty.
+   * @param last Whether the body ends with this chunk, in which case the token can't be incomplete anymore.
    */
-  private def extractTokenFromFormBody(body: ByteString, tokenName: String): Option[String] = {
-    val tokenEquals = ByteString(URLEncoder.encode(tokenName, "utf-8")) ++ ByteString('=')
+  def scan(chunk: ByteString, last: Boolean): BodyToken
+}
 
-    // First check if it's the first token
-    if (body.startsWith(tokenEquals)) {
-      Some(URLDecoder.decode(body.drop(tokenEquals.size).takeWhile(_ != '&').utf8String, "utf-8"))
+/**
+ * Does a very simple parse of a form body to find the token, if it exists.
+ *
+ * The token is only found once its value is followed by `&`, or the body ends, since it could otherwise continue in
+ * the rest of the body.
+ */
+private final class FormBodyTokenScanner(tokenName: String) extends BodyTokenScanner {
+  private val andTokenEquals = ByteString('&') ++ ByteString(URLEncoder.encode(tokenName, "utf-8")) ++ ByteString('=')
+
+  /**
+   * The part of the body that hasn't been ruled out yet. It starts with `&`, so that the token is found the same way
+   * when it's the first field. Once the name of the token is found, it starts with the value of the token.
+   */
+  private var window: ByteString = ByteString('&')
+
+  /** Whether the name of the token has been found. */
+  private var inValue = false
+
+  /** Where the search for the end of the value resumes. */
+  private var position = 0
+
+  def scan(chunk: ByteString, last: Boolean): BodyToken = {
+    window ++= chunk
+    if (!inValue) {
+      window.indexOfSlice(andTokenEquals) match {
+        case -1 =>
+          // Only keep what may be the start of the name of the token
+          window = window.takeRight(andTokenEquals.size - 1)
+        case index =>
+          window = window.drop(index + andTokenEquals.size)
+          inValue = true
+      }
+    }
+
+    if (!inValue) {
+      BodyToken.Incomplete
     } else {
-      val andTokenEquals = ByteString('&') ++ tokenEquals
-      val index          = body.indexOfSlice(andTokenEquals)
-      if (index == -1) {
-        None
-      } else {
-        Some(URLDecoder.decode(body.drop(index + andTokenEquals.size).takeWhile(_ != '&').utf8String, "utf-8"))
+      window.indexOf('&', position) match {
+        case -1 if !last =>
+          position = window.size
+          BodyToken.Incomplete
+        case -1  => BodyToken.Found(URLDecoder.decode(window.utf8String, "utf-8"))
+        case end => BodyToken.Found(URLDecoder.decode(window.take(end).utf8String, "utf-8"))
       }
     }
   }
+}
+
+/**
+ * Does a very simple multipart/form-data parse to find the token if it exists.
+ *
+ * The token is only found once the boundary after its value has been read. If the token must come before the file
+ * parts, the token is missing as soon as the first file part starts.
+ */
+private final class MultipartBodyTokenScanner(boundary: ByteString, tokenName: String, tokenBeforeFiles: Boolean)
+    extends BodyTokenScanner {
+  private val crlf         = ByteString("\r\n")
+  private val boundaryLine = ByteString("\r\n--") ++ boundary
+
+  /**
+   * The part of the body that hasn't been ruled out yet. It starts either at the boundary of the part whose headers
+   * are being read, in the data of a part, or, once its headers have been read, at the value of the token.
+   *
+   * A boundary will start with CRLF, unless it's the first boundary in the body.  So that we don't have to handle
+   * the first boundary differently, the body is prefixed with CRLF.
+   */
+  private var window: ByteString = crlf
+
+  /** Whether the headers of the token part have been read. */
+  private var inToken = false
+
+  /** Where the search for the end of the token resumes. */
+  private var position = 0
+
+  def scan(chunk: ByteString, last: Boolean): BodyToken = {
+    window ++= chunk
+    if (inToken) findEndOfToken() else findToken(last)
+  }
 
   /**
-   * Does a very simple multipart/form-data parse to find the token if it exists.
+   * Extract the headers from the given position.
+   *
+   * This is invoked recursively, and exits when it reaches the end of stream, or a blank line (indicating end of
+   * headers).  It returns the headers, and the position of the first byte after the headers, or None if the end of
+   * the headers hasn't been read yet.  The headers are all converted to lower case.
    */
-  private def extractTokenFromMultipartFormDataBody(
-      boundary: ByteString
-  )(body: ByteString, tokenName: String): Option[String] = {
-    val crlf         = ByteString("\r\n")
-    val boundaryLine = ByteString("\r\n--") ++ boundary
-
-    /**
-     * A boundary will start with CRLF, unless it's the first boundary in the body.  So that we don't have to handle
-     * the first boundary differently, prefix the whole body with CRLF.
-     */
-    val prefixedBody = crlf ++ body
-
-    /**
-     * Extract the headers from the given position.
-     *
-     * This is invoked recursively, and exits when it reaches the end of stream, or a blank line (indicating end of
-     * headers).  It returns the headers, and the position of the first byte after the headers.  The headers are all
-     * converted to lower case.
-     */
-    def extractHeaders(position: Int): (Int, List[(String, String)]) = {
-      // If it starts with CRLF, we've reached the end of the headers
-      if (prefixedBody.startsWith(crlf, position)) {
-        (position + 2) -> Nil
+  private def extractHeaders(position: Int, last: Boolean): Option[(Int, List[(String, String)])] = {
+    // If it starts with CRLF, we've reached the end of the headers
+    if (window.startsWith(crlf, position)) {
+      Some((position + 2) -> Nil)
+    } else {
+      // Read up to the next CRLF
+      val nextCrlf = window.indexOfSlice(crlf, position)
+      if (nextCrlf == -1) {
+        // Technically this is a protocol error, unless the rest of the headers hasn't been read yet
+        if (last) Some(position -> Nil) else None
       } else {
-        // Read up to the next CRLF
-        val nextCrlf = prefixedBody.indexOfSlice(crlf, position)
-        if (nextCrlf == -1) {
-          // Technically this is a protocol error
-          position -> Nil
-        } else {
-          val header = prefixedBody.slice(position, nextCrlf).utf8String
-          header.split(":", 2) match {
-            case Array(_) =>
-              // Bad header, ignore
-              extractHeaders(nextCrlf + 2)
-            case Array(key, value) =>
-              val (endIndex, headers) = extractHeaders(nextCrlf + 2)
-              endIndex -> ((key.trim().toLowerCase(Locale.ENGLISH) -> value.trim()) :: headers)
-          }
+        val header = window.slice(position, nextCrlf).utf8String
+        header.split(":", 2) match {
+          case Array(_) =>
+            // Bad header, ignore
+            extractHeaders(nextCrlf + 2, last)
+          case Array(key, value) =>
+            extractHeaders(nextCrlf + 2, last).map {
+              case (endIndex, headers) =>
+                endIndex -> ((key.trim().toLowerCase(Locale.ENGLISH) -> value.trim()) :: headers)
+            }
         }
       }
     }
+  }
 
-    /**
-     * Find the token.
-     *
-     * This is invoked recursively, once for each part found.  It finds the start of the next part, then extracts
-     * the headers, and if the header has a name of our token name, then it extracts the body, and returns that,
-     * otherwise it moves onto the next part.
-     */
-    def findToken(position: Int): Option[String] = {
-      // Find the next boundary from position
-      prefixedBody.indexOfSlice(boundaryLine, position) match {
-        case -1           => None
-        case nextBoundary =>
-          // Progress past the CRLF at the end of the boundary
-          val nextCrlf = prefixedBody.indexOfSlice(crlf, nextBoundary + boundaryLine.size)
-          if (nextCrlf == -1) {
-            None
-          } else {
-            val startOfNextPart = nextCrlf + 2
-            // Extract the headers
-            val (startOfPartData, headers) = extractHeaders(startOfNextPart)
-            headers.toMap match {
-              case Multipart.PartInfoMatcher(name) if name == tokenName =>
-                // This part is the token, find the next boundary
-                val endOfData = prefixedBody.indexOfSlice(boundaryLine, startOfPartData)
-                if (endOfData == -1) {
-                  None
-                } else {
-                  // Extract the token value
-                  Some(prefixedBody.slice(startOfPartData, endOfData).utf8String)
-                }
-              case _ =>
-                // Find the next part
-                findToken(startOfPartData)
-            }
+  /**
+   * Find the token.
+   *
+   * This is invoked recursively, once for each part found.  It finds the start of the next part, then extracts
+   * the headers, and if the header has a name of our token name, then it extracts the body, and returns that,
+   * otherwise it moves onto the next part.
+   */
+  private def findToken(last: Boolean): BodyToken = {
+    // Find the next boundary
+    window.indexOfSlice(boundaryLine) match {
+      case -1 =>
+        // Only keep what may be the start of the next boundary
+        window = window.takeRight(boundaryLine.size - 1)
+        BodyToken.Incomplete
+      case nextBoundary =>
+        window = window.drop(nextBoundary)
+        // Progress past the CRLF at the end of the boundary
+        val nextCrlf = window.indexOfSlice(crlf, boundaryLine.size)
+        if (nextCrlf == -1) {
+          BodyToken.Incomplete
+        } else {
+          // Extract the headers
+          extractHeaders(nextCrlf + 2, last) match {
+            case None => BodyToken.Incomplete
+            case Some((startOfPartData, headers)) =>
+              window = window.drop(startOfPartData)
+              headers.toMap match {
+                case Multipart.PartInfoMatcher(name) if name == tokenName =>
+                  // This part is the token, find the next boundary
+                  inToken = true
+                  findEndOfToken()
+                case Multipart.FileInfoMatcher(_, _, _, _) if tokenBeforeFiles =>
+                  BodyToken.Missing
+                case _ =>
+                  // Find the next part
+                  findToken(last)
+              }
           }
-      }
+        }
     }
+  }
 
-    findToken(0)
+  private def findEndOfToken(): BodyToken = {
+    window.indexOfSlice(boundaryLine, position) match {
+      case -1 =>
+        // The next boundary may start in what has been read
+        position = math.max(position, window.size - boundaryLine.size + 1)
+        BodyToken.Incomplete
+      case endOfData =>
+        // Extract the token value
+        BodyToken.Found(window.take(endOfData).utf8String)
+    }
   }
 }
 
 /**
  * A body handler.
  *
- * This will buffer the body until it reaches the end of stream, or until the buffer limit is reached.
+ * This will buffer the body until the token check has an answer, the end of stream, or the buffer limit is reached.
+ *
+ * Each element is given to the check as it arrives, which gives the answer as soon as the token is found or known to
+ * be missing. Once it has an answer, either the token was found and is valid, and it forwards the buffered body, and
+ * then stops buffering and continues forwarding the body as is (or finishes if the stream was finished), or it fails
+ * the stream.
  *
- * Once it has finished buffering, it will attempt to find the token in the body, and if it does, validates it,
- * failing the stream if it's invalid.  If it's valid, it forwards the buffered body, and then stops buffering and
- * continues forwarding the body as is (or finishes if the stream was finished).
+ * @param newCheck Creates the check of a body. The check is given each element of the body in turn, and whether it is
+ *                 the last check, and returns whether the token is valid, or None if more of the body is needed. The
+ *                 last check, which may be given an empty element, must return an answer.
  */
-private class BodyHandler(config: CSRFConfig, checkBody: ByteString => Boolean)
+private class BodyHandler(config: CSRFConfig, newCheck: () => (ByteString, Boolean) => Option[Boolean])
     extends GraphStage[FlowShape[ByteString, ByteString]] {
   private val PostBodyBufferMax = config.postBodyBuffer
 
@@ -322,6 +427,7 @@ private class BodyHandler(config: CSRFConfig, checkBody: ByteString => Boolean)
 
   override def createLogic(inheritedAttributes: Attributes): GraphStageLogic =
     new GraphStageLogic(shape) with OutHandler with InHandler with StageLogging {
+      val checkBody          = newCheck()
       var buffer: ByteString = ByteString.empty
       var next: ByteString   = _
 
@@ -343,10 +449,11 @@ private class BodyHandler(config: CSRFConfig, checkBody: ByteString => Boolean)
 
       def onPush(): Unit = {
         val elem = grab(in)
-        if (exceededBufferLimit(elem)) {
-          // We've finished buffering up to the configured limit, try to validate
-          buffer ++= elem
-          if (checkBody(buffer)) {
+        // Once we've buffered up to the configured limit, this is the last check
+        val last = exceededBufferLimit(elem)
+        buffer ++= elem
+        checkBody(elem, last) match {
+          case Some(true) =>
             // Switch to continue, and push the buffer
             setHandlers(in, out, continueHandler)
             if (!(isClosed(in) || hasBeenPulled(in))) {
@@ -357,14 +464,12 @@ private class BodyHandler(config: CSRFConfig, checkBody: ByteString => Boolean)
               next = buffer
               buffer = null
             }
-          } else {
+          case Some(false) =>
             // CSRF check failed
             failStage(NoTokenInBody)
-          }
-        } else {
-          // Buffer
-          buffer ++= elem
-          pull(in)
+          case None =>
+            // Buffer
+            pull(in)
         }
       }
 
@@ -374,7 +479,7 @@ private class BodyHandler(config: CSRFConfig, checkBody: ByteString => Boolean)
 
       override def onUpstreamFinish(): Unit = {
         // CSRF check
-        if (checkBody(buffer)) emit(out, buffer, () => completeStage())
+        if (checkBody(ByteString.empty, true).contains(true)) emit(out, buffer, () => completeStage())
         else failStage(NoTokenInBody)
       }
 
@@ -47,6 +47,7 @@ import scala.concurrent.Future
  * @param headerName The name of the HTTP header to check for tokens from.
  * @param shouldProtect A function that decides based on the headers of the request if a check is needed.
  * @param bypassCorsTrustedOrigins Whether to bypass the CSRF check if the CORS filter trusts this origin
+ * @param tokenBeforeFiles Whether the token of a multipart/form-data body must come before its file parts.
  */
 case class CSRFConfig(
     tokenName: String = "csrfToken",
@@ -61,7 +62,8 @@ case class CSRFConfig(
     checkContentType: Option[String] => Boolean = _ => true,
     headerName: String = "Csrf-Token",
     shouldProtect: RequestHeader => Boolean = _ => false,
-    bypassCorsTrustedOrigins: Boolean = true
+    bypassCorsTrustedOrigins: Boolean = true,
+    tokenBeforeFiles: Boolean = false
 ) {
   // Java builder methods
   def this() = this(cookieName = None)
@@ -88,7 +90,8 @@ case class CSRFConfig(
     copy(checkContentType = checkContentType.asScala.compose(_.asJava))
   def withShouldProtect(shouldProtect: ju.function.Predicate[JRequestHeader]) =
     copy(shouldProtect = shouldProtect.asScala.compose(_.asJava))
-  def withBypassCorsTrustedOrigins(bypass: Boolean) = copy(bypassCorsTrustedOrigins = bypass)
+  def withBypassCorsTrustedOrigins(bypass: Boolean)   = copy(bypassCorsTrustedOrigins = bypass)
+  def withTokenBeforeFiles(tokenBeforeFiles: Boolean) = copy(tokenBeforeFiles = tokenBeforeFiles)
 }
 
 object CSRFConfig {
@@ -169,7 +172,8 @@ object CSRFConfig {
       checkContentType = checkContentType,
       headerName = config.get[String]("header.name"),
       shouldProtect = shouldProtect,
-      bypassCorsTrustedOrigins = config.get[Boolean]("bypassCorsTrustedOrigins")
+      bypassCorsTrustedOrigins = config.get[Boolean]("bypassCorsTrustedOrigins"),
+      tokenBeforeFiles = config.get[Boolean]("body.tokenBeforeFiles")
     )
   }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.filters.gzip
+
+import java.security.MessageDigest
+import java.util.concurrent.atomic.LongAdder
+
+import akka.util.ByteString
+
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+
+/**
+ * Configuration for the cache of compressed strict bodies of the gzip filter.
+ *
+ * @param maxEntries The maximum number of compressed bodies in the cache.
+ * @param maxSize The maximum total size, in bytes, of the compressed bodies in the cache.
+ */
+case class CompressedBodyCacheConfig(maxEntries: Int = 1000, maxSize: Long = 10485760) {
+  // alternate constructor and builder methods for Java
+  def this() = this(maxEntries = 1000)
+
+  def withMaxEntries(maxEntries: Int): CompressedBodyCacheConfig = copy(maxEntries = maxEntries)
+
+  def withMaxSize(maxSize: Long): CompressedBodyCacheConfig = copy(maxSize = maxSize)
+}
+
+/**
+ * A bounded cache of compressed bodies, so that identical bodies are only compressed once.
+ *
+ * The bodies are identified by the SHA-256 digest of their bytes and the content coding they are compressed with.
+ * When the cache is full, the least recently used bodies are evicted.
+ */
+final class CompressedBodyCache(config: CompressedBodyCacheConfig) {
+  import CompressedBodyCache._
+
+  // In access order, so the first entry is the least recently used
+  private val entries   = new java.util.LinkedHashMap[Key, ByteString](16, 0.75f, true)
+  private var totalSize = 0L
+  private val hits      = new LongAdder
+  private val misses    = new LongAdder
+
+  /**
+   * Get the compressed body from the cache, or compress it and cache it.
+   *
+   * @param coding The content coding the body is compressed with.
+   * @param body The body to compress.
+   * @param compress Compresses the body.
+   */
+  def getOrCompress(coding: String, body: ByteString)(
+      compress: => Future[ByteString]
+  )(implicit ec: ExecutionContext): Future[ByteString] = {
+    val key = Key(coding, digest(body))
+    get(key) match {
+      case Some(compressed) =>
+        hits.increment()
+        Future.successful(compressed)
+      case None =>
+        misses.increment()
+        compress.map { compressed =>
+          put(key, compressed)
+          compressed
+        }
+    }
+  }
+
+  /**
+   * The statistics of the cache.
+   */
+  def stats: Stats = synchronized {
+    Stats(hits.sum, misses.sum, entries.size, totalSize)
+  }
+
+  private def get(key: Key): Option[ByteString] = synchronized {
+    Option(entries.get(key))
+  }
+
+  private def put(key: Key, compressed: ByteString): Unit = synchronized {
+    if (compressed.length <= config.maxSize && config.maxEntries > 0) {
+      Option(entries.remove(key)).foreach(previous => totalSize -= previous.length)
+      val leastRecentlyUsed = entries.values.iterator
+      while (entries.size >= config.maxEntries || totalSize + compressed.length > config.maxSize) {
+        totalSize -= leastRecentlyUsed.next().length
+        leastRecentlyUsed.remove()
+      }
+      entries.put(key, compressed)
+      totalSize += compressed.length
+    }
+  }
+}
+
+object CompressedBodyCache {
+  private case class Key(coding: String, digest: ByteString)
+
+  private def digest(body: ByteString): ByteString = {
+    val digest = MessageDigest.getInstance("SHA-256")
+    body.asByteBuffers.foreach(digest.update)
+    ByteString(digest.digest())
+  }
+
+  /**
+   * The statistics of a [[CompressedBodyCache]].
+   *
+   * @param hits The number of bodies found in the cache.
+   * @param misses The number of bodies compressed because they weren't in the cache.
+   * @param entries The number of compressed bodies in the cache.
+   * @param size The total size of the compressed bodies in the cache.
+   */
+  case class Stats(hits: Long, misses: Long, entries: Int, size: Long) {
+
+    /**
+     * The ratio of the bodies found in the cache, or 1 if no body was looked up.
+     */
+    def hitRate: Double = if (hits + misses == 0) 1.0 else hits.toDouble / (hits + misses)
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.filters.gzip
+
+import akka.stream.scaladsl.Flow
+import akka.util.ByteString
+import com.typesafe.config.ConfigMemorySize
+import play.api.Configuration
+import play.api.PlayException
+import play.api.http.ContentEncoding
+import play.api.libs.streams.GzipFlow
+
+/**
+ * A content coding the [[GzipFilter]] may compress responses with.
+ *
+ * The codecs are configured in `play.filters.gzip.codec`, and instantiated through a public constructor taking their
+ * configuration. This is how codecs relying on third-party or native libraries, such as Brotli (`br`) or Zstandard
+ * (`zstd`), can be plugged in.
+ */
+trait CompressionCodec {
+
+  /**
+   * The name of the content coding, as used in the Accept-Encoding and Content-Encoding headers.
+   */
+  def name: String
+
+  /**
+   * The byte threshold for the response body size above which responses are compressed with this codec. If the body
+   * size cannot be determined, then it is assumed the response is over the threshold.
+   */
+  def threshold: Int
+
+  /**
+   * A flow compressing a response body.
+   *
+   * @param bufferSize The maximum amount of data to send to the compressor in one go.
+   */
+  def compress(bufferSize: Int): Flow[ByteString, ByteString, _]
+}
+
+/**
+ * The gzip content coding.
+ *
+ * @param level The compression level, from -1 to 9. See [[java.util.zip.Deflater]].
+ * @param threshold The byte threshold for the response body size above which responses are compressed.
+ */
+class GzipCodec(val level: Int, val threshold: Int) extends CompressionCodec {
+  def this(config: Configuration) = this(CompressionCodec.level(config), CompressionCodec.threshold(config))
+
+  def name: String = ContentEncoding.Gzip
+
+  def compress(bufferSize: Int): Flow[ByteString, ByteString, _] = GzipFlow.gzip(bufferSize, level)
+}
+
+/**
+ * The deflate content coding, that is the zlib format of RFC 1950. Like gzip, it is implemented by the JDK, so it
+ * doesn't need any native library.
+ *
+ * @param level The compression level, from -1 to 9. See [[java.util.zip.Deflater]].
+ * @param threshold The byte threshold for the response body size above which responses are compressed.
+ */
+class DeflateCodec(val level: Int, val threshold: Int) extends CompressionCodec {
+  def this(config: Configuration) = this(CompressionCodec.level(config), CompressionCodec.threshold(config))
+
+  def name: String = ContentEncoding.Deflate
+
+  def compress(bufferSize: Int): Flow[ByteString, ByteString, _] = GzipFlow.deflate(bufferSize, level)
+}
+
+object CompressionCodec {
+
+  /**
+   * Load the codecs of the configured content codings, in order of preference.
+   *
+   * @param config The configuration of the gzip filter.
+   * @param classLoader The class loader to load the codecs with.
+   */
+  def fromConfiguration(config: Configuration, classLoader: ClassLoader): Seq[CompressionCodec] = {
+    fromConfiguration(
+      config,
+      classLoader,
+      config.get[Int]("compressionLevel"),
+      config.get[ConfigMemorySize]("threshold").toBytes.toInt
+    )
+  }
+
+  /**
+   * Load the codecs of the configured content codings, in order of preference, with the given defaults.
+   *
+   * @param config The configuration of the gzip filter.
+   * @param classLoader The class loader to load the codecs with.
+   * @param level The compression level of the codecs that don't configure theirs.
+   * @param threshold The threshold of the codecs that don't configure theirs.
+   */
+  def fromConfiguration(
+      config: Configuration,
+      classLoader: ClassLoader,
+      level: Int,
+      threshold: Int
+  ): Seq[CompressionCodec] = {
+    val defaults = Configuration("level" -> level, "threshold" -> threshold.toLong)
+    config.get[Seq[String]]("codings").map { coding =>
+      val codecConfig = config.getOptional[Configuration](s"codec.$coding").getOrElse {
+        throw config.reportError("codings", s"No codec is configured for the content coding $coding")
+      }
+      load(codecConfig.withFallback(defaults), classLoader)
+    }
+  }
+
+  private def load(config: Configuration, classLoader: ClassLoader): CompressionCodec = {
+    val className = config.get[String]("class")
+    try {
+      classLoader
+        .loadClass(className)
+        .asSubclass(classOf[CompressionCodec])
+        .getConstructor(classOf[Configuration])
+        .newInstance(config)
+    } catch {
+      case e: ClassNotFoundException =>
+        throw config.reportError("class", s"Compression codec not found: $className", Some(e))
+      case e: ClassCastException =>
+        throw config.reportError("class", s"$className is not a ${classOf[CompressionCodec].getName}", Some(e))
+      case e: NoSuchMethodException =>
+        throw new PlayException(
+          "Cannot load compression codec",
+          s"$className must have a public constructor taking a ${classOf[Configuration].getName}",
+          e
+        )
+    }
+  }
+
+  private[gzip] def level(config: Configuration): Int = config.get[Int]("level")
+
+  private[gzip] def threshold(config: Configuration): Int = config.get[ConfigMemorySize]("threshold").toBytes.toInt
+}
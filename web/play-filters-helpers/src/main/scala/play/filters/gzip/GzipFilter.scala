@@ -17,14 +17,14 @@ import akka.stream.OverflowStrategy
 import akka.util.ByteString
 import com.typesafe.config.ConfigMemorySize
 import play.api.Configuration
+import play.api.Environment
 import play.api.Logger
 import play.api.http._
 import play.api.inject._
-import play.api.libs.streams.GzipFlow
-import play.api.mvc.RequestHeader.acceptHeader
 import play.api.mvc._
 import play.core.j
 
+import scala.collection.JavaConverters._
 import scala.compat.java8.FunctionConverters._
 import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
@@ -32,15 +32,17 @@ import scala.concurrent.Future
 /**
  * A gzip filter.
  *
- * This filter may gzip the responses for any requests that aren't HEAD requests and specify an accept encoding of gzip.
+ * This filter may compress the responses for any requests that aren't HEAD requests and accept one of the configured
+ * content codings, gzip by default. The coding with the highest q-value in the Accept-Encoding header is used, the
+ * first configured one if several have the same q-value, unless the identity coding is preferred to all of them.
  *
- * It won't gzip under the following conditions:
+ * It won't compress under the following conditions:
  *
  * - The response code is 204 or 304 (these codes MUST NOT contain a body, and an empty gzipped response is 20 bytes
  * long)
  * - The response already defines a Content-Encoding header
- * - The size of the response body is equal or smaller than a given threshold. If the body size cannot be determined,
- *   then it is assumed the response is over the threshold
+ * - The size of the response body is equal or smaller than the threshold of the coding. If the body size cannot be
+ *   determined, then it is assumed the response is over the threshold
  * - A custom shouldGzip function is supplied and it returns false
  *
  * Since gzipping changes the content length of the response, this filter may do some buffering - it will buffer any
@@ -61,34 +63,54 @@ class GzipFilter @Inject() (config: GzipFilterConfig)(implicit mat: Materializer
   )(implicit mat: Materializer) =
     this(GzipFilterConfig(bufferSize, chunkedThreshold, threshold, shouldGzip, compressionLevel))
 
+  // The configured codecs are built from the level and threshold of the config, which may have been changed since
+  private val codecs: Seq[CompressionCodec] =
+    if (config.codecs.nonEmpty) config.codecs
+    else
+      config.configuredCodecs match {
+        case Some(configuredCodecs) => configuredCodecs(config.compressionLevel, config.threshold)
+        case None                   => Seq(new GzipCodec(config.compressionLevel, config.threshold))
+      }
+
+  private val compressedBodyCache: Option[CompressedBodyCache] =
+    config.compressedBodyCache.map(new CompressedBodyCache(_))
+
+  /**
+   * The statistics of the cache of compressed strict bodies, if it is enabled.
+   */
+  def compressedBodyCacheStats: Option[CompressedBodyCache.Stats] = compressedBodyCache.map(_.stats)
+
   def apply(next: EssentialAction) = new EssentialAction {
     implicit val ec = mat.executionContext
     def apply(request: RequestHeader) = {
-      if (mayCompress(request)) {
-        next(request).mapFuture(result => handleResult(request, result))
-      } else {
-        next(request)
+      negotiateCodec(request) match {
+        case Some(codec) => next(request).mapFuture(result => handleResult(request, result, codec))
+        case None        => next(request)
       }
     }
   }
 
-  private def createGzipFlow: Flow[ByteString, ByteString, _] =
-    GzipFlow.gzip(config.bufferSize, config.compressionLevel)
-
-  private def handleResult(request: RequestHeader, result: Result): Future[Result] = {
+  private def handleResult(request: RequestHeader, result: Result, codec: CompressionCodec): Future[Result] = {
     implicit val ec = mat.executionContext
-    if (shouldCompress(result) && config.shouldGzip(request, result)) {
-      val header = result.header.copy(headers = setupHeader(result.header))
+    def createGzipFlow: Flow[ByteString, ByteString, _] = codec.compress(config.bufferSize)
+
+    if (shouldCompress(result, codec) && config.shouldGzip(request, result)) {
+      val header = result.header.copy(headers = setupHeader(result.header, codec))
 
       result.body match {
         case HttpEntity.Strict(data, contentType) =>
-          compressStrictEntity(Source.single(data), contentType)
-            .map(entity => result.copy(header = header, body = entity))
+          def compress = compressStrictEntity(Source.single(data), contentType, codec)
+          val compressed = compressedBodyCache match {
+            case Some(cache) =>
+              cache.getOrCompress(codec.name, data)(compress.map(_.data)).map(HttpEntity.Strict(_, contentType))
+            case None => compress
+          }
+          compressed.map(entity => result.copy(header = header, body = entity))
 
         case entity @ HttpEntity.Streamed(_, Some(contentLength), contentType)
             if contentLength <= config.chunkedThreshold =>
           // It's below the chunked threshold, so buffer then compress and send
-          compressStrictEntity(entity.data, contentType)
+          compressStrictEntity(entity.data, contentType, codec)
             .map(strictEntity => result.copy(header = header, body = strictEntity))
 
         case HttpEntity.Streamed(data, _, contentType) if request.version == HttpProtocol.HTTP_1_0 =>
@@ -140,27 +162,35 @@ class GzipFilter @Inject() (config: GzipFilterConfig)(implicit mat: Materializer
     }
   }
 
-  private def compressStrictEntity(source: Source[ByteString, Any], contentType: Option[String])(
-      implicit ec: ExecutionContext
-  ) = {
-    val compressed = source.via(createGzipFlow).runFold(ByteString.empty)(_ ++ _)
+  private def compressStrictEntity(
+      source: Source[ByteString, Any],
+      contentType: Option[String],
+      codec: CompressionCodec
+  )(implicit ec: ExecutionContext) = {
+    val compressed = source.via(codec.compress(config.bufferSize)).runFold(ByteString.empty)(_ ++ _)
     compressed.map(data => HttpEntity.Strict(data, contentType))
   }
 
   /**
-   * Whether this request may be compressed.
+   * The codec to compress the response to this request with, if it may be compressed.
    */
-  private def mayCompress(request: RequestHeader) =
-    request.method != "HEAD" && gzipIsAcceptedAndPreferredBy(request)
-
-  private def gzipIsAcceptedAndPreferredBy(request: RequestHeader) = {
-    val codings                        = acceptHeader(request.headers, ACCEPT_ENCODING)
-    def explicitQValue(coding: String) = codings.collectFirst { case (q, c) if c.equalsIgnoreCase(coding) => q }
-    def defaultQValue(coding: String)  = if (coding == "identity") 0.001d else 0d
-    def qvalue(coding: String)         = explicitQValue(coding).orElse(explicitQValue("*")).getOrElse(defaultQValue(coding))
-
-    qvalue("gzip") > 0d && qvalue("gzip") >= qvalue("identity")
-  }
+  private def negotiateCodec(request: RequestHeader): Option[CompressionCodec] =
+    if (request.method == "HEAD" || codecs.isEmpty) None
+    else {
+      val preferences = AcceptEncoding.forRequest(request).preferences
+      def explicitQValue(coding: String) = preferences.collectFirst {
+        case p if !p.matchesAny && p.matches(coding) => p.q
+      }
+      def wildcardQValue                = preferences.collectFirst { case p if p.matchesAny => p.q }
+      def defaultQValue(coding: String) = if (coding == ContentEncoding.Identity) BigDecimal("0.001") else BigDecimal(0)
+      def qvalue(coding: String)        = explicitQValue(coding).orElse(wildcardQValue).getOrElse(defaultQValue(coding))
+
+      val identityQValue = qvalue(ContentEncoding.Identity)
+      // maxBy returns the first of the codecs with the highest q-value, which is the most preferred by the server
+      Some(codecs.maxBy(codec => qvalue(codec.name))).filter { codec =>
+        qvalue(codec.name) > 0 && qvalue(codec.name) >= identityQValue
+      }
+    }
 
   /**
    * Whether this response should be compressed.  Responses that may not contain content won't be compressed, nor will
@@ -168,11 +198,11 @@ class GzipFilter @Inject() (config: GzipFilterConfig)(implicit mat: Materializer
    * actually always get bigger.  Also responses whose body size are equal or lower than the given byte threshold won't
    * be compressed, because it's assumed they end up being bigger than the original body.
    */
-  private def shouldCompress(result: Result) =
+  private def shouldCompress(result: Result, codec: CompressionCodec) =
     isAllowedContent(result.header) &&
       isNotAlreadyCompressed(result.header) &&
       !result.body.isKnownEmpty &&
-      result.body.contentLength.forall(_ > config.threshold)
+      result.body.contentLength.forall(_ > codec.threshold)
 
   /**
    * Certain response codes are forbidden by the HTTP spec to contain content, but a gzipped response always contains
@@ -186,8 +216,8 @@ class GzipFilter @Inject() (config: GzipFilterConfig)(implicit mat: Materializer
    */
   private def isNotAlreadyCompressed(header: ResponseHeader) = header.headers.get(CONTENT_ENCODING).isEmpty
 
-  private def setupHeader(rh: ResponseHeader): Map[String, String] = {
-    rh.headers + (CONTENT_ENCODING -> "gzip") + rh.varyWith(ACCEPT_ENCODING)
+  private def setupHeader(rh: ResponseHeader, codec: CompressionCodec): Map[String, String] = {
+    rh.headers + (CONTENT_ENCODING -> codec.name) + rh.varyWith(ACCEPT_ENCODING)
   }
 }
 
@@ -208,6 +238,42 @@ case class GzipFilterConfig(
     shouldGzip: (RequestHeader, Result) => Boolean = (_, _) => true,
     compressionLevel: Int = Deflater.DEFAULT_COMPRESSION
 ) {
+  // The settings below aren't parameters, so that the case class stays binary compatible. They are only set on new
+  // copies, before they are returned, and copy carries them over.
+  private var _codecs: Seq[CompressionCodec]                                 = Nil
+  private var _compressedBodyCache: Option[CompressedBodyCacheConfig]        = None
+  private var _configuredCodecs: Option[(Int, Int) => Seq[CompressionCodec]] = None
+
+  /**
+   * The codecs of the content codings to compress with, in order of preference. If empty, responses are compressed
+   * with the codings of the configuration, or gzipped if the config wasn't read from the configuration.
+   */
+  def codecs: Seq[CompressionCodec] = _codecs
+
+  /**
+   * The configuration of the cache of compressed strict bodies, if they should be cached.
+   */
+  def compressedBodyCache: Option[CompressedBodyCacheConfig] = _compressedBodyCache
+
+  /**
+   * The codecs of the content codings of the configuration, given the compressionLevel and threshold they default to.
+   */
+  private[gzip] def configuredCodecs: Option[(Int, Int) => Seq[CompressionCodec]] = _configuredCodecs
+
+  def copy(
+      bufferSize: Int = bufferSize,
+      chunkedThreshold: Int = chunkedThreshold,
+      threshold: Int = threshold,
+      shouldGzip: (RequestHeader, Result) => Boolean = shouldGzip,
+      compressionLevel: Int = compressionLevel
+  ): GzipFilterConfig = {
+    val config = new GzipFilterConfig(bufferSize, chunkedThreshold, threshold, shouldGzip, compressionLevel)
+    config._codecs = _codecs
+    config._compressedBodyCache = _compressedBodyCache
+    config._configuredCodecs = _configuredCodecs
+    config
+  }
+
   // alternate constructor and builder methods for Java
   def this() = this(shouldGzip = (_, _) => true)
 
@@ -223,12 +289,34 @@ case class GzipFilterConfig(
   def withBufferSize(size: Int): GzipFilterConfig = copy(bufferSize = size)
 
   def withCompressionLevel(level: Int): GzipFilterConfig = copy(compressionLevel = level)
+
+  def withCodecs(codecs: Seq[CompressionCodec]): GzipFilterConfig = {
+    val config = copy()
+    config._codecs = codecs
+    config
+  }
+
+  def withCodecs(codecs: java.util.List[CompressionCodec]): GzipFilterConfig = withCodecs(codecs.asScala.toList)
+
+  def withCompressedBodyCache(cache: CompressedBodyCacheConfig): GzipFilterConfig = {
+    val config = copy()
+    config._compressedBodyCache = Some(cache)
+    config
+  }
+
+  private[gzip] def withConfiguredCodecs(configuredCodecs: (Int, Int) => Seq[CompressionCodec]): GzipFilterConfig = {
+    val config = copy()
+    config._configuredCodecs = Some(configuredCodecs)
+    config
+  }
 }
 
 object GzipFilterConfig {
   private val logger = Logger(this.getClass)
 
-  def fromConfiguration(conf: Configuration): GzipFilterConfig = {
+  def fromConfiguration(conf: Configuration): GzipFilterConfig = fromConfiguration(conf, getClass.getClassLoader)
+
+  def fromConfiguration(conf: Configuration, classLoader: ClassLoader): GzipFilterConfig = {
     def parseConfigMediaTypes(config: Configuration, key: String): Seq[MediaType] = {
       val mediaTypes = config.get[Seq[String]](key).flatMap {
         case "*" =>
@@ -271,7 +359,7 @@ object GzipFilterConfig {
     val whiteList = parseConfigMediaTypes(config, "contentType.whiteList")
     val blackList = parseConfigMediaTypes(config, "contentType.blackList")
 
-    GzipFilterConfig(
+    val gzipConfig = GzipFilterConfig(
       bufferSize = config.get[ConfigMemorySize]("bufferSize").toBytes.toInt,
       chunkedThreshold = config.get[ConfigMemorySize]("chunkedThreshold").toBytes.toInt,
       threshold = config.get[ConfigMemorySize]("threshold").toBytes.toInt,
@@ -294,7 +382,17 @@ object GzipFilterConfig {
           }
         },
       compressionLevel = config.get[Int]("compressionLevel")
-    )
+    ).withConfiguredCodecs(CompressionCodec.fromConfiguration(config, classLoader, _, _))
+
+    val cache = config.get[Configuration]("compressedBodyCache")
+    if (cache.get[Boolean]("enabled")) {
+      gzipConfig.withCompressedBodyCache(
+        CompressedBodyCacheConfig(
+          maxEntries = cache.get[Int]("maxEntries"),
+          maxSize = cache.get[ConfigMemorySize]("maxSize").toBytes
+        )
+      )
+    } else gzipConfig
   }
 }
 
@@ -302,8 +400,11 @@ object GzipFilterConfig {
  * The gzip filter configuration provider.
  */
 @Singleton
-class GzipFilterConfigProvider @Inject() (config: Configuration) extends Provider[GzipFilterConfig] {
-  lazy val get = GzipFilterConfig.fromConfiguration(config)
+class GzipFilterConfigProvider @Inject() (config: Configuration, environment: Environment)
+    extends Provider[GzipFilterConfig] {
+  def this(config: Configuration) = this(config, Environment.simple())
+
+  lazy val get = GzipFilterConfig.fromConfiguration(config, environment.classLoader)
 }
 
 /**
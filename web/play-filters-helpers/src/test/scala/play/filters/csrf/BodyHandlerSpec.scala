@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) Lightbend Inc. <https://www.lightbend.com>
+ */
+
+package play.filters.csrf
+
+import akka.actor.ActorSystem
+import akka.stream.Materializer
+import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import org.specs2.mutable.Specification
+import org.specs2.specification.AfterAll
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+class BodyHandlerSpec extends Specification with AfterAll {
+  implicit val system       = ActorSystem("csrf-body-handler-spec")
+  implicit val materializer = Materializer.matFromSystem
+
+  def afterAll(): Unit = {
+    system.terminate()
+  }
+
+  val Boundary = "aabbccddee"
+
+  val formBody = "csrfTokenX=wrong&foo=bar&csrfToken=the+token&baz=qux"
+
+  val multipartBody =
+    s"""--$Boundary
+       |Content-Disposition: form-data; name="foo"; filename="foo.txt"
+       |Content-Type: text/plain
+       |
+       |csrfToken
+       |--$Boundary
+       |Content-Disposition: form-data; name="csrfToken"
+       |
+       |the token
+       |--$Boundary--""".stripMargin.replaceAll("\r?\n", "\r\n")
+
+  def multipartScanner(tokenBeforeFiles: Boolean = false) =
+    new MultipartBodyTokenScanner(ByteString(Boundary), "csrfToken", tokenBeforeFiles)
+
+  /** Scans the body in chunks of the given size, until the scanner has an answer. */
+  def scanInChunks(scanner: BodyTokenScanner, body: String, size: Int): BodyToken = {
+    ByteString(body)
+      .grouped(size)
+      .map(scanner.scan(_, last = false))
+      .find(_ != BodyToken.Incomplete)
+      .getOrElse(scanner.scan(ByteString.empty, last = true))
+  }
+
+  def check(scanner: BodyTokenScanner, token: String): (ByteString, Boolean) => Option[Boolean] = { (chunk, last) =>
+    scanner.scan(chunk, last) match {
+      case BodyToken.Found(found)        => Some(found == token)
+      case BodyToken.Incomplete if !last => None
+      case _                             => Some(false)
+    }
+  }
+
+  "FormBodyTokenScanner" should {
+    "find the token wherever the body is split" in {
+      forall(1 to formBody.length) { size =>
+        scanInChunks(new FormBodyTokenScanner("csrfToken"), formBody, size) must_== BodyToken.Found("the token")
+      }
+    }
+
+    "find the token in a body made of it only" in {
+      scanInChunks(new FormBodyTokenScanner("csrfToken"), "csrfToken=the+token", 3) must_== BodyToken.Found("the token")
+    }
+
+    "not find the token in a body without it" in {
+      scanInChunks(new FormBodyTokenScanner("csrfToken"), "foo=bar&xcsrfToken=abc", 2) must_== BodyToken.Incomplete
+    }
+  }
+
+  "MultipartBodyTokenScanner" should {
+    "find the token wherever the body is split" in {
+      forall(1 to multipartBody.length) { size =>
+        scanInChunks(multipartScanner(), multipartBody, size) must_== BodyToken.Found("the token")
+      }
+    }
+
+    "report the token missing once a file part starts if it must come before the files" in {
+      forall(1 to multipartBody.length) { size =>
+        scanInChunks(multipartScanner(tokenBeforeFiles = true), multipartBody, size) must_== BodyToken.Missing
+      }
+    }
+  }
+
+  "BodyHandler" should {
+    "forward the body as soon as the token is found" in {
+      val chunks  = Seq("foo=bar&csrf", "Token=the+token", "&baz=qux").map(ByteString(_))
+      val handler = new BodyHandler(CSRFConfig(), () => check(new FormBodyTokenScanner("csrfToken"), "the token"))
+      // The body never ends, so the buffered body can only be received if it's forwarded as soon as the token is found
+      val forwarded = Source(chunks).concat(Source.maybe[ByteString]).via(handler).runWith(Sink.head)
+      Await.result(forwarded, 5.seconds) must_== chunks.reduce(_ ++ _)
+    }
+
+    "check the whole body once it ends" in {
+      val chunks  = Seq("foo=bar&csrf", "Token=the+token").map(ByteString(_))
+      val handler = new BodyHandler(CSRFConfig(), () => check(new FormBodyTokenScanner("csrfToken"), "the token"))
+      val body    = Source(chunks).via(handler).runWith(Sink.fold[ByteString, ByteString](ByteString.empty)(_ ++ _))
+      Await.result(body, 5.seconds) must_== chunks.reduce(_ ++ _)
+    }
+
+    "fail the body if the token is invalid" in {
+      val handler = new BodyHandler(CSRFConfig(), () => check(new FormBodyTokenScanner("csrfToken"), "the token"))
+      val body    = Source.single(ByteString("csrfToken=wrong&foo=bar")).via(handler).runWith(Sink.ignore)
+      Await.result(body, 5.seconds) must throwA(NoTokenInBody)
+    }
+  }
+}
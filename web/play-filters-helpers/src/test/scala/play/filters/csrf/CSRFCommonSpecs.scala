@@ -353,6 +353,39 @@ trait CSRFCommonSpecs extends Specification with PlaySpecification {
       }
     }
 
+    "allow requiring the token before the file parts of multipart bodies" in {
+      def csrfCheckRequest = buildCsrfCheckRequest(false, "play.filters.csrf.body.tokenBeforeFiles" -> "true")
+
+      "accept requests with the token before the file parts" in {
+        lazy val token = signedTokenProvider.generateToken
+        val body =
+          s"""--$Boundary
+             |Content-Disposition: form-data; name="$TokenName"
+             |
+             |$token
+             |--$Boundary
+             |Content-Disposition: form-data; name="foo"; filename="foo.txt"
+             |Content-Type: application/octet-stream
+             |
+             |hello foo
+             |--$Boundary--""".stripMargin.replaceAll("\r?\n", "\r\n")
+        csrfCheckRequest(
+          _.withSession(TokenName -> token)
+            .addHttpHeaders("Content-Type" -> s"multipart/form-data; boundary=$Boundary")
+            .post(body)
+        )(_.status must_== OK)
+      }
+
+      "reject requests with the token after the file parts" in {
+        lazy val token = signedTokenProvider.generateToken
+        csrfCheckRequest(
+          _.withSession(TokenName -> token)
+            .addHttpHeaders("Content-Type" -> s"multipart/form-data; boundary=$Boundary")
+            .post(multiPartFormDataBody(TokenName, token))
+        )(_.status must_== FORBIDDEN)
+      }
+    }
+
     "allow configuring a content type blacklist" in {
       def csrfCheckRequest = buildCsrfCheckRequest(
         false,
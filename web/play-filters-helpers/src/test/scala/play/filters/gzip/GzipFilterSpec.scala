@@ -25,6 +25,7 @@ import play.api.mvc.Result
 import play.api.mvc.Results._
 import java.util.zip.Deflater
 import java.util.zip.GZIPInputStream
+import java.util.zip.InflaterInputStream
 import java.io.ByteArrayInputStream
 import java.io.InputStreamReader
 
@@ -327,6 +328,67 @@ class GzipFilterSpec extends PlaySpecification with DataTables {
       }
     }
 
+    "compress with the coding preferred by the request" in withApplication(
+      Ok("hello"),
+      codings = List("gzip", "deflate")
+    ) { implicit app =>
+      val result = requestAccepting(app, "gzip;q=0.5, deflate")
+      header(CONTENT_ENCODING, result) must beSome("deflate")
+      inflate(contentAsBytes(result)) must_== "hello"
+    }
+
+    "compress with the first configured coding among those preferred equally by the request" in withApplication(
+      Ok("hello"),
+      codings = List("deflate", "gzip")
+    ) { implicit app =>
+      header(CONTENT_ENCODING, requestAccepting(app, "gzip, deflate")) must beSome("deflate")
+      header(CONTENT_ENCODING, requestAccepting(app, "gzip")) must beSome("gzip")
+    }
+
+    "not compress with a coding that isn't configured" in withApplication(Ok("hello")) { implicit app =>
+      checkNotGzipped(requestAccepting(app, "deflate"), "hello")(app.materializer)
+    }
+
+    "not compress responses if no coding is configured" in withApplication(Ok("hello"), codings = Nil) {
+      implicit app =>
+        checkNotGzipped(makeGzipRequest(app), "hello")(app.materializer)
+    }
+
+    "use the threshold set on a config read from the configuration" in withApplication(Ok("hello")) { implicit app =>
+      val config = GzipFilterConfig.fromConfiguration(app.configuration).withThreshold(100)
+      checkNotGzipped(runFilter(app, config, Ok("hello")), "hello")(app.materializer)
+    }
+
+    "compress identical strict bodies once if the compressed body cache is enabled" in withApplication(
+      Ok(body),
+      compressedBodyCache = true
+    ) { implicit app =>
+      val filter = app.injector.instanceOf[GzipFilter]
+      checkGzippedBody(makeGzipRequest(app), body)(app.materializer)
+      checkGzippedBody(makeGzipRequest(app), body)(app.materializer)
+      filter.compressedBodyCacheStats must beSome.like {
+        case stats =>
+          stats.hits must_== 1
+          stats.misses must_== 1
+          stats.entries must_== 1
+      }
+    }
+
+    "evict the least recently used bodies from the compressed body cache" in {
+      import scala.concurrent.ExecutionContext.Implicits.global
+      val cache = new CompressedBodyCache(CompressedBodyCacheConfig(maxEntries = 2, maxSize = 10))
+      def compress(data: String) =
+        await(cache.getOrCompress("gzip", ByteString(data))(Future.successful(ByteString(data))))
+
+      compress("aaa")
+      compress("bbb")
+      compress("aaa")
+      compress("ccc") // evicts bbb
+      cache.stats.entries must_== 2
+      compress("aaaaaaa") // evicts aaa to make room
+      cache.stats must_== CompressedBodyCache.Stats(hits = 1, misses = 4, entries = 2, size = 10)
+    }
+
     "a chunked body" should {
       val chunkedBody = Source.fromIterator(() =>
         Seq[HttpChunk](HttpChunk.Chunk(ByteString("First chunk")), HttpChunk.LastChunk(FakeHeaders())).iterator
@@ -437,6 +499,42 @@ class GzipFilterSpec extends PlaySpecification with DataTables {
           }
         result1a.length === result1b.length
       }
+
+      "changing the compressionLevel of a config read from the configuration should be used" in withApplication(
+        Ok("hello"),
+        compressionLevel = 1
+      ) { implicit app =>
+        val config = GzipFilterConfig.fromConfiguration(app.configuration)
+        def compressedLength(config: GzipFilterConfig) =
+          contentAsBytes(runFilter(app, config, Ok(compressibleBody))).length
+        compressedLength(config.withCompressionLevel(9)) must be_<(compressedLength(config))
+        compressedLength(config.copy(compressionLevel = 9)) must be_<(compressedLength(config))
+      }
+    }
+
+    "GzipFilterConfig" should {
+      "keep its codecs and compressed body cache when it's changed" in {
+        val codecs = Seq(new DeflateCodec(9, 0))
+        val cache  = CompressedBodyCacheConfig(maxEntries = 2, maxSize = 10)
+        val config = GzipFilterConfig().withCodecs(codecs).withCompressedBodyCache(cache)
+        config.withThreshold(100).codecs must_== codecs
+        config.copy(bufferSize = 1024).codecs must_== codecs
+        config.withBufferSize(1024).compressedBodyCache must beSome(cache)
+        GzipFilterConfig().codecs must beEmpty
+        GzipFilterConfig().compressedBodyCache must beNone
+      }
+
+      "keep the codings of the configuration when it's changed" in withApplication(
+        Ok(compressibleBody),
+        codings = List("deflate")
+      ) { implicit app =>
+        val config = GzipFilterConfig.fromConfiguration(app.configuration).withThreshold(0)
+        val action = app.injector.instanceOf[DefaultActionBuilder](Ok(compressibleBody))
+        val result = new GzipFilter(config)(app.materializer)(action)(
+          FakeRequest().withHeaders(ACCEPT_ENCODING -> "deflate")
+        ).run()(app.materializer)
+        header(CONTENT_ENCODING, result) must beSome("deflate")
+      }
     }
   }
 
@@ -446,16 +544,20 @@ class GzipFilterSpec extends PlaySpecification with DataTables {
       whiteList: List[String] = List.empty,
       blackList: List[String] = List.empty,
       compressionLevel: Int = Deflater.DEFAULT_COMPRESSION,
-      threshold: Int = 0
+      threshold: Int = 0,
+      codings: List[String] = List("gzip"),
+      compressedBodyCache: Boolean = false
   )(block: Application => T): T = {
     val application = new GuiceApplicationBuilder()
       .configure(
-        "play.filters.gzip.chunkedThreshold"      -> chunkedThreshold,
-        "play.filters.gzip.bufferSize"            -> 512,
-        "play.filters.gzip.contentType.whiteList" -> whiteList,
-        "play.filters.gzip.contentType.blackList" -> blackList,
-        "play.filters.gzip.compressionLevel"      -> compressionLevel,
-        "play.filters.gzip.threshold"             -> threshold
+        "play.filters.gzip.chunkedThreshold"            -> chunkedThreshold,
+        "play.filters.gzip.bufferSize"                  -> 512,
+        "play.filters.gzip.contentType.whiteList"       -> whiteList,
+        "play.filters.gzip.contentType.blackList"       -> blackList,
+        "play.filters.gzip.compressionLevel"            -> compressionLevel,
+        "play.filters.gzip.threshold"                   -> threshold,
+        "play.filters.gzip.codings"                     -> codings,
+        "play.filters.gzip.compressedBodyCache.enabled" -> compressedBodyCache
       )
       .overrides(
         bind[Result].to(result),
@@ -468,6 +570,12 @@ class GzipFilterSpec extends PlaySpecification with DataTables {
 
   val contentTypes = List("text/html", "text/css", "application/javascript")
 
+  /** Run a gzip filter with the given config, rather than the one of the application. */
+  def runFilter(app: Application, config: GzipFilterConfig, result: Result): Future[Result] = {
+    val action = app.injector.instanceOf[DefaultActionBuilder](result)
+    new GzipFilter(config)(app.materializer)(action)(gzipRequest).run()(app.materializer)
+  }
+
   def gzipRequest: FakeRequest[AnyContentAsEmpty.type] =
     FakeRequest().withHeaders(ACCEPT_ENCODING -> "gzip")
 
@@ -484,6 +592,13 @@ class GzipFilterSpec extends PlaySpecification with DataTables {
     finally reader.close()
   }
 
+  def inflate(bytes: ByteString): String = {
+    val is     = new InflaterInputStream(new ByteArrayInputStream(bytes.toArray))
+    val reader = new InputStreamReader(is, "UTF-8")
+    try CharStreams.toString(reader)
+    finally reader.close()
+  }
+
   def checkGzipped(result: Future[Result]): MatchResult[Option[String]] = {
     header(CONTENT_ENCODING, result).aka("Content encoding header") must beSome("gzip")
   }